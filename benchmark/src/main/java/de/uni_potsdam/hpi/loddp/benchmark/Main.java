@@ -1,5 +1,8 @@
 package de.uni_potsdam.hpi.loddp.benchmark;
 
+import de.uni_potsdam.hpi.loddp.benchmark.execution.DatasetClusterer;
+import de.uni_potsdam.hpi.loddp.benchmark.execution.DatasetEncoder;
+import de.uni_potsdam.hpi.loddp.benchmark.execution.DatasetPartitioner;
 import de.uni_potsdam.hpi.loddp.benchmark.execution.InputFile;
 import de.uni_potsdam.hpi.loddp.benchmark.execution.ScriptRunner;
 import de.uni_potsdam.hpi.loddp.benchmark.execution.ScriptRunnerBuilder;
@@ -7,6 +10,8 @@ import de.uni_potsdam.hpi.loddp.benchmark.reporting.ReportGenerator;
 import de.uni_potsdam.hpi.loddp.benchmark.reporting.ScriptStats;
 import de.uni_potsdam.hpi.loddp.common.HadoopLocation;
 import de.uni_potsdam.hpi.loddp.common.PigContextUtil;
+import de.uni_potsdam.hpi.loddp.common.execution.BasePigRunner;
+import de.uni_potsdam.hpi.loddp.common.execution.PigRunnerException;
 import de.uni_potsdam.hpi.loddp.common.scripts.PigScript;
 import de.uni_potsdam.hpi.loddp.common.scripts.PigScriptFactory;
 import org.apache.commons.cli.*;
@@ -98,6 +103,27 @@ public class Main {
                 "/[dataset]. The file extension '.nq.gz' can be omitted.")
             .hasArgs().withArgName("dbpedia-1M")
             .create('d'));
+        options.addOption(OptionBuilder
+            .withLongOpt("dictionary-encode")
+            .withDescription("Dictionary-encode datasets (unless already done; stored as [dataset].nqid) and execute " +
+                "scripts on the encoded datasets. Such scripts work on long IDs instead of strings, compare against " +
+                "constants with EncodeTerm('...'), and decode results with DecodeTerm(...).")
+            .hasArg(false)
+            .create());
+        options.addOption(OptionBuilder
+            .withLongOpt("partition")
+            .withDescription("Partition datasets vertically by predicate and object data type family (unless already " +
+                "done; stored as [dataset].nqp) and execute scripts on the partitioned datasets. Use with " +
+                "--optimize-partitions to only load the partitions needed by filters on predicates and data types.")
+            .hasArg(false)
+            .create());
+        options.addOption(OptionBuilder
+            .withLongOpt("cluster-by-subject")
+            .withDescription("Sort and cluster datasets by subject (unless already done; stored as [dataset].nqc) " +
+                "and execute scripts on the clustered datasets. Use with --optimize-collected-groups to group by " +
+                "subject on the map side.")
+            .hasArg(false)
+            .create());
         options.addOption(OptionBuilder
             .withLongOpt("explain")
             .withDescription("Dumps the logical, physical and map-reduce operator plans as graphs for each script.")
@@ -133,6 +159,36 @@ public class Main {
             .withDescription("Apply 'CombineForeach' optimization rule.")
             .hasArg(false)
             .create());
+        options.addOption(OptionBuilder
+            .withLongOpt("optimize-datatypes")
+            .withDescription("Apply 'FuseDatatypeFilters' optimization rule.")
+            .hasArg(false)
+            .create());
+        options.addOption(OptionBuilder
+            .withLongOpt("optimize-joins")
+            .withDescription("Apply 'BloomFilterJoin' optimization rule.")
+            .hasArg(false)
+            .create());
+        options.addOption(OptionBuilder
+            .withLongOpt("optimize-projections")
+            .withDescription("Apply 'NestedProjectionPushDown' optimization rule.")
+            .hasArg(false)
+            .create());
+        options.addOption(OptionBuilder
+            .withLongOpt("optimize-load-filters")
+            .withDescription("Apply 'LoadFilterPushDown' optimization rule.")
+            .hasArg(false)
+            .create());
+        options.addOption(OptionBuilder
+            .withLongOpt("optimize-partitions")
+            .withDescription("Apply 'PartitionPruning' optimization rule.")
+            .hasArg(false)
+            .create());
+        options.addOption(OptionBuilder
+            .withLongOpt("optimize-collected-groups")
+            .withDescription("Apply 'CollectedGroup' optimization rule.")
+            .hasArg(false)
+            .create());
         options.addOption(OptionBuilder
             .withLongOpt("output-directory")
             .withDescription("Output directory on HDFS to store results in.")
@@ -186,8 +242,10 @@ public class Main {
         }
 
         // Determine hadoop location, by default use localhost.
+        HadoopLocation location = HadoopLocation.LOCALHOST;
         if (cmd.hasOption("cluster")) {
-            builder.setLocation(HadoopLocation.HPI_CLUSTER);
+            location = HadoopLocation.HPI_CLUSTER;
+            builder.setLocation(location);
         }
 
         // Determine whether to repeat execution.
@@ -206,6 +264,12 @@ public class Main {
             builder.setOptimizeMerged(true);
             builder.setOptimizerCombineFilters(true);
             builder.setOptimizerCombineForeachs(true);
+            builder.setOptimizerFuseDatatypeFilters(true);
+            builder.setOptimizerBloomFilterJoins(true);
+            builder.setOptimizerNestedProjections(true);
+            builder.setOptimizerLoadFilters(true);
+            builder.setOptimizerPartitions(true);
+            builder.setOptimizerCollectedGroups(true);
             //builder.setOptimizerIgnoreProjections(true);
         }
         if (cmd.hasOption("optimize-identicals")) {
@@ -217,6 +281,24 @@ public class Main {
         if (cmd.hasOption("optimize-aggregations")) {
             builder.setOptimizerCombineForeachs(true);
         }
+        if (cmd.hasOption("optimize-datatypes")) {
+            builder.setOptimizerFuseDatatypeFilters(true);
+        }
+        if (cmd.hasOption("optimize-joins")) {
+            builder.setOptimizerBloomFilterJoins(true);
+        }
+        if (cmd.hasOption("optimize-projections")) {
+            builder.setOptimizerNestedProjections(true);
+        }
+        if (cmd.hasOption("optimize-load-filters")) {
+            builder.setOptimizerLoadFilters(true);
+        }
+        if (cmd.hasOption("optimize-partitions")) {
+            builder.setOptimizerPartitions(true);
+        }
+        if (cmd.hasOption("optimize-collected-groups")) {
+            builder.setOptimizerCollectedGroups(true);
+        }
 
         // Determine output directory.
         if (cmd.hasOption("output-directory")) {
@@ -263,6 +345,53 @@ public class Main {
         }
         logInfo(inputFiles);
 
+        // Dictionary-encode datasets if requested.
+        if (cmd.hasOption("dictionary-encode")) {
+            DatasetEncoder encoder = new DatasetEncoder(new BasePigRunner(location));
+            try {
+                for (InputFile file : inputFiles) {
+                    encoder.preprocess(file);
+                }
+            } catch (PigRunnerException e) {
+                log.error("Failed to dictionary encode datasets.", e);
+                return;
+            }
+        }
+
+        // Partition datasets if requested.
+        if (cmd.hasOption("partition")) {
+            if (cmd.hasOption("dictionary-encode")) {
+                log.error("Dictionary encoded datasets cannot be partitioned.");
+                return;
+            }
+            DatasetPartitioner partitioner = new DatasetPartitioner(new BasePigRunner(location));
+            try {
+                for (InputFile file : inputFiles) {
+                    partitioner.preprocess(file);
+                }
+            } catch (PigRunnerException e) {
+                log.error("Failed to partition datasets.", e);
+                return;
+            }
+        }
+
+        // Cluster datasets by subject if requested.
+        if (cmd.hasOption("cluster-by-subject")) {
+            if (cmd.hasOption("dictionary-encode") || cmd.hasOption("partition")) {
+                log.error("Dictionary encoded or partitioned datasets cannot be clustered.");
+                return;
+            }
+            DatasetClusterer clusterer = new DatasetClusterer(new BasePigRunner(location));
+            try {
+                for (InputFile file : inputFiles) {
+                    clusterer.preprocess(file);
+                }
+            } catch (PigRunnerException e) {
+                log.error("Failed to cluster datasets.", e);
+                return;
+            }
+        }
+
         // Build ScriptRunner and execute all the things.
         ScriptRunner runner = builder.build();
         List<ScriptStats> statistics = runner.execute(scripts, inputFiles);
@@ -0,0 +1,96 @@
+package de.uni_potsdam.hpi.loddp.benchmark.execution;
+
+import de.uni_potsdam.hpi.loddp.common.execution.PigRunner;
+import de.uni_potsdam.hpi.loddp.common.execution.PigRunnerException;
+import de.uni_potsdam.hpi.loddp.common.execution.ScriptCompiler;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.pig.impl.io.FileLocalizer;
+import org.apache.pig.tools.pigstats.PigStats;
+
+import java.io.IOException;
+
+/**
+ * Abstract base class for preprocessing steps which store a transformed copy of each dataset on HDFS (e.g. {@link
+ * DatasetEncoder}) and make input files load that copy instead.
+ *
+ * Each dataset is preprocessed only once; the preprocessed dataset is reused if it is complete, i.e. if each of its
+ * {@link #getRequiredFiles required files} exists.
+ */
+public abstract class AbstractDatasetPreprocessor {
+    private static final Log log = LogFactory.getLog(AbstractDatasetPreprocessor.class);
+    protected final PigRunner pigRunner;
+    private final String description;
+
+    /**
+     * Constructor.
+     *
+     * @param pigRunner
+     * @param description Description of preprocessed datasets for log messages, e.g. "dictionary encoded".
+     */
+    protected AbstractDatasetPreprocessor(PigRunner pigRunner, String description) {
+        this.pigRunner = pigRunner;
+        this.description = description;
+    }
+
+    /**
+     * Preprocesses the given input file unless it has been preprocessed already, and makes it load the preprocessed
+     * dataset.
+     *
+     * @param file
+     *
+     * @throws PigRunnerException
+     */
+    public void preprocess(InputFile file) throws PigRunnerException {
+        String output = getOutputFilename(file);
+        if (isComplete(output)) {
+            log.info(String.format("Using existing %s dataset %s.", description, output));
+        } else {
+            log.info(String.format("Creating %s dataset %s from %s.", description, output, file.getFilename()));
+            PigStats stats = pigRunner.execute(getCompiler(file, output));
+            if (!stats.isSuccessful()) {
+                throw new PigRunnerException(String.format("Failed to create %s dataset %s: %s", description, output,
+                    stats.getErrorMessage()));
+            }
+            if (!isComplete(output)) {
+                throw new PigRunnerException(String.format("Failed to create %s dataset %s: missing output files.",
+                    description, output));
+            }
+        }
+        setPreprocessed(file);
+    }
+
+    /**
+     * Returns the location of the preprocessed dataset of the given input file.
+     */
+    protected abstract String getOutputFilename(InputFile file);
+
+    /**
+     * Returns the files (paths or globs) within the given preprocessed dataset which each have to match at least one
+     * file for the dataset to be complete.
+     */
+    protected abstract String[] getRequiredFiles(String output);
+
+    /**
+     * Returns a compiler for the script which preprocesses the given input file into the given location.
+     */
+    protected abstract ScriptCompiler getCompiler(InputFile file, String output) throws PigRunnerException;
+
+    /**
+     * Makes the given input file load its preprocessed dataset.
+     */
+    protected abstract void setPreprocessed(InputFile file);
+
+    private boolean isComplete(String output) throws PigRunnerException {
+        try {
+            for (String filename : getRequiredFiles(output)) {
+                if (!FileLocalizer.fileExists(filename, pigRunner.getPigContext())) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            throw new PigRunnerException(String.format("Failed to check for %s dataset on HDFS.", description), e);
+        }
+    }
+}
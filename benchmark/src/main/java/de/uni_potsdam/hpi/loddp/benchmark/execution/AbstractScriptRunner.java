@@ -6,6 +6,7 @@ import de.uni_potsdam.hpi.loddp.common.execution.ScriptCompiler;
 import de.uni_potsdam.hpi.loddp.common.scripts.PigScript;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.pig.backend.hadoop.datastorage.ConfigurationUtil;
 
 /**
  * Abstract base class for {@link ScriptRunner script runners}.
@@ -41,8 +42,8 @@ public abstract class AbstractScriptRunner implements ScriptRunner {
             getOutputFilename(script, file));
     }
 
-    protected String getInputFilename(InputFile file) {
-        return file.getFilename();
+    protected String getInputFilename(InputFile file) throws PigRunnerException {
+        return file.getLoadFilename(ConfigurationUtil.toConfiguration(pigScriptRunner.getPigContext().getProperties()));
     }
 
     protected String getOutputFilename(PigScript script, InputFile file) {
@@ -0,0 +1,60 @@
+package de.uni_potsdam.hpi.loddp.benchmark.execution;
+
+import de.uni_potsdam.hpi.loddp.common.execution.PigRunner;
+import de.uni_potsdam.hpi.loddp.common.execution.PigRunnerException;
+import de.uni_potsdam.hpi.loddp.common.execution.ScriptCompiler;
+import de.uni_potsdam.hpi.loddp.common.scripts.PigScript;
+import de.uni_potsdam.hpi.loddp.common.scripts.StringPigScript;
+
+/**
+ * Preprocessing which clusters datasets by subject: quads are sorted by subject and stored such that no subject spans
+ * two files or splits (see ClusteredQuads in loddp-udf). Scripts on clustered datasets load them with
+ * ClusteredQuadLoader; the optimizer rule CollectedGroup turns their groups by subject into map-side groups.
+ *
+ * Each dataset is clustered only once; the clustered dataset (e.g. "dbpedia-1M.nqc" for "dbpedia-1M.nq.gz") is
+ * reused if it contains quad block files.
+ */
+public class DatasetClusterer extends AbstractDatasetPreprocessor {
+
+    public DatasetClusterer(PigRunner pigRunner) {
+        super(pigRunner, "clustered");
+    }
+
+    @Override
+    protected String getOutputFilename(InputFile file) {
+        return file.getClusteredFilename();
+    }
+
+    @Override
+    protected String[] getRequiredFiles(String output) {
+        return new String[] {output + "/*" + InputFile.BLOCK_FILE_EXTENSION};
+    }
+
+    @Override
+    protected ScriptCompiler getCompiler(InputFile file, String output) throws PigRunnerException {
+        return new ScriptCompiler(pigRunner.getPigContext(), getScript(file.getFilename(), output), null, null);
+    }
+
+    @Override
+    protected void setPreprocessed(InputFile file) {
+        file.setClustered(true);
+    }
+
+    /**
+     * Builds the clustering script. Raw lines are grouped by subject before they are ordered: Pig may distribute the
+     * records of a frequent key over several reducers when ordering, but each group is a single record.
+     */
+    private PigScript getScript(String input, String output) {
+        String udfPackage = "de.uni_potsdam.hpi.loddp.udf.clustering.";
+        StringBuilder sb = new StringBuilder();
+        sb.append("lines = LOAD '").append(input).append("' USING TextLoader() AS (line:bytearray);\n");
+        sb.append("keyed = FOREACH lines GENERATE ").append(udfPackage).append("QuadSubject(line) AS subject, line;\n");
+        sb.append("quads = FILTER keyed BY subject IS NOT NULL;\n");
+        sb.append("grouped = GROUP quads BY subject;\n");
+        sb.append("clusters = FOREACH grouped GENERATE group AS subject, quads.line AS lines;\n");
+        sb.append("sortedClusters = ORDER clusters BY subject;\n");
+        sb.append("STORE sortedClusters INTO '").append(output).append("' USING ").append(udfPackage)
+            .append("ClusteredQuadStorage();\n");
+        return new StringPigScript("dataset_clustering", sb.toString());
+    }
+}
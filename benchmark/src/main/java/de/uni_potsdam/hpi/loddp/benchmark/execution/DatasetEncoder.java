@@ -0,0 +1,71 @@
+package de.uni_potsdam.hpi.loddp.benchmark.execution;
+
+import de.uni_potsdam.hpi.loddp.common.execution.PigRunner;
+import de.uni_potsdam.hpi.loddp.common.execution.PigRunnerException;
+import de.uni_potsdam.hpi.loddp.common.execution.ScriptCompiler;
+import de.uni_potsdam.hpi.loddp.common.scripts.PigScript;
+import de.uni_potsdam.hpi.loddp.common.scripts.StringPigScript;
+import org.apache.pig.backend.hadoop.datastorage.ConfigurationUtil;
+
+/**
+ * Preprocessing which dictionary-encodes datasets: every term (IRI, literal, datatype, language tag) is replaced by a
+ * 64 bit ID, and quads are stored as fixed-length binary records of IDs (see IdQuads in loddp-udf); a dictionary of all
+ * terms is stored next to them. Scripts on encoded datasets group, join and shuffle longs instead of strings; they
+ * compare against constants with EncodeTerm('...') and decode results with DecodeTerm(...) before storing them (see
+ * {@link ScriptCompiler}).
+ *
+ * Each dataset is encoded only once; the encoded dataset (e.g. "dbpedia-1M.nqid" for "dbpedia-1M.nq.gz") is reused
+ * if both quads and dictionary exist.
+ */
+public class DatasetEncoder extends AbstractDatasetPreprocessor {
+
+    public DatasetEncoder(PigRunner pigRunner) {
+        super(pigRunner, "dictionary encoded");
+    }
+
+    @Override
+    protected String getOutputFilename(InputFile file) {
+        return file.getEncodedFilename();
+    }
+
+    @Override
+    protected String[] getRequiredFiles(String output) {
+        return new String[] {
+            output + "/" + ScriptCompiler.ENCODED_QUADS + "/part-*",
+            output + "/" + ScriptCompiler.ENCODED_DICTIONARY + "/part-*",
+        };
+    }
+
+    /**
+     * Returns a compiler for the encoding script, which is appended to the usual load statement for the input file.
+     */
+    @Override
+    protected ScriptCompiler getCompiler(InputFile file, String output) throws PigRunnerException {
+        String input = file.getLoadFilename(
+            ConfigurationUtil.toConfiguration(pigRunner.getPigContext().getProperties()));
+        return new ScriptCompiler(pigRunner.getPigContext(), getScript(output + "/" + ScriptCompiler.ENCODED_QUADS,
+            output + "/" + ScriptCompiler.ENCODED_DICTIONARY), input, null);
+    }
+
+    @Override
+    protected void setPreprocessed(InputFile file) {
+        file.setDictionaryEncoded(true);
+    }
+
+    /**
+     * Builds the encoding script. Terms are hashed to IDs, so that quads can be encoded in a single map-only pass,
+     * while the distinct terms are sorted by ID into the dictionary (which fails if different terms have the same ID).
+     */
+    private PigScript getScript(String quads, String dictionary) {
+        String udfPackage = "de.uni_potsdam.hpi.loddp.udf.encoding.";
+        StringBuilder sb = new StringBuilder();
+        sb.append("terms = FOREACH quads GENERATE FLATTEN(").append(udfPackage).append("QuadTerms(*));\n");
+        sb.append("distinctTerms = DISTINCT terms;\n");
+        sb.append("sortedTerms = ORDER distinctTerms BY id;\n");
+        sb.append("STORE sortedTerms INTO '").append(dictionary).append("' USING ").append(udfPackage)
+            .append("DictionaryStorage();\n");
+        sb.append("STORE quads INTO '").append(quads).append("' USING ").append(udfPackage)
+            .append("IdQuadStorage();\n");
+        return new StringPigScript("dictionary_encoding", sb.toString());
+    }
+}
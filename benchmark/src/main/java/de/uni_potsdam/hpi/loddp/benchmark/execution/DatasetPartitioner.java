@@ -0,0 +1,69 @@
+package de.uni_potsdam.hpi.loddp.benchmark.execution;
+
+import de.uni_potsdam.hpi.loddp.common.execution.PartitionManifest;
+import de.uni_potsdam.hpi.loddp.common.execution.PigRunner;
+import de.uni_potsdam.hpi.loddp.common.execution.PigRunnerException;
+import de.uni_potsdam.hpi.loddp.common.execution.ScriptCompiler;
+import de.uni_potsdam.hpi.loddp.common.scripts.PigScript;
+import de.uni_potsdam.hpi.loddp.common.scripts.StringPigScript;
+
+/**
+ * Preprocessing which partitions datasets vertically: quads are stored in one partition per predicate and object data
+ * type family (numeric, string, temporal or other), and a manifest lists the predicates and data types of each
+ * partition (see QuadPartitions in loddp-udf and {@link PartitionManifest}). Scripts on partitioned datasets load all
+ * partitions by default; the optimizer rule PartitionPruning restricts loads to the partitions needed by filters on
+ * predicates and data types.
+ *
+ * Each dataset is partitioned only once; the partitioned dataset (e.g. "dbpedia-1M.nqp" for "dbpedia-1M.nq.gz") is
+ * reused if both partitions and manifest exist.
+ */
+public class DatasetPartitioner extends AbstractDatasetPreprocessor {
+
+    public DatasetPartitioner(PigRunner pigRunner) {
+        super(pigRunner, "partitioned");
+    }
+
+    @Override
+    protected String getOutputFilename(InputFile file) {
+        return file.getPartitionedFilename();
+    }
+
+    @Override
+    protected String[] getRequiredFiles(String output) {
+        return new String[] {
+            output + "/" + PartitionManifest.PARTITIONS + "/*/*" + InputFile.BLOCK_FILE_EXTENSION,
+            output + "/" + PartitionManifest.MANIFEST + "/part-*",
+        };
+    }
+
+    @Override
+    protected ScriptCompiler getCompiler(InputFile file, String output) throws PigRunnerException {
+        return new ScriptCompiler(pigRunner.getPigContext(), getScript(file.getFilename(),
+            output + "/" + PartitionManifest.PARTITIONS, output + "/" + PartitionManifest.MANIFEST), null, null);
+    }
+
+    @Override
+    protected void setPreprocessed(InputFile file) {
+        file.setPartitioned(true);
+    }
+
+    /**
+     * Builds the partitioning script. Raw lines are stored (not re-serialized quads), ordered by partition so that each
+     * task only writes one partition at a time; the manifest counts the quads per partition, predicate and data type.
+     */
+    private PigScript getScript(String input, String partitions, String manifest) {
+        String udfPackage = "de.uni_potsdam.hpi.loddp.udf.partitioning.";
+        StringBuilder sb = new StringBuilder();
+        sb.append("lines = LOAD '").append(input).append("' USING TextLoader() AS (line:bytearray);\n");
+        sb.append("keyed = FOREACH lines GENERATE FLATTEN(").append(udfPackage).append("QuadPartition(line)) AS ")
+            .append("(partitionName:chararray, predicate:chararray, family:chararray, dtlang:chararray), line;\n");
+        sb.append("quads = FILTER keyed BY partitionName IS NOT NULL;\n");
+        sb.append("sortedQuads = ORDER quads BY partitionName;\n");
+        sb.append("STORE sortedQuads INTO '").append(partitions).append("' USING ").append(udfPackage)
+            .append("PartitionedQuadStorage();\n");
+        sb.append("groupedQuads = GROUP quads BY (partitionName, predicate, family, dtlang);\n");
+        sb.append("counts = FOREACH groupedQuads GENERATE FLATTEN(group), COUNT(quads);\n");
+        sb.append("STORE counts INTO '").append(manifest).append("' USING PigStorage();\n");
+        return new StringPigScript("dataset_partitioning", sb.toString());
+    }
+}
@@ -1,10 +1,32 @@
 package de.uni_potsdam.hpi.loddp.benchmark.execution;
 
+import de.uni_potsdam.hpi.loddp.common.execution.PartitionManifest;
+import de.uni_potsdam.hpi.loddp.common.execution.ScriptCompiler;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+
+import java.io.IOException;
+
 /**
  * Represents an input file.
  */
 public class InputFile {
+    /**
+     * Extension of splittable re-encodings of input files; has to match QuadBlockFile.EXTENSION in loddp-udf.
+     */
+    public static final String BLOCK_FILE_EXTENSION = ".nqb";
+    /**
+     * Suffix of gzip access point indexes; has to match GzipIndex.SUFFIX in loddp-udf.
+     */
+    public static final String GZIP_INDEX_SUFFIX = ".gzidx";
+    protected static final Log log = LogFactory.getLog(InputFile.class);
     private String filename;
+    private String loadFilename = null;
+    private boolean dictionaryEncoded = false;
+    private boolean partitioned = false;
+    private boolean clustered = false;
     private long tupleCount;
     private InputFileSet fileSet;
     private String fileSetIdentifier = null;
@@ -54,6 +76,114 @@ public class InputFile {
         return filename;
     }
 
+    /**
+     * Returns the file which should actually be loaded: the dictionary encoded dataset if {@link #setDictionaryEncoded
+     * enabled}, the partitioned or clustered dataset if {@link #setPartitioned} or {@link #setClustered} is enabled,
+     * the splittable re-encoding of the input file (e.g. "dbpedia-1M.nqb" for "dbpedia-1M.nq.gz") if it exists, and
+     * the input file itself otherwise. Gzip compressed input files are splittable as well if they have an access point
+     * index (e.g. "dbpedia-1M.nq.gz.gzidx").
+     */
+    public String getLoadFilename(Configuration conf) {
+        if (dictionaryEncoded) {
+            return getEncodedFilename();
+        }
+        if (partitioned) {
+            return getPartitionedFilename();
+        }
+        if (clustered) {
+            return getClusteredFilename();
+        }
+        if (loadFilename == null) {
+            loadFilename = filename;
+            Path blockFile = getBlockFile();
+            try {
+                if (blockFile != null && blockFile.getFileSystem(conf).exists(blockFile)) {
+                    loadFilename = blockFile.toString();
+                    log.info(String.format("Loading %s instead of %s.", loadFilename, filename));
+                } else if (hasGzipIndex(conf)) {
+                    log.info(String.format("Splitting %s using its gzip index.", filename));
+                }
+            } catch (IOException e) {
+                log.warn(String.format("Could not check for %s.", blockFile), e);
+            }
+        }
+        return loadFilename;
+    }
+
+    /**
+     * Whether the input file is gzip compressed and has an access point index.
+     */
+    public boolean hasGzipIndex(Configuration conf) throws IOException {
+        if (!filename.endsWith(".gz")) {
+            return false;
+        }
+        Path index = new Path(filename + GZIP_INDEX_SUFFIX);
+        return index.getFileSystem(conf).exists(index);
+    }
+
+    private Path getBlockFile() {
+        if (filename.endsWith(BLOCK_FILE_EXTENSION)) {
+            return null;
+        }
+        return new Path(getBaseFilename() + BLOCK_FILE_EXTENSION);
+    }
+
+    /**
+     * Returns the location of the dictionary encoded dataset (e.g. "dbpedia-1M.nqid" for "dbpedia-1M.nq.gz").
+     */
+    public String getEncodedFilename() {
+        return getBaseFilename() + ScriptCompiler.ENCODED_EXTENSION;
+    }
+
+    /**
+     * Whether to load the dictionary encoded dataset (see {@link DatasetEncoder}) instead of the input file.
+     */
+    public void setDictionaryEncoded(boolean dictionaryEncoded) {
+        this.dictionaryEncoded = dictionaryEncoded;
+    }
+
+    /**
+     * Returns the location of the partitioned dataset (e.g. "dbpedia-1M.nqp" for "dbpedia-1M.nq.gz").
+     */
+    public String getPartitionedFilename() {
+        return getBaseFilename() + PartitionManifest.EXTENSION;
+    }
+
+    /**
+     * Whether to load the partitioned dataset (see {@link DatasetPartitioner}) instead of the input file.
+     */
+    public void setPartitioned(boolean partitioned) {
+        this.partitioned = partitioned;
+    }
+
+    /**
+     * Returns the location of the dataset clustered by subject (e.g. "dbpedia-1M.nqc" for "dbpedia-1M.nq.gz").
+     */
+    public String getClusteredFilename() {
+        return getBaseFilename() + ScriptCompiler.CLUSTERED_EXTENSION;
+    }
+
+    /**
+     * Whether to load the clustered dataset (see {@link DatasetClusterer}) instead of the input file.
+     */
+    public void setClustered(boolean clustered) {
+        this.clustered = clustered;
+    }
+
+    /**
+     * Returns the filename without compression and N-Quads extensions.
+     */
+    private String getBaseFilename() {
+        String name = filename;
+        if (name.endsWith(".gz") || name.endsWith(".bz2")) {
+            name = name.substring(0, name.lastIndexOf('.'));
+        }
+        if (name.endsWith(".nq") || name.endsWith(".nt")) {
+            name = name.substring(0, name.lastIndexOf('.'));
+        }
+        return name;
+    }
+
     public String getFileSetIdentifier() {
         return fileSetIdentifier;
     }
@@ -18,6 +18,12 @@ public class ScriptRunnerBuilder {
     private boolean optimizerCombineForeachs = false;
     private boolean optimizerCombineFilters = false;
     private boolean optimizerIgnoreProjections = false;
+    private boolean optimizerFuseDatatypeFilters = false;
+    private boolean optimizerBloomFilterJoins = false;
+    private boolean optimizerNestedProjections = false;
+    private boolean optimizerLoadFilters = false;
+    private boolean optimizerPartitions = false;
+    private boolean optimizerCollectedGroups = false;
     private boolean replaceExistingResults = true;
     private boolean explainPlans = false;
 
@@ -74,6 +80,36 @@ public class ScriptRunnerBuilder {
         this.optimizerIgnoreProjections = optimizerIgnoreProjections;
     }
 
+    public void setOptimizerFuseDatatypeFilters(boolean optimizerFuseDatatypeFilters) {
+        setOptimizeMerged(true);
+        this.optimizerFuseDatatypeFilters = optimizerFuseDatatypeFilters;
+    }
+
+    public void setOptimizerBloomFilterJoins(boolean optimizerBloomFilterJoins) {
+        setOptimizeMerged(true);
+        this.optimizerBloomFilterJoins = optimizerBloomFilterJoins;
+    }
+
+    public void setOptimizerNestedProjections(boolean optimizerNestedProjections) {
+        setOptimizeMerged(true);
+        this.optimizerNestedProjections = optimizerNestedProjections;
+    }
+
+    public void setOptimizerLoadFilters(boolean optimizerLoadFilters) {
+        setOptimizeMerged(true);
+        this.optimizerLoadFilters = optimizerLoadFilters;
+    }
+
+    public void setOptimizerPartitions(boolean optimizerPartitions) {
+        setOptimizeMerged(true);
+        this.optimizerPartitions = optimizerPartitions;
+    }
+
+    public void setOptimizerCollectedGroups(boolean optimizerCollectedGroups) {
+        setOptimizeMerged(true);
+        this.optimizerCollectedGroups = optimizerCollectedGroups;
+    }
+
     public void setReplaceExistingResults(boolean replaceExistingResults) {
         this.replaceExistingResults = replaceExistingResults;
     }
@@ -126,6 +162,15 @@ public class ScriptRunnerBuilder {
             builder.setCombineFilters(optimizerCombineFilters);
             builder.setCombineForeachs(optimizerCombineForeachs);
             builder.setIgnoreProjections(optimizerIgnoreProjections);
+            builder.setFuseDatatypeFilters(optimizerFuseDatatypeFilters);
+            builder.setBloomFilterJoins(optimizerBloomFilterJoins);
+            builder.setNestedProjectionPushDown(optimizerNestedProjections);
+            builder.setLoadFilterPushDown(optimizerLoadFilters);
+            builder.setPartitionPruning(optimizerPartitions);
+            builder.setCollectedGroups(optimizerCollectedGroups);
+            if (!hdfsOutputDirectory.isEmpty()) {
+                builder.setBloomFilterDirectory(hdfsOutputDirectory + "bloom-filters/");
+            }
         }
         return builder;
     }
@@ -6,6 +6,7 @@ import de.uni_potsdam.hpi.loddp.common.printing.GraphvizUtil;
 import org.apache.commons.lang.time.DurationFormatUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.mapred.Counters;
 import org.apache.hadoop.mapred.JobID;
 import org.apache.pig.impl.logicalLayer.FrontendException;
 import org.apache.pig.tools.pigstats.InputStats;
@@ -17,12 +18,19 @@ import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 /**
  * Contains information about the execution/run of a pig script on a specific set of input data.
  */
 public class ExecutionStats implements ScriptStats {
 
+    /**
+     * Counter group of the loddp UDFs, see UDFCounters in loddp-udf.
+     */
+    public static final String UDF_COUNTER_GROUP = "loddp-udf";
+    private static final String UDF_TIME_COUNTER_SUFFIX = ".estimated-nanos";
     protected static final Log log = LogFactory.getLog(ExecutionStats.class);
     private final InputFile inputFile;
     private final PigStats pigStats;
@@ -37,6 +45,7 @@ public class ExecutionStats implements ScriptStats {
     private long totalMapTime = -1L;
     private long totalReduceTime = -1L;
     private long totalCleanupTime = -1L;
+    private long totalUdfTime = -1L;
 
     /**
      * Constructor.
@@ -160,6 +169,56 @@ public class ExecutionStats implements ScriptStats {
         return totalCleanupTime;
     }
 
+    @Override
+    public long getTimeUdfs() {
+        if (totalUdfTime < 0) {
+            long nanos = 0;
+            for (JobStats js : getJobStats()) {
+                for (Map.Entry<String, Long> counter : getUdfCounters(js).entrySet()) {
+                    if (counter.getKey().endsWith(UDF_TIME_COUNTER_SUFFIX)) {
+                        nanos += counter.getValue();
+                    }
+                }
+            }
+            totalUdfTime = nanos / 1000000;
+        }
+        return totalUdfTime;
+    }
+
+    /**
+     * Returns the counters published by the loddp UDFs for the given job, i.e. number of calls, number of values,
+     * estimated time and parse failures per UDF.
+     */
+    public Map<String, Long> getUdfCounters(JobStats js) {
+        Map<String, Long> result = new TreeMap<String, Long>();
+        Counters counters = js.getHadoopCounters();
+        if (counters != null) {
+            for (Counters.Counter counter : counters.getGroup(UDF_COUNTER_GROUP)) {
+                result.put(counter.getName(), counter.getValue());
+            }
+        }
+        return result;
+    }
+
+    private String buildUdfStatistics() {
+        StringBuilder sb = new StringBuilder("UDF overview:\n");
+        sb.append("JobId\tCounter\tValue\n");
+        for (JobStats js : getJobStats()) {
+            for (Map.Entry<String, Long> counter : getUdfCounters(js).entrySet()) {
+                sb.append(js.getJobId()).append("\t")
+                    .append(counter.getKey()).append("\t");
+                if (counter.getKey().endsWith(UDF_TIME_COUNTER_SUFFIX)) {
+                    sb.append(DurationFormatUtils.formatDurationHMS(counter.getValue() / 1000000));
+                } else {
+                    sb.append(counter.getValue());
+                }
+                sb.append("\n");
+            }
+        }
+        sb.append("\n");
+        return sb.toString();
+    }
+
     @Deprecated
     private String buildPhaseStatistics() {
         StringBuilder time_sb = new StringBuilder("Time overview:\n");
@@ -244,6 +303,7 @@ public class ExecutionStats implements ScriptStats {
         sb.append("Total time: \t").append(DurationFormatUtils.formatDurationHMS(pigStats.getDuration())).append("\n");
 
         sb.append(buildPhaseStatistics());
+        sb.append(buildUdfStatistics());
 
         sb.append("JobId\tMaps\tReduces\tMaxMapTime\tMinMapTime\tAvgMapTime\tMaxReduceTime\t" +
             "MinReduceTime\tAvgReduceTime\tAlias\tFeature\tOutputs\n");
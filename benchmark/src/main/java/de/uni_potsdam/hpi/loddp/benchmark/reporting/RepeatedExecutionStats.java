@@ -138,6 +138,15 @@ public class RepeatedExecutionStats implements ScriptStats {
         return Math.round(total / stats.size());
     }
 
+    @Override
+    public long getTimeUdfs() {
+        long total = 0;
+        for (ScriptStats s : stats) {
+            total += s.getTimeUdfs();
+        }
+        return Math.round(total / stats.size());
+    }
+
     @Override
     public long getTimeMap() {
         long total = 0;
@@ -168,6 +168,7 @@ public class ReportGenerator {
         sb.append("\t").append("Time (Map)");
         sb.append("\t").append("Time (Reduce)");
         sb.append("\t").append("Time (Cleanup)");
+        sb.append("\t").append("Time (UDFs)");
         sb.append("\t").append("Number of jobs");
         sb.append("\t").append("Number of maps");
         sb.append("\t").append("Number of reduces");
@@ -183,6 +184,7 @@ public class ReportGenerator {
             sb.append("\t").append(stat.getTimeMap());
             sb.append("\t").append(stat.getTimeReduce());
             sb.append("\t").append(stat.getTimeMapReduceJobCleanup());
+            sb.append("\t").append(stat.getTimeUdfs());
             sb.append("\t").append(stat.getNumberJobs());
             sb.append("\t").append(stat.getNumberMapsTotal());
             sb.append("\t").append(stat.getNumberReducesTotal());
@@ -61,6 +61,11 @@ public interface ScriptStats {
      */
     public long getTimeReduce();
 
+    /**
+     * The total amount of time spent in the loddp UDFs, as estimated by their sampled counters.
+     */
+    public long getTimeUdfs();
+
     /**
      * The number of map reduce jobs needed for the script.
      */
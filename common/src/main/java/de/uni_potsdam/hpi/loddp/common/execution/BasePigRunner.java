@@ -4,8 +4,10 @@ import de.uni_potsdam.hpi.loddp.common.HadoopLocation;
 import de.uni_potsdam.hpi.loddp.common.PigContextUtil;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.pig.LoadFunc;
 import org.apache.pig.backend.hadoop.executionengine.mapReduceLayer.MapReduceLauncher;
 import org.apache.pig.impl.PigContext;
+import org.apache.pig.impl.io.FileLocalizer;
 import org.apache.pig.newplan.Operator;
 import org.apache.pig.newplan.logical.relational.LOLoad;
 import org.apache.pig.newplan.logical.relational.LOStore;
@@ -212,7 +214,7 @@ public class BasePigRunner implements PigRunner {
     }
 
     /**
-     * Checks that the given filename exists on the DFS.
+     * Checks that the given filename (which may be a comma-separated list of paths and globs) exists on the DFS.
      *
      * @param filename The filename to check.
      *
@@ -220,7 +222,7 @@ public class BasePigRunner implements PigRunner {
      */
     protected void validateInput(String filename) throws PigRunnerException {
         try {
-            if (!HDFS.exists(filename)) {
+            if (!HDFS.inputExists(filename)) {
                 throw new PigRunnerException(String.format("Input file does not exist on HDFS (%s).", filename));
             }
         } catch (IOException e) {
@@ -279,6 +281,18 @@ public class BasePigRunner implements PigRunner {
             return getPigContext().getDfs().asElement(filename).exists();
         }
 
+        /**
+         * Whether every path or glob of the given load location matches at least one file.
+         */
+        public boolean inputExists(String location) throws IOException, PigRunnerException {
+            for (String path : LoadFunc.getPathStrings(location)) {
+                if (!FileLocalizer.fileExists(path, getPigContext())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
         public void delete(String filename) throws IOException, PigRunnerException {
             getPigContext().getDfs().asElement(filename).delete();
         }
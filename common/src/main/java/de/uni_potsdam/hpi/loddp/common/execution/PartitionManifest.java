@@ -0,0 +1,194 @@
+package de.uni_potsdam.hpi.loddp.common.execution;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Manifest of a dataset which is vertically partitioned by predicate and object data type family (see QuadPartitions
+ * in loddp-udf): lists the partitions and the predicates, families and object data types or language tags of the
+ * quads they contain.
+ *
+ * Partitions are loaded with NQuadsLoader from locations like "[dataset].nqp/partitions/{a,b}/*.nqb", which are
+ * built by {@link #getLocation} and can be parsed with {@link #getDirectory} and {@link #getPartitions(String)}.
+ */
+public class PartitionManifest {
+
+    /**
+     * Extension of partitioned datasets, their sub-directories and data type families; have to match QuadPartitions in
+     * loddp-udf.
+     */
+    public static final String EXTENSION = ".nqp";
+    public static final String PARTITIONS = "partitions";
+    public static final String MANIFEST = "manifest";
+    public static final String FAMILY_NUMERIC = "numeric";
+    public static final String FAMILY_STRING = "string";
+    public static final String FAMILY_TEMPORAL = "temporal";
+    /**
+     * Files within the directory of a partition; has to match QuadBlockFile.EXTENSION in loddp-udf.
+     */
+    private static final String PARTITION_FILES = "/*.nqb";
+    private static final String ALL_PARTITIONS = "*";
+
+    private final String directory;
+    private final List<Entry> entries;
+    private final SortedSet<String> partitions = new TreeSet<String>();
+
+    private PartitionManifest(String directory, List<Entry> entries) {
+        this.directory = directory;
+        this.entries = entries;
+        for (Entry entry : entries) {
+            partitions.add(entry.partition);
+        }
+    }
+
+    /**
+     * Reads the manifest of the partitioned dataset in the given directory.
+     *
+     * @throws IOException If the manifest cannot be read, or is empty.
+     */
+    public static PartitionManifest read(String directory, Configuration conf) throws IOException {
+        Path manifest = new Path(directory, MANIFEST);
+        FileSystem fs = manifest.getFileSystem(conf);
+        List<Entry> entries = new ArrayList<Entry>();
+        for (FileStatus status : fs.listStatus(manifest)) {
+            String name = status.getPath().getName();
+            if (status.isDir() || name.startsWith("_") || name.startsWith(".")) {
+                continue;
+            }
+            BufferedReader reader = new BufferedReader(new InputStreamReader(fs.open(status.getPath()), "UTF-8"));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] fields = line.split("\t", -1);
+                    if (fields.length != 5) {
+                        throw new IOException(String.format("Invalid line in manifest %s: %s", status.getPath(),
+                            line));
+                    }
+                    entries.add(new Entry(fields[0], fields[1], fields[2], fields[3].isEmpty() ? null : fields[3],
+                        Long.parseLong(fields[4])));
+                }
+            } finally {
+                reader.close();
+            }
+        }
+        if (entries.isEmpty()) {
+            throw new IOException("Empty partition manifest: " + manifest);
+        }
+        return new PartitionManifest(directory, entries);
+    }
+
+    /**
+     * Returns the directory of the partitioned dataset loaded from the given location, or NULL if the location does not
+     * refer to partitions of a partitioned dataset.
+     */
+    public static String getDirectory(String location) {
+        int separator = location.lastIndexOf("/" + PARTITIONS + "/");
+        if (separator < 0 || !location.endsWith(PARTITION_FILES)) {
+            return null;
+        }
+        String directory = location.substring(0, separator);
+        return directory.endsWith(EXTENSION) ? directory : null;
+    }
+
+    /**
+     * Returns the partitions loaded from the given location, which has to refer to partitions of this dataset.
+     */
+    public SortedSet<String> getPartitions(String location) {
+        String partitions = location.substring(location.lastIndexOf("/" + PARTITIONS + "/") + PARTITIONS.length() + 2,
+            location.length() - PARTITION_FILES.length());
+        if (partitions.equals(ALL_PARTITIONS)) {
+            return getPartitions();
+        }
+        if (partitions.startsWith("{") && partitions.endsWith("}")) {
+            partitions = partitions.substring(1, partitions.length() - 1);
+        }
+        return new TreeSet<String>(Arrays.asList(partitions.split(",")));
+    }
+
+    /**
+     * Returns all partitions of the dataset.
+     */
+    public SortedSet<String> getPartitions() {
+        return new TreeSet<String>(partitions);
+    }
+
+    /**
+     * Returns the partitions containing quads with any of the given predicates, data type families and object data
+     * types or language tags; NULL sets do not restrict the selection.
+     */
+    public SortedSet<String> select(Set<String> predicates, Set<String> families, Set<String> dtlangs) {
+        SortedSet<String> selected = new TreeSet<String>();
+        for (Entry entry : entries) {
+            if ((predicates == null || predicates.contains(entry.predicate)) &&
+                (families == null || families.contains(entry.family)) &&
+                (dtlangs == null || dtlangs.contains(entry.dtlang))) {
+                selected.add(entry.partition);
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Returns the number of quads in the given partitions.
+     */
+    public long getQuads(Collection<String> partitions) {
+        long quads = 0;
+        for (Entry entry : entries) {
+            if (partitions.contains(entry.partition)) {
+                quads += entry.quads;
+            }
+        }
+        return quads;
+    }
+
+    /**
+     * Returns the load location of the given (non-empty set of) partitions.
+     */
+    public String getLocation(Collection<String> partitions) {
+        StringBuilder sb = new StringBuilder(directory).append('/').append(PARTITIONS).append('/');
+        if (partitions.containsAll(this.partitions)) {
+            sb.append(ALL_PARTITIONS);
+        } else if (partitions.size() == 1) {
+            sb.append(partitions.iterator().next());
+        } else {
+            sb.append('{');
+            for (String partition : new TreeSet<String>(partitions)) {
+                if (sb.charAt(sb.length() - 1) != '{') {
+                    sb.append(',');
+                }
+                sb.append(partition);
+            }
+            sb.append('}');
+        }
+        return sb.append(PARTITION_FILES).toString();
+    }
+
+    private static final class Entry {
+        private final String partition;
+        private final String predicate;
+        private final String family;
+        private final String dtlang;
+        private final long quads;
+
+        private Entry(String partition, String predicate, String family, String dtlang, long quads) {
+            this.partition = partition;
+            this.predicate = predicate;
+            this.family = family;
+            this.dtlang = dtlang;
+            this.quads = quads;
+        }
+    }
+}
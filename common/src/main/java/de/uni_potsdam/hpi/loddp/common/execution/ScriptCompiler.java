@@ -5,6 +5,7 @@ import de.uni_potsdam.hpi.loddp.common.scripts.PigScript;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.pig.backend.hadoop.datastorage.ConfigurationUtil;
 import org.apache.pig.backend.hadoop.executionengine.mapReduceLayer.MapReduceLauncher;
 import org.apache.pig.backend.hadoop.executionengine.mapReduceLayer.plans.MROperPlan;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.plans.PhysicalPlan;
@@ -33,6 +34,19 @@ import java.util.concurrent.atomic.AtomicInteger;
  */
 public class ScriptCompiler {
 
+    /**
+     * Extension of dictionary encoded datasets, and their sub-directories for quads and dictionary; have to match
+     * IdQuads in loddp-udf.
+     */
+    public static final String ENCODED_EXTENSION = ".nqid";
+    public static final String ENCODED_QUADS = "quads";
+    public static final String ENCODED_DICTIONARY = "dictionary";
+    /**
+     * Extension of subject-clustered datasets, and of the quad block files within them; have to match ClusteredQuads
+     * and QuadBlockFile in loddp-udf.
+     */
+    public static final String CLUSTERED_EXTENSION = ".nqc";
+    private static final String CLUSTERED_FILES = "/*.nqb";
     protected static final Log log = LogFactory.getLog(ScriptCompiler.class);
     private static final AtomicInteger scopeCounter = new AtomicInteger(0);
     private String currentScope;
@@ -62,13 +76,48 @@ public class ScriptCompiler {
         }
     }
 
-    private String buildLoadStatement(String filename) {
-        String statement = "quads = LOAD '" + filename + "' USING de.wbsg.loddesc.importer.QuadLoader() AS " +
+    private String buildLoadStatement(String filename) throws IOException {
+        if (filename.endsWith(ENCODED_EXTENSION)) {
+            return buildEncodedLoadStatement(filename);
+        }
+        String loader = "de.uni_potsdam.hpi.loddp.udf.loading.NQuadsLoader";
+        if (filename.endsWith(PartitionManifest.EXTENSION)) {
+            filename = resolvePartitions(filename);
+        } else if (filename.endsWith(CLUSTERED_EXTENSION)) {
+            // Allows map-side groups by subject, see the optimizer rule CollectedGroup.
+            filename = filename + CLUSTERED_FILES;
+            loader = "de.uni_potsdam.hpi.loddp.udf.clustering.ClusteredQuadLoader";
+        }
+        String statement = "quads = LOAD '" + filename + "' USING " + loader + "() AS " +
             "(subject:chararray, predicate:chararray, object:tuple(ntype:int,value:chararray,dtlang:chararray), " +
             "graph:chararray); ";
         return statement;
     }
 
+    /**
+     * Loads a dictionary encoded dataset, in which all terms are replaced by long IDs, and defines the functions
+     * EncodeTerm (for constants) and DecodeTerm (for results) for scripts working on such datasets.
+     */
+    private String buildEncodedLoadStatement(String directory) {
+        String statement = "DEFINE EncodeTerm de.uni_potsdam.hpi.loddp.udf.encoding.EncodeTerm(); " +
+            "DEFINE DecodeTerm de.uni_potsdam.hpi.loddp.udf.encoding.DecodeTerm('" + directory + "/" +
+            ENCODED_DICTIONARY + "'); " +
+            "quads = LOAD '" + directory + "/" + ENCODED_QUADS + "' USING " +
+            "de.uni_potsdam.hpi.loddp.udf.encoding.IdQuadLoader() AS " +
+            "(subject:long, predicate:long, object:tuple(ntype:int,value:long,dtlang:long), graph:long); ";
+        return statement;
+    }
+
+    /**
+     * Returns the location of all partitions listed in the manifest of a partitioned dataset; the optimizer rule
+     * PartitionPruning restricts it to the partitions needed by the script.
+     */
+    private String resolvePartitions(String directory) throws IOException {
+        PartitionManifest manifest = PartitionManifest.read(directory,
+            ConfigurationUtil.toConfiguration(pigContext.getProperties()));
+        return manifest.getLocation(manifest.getPartitions());
+    }
+
     /**
      * Set the filename for the LOLoad source operator.
      *
@@ -0,0 +1,43 @@
+package de.uni_potsdam.hpi.loddp.common.scripts;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+
+/**
+ * A pig script built in code.
+ */
+public class StringPigScript extends PigScript {
+    private final String name;
+    private final String content;
+
+    /**
+     * Constructor.
+     *
+     * @param name
+     * @param content
+     */
+    public StringPigScript(String name, String content) {
+        this.name = name;
+        this.content = content;
+    }
+
+    @Override
+    public InputStream getNewInputStream() {
+        try {
+            return new ByteArrayInputStream(content.getBytes("UTF-8"));
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public String getContent() {
+        return content;
+    }
+
+    @Override
+    public String getScriptFileName() {
+        return name;
+    }
+}
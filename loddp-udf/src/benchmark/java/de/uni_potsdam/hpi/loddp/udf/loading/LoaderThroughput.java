@@ -0,0 +1,110 @@
+package de.uni_potsdam.hpi.loddp.udf.loading;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.InputFormat;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.pig.LoadFunc;
+import org.apache.pig.data.Tuple;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures the throughput of quad loaders outside of Pig, by reading all records of a local (or HDFS) file through the
+ * load function API, e.g.
+ *
+ * <pre>
+ * ./gradlew :loddp-udf:loaderThroughput -PappArgs="data.nq 5"
+ * </pre>
+ *
+ * Arguments are the input file, the number of runs (default 3) and the loader classes (default {@link #LOADERS}). The
+ * first run of each loader is a warm-up. Besides records per second and megabytes per second, a checksum of all
+ * records is printed for each loader; equal checksums indicate that the loaders produce the same output.
+ */
+public class LoaderThroughput {
+
+    public static final String[] LOADERS = {
+        "de.wbsg.loddesc.importer.QuadLoader",
+        NQuadsLoader.class.getName(),
+    };
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: LoaderThroughput <file> [runs] [loader-class...]");
+            System.exit(1);
+        }
+        String location = args[0];
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        List<String> loaders = new ArrayList<String>();
+        for (int i = 2; i < args.length; i++) {
+            loaders.add(args[i]);
+        }
+        if (loaders.isEmpty()) {
+            for (String loader : LOADERS) {
+                loaders.add(loader);
+            }
+        }
+
+        Configuration conf = new Configuration();
+        Path path = new Path(location);
+        long bytes = path.getFileSystem(conf).getFileStatus(path).getLen();
+        System.out.println(String.format("%s: %.1f MB, %d runs", location, bytes / 1048576.0, runs));
+
+        for (String loader : loaders) {
+            Class<?> loaderClass;
+            try {
+                loaderClass = Class.forName(loader);
+                loaderClass.newInstance();
+            } catch (ClassNotFoundException e) {
+                System.out.println(String.format("%s: not on the classpath, skipping.", loader));
+                continue;
+            } catch (LinkageError e) {
+                System.out.println(String.format("%s: dependencies not on the classpath (%s), skipping.", loader, e));
+                continue;
+            }
+            long[] result = null;
+            long totalNanos = 0;
+            for (int run = 0; run <= runs; run++) {
+                result = load((LoadFunc) loaderClass.newInstance(), location, conf);
+                if (run > 0) {
+                    totalNanos += result[2];
+                }
+            }
+            double seconds = totalNanos / 1e9 / Math.max(runs, 1);
+            System.out.println(String.format("%s: %d records, %.0f records/s, %.1f MB/s, checksum %016x", loader,
+                result[0], result[0] / seconds, bytes / 1048576.0 / seconds, result[1]));
+        }
+    }
+
+    /**
+     * Reads all records of the given location.
+     *
+     * @return Number of records, checksum of all records, and elapsed nanoseconds.
+     */
+    private static long[] load(LoadFunc loader, String location, Configuration conf) throws Exception {
+        Job job = new Job(new Configuration(conf));
+        loader.setLocation(location, job);
+        InputFormat inputFormat = loader.getInputFormat();
+        long records = 0;
+        long checksum = 0;
+        long start = System.nanoTime();
+        for (InputSplit split : (List<InputSplit>) inputFormat.getSplits(job)) {
+            TaskAttemptContext context = new TaskAttemptContext(job.getConfiguration(), new TaskAttemptID());
+            RecordReader reader = inputFormat.createRecordReader(split, context);
+            reader.initialize(split, context);
+            loader.prepareToRead(reader, null);
+            Tuple tuple;
+            while ((tuple = loader.getNext()) != null) {
+                records++;
+                checksum = checksum * 31 + tuple.hashCode();
+            }
+            reader.close();
+        }
+        return new long[] {records, checksum, System.nanoTime() - start};
+    }
+}
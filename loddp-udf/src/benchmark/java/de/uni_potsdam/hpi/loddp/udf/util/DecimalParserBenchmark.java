@@ -0,0 +1,104 @@
+package de.uni_potsdam.hpi.loddp.udf.util;
+
+import de.uni_potsdam.hpi.loddp.udf.evaluation.NumericValueRange;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.apache.pig.data.BagFactory;
+import org.apache.pig.data.DataBag;
+import org.apache.pig.data.Tuple;
+import org.apache.pig.data.TupleFactory;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Iterator;
+import java.util.Random;
+
+/**
+ * Compares {@link NumericValueRange}, which parses values with {@link DecimalParser}, with the plain commons-lang
+ * approach it replaces ({@link NumberUtils#isNumber(String)} followed by {@link NumberUtils#createBigDecimal(String)}),
+ * e.g.
+ *
+ * <pre>
+ * ./gradlew :loddp-udf:decimalParserBenchmark -PappArgs="1000000 5"
+ * </pre>
+ *
+ * Arguments are the number of values in the benchmark column (default 1000000) and the number of timed runs (default
+ * 5). The column is a bag of integers, decimals and non-numeric values; its range is computed both ways, and the time
+ * per value is printed. The benchmark fails (exit code 1) if the ranges differ. The parser itself is checked against
+ * commons-lang by DecimalParserTest.
+ */
+public class DecimalParserBenchmark {
+
+    private static final TupleFactory tupleFactory = TupleFactory.getInstance();
+
+    public static void main(String[] args) throws Exception {
+        int values = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        Random random = new Random(42);
+        DataBag column = BagFactory.getInstance().newDefaultBag();
+        for (int i = 0; i < values; i++) {
+            column.add(tupleFactory.newTuple(randomColumnValue(random)));
+        }
+        Tuple input = tupleFactory.newTuple(column);
+
+        NumericValueRange udf = new NumericValueRange();
+        long commonsLangNanos = 0;
+        long udfNanos = 0;
+        String commonsLangRange = null;
+        String udfRange = null;
+        for (int run = 0; run <= runs; run++) {
+            long start = System.nanoTime();
+            commonsLangRange = rangeCommonsLang(column);
+            long middle = System.nanoTime();
+            udfRange = udf.exec(input);
+            long end = System.nanoTime();
+            // The first run is a warm-up.
+            if (run > 0) {
+                commonsLangNanos += middle - start;
+                udfNanos += end - middle;
+            }
+        }
+        System.out.println(String.format("commons-lang: %.1f ns/value, range %s", (double) commonsLangNanos /
+            Math.max(runs, 1) / values, commonsLangRange));
+        System.out.println(String.format("NumericValueRange: %.1f ns/value, range %s", (double) udfNanos /
+            Math.max(runs, 1) / values, udfRange));
+
+        if (!commonsLangRange.equals(udfRange)) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Returns a value of a typical literal column: integers, decimals and some non-numeric values.
+     */
+    private static String randomColumnValue(Random random) {
+        switch (random.nextInt(10)) {
+            case 0:
+                return "n/a";
+            case 1:
+            case 2:
+            case 3:
+            case 4:
+                return Integer.toString(random.nextInt(2000000) - 1000000);
+            default:
+                return String.format("%d.%02d", random.nextInt(100000) - 50000, random.nextInt(100));
+        }
+    }
+
+    /**
+     * Computes the range like NumericValueRange did before it used {@link DecimalParser}.
+     */
+    private static String rangeCommonsLang(DataBag column) throws IOException {
+        BigDecimal min = null;
+        BigDecimal max = null;
+        for (Iterator<Tuple> it = column.iterator(); it.hasNext(); ) {
+            String str = (String) it.next().get(0);
+            if (NumberUtils.isNumber(str)) {
+                BigDecimal number = NumberUtils.createBigDecimal(str);
+                min = min == null ? number : min.min(number);
+                max = max == null ? number : max.max(number);
+            }
+        }
+        return min == null ? null : String.format("%s - %s", min, max);
+    }
+}
@@ -0,0 +1,70 @@
+package de.uni_potsdam.hpi.loddp.udf.clustering;
+
+import de.uni_potsdam.hpi.loddp.udf.loading.NQuadsLoader;
+import de.uni_potsdam.hpi.loddp.udf.loading.QuadBlockFile;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.pig.CollectableLoadFunc;
+import org.apache.pig.FileSplitComparable;
+import org.apache.pig.OrderedLoadFunc;
+
+import java.io.IOException;
+
+/**
+ * Loads subject-clustered datasets (see {@link ClusteredQuads}) like {@link NQuadsLoader}, e.g.
+ *
+ * <pre>
+ * quads = LOAD 'dbpedia-1M.nqc/*.nqb' USING de.uni_potsdam.hpi.loddp.udf.clustering.ClusteredQuadLoader();
+ * grouped = GROUP quads BY subject USING 'collected';
+ * </pre>
+ *
+ * Since all quads of a subject are contiguous and within the same split, groups by subject can be computed on the map
+ * side ("collected" groups; the optimizer rule CollectedGroup uses them automatically). Note that this only holds for
+ * the subject column, not for any other key Pig may ask for. Splits are ordered by file name and offset, which is the
+ * order of subjects; the loader can thus be used for merge joins on the subject as well.
+ */
+public class ClusteredQuadLoader extends NQuadsLoader implements CollectableLoadFunc, OrderedLoadFunc {
+
+    public ClusteredQuadLoader() {
+        super();
+    }
+
+    /**
+     * @param subjectTuple "true" to load the subject as a node tuple.
+     */
+    public ClusteredQuadLoader(String subjectTuple) {
+        super(subjectTuple);
+    }
+
+    /**
+     * @throws IOException If any of the loaded paths are no quad block files of a clustered dataset.
+     */
+    @Override
+    public void setLocation(String location, Job job) throws IOException {
+        for (String path : getPathStrings(location)) {
+            Path parent = new Path(path).getParent();
+            if (!path.endsWith(QuadBlockFile.EXTENSION) || parent == null ||
+                !parent.getName().endsWith(ClusteredQuads.EXTENSION)) {
+                throw new IOException(String.format("Not a quad block file of a clustered dataset (*%s/*%s): %s",
+                    ClusteredQuads.EXTENSION, QuadBlockFile.EXTENSION, path));
+            }
+        }
+        super.setLocation(location, job);
+    }
+
+    /**
+     * Does nothing; clustered datasets never split the quads of a subject (see {@link #setLocation}).
+     */
+    @Override
+    public void ensureAllKeyInstancesInSameSplit() throws IOException {
+    }
+
+    @Override
+    public WritableComparable<?> getSplitComparable(InputSplit split) throws IOException {
+        FileSplit fileSplit = (FileSplit) split;
+        return new FileSplitComparable(fileSplit.getPath().toString(), fileSplit.getStart());
+    }
+}
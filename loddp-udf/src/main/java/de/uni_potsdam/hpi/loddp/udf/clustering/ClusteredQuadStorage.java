@@ -0,0 +1,108 @@
+package de.uni_potsdam.hpi.loddp.udf.clustering;
+
+import de.uni_potsdam.hpi.loddp.udf.loading.QuadBlockFile;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.OutputFormat;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.pig.StoreFunc;
+import org.apache.pig.data.DataBag;
+import org.apache.pig.data.DataByteArray;
+import org.apache.pig.data.Tuple;
+
+import java.io.IOException;
+
+/**
+ * Stores raw N-Quads lines grouped by subject into {@link QuadBlockFile quad block files}, without ever splitting the
+ * lines of a subject across blocks; the first field of each tuple is the subject, the last one a bag of lines, e.g.
+ *
+ * <pre>
+ * grouped = GROUP keyed BY subject;
+ * clusters = FOREACH grouped GENERATE group AS subject, keyed.line AS lines;
+ * sorted = ORDER clusters BY subject;
+ * STORE sorted INTO 'dbpedia-1M.nqc' USING de.uni_potsdam.hpi.loddp.udf.clustering.ClusteredQuadStorage();
+ * </pre>
+ *
+ * See {@link ClusteredQuads} for the resulting layout.
+ */
+public class ClusteredQuadStorage extends StoreFunc {
+
+    private final Text subject = new Text();
+    private final Text line = new Text();
+    private RecordWriter<Text, Text> writer;
+
+    @Override
+    public OutputFormat getOutputFormat() throws IOException {
+        return new ClusteredQuadOutputFormat();
+    }
+
+    @Override
+    public void setStoreLocation(String location, Job job) throws IOException {
+        FileOutputFormat.setOutputPath(job, new Path(location));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void prepareToWrite(RecordWriter writer) throws IOException {
+        this.writer = writer;
+    }
+
+    @Override
+    public void putNext(Tuple tuple) throws IOException {
+        DataBag lines = (DataBag) tuple.get(tuple.size() - 1);
+        if (tuple.get(0) == null || lines == null) {
+            return;
+        }
+        subject.set(tuple.get(0).toString());
+        for (Tuple lineTuple : lines) {
+            Object value = lineTuple.get(0);
+            if (value == null) {
+                continue;
+            }
+            if (value instanceof DataByteArray) {
+                line.set(((DataByteArray) value).get());
+            } else {
+                line.set(value.toString());
+            }
+            try {
+                writer.write(subject, line);
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+        }
+    }
+
+    /**
+     * Writes lines (values) into a quad block file, starting new blocks only where the subject (key) changes.
+     */
+    public static class ClusteredQuadOutputFormat extends FileOutputFormat<Text, Text> {
+        @Override
+        public RecordWriter<Text, Text> getRecordWriter(TaskAttemptContext context) throws IOException {
+            Path file = getDefaultWorkFile(context, QuadBlockFile.EXTENSION);
+            final QuadBlockFile.Writer writer = new QuadBlockFile.Writer(
+                file.getFileSystem(context.getConfiguration()).create(file, false), QuadBlockFile.DEFAULT_BLOCK_SIZE);
+            return new RecordWriter<Text, Text>() {
+                private final Text subject = new Text();
+                private boolean first = true;
+
+                @Override
+                public void write(Text key, Text value) throws IOException {
+                    boolean newGroup = first || !key.equals(subject);
+                    if (newGroup) {
+                        subject.set(key);
+                        first = false;
+                    }
+                    writer.write(value.getBytes(), 0, value.getLength(), newGroup);
+                }
+
+                @Override
+                public void close(TaskAttemptContext context) throws IOException {
+                    writer.close();
+                }
+            };
+        }
+    }
+}
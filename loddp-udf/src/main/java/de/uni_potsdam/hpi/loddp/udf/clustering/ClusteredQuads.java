@@ -0,0 +1,24 @@
+package de.uni_potsdam.hpi.loddp.udf.clustering;
+
+import de.uni_potsdam.hpi.loddp.udf.loading.QuadBlockFile;
+
+/**
+ * Layout of subject-clustered datasets: quads are sorted and range partitioned by subject, so that all quads of a
+ * subject are stored next to each other in the same file, and in the same block of that file.
+ *
+ * A clustered dataset is a directory (named like the dataset, with the extension {@link #EXTENSION}) of {@link
+ * QuadBlockFile quad block files}, one per reduce task of the clustering job ("part-r-00000.nqb", ...). Files contain
+ * disjoint, ascending ranges of subjects, i.e. the dataset is globally sorted by subject in the order of file names.
+ * Since blocks never split a subject and splits consist of whole blocks, no subject spans two splits; scripts can thus
+ * group by subject on the map side (see {@link ClusteredQuadLoader}).
+ */
+public final class ClusteredQuads {
+
+    /**
+     * Extension of clustered datasets; has to match ScriptCompiler in common.
+     */
+    public static final String EXTENSION = ".nqc";
+
+    private ClusteredQuads() {
+    }
+}
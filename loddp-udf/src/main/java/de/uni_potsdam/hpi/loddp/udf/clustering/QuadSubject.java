@@ -0,0 +1,57 @@
+package de.uni_potsdam.hpi.loddp.udf.clustering;
+
+import de.uni_potsdam.hpi.loddp.udf.loading.NQuadsLoader;
+import de.uni_potsdam.hpi.loddp.udf.loading.NQuadsParser;
+import de.uni_potsdam.hpi.loddp.udf.util.UDFCounters;
+import org.apache.pig.EvalFunc;
+import org.apache.pig.data.DataByteArray;
+import org.apache.pig.data.DataType;
+import org.apache.pig.data.Tuple;
+import org.apache.pig.impl.logicalLayer.schema.Schema;
+
+import java.io.IOException;
+
+/**
+ * Returns the subject of a raw N-Quads line, e.g.
+ *
+ * <pre>
+ * lines = LOAD 'dbpedia-1M.nq.gz' USING TextLoader() AS (line:bytearray);
+ * keyed = FOREACH lines GENERATE de.uni_potsdam.hpi.loddp.udf.clustering.QuadSubject(line) AS subject, line;
+ * </pre>
+ *
+ * Lines are parsed like {@link NQuadsLoader} does, so that subjects are exactly the values of its subject column;
+ * returns NULL for empty lines, comments and malformed lines (which are counted as failures).
+ */
+public class QuadSubject extends EvalFunc<String> {
+
+    private final UDFCounters counters = new UDFCounters(getClass());
+    private final NQuadsParser parser = new NQuadsParser();
+
+    @Override
+    public String exec(Tuple input) throws IOException {
+        long start = counters.start();
+        try {
+            if (input == null || input.size() == 0 || input.get(0) == null) {
+                return null;
+            }
+            Object line = input.get(0);
+            byte[] bytes = line instanceof DataByteArray ? ((DataByteArray) line).get() :
+                line.toString().getBytes("UTF-8");
+            int result = parser.parse(bytes, bytes.length);
+            if (result != NQuadsParser.RESULT_QUAD) {
+                if (result == NQuadsParser.RESULT_INVALID) {
+                    counters.addFailures(NQuadsLoader.FAILURE_TYPE, 1);
+                }
+                return null;
+            }
+            return parser.getValue(NQuadsParser.SUBJECT);
+        } finally {
+            counters.stop(start);
+        }
+    }
+
+    @Override
+    public Schema outputSchema(Schema input) {
+        return new Schema(new Schema.FieldSchema("subject", DataType.CHARARRAY));
+    }
+}
@@ -0,0 +1,100 @@
+package de.uni_potsdam.hpi.loddp.udf.encoding;
+
+import de.uni_potsdam.hpi.loddp.udf.util.UDFCounters;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.pig.EvalFunc;
+import org.apache.pig.data.DataType;
+import org.apache.pig.data.Tuple;
+import org.apache.pig.impl.logicalLayer.schema.Schema;
+import org.apache.pig.impl.util.UDFContext;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Returns the term of a {@link TermIds term ID}, looked up in a {@link TermDictionary}; meant to be applied to the
+ * (usually small) results of scripts on dictionary encoded quads right before they are stored, e.g.
+ *
+ * <pre>
+ * DEFINE DecodeTerm de.uni_potsdam.hpi.loddp.udf.encoding.DecodeTerm('dbpedia-1M.nqid/dictionary');
+ * counts = FOREACH (GROUP quads BY predicate) GENERATE DecodeTerm(group), COUNT(quads);
+ * </pre>
+ *
+ * The constructor argument is the location of the dictionary. It is shipped to the tasks via the distributed cache; in
+ * local mode it is read from its original location. Returns NULL for NULL input and for unknown IDs.
+ */
+public class DecodeTerm extends EvalFunc<String> {
+
+    private final UDFCounters counters = new UDFCounters(getClass());
+    private final String location;
+    private TermDictionary dictionary;
+
+    public DecodeTerm(String location) {
+        this.location = location;
+    }
+
+    @Override
+    public String exec(Tuple input) throws IOException {
+        long start = counters.start();
+        try {
+            if (input == null || input.size() == 0 || input.get(0) == null) {
+                return null;
+            }
+            if (dictionary == null) {
+                dictionary = openDictionary();
+            }
+            return dictionary.lookup((Long) input.get(0));
+        } finally {
+            counters.stop(start);
+        }
+    }
+
+    @Override
+    public List<String> getCacheFiles() {
+        List<String> files = new ArrayList<String>(1);
+        files.add(location + "#" + getSymlinkName());
+        return files;
+    }
+
+    private String getSymlinkName() {
+        return location.replace('/', '_').replace(':', '_');
+    }
+
+    private TermDictionary openDictionary() throws IOException {
+        File cached = new File(getSymlinkName());
+        if (cached.exists()) {
+            return new TermDictionary(FileSystem.getLocal(new Configuration()), new Path(cached.getAbsolutePath()));
+        }
+        Configuration conf = UDFContext.getUDFContext().getJobConf();
+        Path path = new Path(location);
+        return new TermDictionary(path.getFileSystem(conf != null ? conf : new Configuration()), path);
+    }
+
+    @Override
+    public void finish() {
+        if (dictionary != null) {
+            try {
+                dictionary.close();
+            } catch (IOException e) {
+                // Nothing left to read.
+            }
+            dictionary = null;
+        }
+    }
+
+    /**
+     * Keeps the alias of the input field, so that several fields can be decoded in the same statement.
+     */
+    @Override
+    public Schema outputSchema(Schema input) {
+        String alias = null;
+        if (input != null && input.size() == 1) {
+            alias = input.getFields().get(0).alias;
+        }
+        return new Schema(new Schema.FieldSchema(alias, DataType.CHARARRAY));
+    }
+}
@@ -0,0 +1,84 @@
+package de.uni_potsdam.hpi.loddp.udf.encoding;
+
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.OutputFormat;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.pig.StoreFunc;
+import org.apache.pig.data.Tuple;
+
+import java.io.IOException;
+
+/**
+ * Stores (id:long, term:chararray) tuples as {@link TermDictionary}, e.g.
+ *
+ * <pre>
+ * terms = FOREACH quads GENERATE FLATTEN(de.uni_potsdam.hpi.loddp.udf.encoding.QuadTerms(*));
+ * distinctTerms = DISTINCT terms;
+ * dictionary = ORDER distinctTerms BY id;
+ * STORE dictionary INTO 'dbpedia-1M.nqid/dictionary' USING de.uni_potsdam.hpi.loddp.udf.encoding.DictionaryStorage();
+ * </pre>
+ *
+ * Tuples have to be sorted by ID (ORDER BY sends equal IDs to the same part file); the store fails if two different
+ * terms have the same ID.
+ */
+public class DictionaryStorage extends StoreFunc {
+
+    private final LongWritable id = new LongWritable();
+    private final Text term = new Text();
+    private RecordWriter<LongWritable, Text> writer;
+
+    @Override
+    public OutputFormat getOutputFormat() throws IOException {
+        return new DictionaryOutputFormat();
+    }
+
+    @Override
+    public void setStoreLocation(String location, Job job) throws IOException {
+        FileOutputFormat.setOutputPath(job, new Path(location));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void prepareToWrite(RecordWriter writer) throws IOException {
+        this.writer = writer;
+    }
+
+    @Override
+    public void putNext(Tuple tuple) throws IOException {
+        if (tuple.get(0) == null || tuple.get(1) == null) {
+            return;
+        }
+        id.set((Long) tuple.get(0));
+        term.set(tuple.get(1).toString());
+        try {
+            writer.write(id, term);
+        } catch (InterruptedException e) {
+            throw new IOException(e);
+        }
+    }
+
+    public static class DictionaryOutputFormat extends FileOutputFormat<LongWritable, Text> {
+        @Override
+        public RecordWriter<LongWritable, Text> getRecordWriter(TaskAttemptContext context) throws IOException {
+            Path file = getDefaultWorkFile(context, "");
+            final TermDictionary.Writer dictionary =
+                new TermDictionary.Writer(file.getFileSystem(context.getConfiguration()).create(file, false));
+            return new RecordWriter<LongWritable, Text>() {
+                @Override
+                public void write(LongWritable id, Text term) throws IOException {
+                    dictionary.add(id.get(), term.toString());
+                }
+
+                @Override
+                public void close(TaskAttemptContext context) throws IOException {
+                    dictionary.close();
+                }
+            };
+        }
+    }
+}
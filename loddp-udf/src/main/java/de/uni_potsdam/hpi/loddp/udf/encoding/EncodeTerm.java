@@ -0,0 +1,41 @@
+package de.uni_potsdam.hpi.loddp.udf.encoding;
+
+import org.apache.pig.EvalFunc;
+import org.apache.pig.data.DataType;
+import org.apache.pig.data.Tuple;
+import org.apache.pig.impl.logicalLayer.schema.Schema;
+
+import java.io.IOException;
+
+/**
+ * Returns the {@link TermIds term ID} of a term, e.g. to compare dictionary encoded quads against constants:
+ *
+ * <pre>
+ * DEFINE EncodeTerm de.uni_potsdam.hpi.loddp.udf.encoding.EncodeTerm();
+ * names = FILTER quads BY predicate == EncodeTerm('http://xmlns.com/foaf/0.1/name');
+ * </pre>
+ *
+ * Returns NULL for NULL input.
+ */
+public class EncodeTerm extends EvalFunc<Long> {
+
+    @Override
+    public Long exec(Tuple input) throws IOException {
+        if (input == null || input.size() == 0 || input.get(0) == null) {
+            return null;
+        }
+        return TermIds.getId(input.get(0).toString());
+    }
+
+    /**
+     * Keeps the alias of the input field, so that several fields can be encoded in the same statement.
+     */
+    @Override
+    public Schema outputSchema(Schema input) {
+        String alias = null;
+        if (input != null && input.size() == 1) {
+            alias = input.getFields().get(0).alias;
+        }
+        return new Schema(new Schema.FieldSchema(alias, DataType.LONG));
+    }
+}
@@ -0,0 +1,88 @@
+package de.uni_potsdam.hpi.loddp.udf.encoding;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+
+import java.io.IOException;
+
+/**
+ * Reads the fixed-length records of {@link IdQuads} files (keys are record offsets). Files are split like any other
+ * file; each split reads the records starting within its byte range.
+ */
+public class IdQuadInputFormat extends FileInputFormat<LongWritable, BytesWritable> {
+
+    @Override
+    protected boolean isSplitable(JobContext context, Path file) {
+        return true;
+    }
+
+    @Override
+    public RecordReader<LongWritable, BytesWritable> createRecordReader(InputSplit split, TaskAttemptContext context) {
+        return new IdQuadRecordReader();
+    }
+
+    public static class IdQuadRecordReader extends RecordReader<LongWritable, BytesWritable> {
+        private final LongWritable key = new LongWritable();
+        private final BytesWritable value = new BytesWritable(new byte[IdQuads.RECORD_LENGTH]);
+        private FSDataInputStream in;
+        private long start;
+        private long position;
+        private long end;
+
+        @Override
+        public void initialize(InputSplit genericSplit, TaskAttemptContext context) throws IOException {
+            FileSplit split = (FileSplit) genericSplit;
+            Path path = split.getPath();
+            long length = path.getFileSystem(context.getConfiguration()).getFileStatus(path).getLen();
+            start = (split.getStart() + IdQuads.RECORD_LENGTH - 1) / IdQuads.RECORD_LENGTH * IdQuads.RECORD_LENGTH;
+            end = Math.min(split.getStart() + split.getLength(), length - length % IdQuads.RECORD_LENGTH);
+            position = start;
+            in = path.getFileSystem(context.getConfiguration()).open(path);
+            in.seek(start);
+        }
+
+        @Override
+        public boolean nextKeyValue() throws IOException {
+            if (position >= end) {
+                return false;
+            }
+            key.set(position);
+            in.readFully(value.getBytes(), 0, IdQuads.RECORD_LENGTH);
+            position += IdQuads.RECORD_LENGTH;
+            return true;
+        }
+
+        @Override
+        public LongWritable getCurrentKey() {
+            return key;
+        }
+
+        @Override
+        public BytesWritable getCurrentValue() {
+            return value;
+        }
+
+        @Override
+        public float getProgress() {
+            if (end <= start) {
+                return 1.0f;
+            }
+            return Math.min(1.0f, (float) (position - start) / (end - start));
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (in != null) {
+                in.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package de.uni_potsdam.hpi.loddp.udf.encoding;
+
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.mapreduce.InputFormat;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.pig.Expression;
+import org.apache.pig.LoadFunc;
+import org.apache.pig.LoadMetadata;
+import org.apache.pig.ResourceSchema;
+import org.apache.pig.ResourceStatistics;
+import org.apache.pig.backend.hadoop.executionengine.mapReduceLayer.PigSplit;
+import org.apache.pig.data.Tuple;
+import org.apache.pig.impl.util.Utils;
+
+import java.io.IOException;
+
+/**
+ * Loads dictionary encoded quads (see {@link IdQuads}), e.g.
+ *
+ * <pre>
+ * quads = LOAD 'dbpedia-1M.nqid/quads' USING de.uni_potsdam.hpi.loddp.udf.encoding.IdQuadLoader();
+ * names = FILTER quads BY predicate == EncodeTerm('http://xmlns.com/foaf/0.1/name');
+ * </pre>
+ *
+ * The schema is the one of NQuadsLoader, with all terms replaced by their IDs (longs): (subject:long, predicate:long,
+ * object:tuple(ntype:int, value:long, dtlang:long), graph:long). Terms are decoded with {@link DecodeTerm}.
+ */
+public class IdQuadLoader extends LoadFunc implements LoadMetadata {
+
+    private RecordReader reader;
+
+    @Override
+    public void setLocation(String location, Job job) throws IOException {
+        FileInputFormat.setInputPaths(job, location);
+    }
+
+    @Override
+    public InputFormat getInputFormat() throws IOException {
+        return new IdQuadInputFormat();
+    }
+
+    @Override
+    public void prepareToRead(RecordReader reader, PigSplit split) throws IOException {
+        this.reader = reader;
+    }
+
+    @Override
+    public Tuple getNext() throws IOException {
+        try {
+            if (!reader.nextKeyValue()) {
+                return null;
+            }
+            return IdQuads.decode(((BytesWritable) reader.getCurrentValue()).getBytes(), 0);
+        } catch (InterruptedException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public ResourceSchema getSchema(String location, Job job) throws IOException {
+        return new ResourceSchema(Utils.getSchemaFromString(IdQuads.SCHEMA));
+    }
+
+    @Override
+    public ResourceStatistics getStatistics(String location, Job job) throws IOException {
+        return null;
+    }
+
+    @Override
+    public String[] getPartitionKeys(String location, Job job) throws IOException {
+        return null;
+    }
+
+    @Override
+    public void setPartitionFilter(Expression partitionFilter) throws IOException {
+    }
+}
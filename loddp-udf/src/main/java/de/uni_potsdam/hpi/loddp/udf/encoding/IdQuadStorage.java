@@ -0,0 +1,83 @@
+package de.uni_potsdam.hpi.loddp.udf.encoding;
+
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.OutputFormat;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.pig.StoreFunc;
+import org.apache.pig.data.Tuple;
+
+import java.io.IOException;
+
+/**
+ * Stores quads as dictionary encoded quads (see {@link IdQuads}), e.g.
+ *
+ * <pre>
+ * quads = LOAD 'dbpedia-1M.nq.gz' USING de.uni_potsdam.hpi.loddp.udf.loading.NQuadsLoader();
+ * STORE quads INTO 'dbpedia-1M.nqid/quads' USING de.uni_potsdam.hpi.loddp.udf.encoding.IdQuadStorage();
+ * </pre>
+ *
+ * Tuples have the schema of NQuadsLoader or of {@link IdQuadLoader}; terms are encoded with {@link TermIds}, IDs are
+ * stored as they are.
+ */
+public class IdQuadStorage extends StoreFunc {
+
+    private final byte[] record = new byte[IdQuads.RECORD_LENGTH];
+    private final BytesWritable value = new BytesWritable();
+    private RecordWriter<NullWritable, BytesWritable> writer;
+
+    @Override
+    public OutputFormat getOutputFormat() throws IOException {
+        return new IdQuadOutputFormat();
+    }
+
+    @Override
+    public void setStoreLocation(String location, Job job) throws IOException {
+        FileOutputFormat.setOutputPath(job, new Path(location));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void prepareToWrite(RecordWriter writer) throws IOException {
+        this.writer = writer;
+    }
+
+    @Override
+    public void putNext(Tuple tuple) throws IOException {
+        IdQuads.encode(tuple, record);
+        value.set(record, 0, record.length);
+        try {
+            writer.write(NullWritable.get(), value);
+        } catch (InterruptedException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Writes the bytes of each record, without any separators.
+     */
+    public static class IdQuadOutputFormat extends FileOutputFormat<NullWritable, BytesWritable> {
+        @Override
+        public RecordWriter<NullWritable, BytesWritable> getRecordWriter(TaskAttemptContext context)
+            throws IOException {
+            Path file = getDefaultWorkFile(context, "");
+            final FSDataOutputStream out = file.getFileSystem(context.getConfiguration()).create(file, false);
+            return new RecordWriter<NullWritable, BytesWritable>() {
+                @Override
+                public void write(NullWritable key, BytesWritable value) throws IOException {
+                    out.write(value.getBytes(), 0, value.getLength());
+                }
+
+                @Override
+                public void close(TaskAttemptContext context) throws IOException {
+                    out.close();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package de.uni_potsdam.hpi.loddp.udf.encoding;
+
+import org.apache.pig.backend.executionengine.ExecException;
+import org.apache.pig.data.Tuple;
+import org.apache.pig.data.TupleFactory;
+
+/**
+ * Binary format of dictionary encoded quads: fixed-length records of the subject, predicate, object node type (byte,
+ * -1 for NULL), object value, object datatype or language tag and graph, where all terms are {@link TermIds} (longs,
+ * big-endian). Files contain nothing but records, so that they can be split at any multiple of {@link #RECORD_LENGTH}.
+ *
+ * An encoded dataset is a directory (named like the dataset, with the extension {@link #EXTENSION}) containing the
+ * quads in {@link #QUADS} and the dictionary (see {@link TermDictionary}) in {@link #DICTIONARY}.
+ */
+public final class IdQuads {
+
+    /**
+     * Extension of encoded datasets, and their sub-directories; have to match ScriptCompiler in common.
+     */
+    public static final String EXTENSION = ".nqid";
+    public static final String QUADS = "quads";
+    public static final String DICTIONARY = "dictionary";
+    public static final int RECORD_LENGTH = 8 + 8 + 1 + 8 + 8 + 8;
+    public static final String SCHEMA = "subject:long, predicate:long, " +
+        "object:tuple(ntype:int,value:long,dtlang:long), graph:long";
+
+    private static final TupleFactory tupleFactory = TupleFactory.getInstance();
+
+    private IdQuads() {
+    }
+
+    /**
+     * Encodes a quad (subject, predicate, object, graph) into the given buffer. Terms are either strings or IDs (see
+     * {@link TermIds#getId(Object)}); the object is a node tuple (ntype, value, dtlang).
+     */
+    public static void encode(Tuple quad, byte[] record) throws ExecException {
+        Tuple object = (Tuple) quad.get(2);
+        Object ntype = object == null ? null : object.get(0);
+        putLong(record, 0, TermIds.getId(quad.get(0)));
+        putLong(record, 8, TermIds.getId(quad.get(1)));
+        record[16] = ntype == null ? -1 : ((Number) ntype).byteValue();
+        putLong(record, 17, object == null ? TermIds.NULL : TermIds.getId(object.get(1)));
+        putLong(record, 25, object == null ? TermIds.NULL : TermIds.getId(object.get(2)));
+        putLong(record, 33, TermIds.getId(quad.get(3)));
+    }
+
+    /**
+     * Decodes a record into a tuple with the schema {@link #SCHEMA}.
+     */
+    public static Tuple decode(byte[] record, int offset) throws ExecException {
+        Tuple object = tupleFactory.newTuple(3);
+        object.set(0, record[offset + 16] < 0 ? null : Integer.valueOf(record[offset + 16]));
+        object.set(1, getId(record, offset + 17));
+        object.set(2, getId(record, offset + 25));
+        Tuple quad = tupleFactory.newTuple(4);
+        quad.set(0, getId(record, offset));
+        quad.set(1, getId(record, offset + 8));
+        quad.set(2, object);
+        quad.set(3, getId(record, offset + 33));
+        return quad;
+    }
+
+    private static Long getId(byte[] record, int offset) {
+        long id = 0;
+        for (int i = 0; i < 8; i++) {
+            id = (id << 8) | (record[offset + i] & 0xff);
+        }
+        return id == TermIds.NULL ? null : Long.valueOf(id);
+    }
+
+    private static void putLong(byte[] record, int offset, long value) {
+        for (int i = 7; i >= 0; i--) {
+            record[offset + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package de.uni_potsdam.hpi.loddp.udf.encoding;
+
+import de.uni_potsdam.hpi.loddp.udf.util.UDFCounters;
+import org.apache.pig.EvalFunc;
+import org.apache.pig.backend.executionengine.ExecException;
+import org.apache.pig.data.BagFactory;
+import org.apache.pig.data.DataBag;
+import org.apache.pig.data.DataType;
+import org.apache.pig.data.Tuple;
+import org.apache.pig.data.TupleFactory;
+import org.apache.pig.impl.logicalLayer.FrontendException;
+import org.apache.pig.impl.logicalLayer.schema.Schema;
+
+import java.io.IOException;
+
+/**
+ * Returns the terms of a quad (subject, predicate, object value, object datatype or language tag, graph) with their
+ * {@link TermIds term IDs} as bag of (id, term) tuples, for building a {@link TermDictionary} (see
+ * {@link DictionaryStorage}). Quads have the schema of NQuadsLoader; NULL terms are skipped.
+ */
+public class QuadTerms extends EvalFunc<DataBag> {
+
+    private static final TupleFactory tupleFactory = TupleFactory.getInstance();
+    private static final BagFactory bagFactory = BagFactory.getInstance();
+    private final UDFCounters counters = new UDFCounters(getClass());
+
+    @Override
+    public DataBag exec(Tuple input) throws IOException {
+        long start = counters.start();
+        try {
+            if (input == null || input.size() < 4) {
+                return null;
+            }
+            DataBag terms = bagFactory.newDefaultBag();
+            addTerm(terms, input.get(0) instanceof Tuple ? ((Tuple) input.get(0)).get(1) : input.get(0));
+            addTerm(terms, input.get(1));
+            Tuple object = (Tuple) input.get(2);
+            if (object != null) {
+                addTerm(terms, object.get(1));
+                addTerm(terms, object.get(2));
+            }
+            addTerm(terms, input.get(3));
+            return terms;
+        } finally {
+            counters.stop(start);
+        }
+    }
+
+    private static void addTerm(DataBag terms, Object term) throws ExecException {
+        if (term != null) {
+            Tuple tuple = tupleFactory.newTuple(2);
+            tuple.set(0, TermIds.getId(term.toString()));
+            tuple.set(1, term.toString());
+            terms.add(tuple);
+        }
+    }
+
+    @Override
+    public Schema outputSchema(Schema input) {
+        try {
+            Schema tupleSchema = new Schema();
+            tupleSchema.add(new Schema.FieldSchema("id", DataType.LONG));
+            tupleSchema.add(new Schema.FieldSchema("term", DataType.CHARARRAY));
+            Schema bagSchema = new Schema(new Schema.FieldSchema(null, tupleSchema, DataType.TUPLE));
+            return new Schema(new Schema.FieldSchema("terms", bagSchema, DataType.BAG));
+        } catch (FrontendException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package de.uni_potsdam.hpi.loddp.udf.encoding;
+
+import de.uni_potsdam.hpi.loddp.udf.loading.QuadBlockFile;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.WritableUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Dictionary of {@link TermIds term IDs} and their terms, stored in one or more files (e.g. the part files written by
+ * {@link DictionaryStorage}) which together are sorted by ID.
+ *
+ * Entries (ID as long, UTF-8 length as variable-length int, UTF-8 bytes) are grouped into blocks of about
+ * {@link #BLOCK_SIZE} bytes, which are compressed like the blocks of {@link QuadBlockFile quad block files}. The end of
+ * each file holds an index of the first ID and the offset of every block, followed by a trailer with the offset of the
+ * index (long), the number of blocks (int) and the magic bytes {@link #MAGIC}. Lookups only need the (small) indexes in
+ * memory and decompress single blocks, so that large dictionaries can be used in every task.
+ */
+public final class TermDictionary implements Closeable {
+
+    public static final byte[] MAGIC = {'N', 'Q', 'D', '1'};
+    public static final int BLOCK_SIZE = 64 << 10;
+    private static final int TRAILER_LENGTH = 8 + 4 + MAGIC.length;
+    /**
+     * Number of decompressed blocks kept in memory.
+     */
+    private static final int CACHED_BLOCKS = 32;
+
+    private final List<FSDataInputStream> files = new ArrayList<FSDataInputStream>();
+    private final Inflater inflater = new Inflater();
+    private long[] firstIds;
+    private int[] blockFiles;
+    private long[] blockOffsets;
+    private QuadBlockFile.Block buffer;
+    private final Map<Integer, Entries> cache = new LinkedHashMap<Integer, Entries>(CACHED_BLOCKS, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Entries> eldest) {
+            return size() > CACHED_BLOCKS;
+        }
+    };
+
+    /**
+     * Opens the dictionary at the given location, which is either a dictionary file or a directory of dictionary files
+     * (files starting with "_" or "." are ignored).
+     */
+    public TermDictionary(FileSystem fs, Path location) throws IOException {
+        FileStatus[] statuses = fs.isFile(location) ? new FileStatus[] {fs.getFileStatus(location)} :
+            fs.listStatus(location);
+        final List<long[]> blocks = new ArrayList<long[]>();
+        for (FileStatus status : statuses) {
+            String name = status.getPath().getName();
+            if (status.isDir() || name.startsWith("_") || name.startsWith(".") || status.getLen() == 0) {
+                continue;
+            }
+            FSDataInputStream in = fs.open(status.getPath());
+            files.add(in);
+            for (long[] block : readIndex(in, status.getLen())) {
+                blocks.add(new long[] {block[0], files.size() - 1, block[1]});
+            }
+        }
+        Collections.sort(blocks, new Comparator<long[]>() {
+            @Override
+            public int compare(long[] a, long[] b) {
+                return a[0] < b[0] ? -1 : (a[0] == b[0] ? 0 : 1);
+            }
+        });
+        firstIds = new long[blocks.size()];
+        blockFiles = new int[blocks.size()];
+        blockOffsets = new long[blocks.size()];
+        for (int i = 0; i < blocks.size(); i++) {
+            firstIds[i] = blocks.get(i)[0];
+            blockFiles[i] = (int) blocks.get(i)[1];
+            blockOffsets[i] = blocks.get(i)[2];
+        }
+    }
+
+    private static List<long[]> readIndex(FSDataInputStream in, long fileLength) throws IOException {
+        if (fileLength < MAGIC.length + TRAILER_LENGTH) {
+            throw new IOException("Not a term dictionary (too short).");
+        }
+        in.seek(fileLength - TRAILER_LENGTH);
+        long indexOffset = in.readLong();
+        int count = in.readInt();
+        byte[] magic = new byte[MAGIC.length];
+        in.readFully(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Not a term dictionary (invalid trailer).");
+        }
+        List<long[]> blocks = new ArrayList<long[]>(count);
+        in.seek(indexOffset);
+        for (int i = 0; i < count; i++) {
+            blocks.add(new long[] {in.readLong(), in.readLong()});
+        }
+        return blocks;
+    }
+
+    /**
+     * Returns the term with the given ID, or NULL if there is none.
+     */
+    public String lookup(long id) throws IOException {
+        int block = Arrays.binarySearch(firstIds, id);
+        if (block < 0) {
+            // Last block starting before the ID.
+            block = -block - 2;
+            if (block < 0) {
+                return null;
+            }
+        }
+        Entries entries = cache.get(block);
+        if (entries == null) {
+            entries = readBlock(block);
+            cache.put(block, entries);
+        }
+        int index = Arrays.binarySearch(entries.ids, id);
+        return index < 0 ? null : entries.terms[index];
+    }
+
+    private Entries readBlock(int block) throws IOException {
+        buffer = QuadBlockFile.readBlock(files.get(blockFiles[block]), blockOffsets[block], inflater, buffer);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(buffer.getBytes(), 0, buffer.getLength()));
+        List<Long> ids = new ArrayList<Long>();
+        List<String> terms = new ArrayList<String>();
+        while (in.available() > 0) {
+            ids.add(in.readLong());
+            byte[] bytes = new byte[WritableUtils.readVInt(in)];
+            in.readFully(bytes);
+            terms.add(new String(bytes, "UTF-8"));
+        }
+        Entries entries = new Entries(ids.size());
+        for (int i = 0; i < entries.ids.length; i++) {
+            entries.ids[i] = ids.get(i);
+            entries.terms[i] = terms.get(i);
+        }
+        return entries;
+    }
+
+    @Override
+    public void close() throws IOException {
+        inflater.end();
+        for (FSDataInputStream in : files) {
+            in.close();
+        }
+    }
+
+    private static final class Entries {
+        private final long[] ids;
+        private final String[] terms;
+
+        private Entries(int size) {
+            ids = new long[size];
+            terms = new String[size];
+        }
+    }
+
+    /**
+     * Writes a dictionary file; entries have to be added in ascending order of their IDs.
+     */
+    public static final class Writer {
+        private final FSDataOutputStream out;
+        private final Deflater deflater = new Deflater();
+        private final DataOutputBuffer block = new DataOutputBuffer();
+        private final DataOutputBuffer index = new DataOutputBuffer();
+        private byte[] compressed = new byte[BLOCK_SIZE];
+        private int blocks = 0;
+        private long lastId;
+        private String lastTerm = null;
+
+        public Writer(FSDataOutputStream out) throws IOException {
+            this.out = out;
+            out.write(MAGIC);
+        }
+
+        /**
+         * Adds an entry; repeated entries are skipped.
+         *
+         * @throws IOException If the ID is smaller than the previous one, or if two terms have the same ID.
+         */
+        public void add(long id, String term) throws IOException {
+            if (lastTerm != null && id <= lastId) {
+                if (id < lastId) {
+                    throw new IOException(String.format("Dictionary entries are not sorted by ID (%d after %d).",
+                        id, lastId));
+                } else if (!term.equals(lastTerm)) {
+                    throw new IOException(String.format("Terms \"%s\" and \"%s\" have the same ID (%d).", lastTerm,
+                        term, id));
+                }
+                return;
+            }
+            if (block.getLength() == 0) {
+                index.writeLong(id);
+                index.writeLong(out.getPos());
+            }
+            byte[] bytes = term.getBytes("UTF-8");
+            block.writeLong(id);
+            WritableUtils.writeVInt(block, bytes.length);
+            block.write(bytes);
+            lastId = id;
+            lastTerm = term;
+            if (block.getLength() >= BLOCK_SIZE) {
+                flushBlock();
+            }
+        }
+
+        private void flushBlock() throws IOException {
+            int length = block.getLength();
+            if (compressed.length < length + length / 100 + 64) {
+                compressed = new byte[length + length / 100 + 64];
+            }
+            deflater.reset();
+            deflater.setInput(block.getData(), 0, length);
+            deflater.finish();
+            int compressedLength = 0;
+            while (!deflater.finished()) {
+                compressedLength +=
+                    deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+                if (compressedLength == compressed.length) {
+                    compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                }
+            }
+            out.writeInt(length);
+            out.writeInt(compressedLength);
+            out.write(compressed, 0, compressedLength);
+            block.reset();
+            blocks++;
+        }
+
+        /**
+         * Writes the last block and the index, and closes the output stream.
+         */
+        public void close() throws IOException {
+            if (block.getLength() > 0) {
+                flushBlock();
+            }
+            long indexOffset = out.getPos();
+            out.write(index.getData(), 0, index.getLength());
+            out.writeLong(indexOffset);
+            out.writeInt(blocks);
+            out.write(MAGIC);
+            out.close();
+            deflater.end();
+        }
+    }
+}
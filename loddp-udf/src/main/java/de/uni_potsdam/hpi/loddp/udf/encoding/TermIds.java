@@ -0,0 +1,48 @@
+package de.uni_potsdam.hpi.loddp.udf.encoding;
+
+import de.uni_potsdam.hpi.loddp.udf.util.HyperLogLog;
+import org.apache.pig.backend.executionengine.ExecException;
+import org.apache.pig.data.Tuple;
+
+/**
+ * Maps terms (IRIs, blank nodes, literal values, datatypes and language tags, as loaded by NQuadsLoader) to 64 bit
+ * integer IDs.
+ *
+ * IDs are hashes of the terms, so that quads can be encoded without looking up a dictionary, the same term has the
+ * same ID in every dataset, and constants in scripts can be encoded with {@link EncodeTerm}. Different terms with the
+ * same ID are detected when the dictionary is written (see {@link TermDictionary.Writer}); with 64 bits, they are not
+ * to be expected below billions of distinct terms.
+ */
+public final class TermIds {
+
+    /**
+     * ID representing NULL; no term has this ID.
+     */
+    public static final long NULL = 0;
+
+    private TermIds() {
+    }
+
+    public static long getId(String term) {
+        if (term == null) {
+            return NULL;
+        }
+        long h = HyperLogLog.hashString(term);
+        return h == NULL ? 1 : h;
+    }
+
+    /**
+     * Returns the ID of a term field, which is either a term (chararray), already an ID (long), or a node tuple
+     * (ntype, value, dtlang) whose value is used.
+     */
+    public static long getId(Object field) throws ExecException {
+        if (field == null) {
+            return NULL;
+        } else if (field instanceof Long) {
+            return (Long) field;
+        } else if (field instanceof Tuple) {
+            return getId(((Tuple) field).get(1));
+        }
+        return getId(field.toString());
+    }
+}
@@ -0,0 +1,199 @@
+package de.uni_potsdam.hpi.loddp.udf.evaluation;
+
+import de.uni_potsdam.hpi.loddp.udf.util.HyperLogLog;
+import de.uni_potsdam.hpi.loddp.udf.util.UDFCounters;
+import org.apache.pig.Accumulator;
+import org.apache.pig.Algebraic;
+import org.apache.pig.EvalFunc;
+import org.apache.pig.data.DataBag;
+import org.apache.pig.data.DataByteArray;
+import org.apache.pig.data.Tuple;
+import org.apache.pig.data.TupleFactory;
+
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * Estimates the number of distinct values in a bag using a {@link HyperLogLog} sketch; replacement for nested
+ * DISTINCT + COUNT where approximate numbers are sufficient, e.g.
+ *
+ * <pre>
+ * DEFINE DistinctCount de.uni_potsdam.hpi.loddp.udf.evaluation.ApproximateDistinctCount('14');
+ * counts = FOREACH (GROUP quads BY predicate) GENERATE group, DistinctCount(quads.subject);
+ * </pre>
+ *
+ * The optional constructor argument is the precision of the sketch (see {@link HyperLogLog#DEFAULT_PRECISION}).
+ * Tuples with a single field are counted by the value of that field, other tuples by all of their fields; tuples with
+ * a NULL first field are ignored (as with COUNT).
+ *
+ * The function is algebraic; partial results are exchanged as serialized sketches.
+ */
+public class ApproximateDistinctCount extends EvalFunc<Long> implements Algebraic, Accumulator<Long> {
+
+    private static final TupleFactory tupleFactory = TupleFactory.getInstance();
+    private final UDFCounters counters = new UDFCounters(getClass());
+    private final int precision;
+    private HyperLogLog intermediateSketch;
+
+    public ApproximateDistinctCount() {
+        this(Integer.toString(HyperLogLog.DEFAULT_PRECISION));
+    }
+
+    public ApproximateDistinctCount(String precision) {
+        this.precision = Integer.parseInt(precision);
+        this.intermediateSketch = new HyperLogLog(this.precision);
+    }
+
+    private static void addValues(HyperLogLog sketch, DataBag values) throws IOException {
+        for (Iterator<Tuple> it = values.iterator(); it.hasNext(); ) {
+            Tuple tuple = it.next();
+            if (tuple.size() == 0 || tuple.get(0) == null) {
+                continue;
+            }
+            sketch.offer(tuple.size() == 1 ? tuple.get(0) : tuple);
+        }
+    }
+
+    private static void addPartials(HyperLogLog sketch, DataBag partials) throws IOException {
+        for (Iterator<Tuple> it = partials.iterator(); it.hasNext(); ) {
+            sketch.merge((DataByteArray) it.next().get(0));
+        }
+    }
+
+    @Override
+    public void accumulate(Tuple b) throws IOException {
+        long start = counters.start();
+        try {
+            DataBag values = (DataBag) b.get(0);
+            counters.addValues(values.size());
+            addValues(intermediateSketch, values);
+        } finally {
+            counters.stop(start);
+        }
+    }
+
+    @Override
+    public Long getValue() {
+        return intermediateSketch.cardinality();
+    }
+
+    @Override
+    public void cleanup() {
+        intermediateSketch = new HyperLogLog(precision);
+    }
+
+    @Override
+    public Long exec(Tuple input) throws IOException {
+        long start = counters.start();
+        try {
+            HyperLogLog sketch = new HyperLogLog(precision);
+            DataBag values = (DataBag) input.get(0);
+            counters.addValues(values.size());
+            addValues(sketch, values);
+            return sketch.cardinality();
+        } finally {
+            counters.stop(start);
+        }
+    }
+
+    @Override
+    public String getInitial() {
+        return Initial.class.getName();
+    }
+
+    @Override
+    public String getIntermed() {
+        return Intermediate.class.getName();
+    }
+
+    @Override
+    public String getFinal() {
+        return Final.class.getName();
+    }
+
+    /**
+     * Computes a partial sketch from a bag of raw values.
+     */
+    public static class Initial extends EvalFunc<Tuple> {
+        private final UDFCounters counters = new UDFCounters(getClass());
+        private final int precision;
+
+        public Initial() {
+            this(Integer.toString(HyperLogLog.DEFAULT_PRECISION));
+        }
+
+        public Initial(String precision) {
+            this.precision = Integer.parseInt(precision);
+        }
+
+        @Override
+        public Tuple exec(Tuple input) throws IOException {
+            long start = counters.start();
+            try {
+                HyperLogLog sketch = new HyperLogLog(precision);
+                DataBag values = (DataBag) input.get(0);
+                counters.addValues(values.size());
+                addValues(sketch, values);
+                return tupleFactory.newTuple(sketch.toBytes());
+            } finally {
+                counters.stop(start);
+            }
+        }
+    }
+
+    /**
+     * Merges a bag of partial sketches into a single partial sketch.
+     */
+    public static class Intermediate extends EvalFunc<Tuple> {
+        private final UDFCounters counters = new UDFCounters(getClass());
+        private final int precision;
+
+        public Intermediate() {
+            this(Integer.toString(HyperLogLog.DEFAULT_PRECISION));
+        }
+
+        public Intermediate(String precision) {
+            this.precision = Integer.parseInt(precision);
+        }
+
+        @Override
+        public Tuple exec(Tuple input) throws IOException {
+            long start = counters.start();
+            try {
+                HyperLogLog sketch = new HyperLogLog(precision);
+                addPartials(sketch, (DataBag) input.get(0));
+                return tupleFactory.newTuple(sketch.toBytes());
+            } finally {
+                counters.stop(start);
+            }
+        }
+    }
+
+    /**
+     * Merges a bag of partial sketches and returns the estimated number of distinct values.
+     */
+    public static class Final extends EvalFunc<Long> {
+        private final UDFCounters counters = new UDFCounters(getClass());
+        private final int precision;
+
+        public Final() {
+            this(Integer.toString(HyperLogLog.DEFAULT_PRECISION));
+        }
+
+        public Final(String precision) {
+            this.precision = Integer.parseInt(precision);
+        }
+
+        @Override
+        public Long exec(Tuple input) throws IOException {
+            long start = counters.start();
+            try {
+                HyperLogLog sketch = new HyperLogLog(precision);
+                addPartials(sketch, (DataBag) input.get(0));
+                return sketch.cardinality();
+            } finally {
+                counters.stop(start);
+            }
+        }
+    }
+}
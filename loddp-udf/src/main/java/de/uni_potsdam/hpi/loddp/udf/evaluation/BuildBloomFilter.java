@@ -0,0 +1,209 @@
+package de.uni_potsdam.hpi.loddp.udf.evaluation;
+
+import de.uni_potsdam.hpi.loddp.udf.util.BloomFilter;
+import de.uni_potsdam.hpi.loddp.udf.util.UDFCounters;
+import org.apache.pig.Accumulator;
+import org.apache.pig.Algebraic;
+import org.apache.pig.EvalFunc;
+import org.apache.pig.data.DataBag;
+import org.apache.pig.data.DataByteArray;
+import org.apache.pig.data.Tuple;
+import org.apache.pig.data.TupleFactory;
+
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * Builds a {@link BloomFilter} over the values in a bag, to be used with the
+ * {@link de.uni_potsdam.hpi.loddp.udf.filtering.BloomFilterProbe} filter (semi-join), e.g.
+ *
+ * <pre>
+ * DEFINE BuildBloom de.uni_potsdam.hpi.loddp.udf.evaluation.BuildBloomFilter('1000000', '0.01');
+ * filter = FOREACH (GROUP types ALL) GENERATE BuildBloom(types.subject);
+ * STORE filter INTO 'types-bloom';
+ * </pre>
+ *
+ * The optional constructor arguments are the expected number of distinct values and the desired false positive rate
+ * (see {@link BloomFilter#DEFAULT_EXPECTED_INSERTIONS} and {@link BloomFilter#DEFAULT_FALSE_POSITIVE_RATE}). Tuples
+ * with a single field are added by the value of that field, other tuples by all of their fields; tuples with a NULL
+ * first field are ignored (they never match in a join anyway).
+ *
+ * The function is algebraic; partial results are exchanged as serialized filters.
+ */
+public class BuildBloomFilter extends EvalFunc<DataByteArray> implements Algebraic, Accumulator<DataByteArray> {
+
+    private static final TupleFactory tupleFactory = TupleFactory.getInstance();
+    private final UDFCounters counters = new UDFCounters(getClass());
+    private final String[] args;
+    private BloomFilter intermediateFilter;
+
+    public BuildBloomFilter() {
+        this(new String[0]);
+    }
+
+    public BuildBloomFilter(String... args) {
+        this.args = args;
+        this.intermediateFilter = createFilter(args);
+    }
+
+    private static BloomFilter createFilter(String... args) {
+        long expectedInsertions = args.length > 0 ? Long.parseLong(args[0]) :
+            BloomFilter.DEFAULT_EXPECTED_INSERTIONS;
+        double falsePositiveRate = args.length > 1 ? Double.parseDouble(args[1]) :
+            BloomFilter.DEFAULT_FALSE_POSITIVE_RATE;
+        return BloomFilter.create(expectedInsertions, falsePositiveRate);
+    }
+
+    private static void addValues(BloomFilter filter, DataBag values) throws IOException {
+        for (Iterator<Tuple> it = values.iterator(); it.hasNext(); ) {
+            Tuple tuple = it.next();
+            if (tuple.size() == 0 || tuple.get(0) == null) {
+                continue;
+            }
+            filter.add(tuple.size() == 1 ? tuple.get(0) : tuple);
+        }
+    }
+
+    private static void addPartials(BloomFilter filter, DataBag partials) throws IOException {
+        for (Iterator<Tuple> it = partials.iterator(); it.hasNext(); ) {
+            filter.merge((DataByteArray) it.next().get(0));
+        }
+    }
+
+    @Override
+    public void accumulate(Tuple b) throws IOException {
+        long start = counters.start();
+        try {
+            DataBag values = (DataBag) b.get(0);
+            counters.addValues(values.size());
+            addValues(intermediateFilter, values);
+        } finally {
+            counters.stop(start);
+        }
+    }
+
+    @Override
+    public DataByteArray getValue() {
+        return intermediateFilter.toBytes();
+    }
+
+    @Override
+    public void cleanup() {
+        intermediateFilter = createFilter(args);
+    }
+
+    @Override
+    public DataByteArray exec(Tuple input) throws IOException {
+        long start = counters.start();
+        try {
+            BloomFilter filter = createFilter(args);
+            DataBag values = (DataBag) input.get(0);
+            counters.addValues(values.size());
+            addValues(filter, values);
+            return filter.toBytes();
+        } finally {
+            counters.stop(start);
+        }
+    }
+
+    @Override
+    public String getInitial() {
+        return Initial.class.getName();
+    }
+
+    @Override
+    public String getIntermed() {
+        return Intermediate.class.getName();
+    }
+
+    @Override
+    public String getFinal() {
+        return Final.class.getName();
+    }
+
+    /**
+     * Computes a partial filter from a bag of raw values.
+     */
+    public static class Initial extends EvalFunc<Tuple> {
+        private final UDFCounters counters = new UDFCounters(getClass());
+        private final String[] args;
+
+        public Initial() {
+            this(new String[0]);
+        }
+
+        public Initial(String... args) {
+            this.args = args;
+        }
+
+        @Override
+        public Tuple exec(Tuple input) throws IOException {
+            long start = counters.start();
+            try {
+                BloomFilter filter = createFilter(args);
+                DataBag values = (DataBag) input.get(0);
+                counters.addValues(values.size());
+                addValues(filter, values);
+                return tupleFactory.newTuple(filter.toBytes());
+            } finally {
+                counters.stop(start);
+            }
+        }
+    }
+
+    /**
+     * Merges a bag of partial filters into a single partial filter.
+     */
+    public static class Intermediate extends EvalFunc<Tuple> {
+        private final UDFCounters counters = new UDFCounters(getClass());
+        private final String[] args;
+
+        public Intermediate() {
+            this(new String[0]);
+        }
+
+        public Intermediate(String... args) {
+            this.args = args;
+        }
+
+        @Override
+        public Tuple exec(Tuple input) throws IOException {
+            long start = counters.start();
+            try {
+                BloomFilter filter = createFilter(args);
+                addPartials(filter, (DataBag) input.get(0));
+                return tupleFactory.newTuple(filter.toBytes());
+            } finally {
+                counters.stop(start);
+            }
+        }
+    }
+
+    /**
+     * Merges a bag of partial filters and returns the serialized filter.
+     */
+    public static class Final extends EvalFunc<DataByteArray> {
+        private final UDFCounters counters = new UDFCounters(getClass());
+        private final String[] args;
+
+        public Final() {
+            this(new String[0]);
+        }
+
+        public Final(String... args) {
+            this.args = args;
+        }
+
+        @Override
+        public DataByteArray exec(Tuple input) throws IOException {
+            long start = counters.start();
+            try {
+                BloomFilter filter = createFilter(args);
+                addPartials(filter, (DataBag) input.get(0));
+                return filter.toBytes();
+            } finally {
+                counters.stop(start);
+            }
+        }
+    }
+}
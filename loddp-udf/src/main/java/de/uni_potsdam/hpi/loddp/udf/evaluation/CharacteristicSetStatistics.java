@@ -0,0 +1,159 @@
+package de.uni_potsdam.hpi.loddp.udf.evaluation;
+
+import de.uni_potsdam.hpi.loddp.udf.util.UDFCounters;
+import org.apache.pig.EvalFunc;
+import org.apache.pig.data.BagFactory;
+import org.apache.pig.data.DataBag;
+import org.apache.pig.data.DataType;
+import org.apache.pig.data.Tuple;
+import org.apache.pig.data.TupleFactory;
+import org.apache.pig.impl.logicalLayer.FrontendException;
+import org.apache.pig.impl.logicalLayer.schema.Schema;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Computes the characteristic set of a single subject (its classes, and the number of values for each of its
+ * properties), and emits partial counts for the "number of property values" statistics by class, by property, and by
+ * class and property in one pass.
+ *
+ * The input is a bag of (predicate, object) tuples of one subject, where the object is either the object tuple
+ * produced by the quad loader (ntype, value, dtlang) or a plain value; classes are the objects of rdf:type (or the
+ * predicate given as constructor argument). The result is a bag of (granularity, class, property, values, pairs)
+ * tuples:
+ *
+ * <ul>
+ * <li>("property", NULL, p, number of values of p, 1) for each property p,</li>
+ * <li>("class", c, NULL, number of values of all properties, number of properties) for each class c, and</li>
+ * <li>("class_property", c, p, number of values of p, 1) for each class c and property p.</li>
+ * </ul>
+ *
+ * Subjects without a class only contribute to the "property" granularity, like with an inner join on rdf:type. The
+ * average number of property values per group is SUM(values) / SUM(pairs); both sums are algebraic, so the combiner
+ * aggregates the partial counts before the shuffle, e.g.
+ *
+ * <pre>
+ * DEFINE Stats de.uni_potsdam.hpi.loddp.udf.evaluation.CharacteristicSetStatistics();
+ * partials = FOREACH (GROUP quads BY subject) GENERATE FLATTEN(Stats(quads.(predicate, object)));
+ * averages = FOREACH (GROUP partials BY (granularity, class, property)) GENERATE FLATTEN(group),
+ *     (double) SUM(partials.values) / SUM(partials.pairs) AS average;
+ * SPLIT averages INTO by_class IF granularity == 'class', by_property IF granularity == 'property',
+ *     by_class_and_property IF granularity == 'class_property';
+ * </pre>
+ */
+public class CharacteristicSetStatistics extends EvalFunc<DataBag> {
+
+    public static final String RDF_TYPE = "http://www.w3.org/1999/02/22-rdf-syntax-ns#type";
+    public static final String GRANULARITY_CLASS = "class";
+    public static final String GRANULARITY_PROPERTY = "property";
+    public static final String GRANULARITY_CLASS_PROPERTY = "class_property";
+
+    private static final TupleFactory tupleFactory = TupleFactory.getInstance();
+    private static final BagFactory bagFactory = BagFactory.getInstance();
+    private final UDFCounters counters = new UDFCounters(getClass());
+    private final String typePredicate;
+
+    public CharacteristicSetStatistics() {
+        this(RDF_TYPE);
+    }
+
+    public CharacteristicSetStatistics(String typePredicate) {
+        this.typePredicate = typePredicate;
+    }
+
+    private static Tuple newTuple(String granularity, String className, String property, long values, long pairs) {
+        Tuple tuple = tupleFactory.newTuple(5);
+        try {
+            tuple.set(0, granularity);
+            tuple.set(1, className);
+            tuple.set(2, property);
+            tuple.set(3, values);
+            tuple.set(4, pairs);
+        } catch (IOException e) {
+            // Cannot happen, the tuple has been created with the correct size.
+            throw new RuntimeException(e);
+        }
+        return tuple;
+    }
+
+    private static String getObjectValue(Object object) throws IOException {
+        if (object instanceof Tuple) {
+            return (String) ((Tuple) object).get(1);
+        }
+        return object == null ? null : object.toString();
+    }
+
+    @Override
+    public DataBag exec(Tuple input) throws IOException {
+        long start = counters.start();
+        try {
+            if (input == null || input.size() == 0 || input.get(0) == null) {
+                return null;
+            }
+
+            // Build characteristic set: classes, and number of values per property.
+            Set<String> classes = new LinkedHashSet<String>();
+            Map<String, long[]> propertyCounts = new LinkedHashMap<String, long[]>();
+            DataBag quads = (DataBag) input.get(0);
+            counters.addValues(quads.size());
+            for (Iterator<Tuple> it = quads.iterator(); it.hasNext(); ) {
+                Tuple quad = it.next();
+                String predicate = (String) quad.get(0);
+                if (predicate == null) {
+                    continue;
+                }
+                long[] count = propertyCounts.get(predicate);
+                if (count == null) {
+                    propertyCounts.put(predicate, new long[] {1});
+                } else {
+                    count[0]++;
+                }
+                if (predicate.equals(typePredicate)) {
+                    String className = getObjectValue(quad.get(1));
+                    if (className != null) {
+                        classes.add(className);
+                    }
+                }
+            }
+
+            // Emit partial counts for all granularities.
+            DataBag output = bagFactory.newDefaultBag();
+            long totalValues = 0;
+            for (Map.Entry<String, long[]> entry : propertyCounts.entrySet()) {
+                long values = entry.getValue()[0];
+                totalValues += values;
+                output.add(newTuple(GRANULARITY_PROPERTY, null, entry.getKey(), values, 1));
+                for (String className : classes) {
+                    output.add(newTuple(GRANULARITY_CLASS_PROPERTY, className, entry.getKey(), values, 1));
+                }
+            }
+            for (String className : classes) {
+                output.add(newTuple(GRANULARITY_CLASS, className, null, totalValues, propertyCounts.size()));
+            }
+            return output;
+        } finally {
+            counters.stop(start);
+        }
+    }
+
+    @Override
+    public Schema outputSchema(Schema input) {
+        try {
+            Schema tupleSchema = new Schema();
+            tupleSchema.add(new Schema.FieldSchema("granularity", DataType.CHARARRAY));
+            tupleSchema.add(new Schema.FieldSchema("class", DataType.CHARARRAY));
+            tupleSchema.add(new Schema.FieldSchema("property", DataType.CHARARRAY));
+            tupleSchema.add(new Schema.FieldSchema("values", DataType.LONG));
+            tupleSchema.add(new Schema.FieldSchema("pairs", DataType.LONG));
+            Schema bagSchema = new Schema(new Schema.FieldSchema(null, tupleSchema, DataType.TUPLE));
+            return new Schema(new Schema.FieldSchema("statistics", bagSchema, DataType.BAG));
+        } catch (FrontendException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package de.uni_potsdam.hpi.loddp.udf.evaluation;
+
+import de.uni_potsdam.hpi.loddp.udf.util.SpaceSaving;
+import de.uni_potsdam.hpi.loddp.udf.util.UDFCounters;
+import org.apache.pig.Accumulator;
+import org.apache.pig.Algebraic;
+import org.apache.pig.EvalFunc;
+import org.apache.pig.data.DataBag;
+import org.apache.pig.data.DataType;
+import org.apache.pig.data.Tuple;
+import org.apache.pig.data.TupleFactory;
+import org.apache.pig.impl.logicalLayer.FrontendException;
+import org.apache.pig.impl.logicalLayer.schema.Schema;
+
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * Finds the most frequent values in a bag using a {@link SpaceSaving} summary; replacement for GROUP + COUNT + ORDER +
+ * LIMIT where approximate counts are sufficient, e.g.
+ *
+ * <pre>
+ * DEFINE TopPredicates de.uni_potsdam.hpi.loddp.udf.evaluation.FrequentValues('20');
+ * top = FOREACH (GROUP quads ALL) GENERATE TopPredicates(quads.predicate);
+ * </pre>
+ *
+ * The constructor arguments are the number of values to return (default 10) and optionally the number of counters to
+ * keep (default 10 times the number of values). The result is a bag of (value, count, error) tuples ordered by
+ * descending count; the true frequency of each value lies in [count - error, count]. Tuples with a single field are
+ * counted by the value of that field, other tuples by all of their fields; tuples with a NULL first field are ignored.
+ *
+ * The function is algebraic; partial results are exchanged as serialized summaries.
+ */
+public class FrequentValues extends EvalFunc<DataBag> implements Algebraic, Accumulator<DataBag> {
+
+    private static final TupleFactory tupleFactory = TupleFactory.getInstance();
+    private static final String DEFAULT_K = "10";
+    private static final int CAPACITY_FACTOR = 10;
+    private final UDFCounters counters = new UDFCounters(getClass());
+    private final int k;
+    private final int capacity;
+    private SpaceSaving intermediateSummary;
+
+    public FrequentValues() {
+        this(DEFAULT_K);
+    }
+
+    public FrequentValues(String k) {
+        this(k, Integer.toString(Integer.parseInt(k) * CAPACITY_FACTOR));
+    }
+
+    public FrequentValues(String k, String capacity) {
+        this.k = Integer.parseInt(k);
+        this.capacity = Math.max(this.k, Integer.parseInt(capacity));
+        this.intermediateSummary = new SpaceSaving(this.capacity);
+    }
+
+    private static int getCapacity(String... args) {
+        int k = Integer.parseInt(args.length > 0 ? args[0] : DEFAULT_K);
+        return args.length > 1 ? Math.max(k, Integer.parseInt(args[1])) : k * CAPACITY_FACTOR;
+    }
+
+    private static void addValues(SpaceSaving summary, DataBag values) throws IOException {
+        for (Iterator<Tuple> it = values.iterator(); it.hasNext(); ) {
+            Tuple tuple = it.next();
+            if (tuple.size() == 0 || tuple.get(0) == null) {
+                continue;
+            }
+            summary.offer(tuple.size() == 1 ? tuple.get(0) : tuple);
+        }
+    }
+
+    private static void addPartials(SpaceSaving summary, DataBag partials) throws IOException {
+        for (Iterator<Tuple> it = partials.iterator(); it.hasNext(); ) {
+            summary.merge((Tuple) it.next().get(0));
+        }
+    }
+
+    @Override
+    public Schema outputSchema(Schema input) {
+        byte valueType = DataType.BYTEARRAY;
+        try {
+            Schema.FieldSchema bag = input.getField(0);
+            if (bag.schema != null && bag.schema.size() == 1) {
+                Schema.FieldSchema tuple = bag.schema.getField(0);
+                if (tuple.type == DataType.TUPLE && tuple.schema != null && tuple.schema.size() == 1) {
+                    valueType = tuple.schema.getField(0).type;
+                } else if (tuple.type != DataType.TUPLE) {
+                    valueType = tuple.type;
+                }
+            }
+        } catch (FrontendException e) {
+            // Fall back to bytearray values.
+        }
+        try {
+            Schema tupleSchema = new Schema();
+            tupleSchema.add(new Schema.FieldSchema("value", valueType));
+            tupleSchema.add(new Schema.FieldSchema("count", DataType.LONG));
+            tupleSchema.add(new Schema.FieldSchema("error", DataType.LONG));
+            Schema bagSchema = new Schema(new Schema.FieldSchema(null, tupleSchema, DataType.TUPLE));
+            return new Schema(new Schema.FieldSchema("frequent", bagSchema, DataType.BAG));
+        } catch (FrontendException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void accumulate(Tuple b) throws IOException {
+        long start = counters.start();
+        try {
+            DataBag values = (DataBag) b.get(0);
+            counters.addValues(values.size());
+            addValues(intermediateSummary, values);
+        } finally {
+            counters.stop(start);
+        }
+    }
+
+    @Override
+    public DataBag getValue() {
+        return intermediateSummary.getTop(k);
+    }
+
+    @Override
+    public void cleanup() {
+        intermediateSummary = new SpaceSaving(capacity);
+    }
+
+    @Override
+    public DataBag exec(Tuple input) throws IOException {
+        long start = counters.start();
+        try {
+            SpaceSaving summary = new SpaceSaving(capacity);
+            DataBag values = (DataBag) input.get(0);
+            counters.addValues(values.size());
+            addValues(summary, values);
+            return summary.getTop(k);
+        } finally {
+            counters.stop(start);
+        }
+    }
+
+    @Override
+    public String getInitial() {
+        return Initial.class.getName();
+    }
+
+    @Override
+    public String getIntermed() {
+        return Intermediate.class.getName();
+    }
+
+    @Override
+    public String getFinal() {
+        return Final.class.getName();
+    }
+
+    /**
+     * Computes a partial summary from a bag of raw values.
+     */
+    public static class Initial extends EvalFunc<Tuple> {
+        private final UDFCounters counters = new UDFCounters(getClass());
+        private final int capacity;
+
+        public Initial() {
+            this(new String[0]);
+        }
+
+        public Initial(String... args) {
+            this.capacity = getCapacity(args);
+        }
+
+        @Override
+        public Tuple exec(Tuple input) throws IOException {
+            long start = counters.start();
+            try {
+                SpaceSaving summary = new SpaceSaving(capacity);
+                DataBag values = (DataBag) input.get(0);
+                counters.addValues(values.size());
+                addValues(summary, values);
+                return tupleFactory.newTuple(summary.toTuple());
+            } finally {
+                counters.stop(start);
+            }
+        }
+    }
+
+    /**
+     * Merges a bag of partial summaries into a single partial summary.
+     */
+    public static class Intermediate extends EvalFunc<Tuple> {
+        private final UDFCounters counters = new UDFCounters(getClass());
+        private final int capacity;
+
+        public Intermediate() {
+            this(new String[0]);
+        }
+
+        public Intermediate(String... args) {
+            this.capacity = getCapacity(args);
+        }
+
+        @Override
+        public Tuple exec(Tuple input) throws IOException {
+            long start = counters.start();
+            try {
+                SpaceSaving summary = new SpaceSaving(capacity);
+                addPartials(summary, (DataBag) input.get(0));
+                return tupleFactory.newTuple(summary.toTuple());
+            } finally {
+                counters.stop(start);
+            }
+        }
+    }
+
+    /**
+     * Merges a bag of partial summaries and returns the most frequent values.
+     */
+    public static class Final extends EvalFunc<DataBag> {
+        private final UDFCounters counters = new UDFCounters(getClass());
+        private final int k;
+        private final int capacity;
+
+        public Final() {
+            this(new String[0]);
+        }
+
+        public Final(String... args) {
+            this.k = Integer.parseInt(args.length > 0 ? args[0] : DEFAULT_K);
+            this.capacity = getCapacity(args);
+        }
+
+        @Override
+        public DataBag exec(Tuple input) throws IOException {
+            long start = counters.start();
+            try {
+                SpaceSaving summary = new SpaceSaving(capacity);
+                addPartials(summary, (DataBag) input.get(0));
+                return summary.getTop(k);
+            } finally {
+                counters.stop(start);
+            }
+        }
+    }
+}
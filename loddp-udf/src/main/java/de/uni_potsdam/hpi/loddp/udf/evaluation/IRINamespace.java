@@ -0,0 +1,58 @@
+package de.uni_potsdam.hpi.loddp.udf.evaluation;
+
+import de.uni_potsdam.hpi.loddp.udf.util.NamespaceTrie;
+import de.uni_potsdam.hpi.loddp.udf.util.UDFCounters;
+import org.apache.pig.EvalFunc;
+import org.apache.pig.data.DataType;
+import org.apache.pig.data.Tuple;
+import org.apache.pig.impl.logicalLayer.schema.Schema;
+
+import java.io.IOException;
+
+/**
+ * Extracts the namespace of an IRI with a {@link NamespaceTrie}; replacement for regular expression based string
+ * functions (e.g. REGEX_EXTRACT) when grouping by namespace or vocabulary, e.g.
+ *
+ * <pre>
+ * DEFINE Namespace de.uni_potsdam.hpi.loddp.udf.evaluation.IRINamespace();
+ * vocabularies = FOREACH quads GENERATE Namespace(predicate) AS namespace;
+ * </pre>
+ *
+ * The namespace is the longest known vocabulary namespace (see {@link NamespaceTrie#DEFAULT_NAMESPACES}, plus any
+ * namespaces given as constructor arguments) which is a prefix of the IRI, or otherwise the IRI up to its last '#' or
+ * '/'. Equal namespaces are returned as the same string instance. Returns NULL for NULL input and for values without
+ * any separator (e.g. blank nodes).
+ */
+public class IRINamespace extends EvalFunc<String> {
+
+    private final UDFCounters counters = new UDFCounters(getClass());
+    private final NamespaceTrie trie = new NamespaceTrie();
+
+    public IRINamespace() {
+        this(new String[0]);
+    }
+
+    public IRINamespace(String... namespaces) {
+        for (String namespace : namespaces) {
+            trie.add(namespace);
+        }
+    }
+
+    @Override
+    public String exec(Tuple input) throws IOException {
+        long start = counters.start();
+        try {
+            if (input == null || input.size() == 0) {
+                return null;
+            }
+            return trie.getNamespace((String) input.get(0));
+        } finally {
+            counters.stop(start);
+        }
+    }
+
+    @Override
+    public Schema outputSchema(Schema input) {
+        return new Schema(new Schema.FieldSchema("namespace", DataType.CHARARRAY));
+    }
+}
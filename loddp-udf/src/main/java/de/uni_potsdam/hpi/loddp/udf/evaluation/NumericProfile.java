@@ -0,0 +1,267 @@
+package de.uni_potsdam.hpi.loddp.udf.evaluation;
+
+import de.uni_potsdam.hpi.loddp.udf.util.DecimalParser;
+import de.uni_potsdam.hpi.loddp.udf.util.UDFCounters;
+import org.apache.pig.Accumulator;
+import org.apache.pig.Algebraic;
+import org.apache.pig.EvalFunc;
+import org.apache.pig.data.DataBag;
+import org.apache.pig.data.DataType;
+import org.apache.pig.data.Tuple;
+import org.apache.pig.data.TupleFactory;
+import org.apache.pig.impl.logicalLayer.FrontendException;
+import org.apache.pig.impl.logicalLayer.schema.Schema;
+
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * Computes a numeric profile of the values in a bag of (value) tuples in a single pass, i.e. replaces separate COUNT,
+ * AVG, {@link NumericValueRange} and standard deviation aggregates over the same bag.
+ *
+ * Values are parsed once with the same rules as in {@link NumericValueRange}. The result is a tuple (count, failures,
+ * min, max, mean, variance, stddev): count is the number of numeric values, failures the number of non-NULL values which
+ * could not be parsed; the remaining fields are doubles (population variance), or NULL if there are no numeric values.
+ *
+ * The function is algebraic: the map-side combiner reduces each group to a single partial state tuple (count,
+ * failures, mean, M2, min, max), which is merged with the parallel variant of Welford's algorithm.
+ *
+ * @link http://en.wikipedia.org/wiki/Algorithms_for_calculating_variance#Parallel_algorithm
+ */
+public class NumericProfile extends EvalFunc<Tuple> implements Algebraic, Accumulator<Tuple> {
+
+    private static final TupleFactory tupleFactory = TupleFactory.getInstance();
+    private final UDFCounters counters = new UDFCounters(getClass());
+    private Profile intermediateProfile = new Profile();
+
+    @Override
+    public Schema outputSchema(Schema input) {
+        try {
+            Schema tupleSchema = new Schema();
+            tupleSchema.add(new Schema.FieldSchema("count", DataType.LONG));
+            tupleSchema.add(new Schema.FieldSchema("failures", DataType.LONG));
+            tupleSchema.add(new Schema.FieldSchema("min", DataType.DOUBLE));
+            tupleSchema.add(new Schema.FieldSchema("max", DataType.DOUBLE));
+            tupleSchema.add(new Schema.FieldSchema("mean", DataType.DOUBLE));
+            tupleSchema.add(new Schema.FieldSchema("variance", DataType.DOUBLE));
+            tupleSchema.add(new Schema.FieldSchema("stddev", DataType.DOUBLE));
+            return new Schema(new Schema.FieldSchema("profile", tupleSchema, DataType.TUPLE));
+        } catch (FrontendException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void accumulate(Tuple b) throws IOException {
+        long start = counters.start();
+        try {
+            DataBag values = (DataBag) b.get(0);
+            counters.addValues(values.size());
+            counters.addFailures(UDFCounters.NUMERIC, intermediateProfile.addValues(values));
+        } finally {
+            counters.stop(start);
+        }
+    }
+
+    @Override
+    public Tuple getValue() {
+        return intermediateProfile.toResultTuple();
+    }
+
+    @Override
+    public void cleanup() {
+        intermediateProfile = new Profile();
+    }
+
+    @Override
+    public Tuple exec(Tuple input) throws IOException {
+        long start = counters.start();
+        try {
+            Profile profile = new Profile();
+            DataBag values = (DataBag) input.get(0);
+            counters.addValues(values.size());
+            counters.addFailures(UDFCounters.NUMERIC, profile.addValues(values));
+            return profile.toResultTuple();
+        } finally {
+            counters.stop(start);
+        }
+    }
+
+    @Override
+    public String getInitial() {
+        return Initial.class.getName();
+    }
+
+    @Override
+    public String getIntermed() {
+        return Intermediate.class.getName();
+    }
+
+    @Override
+    public String getFinal() {
+        return Final.class.getName();
+    }
+
+    /**
+     * Computes a partial state tuple from a bag of raw (value) tuples.
+     */
+    public static class Initial extends EvalFunc<Tuple> {
+        private final UDFCounters counters = new UDFCounters(getClass());
+
+        @Override
+        public Tuple exec(Tuple input) throws IOException {
+            long start = counters.start();
+            try {
+                Profile profile = new Profile();
+                DataBag values = (DataBag) input.get(0);
+                counters.addValues(values.size());
+                counters.addFailures(UDFCounters.NUMERIC, profile.addValues(values));
+                return profile.toPartialTuple();
+            } finally {
+                counters.stop(start);
+            }
+        }
+    }
+
+    /**
+     * Merges a bag of partial state tuples into a single partial state tuple.
+     */
+    public static class Intermediate extends EvalFunc<Tuple> {
+        private final UDFCounters counters = new UDFCounters(getClass());
+
+        @Override
+        public Tuple exec(Tuple input) throws IOException {
+            long start = counters.start();
+            try {
+                Profile profile = new Profile();
+                profile.addPartials((DataBag) input.get(0));
+                return profile.toPartialTuple();
+            } finally {
+                counters.stop(start);
+            }
+        }
+    }
+
+    /**
+     * Merges a bag of partial state tuples and returns the final profile tuple.
+     */
+    public static class Final extends EvalFunc<Tuple> {
+        private final UDFCounters counters = new UDFCounters(getClass());
+
+        @Override
+        public Tuple exec(Tuple input) throws IOException {
+            long start = counters.start();
+            try {
+                Profile profile = new Profile();
+                profile.addPartials((DataBag) input.get(0));
+                return profile.toResultTuple();
+            } finally {
+                counters.stop(start);
+            }
+        }
+    }
+
+    /**
+     * Mutable profile state shared by all evaluation modes.
+     */
+    private static final class Profile {
+        private final DecimalParser parser = new DecimalParser();
+        private long count = 0;
+        private long failures = 0;
+        private double mean = 0;
+        private double m2 = 0;
+        private double min = Double.POSITIVE_INFINITY;
+        private double max = Double.NEGATIVE_INFINITY;
+
+        private void add(String str) {
+            if (str == null) {
+                return;
+            }
+            if (parser.parse(str) == DecimalParser.NOT_NUMERIC) {
+                failures++;
+                return;
+            }
+            double value = parser.getDoubleValue();
+            count++;
+            double delta = value - mean;
+            mean += delta / count;
+            m2 += delta * (value - mean);
+            if (value < min) min = value;
+            if (value > max) max = value;
+        }
+
+        private void merge(long otherCount, double otherMean, double otherM2, double otherMin, double otherMax) {
+            if (otherCount == 0) {
+                return;
+            }
+            long total = count + otherCount;
+            double delta = otherMean - mean;
+            mean += delta * otherCount / total;
+            m2 += otherM2 + delta * delta * ((double) count * otherCount / total);
+            count = total;
+            if (otherMin < min) min = otherMin;
+            if (otherMax > max) max = otherMax;
+        }
+
+        /**
+         * @return The number of values which could not be parsed.
+         */
+        public long addValues(DataBag values) throws IOException {
+            long previousFailures = failures;
+            for (Iterator<Tuple> it = values.iterator(); it.hasNext(); ) {
+                add((String) (it.next().get(0)));
+            }
+            return failures - previousFailures;
+        }
+
+        public void addPartials(DataBag partials) throws IOException {
+            for (Iterator<Tuple> it = partials.iterator(); it.hasNext(); ) {
+                Tuple partial = it.next();
+                failures += (Long) partial.get(1);
+                long partialCount = (Long) partial.get(0);
+                if (partialCount > 0) {
+                    merge(partialCount, (Double) partial.get(2), (Double) partial.get(3), (Double) partial.get(4),
+                        (Double) partial.get(5));
+                }
+            }
+        }
+
+        public Tuple toPartialTuple() {
+            Tuple tuple = tupleFactory.newTuple(6);
+            try {
+                tuple.set(0, count);
+                tuple.set(1, failures);
+                if (count > 0) {
+                    tuple.set(2, mean);
+                    tuple.set(3, m2);
+                    tuple.set(4, min);
+                    tuple.set(5, max);
+                }
+            } catch (IOException e) {
+                // Cannot happen, the tuple has been created with the correct size.
+                throw new RuntimeException(e);
+            }
+            return tuple;
+        }
+
+        public Tuple toResultTuple() {
+            Tuple tuple = tupleFactory.newTuple(7);
+            try {
+                tuple.set(0, count);
+                tuple.set(1, failures);
+                if (count > 0) {
+                    double variance = m2 / count;
+                    tuple.set(2, min);
+                    tuple.set(3, max);
+                    tuple.set(4, mean);
+                    tuple.set(5, variance);
+                    tuple.set(6, Math.sqrt(variance));
+                }
+            } catch (IOException e) {
+                // Cannot happen, the tuple has been created with the correct size.
+                throw new RuntimeException(e);
+            }
+            return tuple;
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package de.uni_potsdam.hpi.loddp.udf.evaluation;
+
+import de.uni_potsdam.hpi.loddp.udf.util.DecimalParser;
+import de.uni_potsdam.hpi.loddp.udf.util.QuantileSketch;
+import de.uni_potsdam.hpi.loddp.udf.util.UDFCounters;
+import org.apache.pig.Accumulator;
+import org.apache.pig.Algebraic;
+import org.apache.pig.EvalFunc;
+import org.apache.pig.data.DataBag;
+import org.apache.pig.data.DataByteArray;
+import org.apache.pig.data.DataType;
+import org.apache.pig.data.Tuple;
+import org.apache.pig.data.TupleFactory;
+import org.apache.pig.impl.logicalLayer.FrontendException;
+import org.apache.pig.impl.logicalLayer.schema.Schema;
+
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * Computes approximate quantiles of the numeric values in a bag of (value) tuples using a {@link QuantileSketch}, i.e.
+ * with fixed memory per group. Values are parsed with the same rules as in {@link NumericValueRange}; non-numeric
+ * values are ignored.
+ *
+ * The constructor arguments are the requested quantiles as fractions (default: 0, 0.25, 0.5, 0.75, 1, i.e. minimum,
+ * quartiles and maximum, where minimum and maximum are exact). The result is a tuple with one double per requested
+ * quantile, or NULL if the bag does not contain any numeric values.
+ *
+ * The function is algebraic; partial results are exchanged as serialized sketches.
+ */
+public class NumericQuantiles extends EvalFunc<Tuple> implements Algebraic, Accumulator<Tuple> {
+
+    private static final TupleFactory tupleFactory = TupleFactory.getInstance();
+    private static final String[] DEFAULT_QUANTILES = {"0", "0.25", "0.5", "0.75", "1"};
+    private final UDFCounters counters = new UDFCounters(getClass());
+    private final double[] quantiles;
+    private QuantileSketch intermediateSketch = new QuantileSketch();
+
+    public NumericQuantiles() {
+        this(DEFAULT_QUANTILES);
+    }
+
+    public NumericQuantiles(String... quantiles) {
+        this.quantiles = parseQuantiles(quantiles);
+    }
+
+    private static double[] parseQuantiles(String[] quantiles) {
+        double[] result = new double[quantiles.length];
+        for (int i = 0; i < quantiles.length; i++) {
+            result[i] = Double.parseDouble(quantiles[i]);
+            if (result[i] < 0 || result[i] > 1) {
+                throw new IllegalArgumentException("Quantiles have to be between 0 and 1, got " + quantiles[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return The number of non-NULL values which are not numeric.
+     */
+    private static long addValues(QuantileSketch sketch, DataBag values) throws IOException {
+        DecimalParser parser = new DecimalParser();
+        long failures = 0;
+        for (Iterator<Tuple> it = values.iterator(); it.hasNext(); ) {
+            String str = (String) (it.next().get(0));
+            if (parser.parse(str) != DecimalParser.NOT_NUMERIC) {
+                sketch.update(parser.getDoubleValue());
+            } else if (str != null) {
+                failures++;
+            }
+        }
+        return failures;
+    }
+
+    private static void addPartials(QuantileSketch sketch, DataBag partials) throws IOException {
+        for (Iterator<Tuple> it = partials.iterator(); it.hasNext(); ) {
+            sketch.merge((DataByteArray) it.next().get(0));
+        }
+    }
+
+    private static Tuple toQuantileTuple(QuantileSketch sketch, double[] quantiles) {
+        if (sketch.isEmpty()) {
+            return null;
+        }
+        double[] values = sketch.getQuantiles(quantiles);
+        Tuple tuple = tupleFactory.newTuple(values.length);
+        try {
+            for (int i = 0; i < values.length; i++) {
+                tuple.set(i, values[i]);
+            }
+        } catch (IOException e) {
+            // Cannot happen, the tuple has been created with the correct size.
+            throw new RuntimeException(e);
+        }
+        return tuple;
+    }
+
+    @Override
+    public Schema outputSchema(Schema input) {
+        Schema tupleSchema = new Schema();
+        for (double quantile : quantiles) {
+            String alias = "q" + Math.round(quantile * 100);
+            tupleSchema.add(new Schema.FieldSchema(alias, DataType.DOUBLE));
+        }
+        try {
+            return new Schema(new Schema.FieldSchema("quantiles", tupleSchema, DataType.TUPLE));
+        } catch (FrontendException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void accumulate(Tuple b) throws IOException {
+        long start = counters.start();
+        try {
+            DataBag values = (DataBag) b.get(0);
+            counters.addValues(values.size());
+            counters.addFailures(UDFCounters.NUMERIC, addValues(intermediateSketch, values));
+        } finally {
+            counters.stop(start);
+        }
+    }
+
+    @Override
+    public Tuple getValue() {
+        return toQuantileTuple(intermediateSketch, quantiles);
+    }
+
+    @Override
+    public void cleanup() {
+        intermediateSketch = new QuantileSketch();
+    }
+
+    @Override
+    public Tuple exec(Tuple input) throws IOException {
+        long start = counters.start();
+        try {
+            QuantileSketch sketch = new QuantileSketch();
+            DataBag values = (DataBag) input.get(0);
+            counters.addValues(values.size());
+            counters.addFailures(UDFCounters.NUMERIC, addValues(sketch, values));
+            return toQuantileTuple(sketch, quantiles);
+        } finally {
+            counters.stop(start);
+        }
+    }
+
+    @Override
+    public String getInitial() {
+        return Initial.class.getName();
+    }
+
+    @Override
+    public String getIntermed() {
+        return Intermediate.class.getName();
+    }
+
+    @Override
+    public String getFinal() {
+        return Final.class.getName();
+    }
+
+    /**
+     * Computes a partial sketch from a bag of raw values.
+     */
+    public static class Initial extends EvalFunc<Tuple> {
+        private final UDFCounters counters = new UDFCounters(getClass());
+
+        public Initial() {
+        }
+
+        public Initial(String... quantiles) {
+            // Quantiles are only needed by the final stage.
+        }
+
+        @Override
+        public Tuple exec(Tuple input) throws IOException {
+            long start = counters.start();
+            try {
+                QuantileSketch sketch = new QuantileSketch();
+                DataBag values = (DataBag) input.get(0);
+                counters.addValues(values.size());
+                counters.addFailures(UDFCounters.NUMERIC, addValues(sketch, values));
+                return tupleFactory.newTuple(sketch.toBytes());
+            } finally {
+                counters.stop(start);
+            }
+        }
+    }
+
+    /**
+     * Merges a bag of partial sketches into a single partial sketch.
+     */
+    public static class Intermediate extends EvalFunc<Tuple> {
+        private final UDFCounters counters = new UDFCounters(getClass());
+
+        public Intermediate() {
+        }
+
+        public Intermediate(String... quantiles) {
+            // Quantiles are only needed by the final stage.
+        }
+
+        @Override
+        public Tuple exec(Tuple input) throws IOException {
+            long start = counters.start();
+            try {
+                QuantileSketch sketch = new QuantileSketch();
+                addPartials(sketch, (DataBag) input.get(0));
+                return tupleFactory.newTuple(sketch.toBytes());
+            } finally {
+                counters.stop(start);
+            }
+        }
+    }
+
+    /**
+     * Merges a bag of partial sketches and returns the tuple of quantiles.
+     */
+    public static class Final extends EvalFunc<Tuple> {
+        private final UDFCounters counters = new UDFCounters(getClass());
+        private final double[] quantiles;
+
+        public Final() {
+            this(DEFAULT_QUANTILES);
+        }
+
+        public Final(String... quantiles) {
+            this.quantiles = parseQuantiles(quantiles);
+        }
+
+        @Override
+        public Tuple exec(Tuple input) throws IOException {
+            long start = counters.start();
+            try {
+                QuantileSketch sketch = new QuantileSketch();
+                addPartials(sketch, (DataBag) input.get(0));
+                return toQuantileTuple(sketch, quantiles);
+            } finally {
+                counters.stop(start);
+            }
+        }
+    }
+}
@@ -1,76 +1,294 @@
 package de.uni_potsdam.hpi.loddp.udf.evaluation;
 
-import org.apache.commons.lang3.math.NumberUtils;
+import de.uni_potsdam.hpi.loddp.udf.util.DecimalParser;
+import de.uni_potsdam.hpi.loddp.udf.util.LiteralCache;
+import de.uni_potsdam.hpi.loddp.udf.util.UDFCounters;
 import org.apache.pig.Accumulator;
+import org.apache.pig.Algebraic;
 import org.apache.pig.EvalFunc;
 import org.apache.pig.data.DataBag;
 import org.apache.pig.data.Tuple;
+import org.apache.pig.data.TupleFactory;
 
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.util.Iterator;
 
 /**
+ * Computes the range of numeric values in a bag of (value) tuples.
+ *
+ * The function is algebraic: the map-side combiner reduces each group to a single (min, max) tuple, so that only the
+ * partial ranges need to be shuffled to the reducers.
+ *
  * @todo convert output string "X - Y" into a tuple with two values (?)
  */
-public class NumericValueRange extends EvalFunc<String> implements Accumulator<String> {
+public class NumericValueRange extends EvalFunc<String> implements Algebraic, Accumulator<String> {
 
-    private BigDecimal intermediateMin = null;
-    private BigDecimal intermediateMax = null;
+    private static final TupleFactory tupleFactory = TupleFactory.getInstance();
+    private final UDFCounters counters = new UDFCounters(getClass());
+    private Range intermediateRange = new Range();
 
     @Override
     public void accumulate(Tuple b) throws IOException {
-        DataBag values = (DataBag) b.get(0);
-        if (values.size() == 0) {
-            return;
-        }
-
-        for (Iterator<Tuple> it = values.iterator(); it.hasNext(); ) {
-            String str = (String) (it.next().get(0));
-            if (NumberUtils.isNumber(str)) {
-                BigDecimal number = NumberUtils.createBigDecimal(str);
-                intermediateMin = intermediateMin == null ? number : intermediateMin.min(number);
-                intermediateMax = intermediateMax == null ? number : intermediateMax.max(number);
+        long start = counters.start();
+        try {
+            DataBag values = (DataBag) b.get(0);
+            counters.addValues(values.size());
+            if (values.size() == 0) {
+                return;
             }
+            counters.addFailures(UDFCounters.NUMERIC, intermediateRange.addValues(values));
+        } finally {
+            counters.stop(start);
         }
     }
 
     @Override
     public String getValue() {
-        return rangeString(intermediateMin, intermediateMax);
+        return intermediateRange.toRangeString();
     }
 
     @Override
     public void cleanup() {
-        intermediateMin = null;
-        intermediateMax = null;
+        intermediateRange = new Range();
     }
 
-    private String rangeString(BigDecimal min, BigDecimal max) {
-        if (min == null || max == null) {
-            return null;
-        }
-        return String.format("%s - %s", min.toString(), max.toString());
+    @Override
+    public void finish() {
+        LiteralCache.publishCounters();
     }
 
     @Override
     public String exec(Tuple input) throws IOException {
-        DataBag values = (DataBag) input.get(0);
-        if (values.size() == 0) {
-            return null;
-        }
-        BigDecimal curMin = null;
-        BigDecimal curMax = null;
-
-        for (Iterator<Tuple> it = values.iterator(); it.hasNext(); ) {
-            String str = (String) (it.next().get(0));
-            if (NumberUtils.isNumber(str)) {
-                BigDecimal number = NumberUtils.createBigDecimal(str);
-                curMin = curMin == null ? number : curMin.min(number);
-                curMax = curMax == null ? number : curMax.max(number);
+        long start = counters.start();
+        try {
+            DataBag values = (DataBag) input.get(0);
+            counters.addValues(values.size());
+            if (values.size() == 0) {
+                return null;
+            }
+            Range range = new Range();
+            counters.addFailures(UDFCounters.NUMERIC, range.addValues(values));
+            return range.toRangeString();
+        } finally {
+            counters.stop(start);
+        }
+    }
+
+    @Override
+    public String getInitial() {
+        return Initial.class.getName();
+    }
+
+    @Override
+    public String getIntermed() {
+        return Intermediate.class.getName();
+    }
+
+    @Override
+    public String getFinal() {
+        return Final.class.getName();
+    }
+
+    /**
+     * Computes a partial (min, max) tuple from a bag of raw (value) tuples.
+     */
+    public static class Initial extends EvalFunc<Tuple> {
+        private final UDFCounters counters = new UDFCounters(getClass());
+
+        @Override
+        public Tuple exec(Tuple input) throws IOException {
+            long start = counters.start();
+            try {
+                Range range = new Range();
+                DataBag values = (DataBag) input.get(0);
+                counters.addValues(values.size());
+                counters.addFailures(UDFCounters.NUMERIC, range.addValues(values));
+                return range.toTuple();
+            } finally {
+                counters.stop(start);
+            }
+        }
+
+        @Override
+        public void finish() {
+            LiteralCache.publishCounters();
+        }
+    }
+
+    /**
+     * Merges a bag of partial (min, max) tuples into a single partial tuple.
+     */
+    public static class Intermediate extends EvalFunc<Tuple> {
+        private final UDFCounters counters = new UDFCounters(getClass());
+
+        @Override
+        public Tuple exec(Tuple input) throws IOException {
+            long start = counters.start();
+            try {
+                Range range = new Range();
+                range.addPartials((DataBag) input.get(0));
+                return range.toTuple();
+            } finally {
+                counters.stop(start);
+            }
+        }
+
+        @Override
+        public void finish() {
+            LiteralCache.publishCounters();
+        }
+    }
+
+    /**
+     * Merges a bag of partial (min, max) tuples and returns the final range string.
+     */
+    public static class Final extends EvalFunc<String> {
+        private final UDFCounters counters = new UDFCounters(getClass());
+
+        @Override
+        public String exec(Tuple input) throws IOException {
+            long start = counters.start();
+            try {
+                Range range = new Range();
+                range.addPartials((DataBag) input.get(0));
+                return range.toRangeString();
+            } finally {
+                counters.stop(start);
+            }
+        }
+
+        @Override
+        public void finish() {
+            LiteralCache.publishCounters();
+        }
+    }
+
+    /**
+     * Mutable (min, max) state shared by all evaluation modes.
+     *
+     * Bounds are tracked as (unscaled long, scale) pairs and only widened to BigDecimal if a value does not fit into a
+     * long, see {@link DecimalParser}; parse results are memoized in the {@link LiteralCache} of the thread. Partial
+     * states are exchanged as tuples with two chararray fields containing the plain string representation of the
+     * minimum and maximum; both fields are NULL if no numeric value has been seen yet.
+     */
+    private static final class Range {
+        private final DecimalParser parser = new DecimalParser();
+        private final LiteralCache cache = LiteralCache.get();
+        private boolean empty = true;
+        private long minUnscaled;
+        private int minScale;
+        private BigDecimal minBig;
+        private long maxUnscaled;
+        private int maxScale;
+        private BigDecimal maxBig;
+
+        private static int compare(long unscaled1, int scale1, BigDecimal big1,
+                                   long unscaled2, int scale2, BigDecimal big2) {
+            if (big1 == null && big2 == null) {
+                return DecimalParser.compare(unscaled1, scale1, unscaled2, scale2);
             }
+            return DecimalParser.toBigDecimal(unscaled1, scale1, big1)
+                .compareTo(DecimalParser.toBigDecimal(unscaled2, scale2, big2));
         }
 
-        return rangeString(curMin, curMax);
+        /**
+         * @return FALSE if the value is not numeric.
+         */
+        private boolean add(String str) {
+            int result;
+            long unscaled;
+            int scale;
+            BigDecimal big;
+            int cached = cache.lookup(LiteralCache.TYPE_DECIMAL, str);
+            if (cached >= 0) {
+                result = cache.getCode(cached);
+                unscaled = cache.getLong(cached);
+                scale = cache.getInt(cached);
+                big = (BigDecimal) cache.getObject(cached);
+            } else {
+                result = parser.parse(str);
+                unscaled = parser.getUnscaledValue();
+                scale = parser.getScale();
+                big = result == DecimalParser.BIG ? parser.getBigDecimal() : null;
+                cache.put(LiteralCache.TYPE_DECIMAL, str, result, unscaled, scale, big);
+            }
+            if (result == DecimalParser.NOT_NUMERIC) {
+                return false;
+            }
+            if (empty) {
+                empty = false;
+                minUnscaled = maxUnscaled = unscaled;
+                minScale = maxScale = scale;
+                minBig = maxBig = big;
+                return true;
+            }
+            // Only replace bounds on strict inequality, which matches the tie behaviour of BigDecimal.min/max.
+            if (compare(unscaled, scale, big, minUnscaled, minScale, minBig) < 0) {
+                minUnscaled = unscaled;
+                minScale = scale;
+                minBig = big;
+            }
+            if (compare(unscaled, scale, big, maxUnscaled, maxScale, maxBig) > 0) {
+                maxUnscaled = unscaled;
+                maxScale = scale;
+                maxBig = big;
+            }
+            return true;
+        }
+
+        /**
+         * @return The number of non-NULL values which are not numeric.
+         */
+        public long addValues(DataBag values) throws IOException {
+            long failures = 0;
+            for (Iterator<Tuple> it = values.iterator(); it.hasNext(); ) {
+                String str = (String) (it.next().get(0));
+                if (!add(str) && str != null) {
+                    failures++;
+                }
+            }
+            return failures;
+        }
+
+
+        public void addPartials(DataBag partials) throws IOException {
+            for (Iterator<Tuple> it = partials.iterator(); it.hasNext(); ) {
+                Tuple partial = it.next();
+                String partialMin = (String) partial.get(0);
+                String partialMax = (String) partial.get(1);
+                if (partialMin != null && partialMax != null) {
+                    add(partialMin);
+                    add(partialMax);
+                }
+            }
+        }
+
+        private String minString() {
+            return empty ? null : DecimalParser.toBigDecimal(minUnscaled, minScale, minBig).toString();
+        }
+
+        private String maxString() {
+            return empty ? null : DecimalParser.toBigDecimal(maxUnscaled, maxScale, maxBig).toString();
+        }
+
+        public Tuple toTuple() {
+            Tuple tuple = tupleFactory.newTuple(2);
+            try {
+                tuple.set(0, minString());
+                tuple.set(1, maxString());
+            } catch (IOException e) {
+                // Cannot happen, the tuple has been created with the correct size.
+                throw new RuntimeException(e);
+            }
+            return tuple;
+        }
+
+        public String toRangeString() {
+            if (empty) {
+                return null;
+            }
+            return String.format("%s - %s", minString(), maxString());
+        }
     }
 }
@@ -0,0 +1,331 @@
+package de.uni_potsdam.hpi.loddp.udf.evaluation;
+
+import de.uni_potsdam.hpi.loddp.udf.util.Datatype;
+import de.uni_potsdam.hpi.loddp.udf.util.LiteralCache;
+import de.uni_potsdam.hpi.loddp.udf.util.TemporalLexer;
+import org.apache.pig.data.DataByteArray;
+import org.joda.time.*;
+import org.joda.time.chrono.ISOChronology;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Mutable min/max state for the duration, instant and partial ranges computed by {@link TemporalValueRange}.
+ *
+ * All values are kept as order-preserving primitive longs: durations and instants as milliseconds, partials as the
+ * UTC milliseconds of their fields set on a fixed base date (in a leap year, so that --02-29 is valid). Because
+ * partials of different kinds (e.g. xsd:date and xsd:gYear) are not comparable with each other, each partial bound also
+ * carries a kind tag and partials are ordered by (kind, millis). Literals are lexed straight into this encoding, see
+ * {@link #addLiteral(String, String)}, and memoized in the {@link LiteralCache} of the thread; Joda objects are only
+ * created to format the final range string.
+ *
+ * Partial states are exchanged between the algebraic stages as a compact byte array, see {@link #toBytes()}.
+ */
+final class TemporalRange {
+
+    static final byte KIND_LOCAL_DATE = 0;
+    static final byte KIND_YEAR_MONTH = 1;
+    static final byte KIND_YEAR = 2;
+    static final byte KIND_MONTH_DAY = 3;
+    static final byte KIND_LOCAL_TIME = 4;
+    static final byte KIND_DAY = 5;
+    static final byte KIND_MONTH = 6;
+
+    private static final byte HAS_DURATION = 1;
+    private static final byte HAS_INSTANT = 2;
+    private static final byte HAS_PARTIAL = 4;
+
+    /**
+     * Result codes of {@link #lex}, which are also stored in the {@link LiteralCache}.
+     */
+    private static final int CODE_INVALID = -1;
+    private static final int CODE_DURATION = 0;
+    private static final int CODE_INSTANT = 1;
+    private static final int CODE_PARTIAL = 2;
+
+    /**
+     * Year of the base date for encoding partials; a leap year, so that --02-29 is valid.
+     */
+    private static final int PARTIAL_BASE_YEAR = 2000;
+    private static final Chronology UTC = ISOChronology.getInstanceUTC();
+
+    private TemporalLexer lexer;
+    private LiteralCache cache;
+    private long lexedMillis;
+    private byte present = 0;
+    private long minDuration;
+    private long maxDuration;
+    private long minInstant;
+    private long maxInstant;
+    private byte minPartialKind;
+    private long minPartial;
+    private byte maxPartialKind;
+    private long maxPartial;
+
+    private static int comparePartials(byte kind1, long millis1, byte kind2, long millis2) {
+        if (kind1 != kind2) {
+            return kind1 < kind2 ? -1 : 1;
+        }
+        return millis1 < millis2 ? -1 : (millis1 == millis2 ? 0 : 1);
+    }
+
+    private static String formatPartial(byte kind, long millis) {
+        switch (kind) {
+            case KIND_LOCAL_DATE:
+                return new LocalDate(millis, UTC).toString();
+            case KIND_YEAR_MONTH:
+                return new YearMonth(millis, UTC).toString();
+            case KIND_YEAR:
+                int year = UTC.year().get(millis);
+                return year < 0 ? String.format("-%04d", -year) : String.format("%04d", year);
+            case KIND_MONTH_DAY:
+                return new MonthDay(millis, UTC).toString();
+            case KIND_LOCAL_TIME:
+                return new LocalTime(millis, UTC).toString();
+            case KIND_DAY:
+                return String.format("---%02d", UTC.dayOfMonth().get(millis));
+            case KIND_MONTH:
+                return String.format("--%02d", UTC.monthOfYear().get(millis));
+            default:
+                throw new IllegalArgumentException("Unknown partial kind " + kind);
+        }
+    }
+
+    /**
+     * Restores a range from the byte array representation created by {@link #toBytes()}.
+     */
+    public static TemporalRange fromBytes(DataByteArray bytes) {
+        TemporalRange range = new TemporalRange();
+        range.merge(bytes);
+        return range;
+    }
+
+    /**
+     * Parses a literal and adds it to the range.
+     *
+     * @param type  The data type IRI of the literal; XSD temporal types are matched by local name.
+     * @param value The lexical value of the literal.
+     *
+     * @return FALSE if the data type is not temporal or the value is malformed, TRUE otherwise.
+     */
+    public boolean addLiteral(String type, String value) {
+        Datatype datatype = Datatype.fromLocalName(type);
+        if (datatype == null || !datatype.isTemporal()) {
+            return false;
+        }
+        if (cache == null) {
+            cache = LiteralCache.get();
+        }
+        int code;
+        long millis;
+        int cached = cache.lookup(datatype.ordinal(), value);
+        if (cached >= 0) {
+            code = cache.getCode(cached);
+            millis = cache.getLong(cached);
+        } else {
+            code = lex(datatype, value);
+            millis = code == CODE_INVALID ? 0 : lexedMillis;
+            cache.put(datatype.ordinal(), value, code, millis, 0, null);
+        }
+        switch (code) {
+            case CODE_INVALID:
+                return false;
+            case CODE_DURATION:
+                addDuration(millis);
+                break;
+            case CODE_INSTANT:
+                addInstant(millis);
+                break;
+            default:
+                addPartial((byte) (code - CODE_PARTIAL), millis);
+        }
+        return true;
+    }
+
+    /**
+     * Lexes a literal into its primitive encoding, which is stored in {@link #lexedMillis}.
+     *
+     * @return {@link #CODE_INVALID}, {@link #CODE_DURATION}, {@link #CODE_INSTANT}, or {@link #CODE_PARTIAL} plus the
+     *         partial kind.
+     */
+    private int lex(Datatype datatype, String value) {
+        if (lexer == null) {
+            lexer = new TemporalLexer();
+        }
+        if (lexer.lex(datatype, value) == TemporalLexer.INVALID) {
+            return CODE_INVALID;
+        }
+        switch (datatype) {
+            case XSD_DURATION:
+                lexedMillis = lexer.getDurationMillis();
+                return CODE_DURATION;
+            case XSD_DATE_TIME:
+            case XSD_DATE_TIME_STAMP:
+                lexedMillis = lexer.getInstantMillis();
+                return CODE_INSTANT;
+            case XSD_DATE:
+                lexedMillis = partialMillis(lexer.getYear(), lexer.getMonth(), lexer.getDay(), 0);
+                return CODE_PARTIAL + KIND_LOCAL_DATE;
+            case XSD_G_YEAR_MONTH:
+                lexedMillis = partialMillis(lexer.getYear(), lexer.getMonth(), 1, 0);
+                return CODE_PARTIAL + KIND_YEAR_MONTH;
+            case XSD_G_YEAR:
+                lexedMillis = partialMillis(lexer.getYear(), 1, 1, 0);
+                return CODE_PARTIAL + KIND_YEAR;
+            case XSD_G_MONTH_DAY:
+                lexedMillis = partialMillis(PARTIAL_BASE_YEAR, lexer.getMonth(), lexer.getDay(), 0);
+                return CODE_PARTIAL + KIND_MONTH_DAY;
+            case XSD_TIME:
+                // 24:00:00 is the same time of day as 00:00:00.
+                long millisOfDay = lexer.getMillisOfDay() % TemporalLexer.MILLIS_PER_DAY;
+                lexedMillis = partialMillis(PARTIAL_BASE_YEAR, 1, 1, millisOfDay);
+                return CODE_PARTIAL + KIND_LOCAL_TIME;
+            case XSD_G_DAY:
+                lexedMillis = partialMillis(PARTIAL_BASE_YEAR, 1, lexer.getDay(), 0);
+                return CODE_PARTIAL + KIND_DAY;
+            case XSD_G_MONTH:
+                lexedMillis = partialMillis(PARTIAL_BASE_YEAR, lexer.getMonth(), 1, 0);
+                return CODE_PARTIAL + KIND_MONTH;
+            default:
+                return CODE_INVALID;
+        }
+    }
+
+    /**
+     * Encodes the fields of a partial as UTC milliseconds; fields which are not part of the partial are taken from
+     * the base date 2000-01-01T00:00.
+     */
+    private static long partialMillis(int year, int month, int day, long millisOfDay) {
+        return TemporalLexer.daysFromCivil(year, month, day) * TemporalLexer.MILLIS_PER_DAY + millisOfDay;
+    }
+
+    public void addDuration(long millis) {
+        addDurationRange(millis, millis);
+    }
+
+    public void addInstant(long millis) {
+        addInstantRange(millis, millis);
+    }
+
+    public void addPartial(byte kind, long millis) {
+        addPartialRange(kind, millis, kind, millis);
+    }
+
+    private void addDurationRange(long min, long max) {
+        if ((present & HAS_DURATION) == 0) {
+            present |= HAS_DURATION;
+            minDuration = min;
+            maxDuration = max;
+        } else {
+            if (min < minDuration) minDuration = min;
+            if (max > maxDuration) maxDuration = max;
+        }
+    }
+
+    private void addInstantRange(long min, long max) {
+        if ((present & HAS_INSTANT) == 0) {
+            present |= HAS_INSTANT;
+            minInstant = min;
+            maxInstant = max;
+        } else {
+            if (min < minInstant) minInstant = min;
+            if (max > maxInstant) maxInstant = max;
+        }
+    }
+
+    private void addPartialRange(byte minKind, long min, byte maxKind, long max) {
+        if ((present & HAS_PARTIAL) == 0) {
+            present |= HAS_PARTIAL;
+            minPartialKind = minKind;
+            minPartial = min;
+            maxPartialKind = maxKind;
+            maxPartial = max;
+        } else {
+            if (comparePartials(minKind, min, minPartialKind, minPartial) < 0) {
+                minPartialKind = minKind;
+                minPartial = min;
+            }
+            if (comparePartials(maxKind, max, maxPartialKind, maxPartial) > 0) {
+                maxPartialKind = maxKind;
+                maxPartial = max;
+            }
+        }
+    }
+
+    /**
+     * Merges a partial state created by {@link #toBytes()} into this range.
+     */
+    public void merge(DataByteArray bytes) {
+        if (bytes == null || bytes.size() == 0) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.get());
+        byte flags = buffer.get();
+        if ((flags & HAS_DURATION) != 0) {
+            addDurationRange(buffer.getLong(), buffer.getLong());
+        }
+        if ((flags & HAS_INSTANT) != 0) {
+            addInstantRange(buffer.getLong(), buffer.getLong());
+        }
+        if ((flags & HAS_PARTIAL) != 0) {
+            byte minKind = buffer.get();
+            long min = buffer.getLong();
+            byte maxKind = buffer.get();
+            long max = buffer.getLong();
+            addPartialRange(minKind, min, maxKind, max);
+        }
+    }
+
+    /**
+     * Serializes this range: one byte of flags, followed by the (min, max) longs of each range that is present.
+     * Partial bounds are additionally prefixed with a one byte kind tag.
+     */
+    public DataByteArray toBytes() {
+        int size = 1;
+        if ((present & HAS_DURATION) != 0) size += 16;
+        if ((present & HAS_INSTANT) != 0) size += 16;
+        if ((present & HAS_PARTIAL) != 0) size += 18;
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.put(present);
+        if ((present & HAS_DURATION) != 0) {
+            buffer.putLong(minDuration).putLong(maxDuration);
+        }
+        if ((present & HAS_INSTANT) != 0) {
+            buffer.putLong(minInstant).putLong(maxInstant);
+        }
+        if ((present & HAS_PARTIAL) != 0) {
+            buffer.put(minPartialKind).putLong(minPartial).put(maxPartialKind).putLong(maxPartial);
+        }
+        return new DataByteArray(buffer.array());
+    }
+
+    /**
+     * Formats the range as "min - max" for each kind of temporal value that has been seen, separated by " | ". Joda
+     * objects are only created here, i.e. once per bound. Instants are printed in UTC.
+     */
+    public String toRangeString() {
+        int c = 0;
+        StringBuilder sb = new StringBuilder();
+        if ((present & HAS_DURATION) != 0) {
+            sb.append(new Duration(minDuration)).append(" - ").append(new Duration(maxDuration));
+            c++;
+        }
+        if ((present & HAS_INSTANT) != 0) {
+            if (c != 0) sb.append(" | ");
+            sb.append(new DateTime(minInstant, DateTimeZone.UTC)).append(" - ")
+                .append(new DateTime(maxInstant, DateTimeZone.UTC));
+            c++;
+        }
+        if ((present & HAS_PARTIAL) != 0) {
+            if (c != 0) sb.append(" | ");
+            sb.append(formatPartial(minPartialKind, minPartial)).append(" - ")
+                .append(formatPartial(maxPartialKind, maxPartial));
+            c++;
+            if (minPartialKind != maxPartialKind) c++;
+        }
+        if (c > 1) {
+            sb.append(" | (Mixed DataTypes!)");
+        }
+        return sb.toString();
+    }
+}
@@ -1,172 +1,180 @@
 package de.uni_potsdam.hpi.loddp.udf.evaluation;
 
-import de.uni_potsdam.hpi.loddp.udf.util.TemporalHelper;
+import de.uni_potsdam.hpi.loddp.udf.util.Datatype;
+import de.uni_potsdam.hpi.loddp.udf.util.LiteralCache;
+import de.uni_potsdam.hpi.loddp.udf.util.UDFCounters;
 import org.apache.pig.Accumulator;
+import org.apache.pig.Algebraic;
 import org.apache.pig.EvalFunc;
 import org.apache.pig.PigWarning;
 import org.apache.pig.data.DataBag;
+import org.apache.pig.data.DataByteArray;
 import org.apache.pig.data.Tuple;
-import org.joda.time.ReadableDuration;
-import org.joda.time.ReadableInstant;
-import org.joda.time.ReadablePartial;
+import org.apache.pig.data.TupleFactory;
 
 import java.io.IOException;
 import java.util.Iterator;
 
 /**
  * Accepts a full RDF object, i.e. :bag (ntype, value, dttype).
+ *
+ * The function is algebraic; partial results are exchanged as a single bytearray field holding the primitive encoding
+ * of the duration, instant and partial ranges (see {@link TemporalRange}).
  */
-public class TemporalValueRange extends EvalFunc<String> implements Accumulator<String> {
-
-    private ReadableDuration minDuration = null;
-    private ReadableDuration maxDuration = null;
-    private ReadableInstant minInstant = null;
-    private ReadableInstant maxInstant = null;
-    private ReadablePartial minPartial = null;
-    private ReadablePartial maxPartial = null;
-
-    private static String getValue(ReadableDuration minDuration, ReadableDuration maxDuration, ReadableInstant minInstant, ReadableInstant maxInstant, ReadablePartial minPartial, ReadablePartial maxPartial) {
-        String duration = rangeString(minDuration, maxDuration);
-        String instant = rangeString(minInstant, maxInstant);
-        String partial = rangeString(minPartial, maxPartial);
-        int c = 0;
-        StringBuilder sb = new StringBuilder();
-        if (duration != null) {
-            sb.append(duration);
-            c++;
-        }
-        if (instant != null) {
-            if (c != 0) sb.append(" | ");
-            sb.append(instant);
-            c++;
-        }
-        if (partial != null) {
-            if (c != 0) sb.append(" | ");
-            sb.append(partial);
-            c++;
-        }
-        if (c > 1) {
-            sb.append(" | (Mixed DataTypes!)");
-        }
-        return sb.toString();
-    }
+public class TemporalValueRange extends EvalFunc<String> implements Algebraic, Accumulator<String> {
+
+    private static final TupleFactory tupleFactory = TupleFactory.getInstance();
+    private final UDFCounters counters = new UDFCounters(getClass());
+    private TemporalRange intermediateRange = new TemporalRange();
 
-    private static String rangeString(Object min, Object max) {
-        if (min == null || max == null) {
-            return null;
+    private static void addValues(EvalFunc<?> func, UDFCounters counters, TemporalRange range, DataBag values)
+        throws IOException {
+        for (Iterator<Tuple> it = values.iterator(); it.hasNext(); ) {
+            // Crazy stuff (looks like each tuple is wrapped in another bag?)
+            Tuple tuple = (Tuple) it.next().get(0);
+            String type = (String) tuple.get(2);
+            Datatype datatype = Datatype.fromLocalName(type);
+            if (datatype != null && !datatype.isTemporal()) {
+                // Other known data types (e.g. strings or numbers in mixed columns) are skipped silently.
+                continue;
+            }
+            if (!range.addLiteral(type, (String) tuple.get(1))) {
+                // Keep the message constant; malformed values are common and Pig aggregates warnings by type anyway.
+                func.warn("Cannot parse temporal value.", PigWarning.UDF_WARNING_1);
+                counters.addFailures(datatype != null ? datatype.getLocalName() : "other", 1);
+            }
         }
-        return String.format("%s - %s", min.toString(), max.toString());
     }
 
-    private Comparable getTemporalValue(Tuple input) throws IOException {
-        // Crazy stuff (looks like each tuple is wrapped in another bag?)
-        Tuple tuple = (Tuple) input.get(0);
-        String valueStr = (String) (tuple.get(1));
-        String typeStr = (String) (tuple.get(2));
-        try {
-            return TemporalHelper.parseTemporalValue(typeStr, valueStr);
-        } catch (Exception e) {
-            warn("Error: cannot parse " + tuple.toString() + ". " + e.getMessage(), PigWarning.UDF_WARNING_1);
-            return null;
+    private static void addPartials(TemporalRange range, DataBag partials) throws IOException {
+        for (Iterator<Tuple> it = partials.iterator(); it.hasNext(); ) {
+            range.merge((DataByteArray) it.next().get(0));
         }
     }
 
     @Override
     public void accumulate(Tuple b) throws IOException {
-        DataBag values = (DataBag) b.get(0);
-        if (values.size() == 0) {
-            return;
-        }
-
-        for (Iterator<Tuple> it = values.iterator(); it.hasNext(); ) {
-            Tuple tuple = it.next();
-            Comparable temporalValue = getTemporalValue(tuple);
-            if (temporalValue instanceof ReadableDuration) {
-                ReadableDuration t = (ReadableDuration) temporalValue;
-                if (minDuration == null || maxDuration == null) {
-                    minDuration = maxDuration = t;
-                } else {
-                    if (t.compareTo(minDuration) < 0) minDuration = t;
-                    if (t.compareTo(maxDuration) > 0) maxDuration = t;
-                }
-            } else if (temporalValue instanceof ReadableInstant) {
-                ReadableInstant t = (ReadableInstant) temporalValue;
-                if (minInstant == null || maxInstant == null) {
-                    minInstant = maxInstant = t;
-                } else {
-                    if (t.compareTo(minInstant) < 0) minInstant = t;
-                    if (t.compareTo(maxInstant) > 0) maxInstant = t;
-                }
-            } else if (temporalValue instanceof ReadablePartial) {
-                ReadablePartial t = (ReadablePartial) temporalValue;
-                if (minPartial == null || maxPartial == null) {
-                    minPartial = maxPartial = t;
-                } else {
-                    if (t.compareTo(minPartial) < 0) minPartial = t;
-                    if (t.compareTo(maxPartial) > 0) maxPartial = t;
-                }
+        long start = counters.start();
+        try {
+            DataBag values = (DataBag) b.get(0);
+            counters.addValues(values.size());
+            if (values.size() == 0) {
+                return;
             }
+            addValues(this, counters, intermediateRange, values);
+        } finally {
+            counters.stop(start);
         }
     }
 
     @Override
     public String getValue() {
-        return getValue(minDuration, maxDuration, minInstant, maxInstant, minPartial, maxPartial);
+        return intermediateRange.toRangeString();
     }
 
     @Override
     public void cleanup() {
-        minDuration = null;
-        maxDuration = null;
-        minInstant = null;
-        maxInstant = null;
-        minPartial = null;
-        maxPartial = null;
+        intermediateRange = new TemporalRange();
+    }
+
+    @Override
+    public void finish() {
+        LiteralCache.publishCounters();
     }
 
     @Override
     public String exec(Tuple input) throws IOException {
-        DataBag values = (DataBag) input.get(0);
-        if (values.size() == 0) {
-            return null;
+        long start = counters.start();
+        try {
+            DataBag values = (DataBag) input.get(0);
+            counters.addValues(values.size());
+            if (values.size() == 0) {
+                return null;
+            }
+            TemporalRange range = new TemporalRange();
+            addValues(this, counters, range, values);
+            return range.toRangeString();
+        } finally {
+            counters.stop(start);
         }
-        ReadableDuration minDuration = null;
-        ReadableDuration maxDuration = null;
-        ReadableInstant minInstant = null;
-        ReadableInstant maxInstant = null;
-        ReadablePartial minPartial = null;
-        ReadablePartial maxPartial = null;
+    }
 
-        for (Iterator<Tuple> it = values.iterator(); it.hasNext(); ) {
-            Tuple tuple = it.next();
-            Comparable temporalValue = getTemporalValue(tuple);
-            if (temporalValue instanceof ReadableDuration) {
-                ReadableDuration t = (ReadableDuration) temporalValue;
-                if (minDuration == null || maxDuration == null) {
-                    minDuration = maxDuration = t;
-                } else {
-                    if (t.compareTo(minDuration) < 0) minDuration = t;
-                    if (t.compareTo(maxDuration) > 0) maxDuration = t;
-                }
-            } else if (temporalValue instanceof ReadableInstant) {
-                ReadableInstant t = (ReadableInstant) temporalValue;
-                if (minInstant == null || maxInstant == null) {
-                    minInstant = maxInstant = t;
-                } else {
-                    if (t.compareTo(minInstant) < 0) minInstant = t;
-                    if (t.compareTo(maxInstant) > 0) maxInstant = t;
-                }
-            } else if (temporalValue instanceof ReadablePartial) {
-                ReadablePartial t = (ReadablePartial) temporalValue;
-                if (minPartial == null || maxPartial == null) {
-                    minPartial = maxPartial = t;
-                } else {
-                    if (t.compareTo(minPartial) < 0) minPartial = t;
-                    if (t.compareTo(maxPartial) > 0) maxPartial = t;
-                }
+    @Override
+    public String getInitial() {
+        return Initial.class.getName();
+    }
+
+    @Override
+    public String getIntermed() {
+        return Intermediate.class.getName();
+    }
+
+    @Override
+    public String getFinal() {
+        return Final.class.getName();
+    }
+
+    /**
+     * Computes a partial range from a bag of raw RDF objects.
+     */
+    public static class Initial extends EvalFunc<Tuple> {
+        private final UDFCounters counters = new UDFCounters(getClass());
+
+        @Override
+        public Tuple exec(Tuple input) throws IOException {
+            long start = counters.start();
+            try {
+                TemporalRange range = new TemporalRange();
+                DataBag values = (DataBag) input.get(0);
+                counters.addValues(values.size());
+                addValues(this, counters, range, values);
+                return tupleFactory.newTuple(range.toBytes());
+            } finally {
+                counters.stop(start);
             }
         }
 
-        return getValue(minDuration, maxDuration, minInstant, maxInstant, minPartial, maxPartial);
+        @Override
+        public void finish() {
+            LiteralCache.publishCounters();
+        }
+    }
+
+    /**
+     * Merges a bag of partial ranges into a single partial range.
+     */
+    public static class Intermediate extends EvalFunc<Tuple> {
+        private final UDFCounters counters = new UDFCounters(getClass());
+
+        @Override
+        public Tuple exec(Tuple input) throws IOException {
+            long start = counters.start();
+            try {
+                TemporalRange range = new TemporalRange();
+                addPartials(range, (DataBag) input.get(0));
+                return tupleFactory.newTuple(range.toBytes());
+            } finally {
+                counters.stop(start);
+            }
+        }
+    }
+
+    /**
+     * Merges a bag of partial ranges and returns the final range string.
+     */
+    public static class Final extends EvalFunc<String> {
+        private final UDFCounters counters = new UDFCounters(getClass());
+
+        @Override
+        public String exec(Tuple input) throws IOException {
+            long start = counters.start();
+            try {
+                TemporalRange range = new TemporalRange();
+                addPartials(range, (DataBag) input.get(0));
+                return range.toRangeString();
+            } finally {
+                counters.stop(start);
+            }
+        }
     }
 }
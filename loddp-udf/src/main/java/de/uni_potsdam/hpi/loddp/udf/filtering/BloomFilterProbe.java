@@ -0,0 +1,125 @@
+package de.uni_potsdam.hpi.loddp.udf.filtering;
+
+import de.uni_potsdam.hpi.loddp.udf.util.BloomFilter;
+import de.uni_potsdam.hpi.loddp.udf.util.UDFCounters;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.pig.FilterFunc;
+import org.apache.pig.data.Tuple;
+import org.apache.pig.impl.util.UDFContext;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Accepts tuples which are (probably) contained in a bloom filter built with
+ * {@link de.uni_potsdam.hpi.loddp.udf.evaluation.BuildBloomFilter}, e.g. to drop tuples before a join which cannot
+ * find a join partner:
+ *
+ * <pre>
+ * DEFINE InTypes de.uni_potsdam.hpi.loddp.udf.filtering.BloomFilterProbe('types-bloom');
+ * properties = FILTER quads BY InTypes(subject);
+ * </pre>
+ *
+ * The constructor argument is the location the filter has been stored to (with PigStorage). The filter is shipped to
+ * the tasks via the distributed cache; in local mode it is read from its original location. If the location contains
+ * several filters (e.g. multiple part files), they are merged. Tuples with a NULL first field are rejected.
+ */
+public class BloomFilterProbe extends FilterFunc {
+
+    protected static final Log log = LogFactory.getLog(BloomFilterProbe.class);
+    private final UDFCounters counters = new UDFCounters(getClass());
+    private final String location;
+    private BloomFilter filter;
+    /**
+     * Whether the location contained a filter at all; without one, no tuple can match.
+     */
+    private boolean empty;
+
+    public BloomFilterProbe(String location) {
+        this.location = location;
+    }
+
+    @Override
+    public Boolean exec(Tuple input) throws IOException {
+        long start = counters.start();
+        try {
+            if (input == null || input.size() == 0 || input.get(0) == null) {
+                return false;
+            }
+            if (filter == null && !empty) {
+                filter = loadFilter();
+                empty = filter == null;
+            }
+            return !empty && filter.mightContain(input.size() == 1 ? input.get(0) : input);
+        } finally {
+            counters.stop(start);
+        }
+    }
+
+    @Override
+    public List<String> getCacheFiles() {
+        List<String> files = new ArrayList<String>(1);
+        files.add(location + "#" + getSymlinkName());
+        return files;
+    }
+
+    private String getSymlinkName() {
+        return location.replace('/', '_').replace(':', '_');
+    }
+
+    private BloomFilter loadFilter() throws IOException {
+        Path path;
+        FileSystem fs;
+        File cached = new File(getSymlinkName());
+        if (cached.exists()) {
+            path = new Path(cached.getAbsolutePath());
+            fs = FileSystem.getLocal(new Configuration());
+        } else {
+            Configuration conf = UDFContext.getUDFContext().getJobConf();
+            path = new Path(location);
+            fs = path.getFileSystem(conf != null ? conf : new Configuration());
+        }
+
+        BloomFilter result = null;
+        FileStatus[] files = fs.isFile(path) ? new FileStatus[] {fs.getFileStatus(path)} : fs.listStatus(path);
+        for (FileStatus file : files) {
+            String name = file.getPath().getName();
+            if (file.isDir() || name.startsWith("_") || name.startsWith(".") || file.getLen() == 0) {
+                continue;
+            }
+            BloomFilter partial = readFilter(fs.open(file.getPath()));
+            if (partial == null) {
+                continue;
+            } else if (result == null) {
+                result = partial;
+            } else {
+                result.merge(partial);
+            }
+        }
+        if (result == null) {
+            log.warn("No bloom filter found at " + location + ", rejecting all tuples.");
+        }
+        return result;
+    }
+
+    private BloomFilter readFilter(InputStream stream) throws IOException {
+        DataInputStream input = new DataInputStream(stream);
+        try {
+            return BloomFilter.read(input);
+        } catch (EOFException e) {
+            return null;
+        } finally {
+            input.close();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package de.uni_potsdam.hpi.loddp.udf.filtering;
+
+import de.uni_potsdam.hpi.loddp.udf.util.Datatype;
+import de.uni_potsdam.hpi.loddp.udf.util.UDFCounters;
+import org.apache.pig.EvalFunc;
+import org.apache.pig.data.Tuple;
+
+import java.io.IOException;
+
+/**
+ * Classifies a data type IRI in a single lookup, so that several data type filters on the same column do not need to
+ * resolve the same IRI over and over again.
+ *
+ * The UDF returns one of the CATEGORY_* constants (which are mirrored by the FuseDatatypeFilters rule). Categories are
+ * determined with the same semantics as {@link NumericDataType}, {@link StringDataType} and {@link TemporalDataType},
+ * i.e. "DatatypeCategory(dt) == CATEGORY_NUMERIC" accepts exactly the same tuples as NumericDataType.
+ *
+ * Java callers can use {@link #classify}, which returns an integer code {@code category * CATEGORY_FACTOR + type}
+ * that also identifies the exact data type (see {@link #getCategory} and {@link #getDatatype}).
+ */
+public class DatatypeCategory extends EvalFunc<Integer> {
+
+    public static final int CATEGORY_OTHER = 0;
+    public static final int CATEGORY_NUMERIC = 1;
+    public static final int CATEGORY_STRING = 2;
+    public static final int CATEGORY_TEMPORAL = 3;
+    /**
+     * Multiplier for the category part of a code.
+     */
+    public static final int CATEGORY_FACTOR = 256;
+    private final UDFCounters counters = new UDFCounters(getClass());
+
+    /**
+     * Returns the category code for the given data type IRI; type is the ordinal of the matching {@link Datatype} plus
+     * one, or zero if the data type is unknown.
+     */
+    public static int classify(String str) {
+        if (str == null) {
+            return CATEGORY_OTHER;
+        }
+        Datatype dt = Datatype.fromIRI(str);
+        if (dt != null) {
+            return getCode(dt);
+        }
+        // Temporal types are matched by local name only, see TemporalHelper#isTemporalDataType.
+        dt = Datatype.fromLocalName(str);
+        if (dt != null && dt.isTemporal()) {
+            return getCode(dt);
+        }
+        return CATEGORY_OTHER;
+    }
+
+    private static int getCode(Datatype dt) {
+        int category;
+        switch (dt.getCategory()) {
+            case NUMERIC:
+                category = CATEGORY_NUMERIC;
+                break;
+            case STRING:
+                category = CATEGORY_STRING;
+                break;
+            case TEMPORAL:
+                category = CATEGORY_TEMPORAL;
+                break;
+            default:
+                category = CATEGORY_OTHER;
+        }
+        return category * CATEGORY_FACTOR + dt.ordinal() + 1;
+    }
+
+    /**
+     * Extracts the category (one of the CATEGORY_* constants) from a code.
+     */
+    public static int getCategory(int code) {
+        return code / CATEGORY_FACTOR;
+    }
+
+    /**
+     * Extracts the exact data type from a code.
+     *
+     * @return The data type, or NULL if the data type is unknown.
+     */
+    public static Datatype getDatatype(int code) {
+        int type = code % CATEGORY_FACTOR;
+        return type == 0 ? null : Datatype.values()[type - 1];
+    }
+
+    @Override
+    public Integer exec(Tuple input) throws IOException {
+        long start = counters.start();
+        try {
+            if (input == null || input.size() == 0) {
+                return CATEGORY_OTHER;
+            }
+            return getCategory(classify((String) input.get(0)));
+        } finally {
+            counters.stop(start);
+        }
+    }
+}
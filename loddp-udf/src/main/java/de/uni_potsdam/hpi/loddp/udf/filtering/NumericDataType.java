@@ -1,10 +1,9 @@
 package de.uni_potsdam.hpi.loddp.udf.filtering;
 
+import de.uni_potsdam.hpi.loddp.udf.util.Datatype;
+import de.uni_potsdam.hpi.loddp.udf.util.UDFCounters;
 import org.apache.pig.FilterFunc;
 import org.apache.pig.data.Tuple;
-import org.semanticweb.owlapi.model.IRI;
-import org.semanticweb.owlapi.model.OWLRuntimeException;
-import org.semanticweb.owlapi.vocab.OWL2Datatype;
 
 import java.io.IOException;
 
@@ -22,27 +21,27 @@ import java.io.IOException;
  */
 public class NumericDataType extends FilterFunc {
 
+    private final UDFCounters counters = new UDFCounters(getClass());
+
     @Override
     public Boolean exec(Tuple input) throws IOException {
-        if (input == null || input.size() == 0) {
-            return false;
-        }
-        String str = (String) input.get(0);
+        long start = counters.start();
+        try {
+            if (input == null || input.size() == 0) {
+                return false;
+            }
+            String str = (String) input.get(0);
 
-        // If the given string is empty for some reason, it's definitely not numeric. ;-)
-        if (str == null) {
-            return false;
-        }
+            // If the given string is empty for some reason, it's definitely not numeric. ;-)
+            if (str == null) {
+                return false;
+            }
 
-        // Check if the given string matches a built-in numeric data-type.
-        try {
-            OWL2Datatype dt = OWL2Datatype.getDatatype(IRI.create(str));
-            return dt.isNumeric();
-        } catch (OWLRuntimeException e) {
-            // Not a built in datatype.
+            // Check if the given string matches a built-in numeric data-type.
+            Datatype dt = Datatype.fromIRI(str);
+            return dt != null && dt.isNumeric();
+        } finally {
+            counters.stop(start);
         }
-
-        // If none of the checks above worked, it's probably not numeric.
-        return false;
     }
 }
@@ -1,10 +1,9 @@
 package de.uni_potsdam.hpi.loddp.udf.filtering;
 
+import de.uni_potsdam.hpi.loddp.udf.util.Datatype;
+import de.uni_potsdam.hpi.loddp.udf.util.UDFCounters;
 import org.apache.pig.FilterFunc;
 import org.apache.pig.data.Tuple;
-import org.semanticweb.owlapi.model.IRI;
-import org.semanticweb.owlapi.model.OWLRuntimeException;
-import org.semanticweb.owlapi.vocab.OWL2Datatype;
 
 import java.io.IOException;
 
@@ -15,34 +14,27 @@ import java.io.IOException;
  */
 public class StringDataType extends FilterFunc {
 
+    private final UDFCounters counters = new UDFCounters(getClass());
+
     @Override
     public Boolean exec(Tuple input) throws IOException {
-        if (input == null || input.size() == 0) {
-            return false;
-        }
-        String str = (String) input.get(0);
-
-        // If the given string is empty for some reason, it's definitely not a string. ;-)
-        if (str == null) {
-            return false;
-        }
-
-        // Check if the given string matches a built-in string data-type.
+        long start = counters.start();
         try {
-            OWL2Datatype dt = OWL2Datatype.getDatatype(IRI.create(str));
-            switch (dt.getCategory()) {
-                case STRING_WITH_LANGUAGE_TAG:
-                case STRING_WITHOUT_LANGUAGE_TAG:
-                case UNIVERSAL:
-                    return true;
-                default:
-                    return false;
+            if (input == null || input.size() == 0) {
+                return false;
+            }
+            String str = (String) input.get(0);
+
+            // If the given string is empty for some reason, it's definitely not a string. ;-)
+            if (str == null) {
+                return false;
             }
-        } catch (OWLRuntimeException e) {
-            // Not a built in datatype.
-        }
 
-        // If none of the checks above worked, it's probably not a string.
-        return false;
+            // Check if the given string matches a built-in string data-type.
+            Datatype dt = Datatype.fromIRI(str);
+            return dt != null && dt.isString();
+        } finally {
+            counters.stop(start);
+        }
     }
 }
@@ -1,6 +1,7 @@
 package de.uni_potsdam.hpi.loddp.udf.filtering;
 
 import de.uni_potsdam.hpi.loddp.udf.util.TemporalHelper;
+import de.uni_potsdam.hpi.loddp.udf.util.UDFCounters;
 import org.apache.pig.FilterFunc;
 import org.apache.pig.builtin.MonitoredUDF;
 import org.apache.pig.data.Tuple;
@@ -9,14 +10,21 @@ import java.io.IOException;
 
 public class TemporalDataType extends FilterFunc {
 
+    private final UDFCounters counters = new UDFCounters(getClass());
+
     @Override
     public Boolean exec(Tuple input) throws IOException {
-        if (input == null || input.size() == 0) {
-            return false;
-        }
-        String str = (String) input.get(0);
+        long start = counters.start();
+        try {
+            if (input == null || input.size() == 0) {
+                return false;
+            }
+            String str = (String) input.get(0);
 
-        // Check if the given string matches a built-in XSD date/time data-type.
-        return TemporalHelper.isTemporalDataType(str);
+            // Check if the given string matches a built-in XSD date/time data-type.
+            return TemporalHelper.isTemporalDataType(str);
+        } finally {
+            counters.stop(start);
+        }
     }
 }
@@ -0,0 +1,318 @@
+package de.uni_potsdam.hpi.loddp.udf.loading;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Index of access points into a gzip file (like zlib's zran example), stored in a sidecar file next to it (the file
+ * name plus {@link #SUFFIX}). Decompression can start at any access point, so that {@link GzipIndexInputFormat} can
+ * split gzip files which have not been re-encoded. Indexes are created by {@link GzipIndexer}.
+ *
+ * An access point is either the start of a gzip member, or the start of a deflate block within a member; the latter
+ * store the bit offset of the block and the window (last 32 KB of uncompressed data of the member) needed to decode it.
+ * All access points store their uncompressed offset and whether the preceding uncompressed byte ends a line.
+ *
+ * The sidecar starts with a table of all access points, followed by their compressed windows. {@link #read} only reads
+ * the table; a reader which starts decompressing at an access point loads just its window with {@link #readWindow}.
+ */
+public final class GzipIndex {
+
+    public static final String SUFFIX = ".gzidx";
+    public static final int WINDOW_SIZE = 32768;
+    private static final byte[] MAGIC = {'N', 'Q', 'G', 'Z', 'I', 'D', 'X', '2'};
+    /**
+     * Length of an access point in the table at the start of the sidecar.
+     */
+    private static final int ENTRY_LENGTH = 8 + 8 + 1 + 1 + 4 + 4 + 8;
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+
+    private final List<AccessPoint> points;
+    /**
+     * Sidecar and configuration to load windows from, or NULL if all windows are in memory.
+     */
+    private final Path sidecar;
+    private final Configuration conf;
+
+    public GzipIndex(List<AccessPoint> points) {
+        this(points, null, null);
+    }
+
+    private GzipIndex(List<AccessPoint> points, Path sidecar, Configuration conf) {
+        this.points = points;
+        this.sidecar = sidecar;
+        this.conf = conf;
+    }
+
+    public List<AccessPoint> getAccessPoints() {
+        return points;
+    }
+
+    public static Path getSidecar(Path file) {
+        return new Path(file.getParent(), file.getName() + SUFFIX);
+    }
+
+    /**
+     * Whether all files at the given load location (which may be a comma-separated list of paths and globs) are gzip
+     * files with an index.
+     */
+    public static boolean isIndexed(String[] paths, Configuration conf) throws IOException {
+        for (String pathString : paths) {
+            Path path = new Path(pathString);
+            FileSystem fs = path.getFileSystem(conf);
+            FileStatus[] files = fs.globStatus(path);
+            if (files == null || files.length == 0) {
+                return false;
+            }
+            for (FileStatus file : files) {
+                if (!file.getPath().getName().endsWith(".gz") || !fs.exists(getSidecar(file.getPath()))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads the access points of an index, without their windows.
+     */
+    public static GzipIndex read(Path sidecar, Configuration conf) throws IOException {
+        FSDataInputStream in = sidecar.getFileSystem(conf).open(sidecar);
+        try {
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("Not a gzip index (or an outdated one, re-create it with GzipIndexer): " +
+                    sidecar);
+            }
+            int count = in.readInt();
+            List<AccessPoint> points = new ArrayList<AccessPoint>(count);
+            for (int i = 0; i < count; i++) {
+                long bitOffset = in.readLong();
+                long uncompressedOffset = in.readLong();
+                boolean memberStart = in.readBoolean();
+                boolean lineStart = in.readBoolean();
+                int windowLength = in.readInt();
+                int compressedLength = in.readInt();
+                long windowPosition = in.readLong();
+                points.add(new AccessPoint(bitOffset, uncompressedOffset, memberStart, lineStart, windowLength,
+                    windowPosition, compressedLength));
+            }
+            return new GzipIndex(points, sidecar, conf);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Returns the window of the given access point, reading it from the sidecar if the index has been read with
+     * {@link #read}.
+     */
+    public byte[] readWindow(AccessPoint point) throws IOException {
+        if (point.window != null) {
+            return point.window;
+        }
+        byte[] compressed = new byte[point.compressedLength];
+        FSDataInputStream in = sidecar.getFileSystem(conf).open(sidecar);
+        try {
+            in.readFully(point.windowPosition, compressed);
+        } finally {
+            in.close();
+        }
+        byte[] window = new byte[point.windowLength];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            if (inflater.inflate(window) != window.length) {
+                throw new IOException("Corrupt window in gzip index: " + sidecar);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt window in gzip index: " + sidecar, e);
+        } finally {
+            inflater.end();
+        }
+        return window;
+    }
+
+    /**
+     * Writes the index; windows are compressed.
+     */
+    public void write(Path sidecar, Configuration conf) throws IOException {
+        // Compress all windows first, since the table stores their positions.
+        List<byte[]> windows = new ArrayList<byte[]>(points.size());
+        Deflater deflater = new Deflater();
+        byte[] buffer = new byte[WINDOW_SIZE + WINDOW_SIZE / 100 + 64];
+        try {
+            for (AccessPoint point : points) {
+                byte[] window = readWindow(point);
+                deflater.reset();
+                deflater.setInput(window);
+                deflater.finish();
+                int length = deflater.deflate(buffer);
+                windows.add(Arrays.copyOf(buffer, length));
+            }
+        } finally {
+            deflater.end();
+        }
+
+        FSDataOutputStream out = sidecar.getFileSystem(conf).create(sidecar, true);
+        try {
+            out.write(MAGIC);
+            out.writeInt(points.size());
+            long windowPosition = MAGIC.length + 4 + (long) ENTRY_LENGTH * points.size();
+            for (int i = 0; i < points.size(); i++) {
+                AccessPoint point = points.get(i);
+                out.writeLong(point.bitOffset);
+                out.writeLong(point.uncompressedOffset);
+                out.writeBoolean(point.memberStart);
+                out.writeBoolean(point.lineStart);
+                out.writeInt(point.windowLength);
+                out.writeInt(windows.get(i).length);
+                out.writeLong(windowPosition);
+                windowPosition += windows.get(i).length;
+            }
+            for (byte[] window : windows) {
+                out.write(window);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Reads a gzip member header (RFC 1952).
+     *
+     * @return The header length in bytes.
+     */
+    public static int readHeader(InputStream in) throws IOException {
+        if (readByte(in) != 0x1f || readByte(in) != 0x8b || readByte(in) != 8) {
+            throw new IOException("Not a gzip member header.");
+        }
+        int flags = readByte(in);
+        for (int i = 0; i < 6; i++) {
+            // Modification time, extra flags, operating system.
+            readByte(in);
+        }
+        int length = 10;
+        if ((flags & FEXTRA) != 0) {
+            int extraLength = readByte(in) | (readByte(in) << 8);
+            for (int i = 0; i < extraLength; i++) {
+                readByte(in);
+            }
+            length += 2 + extraLength;
+        }
+        if ((flags & FNAME) != 0) {
+            do {
+                length++;
+            } while (readByte(in) != 0);
+        }
+        if ((flags & FCOMMENT) != 0) {
+            do {
+                length++;
+            } while (readByte(in) != 0);
+        }
+        if ((flags & FHCRC) != 0) {
+            readByte(in);
+            readByte(in);
+            length += 2;
+        }
+        return length;
+    }
+
+    private static int readByte(InputStream in) throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            throw new EOFException("Truncated gzip member header.");
+        }
+        return b;
+    }
+
+    /**
+     * Position at which decompression can start.
+     */
+    public static final class AccessPoint {
+        private final long bitOffset;
+        private final long uncompressedOffset;
+        private final boolean memberStart;
+        private final boolean lineStart;
+        private final int windowLength;
+        /**
+         * Window, or NULL if it has to be read from the position of its compressed form in the sidecar.
+         */
+        private final byte[] window;
+        private final long windowPosition;
+        private final int compressedLength;
+
+        public AccessPoint(long bitOffset, long uncompressedOffset, boolean memberStart, boolean lineStart,
+                           byte[] window) {
+            this.bitOffset = bitOffset;
+            this.uncompressedOffset = uncompressedOffset;
+            this.memberStart = memberStart;
+            this.lineStart = lineStart;
+            this.windowLength = window.length;
+            this.window = window;
+            this.windowPosition = -1;
+            this.compressedLength = 0;
+        }
+
+        private AccessPoint(long bitOffset, long uncompressedOffset, boolean memberStart, boolean lineStart,
+                            int windowLength, long windowPosition, int compressedLength) {
+            this.bitOffset = bitOffset;
+            this.uncompressedOffset = uncompressedOffset;
+            this.memberStart = memberStart;
+            this.lineStart = lineStart;
+            this.windowLength = windowLength;
+            this.window = null;
+            this.windowPosition = windowPosition;
+            this.compressedLength = compressedLength;
+        }
+
+        /**
+         * Offset in bits of the member header or deflate block in the compressed file.
+         */
+        public long getBitOffset() {
+            return bitOffset;
+        }
+
+        public long getUncompressedOffset() {
+            return uncompressedOffset;
+        }
+
+        /**
+         * Whether the access point is the start of a gzip member (which needs no window).
+         */
+        public boolean isMemberStart() {
+            return memberStart;
+        }
+
+        /**
+         * Whether a line starts at the access point, i.e. it is at the start of the file or follows a newline.
+         */
+        public boolean isLineStart() {
+            return lineStart;
+        }
+
+        /**
+         * Length of the window, which is zero at member starts; see {@link GzipIndex#readWindow} for the window itself.
+         */
+        public int getWindowLength() {
+            return windowLength;
+        }
+    }
+}
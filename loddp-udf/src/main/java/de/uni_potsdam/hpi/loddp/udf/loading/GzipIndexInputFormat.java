@@ -0,0 +1,245 @@
+package de.uni_potsdam.hpi.loddp.udf.loading;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.hadoop.util.LineReader;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads the lines of gzip files which have a {@link GzipIndex}, like TextInputFormat does for uncompressed files (keys
+ * are uncompressed line offsets). Files are split like any other file; each split starts decompressing at the first
+ * access point within its byte range, and reads all lines starting before the access point of the next split.
+ */
+public class GzipIndexInputFormat extends FileInputFormat<LongWritable, Text> {
+
+    @Override
+    protected boolean isSplitable(JobContext context, Path file) {
+        return true;
+    }
+
+    @Override
+    public RecordReader<LongWritable, Text> createRecordReader(InputSplit split, TaskAttemptContext context) {
+        return new GzipIndexRecordReader();
+    }
+
+    public static class GzipIndexRecordReader extends RecordReader<LongWritable, Text> {
+        private final LongWritable key = new LongWritable();
+        private final Text value = new Text();
+        private AccessPointInputStream in;
+        private LineReader reader;
+        /**
+         * Uncompressed offsets of the next line, of the first access point of the split, and of the first access point
+         * of the next split (or -1 for the last split).
+         */
+        private long position;
+        private long startOffset;
+        private long endOffset;
+
+        @Override
+        public void initialize(InputSplit genericSplit, TaskAttemptContext context) throws IOException {
+            FileSplit split = (FileSplit) genericSplit;
+            Path path = split.getPath();
+            // Only the access points are read here; the stream reads the window of its first access point.
+            GzipIndex index = GzipIndex.read(GzipIndex.getSidecar(path), context.getConfiguration());
+            List<GzipIndex.AccessPoint> points = index.getAccessPoints();
+            long start = split.getStart();
+            long end = start + split.getLength();
+            int first = 0;
+            while (first < points.size() && points.get(first).getBitOffset() / 8 < start) {
+                first++;
+            }
+            int next = first;
+            while (next < points.size() && points.get(next).getBitOffset() / 8 < end) {
+                next++;
+            }
+            endOffset = next < points.size() ? points.get(next).getUncompressedOffset() : -1;
+            if (first == next) {
+                // No access point within the split.
+                return;
+            }
+            GzipIndex.AccessPoint point = points.get(first);
+            in = new AccessPointInputStream(path.getFileSystem(context.getConfiguration()).open(path), index, first);
+            reader = new LineReader(in, context.getConfiguration());
+            startOffset = position = point.getUncompressedOffset();
+            if (!point.isLineStart()) {
+                // The partial line at the access point belongs to the previous split.
+                position += reader.readLine(new Text());
+            }
+        }
+
+        @Override
+        public boolean nextKeyValue() throws IOException {
+            if (reader == null || (endOffset >= 0 && position >= endOffset)) {
+                return false;
+            }
+            key.set(position);
+            int length = reader.readLine(value);
+            if (length == 0) {
+                return false;
+            }
+            position += length;
+            return true;
+        }
+
+        @Override
+        public LongWritable getCurrentKey() {
+            return key;
+        }
+
+        @Override
+        public Text getCurrentValue() {
+            return value;
+        }
+
+        @Override
+        public float getProgress() {
+            if (reader == null || endOffset < 0) {
+                return reader == null ? 1.0f : 0.0f;
+            }
+            return Math.min(1.0f, (float) (position - startOffset) / Math.max(1, endOffset - startOffset));
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (in != null) {
+                in.close();
+            }
+        }
+    }
+
+    /**
+     * Uncompressed data of a gzip file, starting at an access point.
+     *
+     * Access points within a member do not start at byte boundaries; as java.util.zip.Inflater cannot be primed with
+     * single bits (zlib's inflatePrime), the compressed input is shifted by the bit offset instead.
+     */
+    private static final class AccessPointInputStream extends InputStream {
+        private final FSDataInputStream in;
+        private final GzipIndex gzipIndex;
+        private final List<GzipIndex.AccessPoint> points;
+        private final Inflater inflater = new Inflater(true);
+        private final byte[] raw = new byte[1 << 16];
+        private final byte[] shifted = new byte[raw.length];
+        private final byte[] single = new byte[1];
+        private int point;
+        private int shift;
+        /**
+         * Last compressed byte read, whose upper bits have not been passed to the inflater yet.
+         */
+        private int carry;
+        private boolean eof = false;
+
+        private AccessPointInputStream(FSDataInputStream in, GzipIndex index, int point) throws IOException {
+            this.in = in;
+            this.gzipIndex = index;
+            this.points = index.getAccessPoints();
+            start(point);
+        }
+
+        private void start(int index) throws IOException {
+            GzipIndex.AccessPoint accessPoint = points.get(index);
+            point = index;
+            in.seek(accessPoint.getBitOffset() / 8);
+            inflater.reset();
+            shift = 0;
+            carry = -1;
+            if (accessPoint.isMemberStart()) {
+                GzipIndex.readHeader(in);
+                return;
+            }
+            shift = (int) (accessPoint.getBitOffset() % 8);
+            if (shift != 0) {
+                carry = in.read();
+            }
+            if (accessPoint.getWindowLength() > 0) {
+                inflater.setDictionary(gzipIndex.readWindow(accessPoint));
+            }
+        }
+
+        /**
+         * Continues with the next gzip member, if any.
+         */
+        private boolean nextMember() throws IOException {
+            for (int i = point + 1; i < points.size(); i++) {
+                if (points.get(i).isMemberStart()) {
+                    start(i);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void fill() throws IOException {
+            int n = in.read(raw, 0, raw.length);
+            if (n < 0) {
+                if (carry < 0) {
+                    throw new EOFException("Unexpected end of gzip file.");
+                }
+                shifted[0] = (byte) (carry >>> shift);
+                carry = -1;
+                inflater.setInput(shifted, 0, 1);
+            } else if (shift == 0) {
+                inflater.setInput(raw, 0, n);
+            } else {
+                for (int i = 0; i < n; i++) {
+                    shifted[i] = (byte) ((carry >>> shift) | (raw[i] << (8 - shift)));
+                    carry = raw[i] & 0xff;
+                }
+                inflater.setInput(shifted, 0, n);
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (!eof) {
+                if (inflater.finished()) {
+                    eof = !nextMember();
+                    continue;
+                }
+                if (inflater.needsInput()) {
+                    fill();
+                }
+                try {
+                    int n = inflater.inflate(b, off, len);
+                    if (n > 0) {
+                        return n;
+                    }
+                } catch (DataFormatException e) {
+                    throw new IOException("Corrupt gzip data or index.", e);
+                }
+                if (inflater.needsDictionary()) {
+                    throw new IOException("Missing window at gzip access point.");
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public void close() throws IOException {
+            inflater.end();
+            in.close();
+        }
+    }
+}
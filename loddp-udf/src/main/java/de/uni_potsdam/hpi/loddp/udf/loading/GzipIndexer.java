@@ -0,0 +1,350 @@
+package de.uni_potsdam.hpi.loddp.udf.loading;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Creates the {@link GzipIndex} of gzip files, e.g.
+ *
+ * <pre>
+ * ./gradlew :loddp-udf:gzipIndexer -PappArgs="hdfs:///data/dbpedia-1M.nq.gz"
+ * </pre>
+ *
+ * Arguments are the gzip files, optionally preceded by "--span" and the minimum uncompressed distance between access
+ * points in bytes (default {@link #DEFAULT_SPAN}).
+ *
+ * java.util.zip.Inflater does not report deflate block boundaries, so the indexer decompresses with its own (simple,
+ * and thus slower) inflate implementation, which follows zlib's "puff" reference decoder.
+ */
+public class GzipIndexer {
+
+    public static final int DEFAULT_SPAN = 4 << 20;
+
+    private static final int MAX_BITS = 15;
+    private static final int[] LENGTH_BASE = {
+        3, 4, 5, 6, 7, 8, 9, 10, 11, 13, 15, 17, 19, 23, 27, 31, 35, 43, 51, 59, 67, 83, 99, 115, 131, 163, 195, 227,
+        258
+    };
+    private static final int[] LENGTH_EXTRA = {
+        0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 1, 1, 2, 2, 2, 2, 3, 3, 3, 3, 4, 4, 4, 4, 5, 5, 5, 5, 0
+    };
+    private static final int[] DISTANCE_BASE = {
+        1, 2, 3, 4, 5, 7, 9, 13, 17, 25, 33, 49, 65, 97, 129, 193, 257, 385, 513, 769, 1025, 1537, 2049, 3073, 4097,
+        6145, 8193, 12289, 16385, 24577
+    };
+    private static final int[] DISTANCE_EXTRA = {
+        0, 0, 0, 0, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5, 6, 6, 7, 7, 8, 8, 9, 9, 10, 10, 11, 11, 12, 12, 13, 13
+    };
+    private static final int[] CODE_LENGTH_ORDER = {16, 17, 18, 0, 8, 7, 9, 6, 10, 5, 11, 4, 12, 3, 13, 2, 14, 1, 15};
+
+    private final BitInput in;
+    private final byte[] window = new byte[GzipIndex.WINDOW_SIZE];
+    /**
+     * Uncompressed bytes of the whole file, and of the current member.
+     */
+    private long out = 0;
+    private long memberOut = 0;
+    private int lastByte = -1;
+    private final Huffman fixedLengths = new Huffman(288);
+    private final Huffman fixedDistances = new Huffman(30);
+    private final Huffman lengths = new Huffman(286);
+    private final Huffman distances = new Huffman(30);
+
+    private GzipIndexer(InputStream in) {
+        this.in = new BitInput(in);
+        int[] codeLengths = new int[288];
+        for (int symbol = 0; symbol < 288; symbol++) {
+            codeLengths[symbol] = symbol < 144 ? 8 : symbol < 256 ? 9 : symbol < 280 ? 7 : 8;
+        }
+        fixedLengths.build(codeLengths, 0, 288);
+        for (int symbol = 0; symbol < 30; symbol++) {
+            codeLengths[symbol] = 5;
+        }
+        fixedDistances.build(codeLengths, 0, 30);
+    }
+
+    /**
+     * Decompresses the given gzip file and creates an access point at the start of each member, and at the first block
+     * boundary after each span of uncompressed bytes.
+     */
+    public static GzipIndex index(Path file, int span, Configuration conf) throws IOException {
+        InputStream stream = new BufferedInputStream(file.getFileSystem(conf).open(file), 1 << 16);
+        try {
+            return new GzipIndexer(stream).index(span);
+        } finally {
+            stream.close();
+        }
+    }
+
+    private GzipIndex index(int span) throws IOException {
+        List<GzipIndex.AccessPoint> points = new ArrayList<GzipIndex.AccessPoint>();
+        while (in.peek() == 0x1f) {
+            points.add(new GzipIndex.AccessPoint(in.getBitPosition(), out, true, isLineStart(), new byte[0]));
+            GzipIndex.readHeader(in);
+            memberOut = 0;
+            long lastPoint = out;
+            boolean last;
+            do {
+                if (out - lastPoint >= span) {
+                    points.add(new GzipIndex.AccessPoint(in.getBitPosition(), out, false, isLineStart(),
+                        getWindow()));
+                    lastPoint = out;
+                }
+                last = in.bits(1) == 1;
+                int type = in.bits(2);
+                if (type == 0) {
+                    stored();
+                } else if (type == 1) {
+                    codes(fixedLengths, fixedDistances);
+                } else if (type == 2) {
+                    dynamic();
+                } else {
+                    throw new IOException("Invalid deflate block type at bit " + in.getBitPosition() + ".");
+                }
+            } while (!last);
+            // Trailer: CRC32 and size; any data after the last member which is no gzip header is ignored (like gzip).
+            in.alignToByte();
+            for (int i = 0; i < 8; i++) {
+                in.bits(8);
+            }
+        }
+        return new GzipIndex(points);
+    }
+
+    private boolean isLineStart() {
+        return out == 0 || lastByte == '\n';
+    }
+
+    private byte[] getWindow() {
+        int length = (int) Math.min(memberOut, window.length);
+        byte[] copy = new byte[length];
+        int end = (int) (memberOut % window.length);
+        for (int i = 0; i < length; i++) {
+            copy[i] = window[(end - length + i + window.length) % window.length];
+        }
+        return copy;
+    }
+
+    private void output(int b) {
+        window[(int) (memberOut % window.length)] = (byte) b;
+        memberOut++;
+        out++;
+        lastByte = b;
+    }
+
+    private void stored() throws IOException {
+        in.alignToByte();
+        int length = in.bits(16);
+        if (in.bits(16) != (~length & 0xffff)) {
+            throw new IOException("Invalid stored block length at bit " + in.getBitPosition() + ".");
+        }
+        for (int i = 0; i < length; i++) {
+            output(in.bits(8));
+        }
+    }
+
+    private void codes(Huffman lengthCode, Huffman distanceCode) throws IOException {
+        int symbol;
+        while ((symbol = lengthCode.decode(in)) != 256) {
+            if (symbol < 256) {
+                output(symbol);
+                continue;
+            }
+            symbol -= 257;
+            if (symbol >= 29) {
+                throw new IOException("Invalid length symbol at bit " + in.getBitPosition() + ".");
+            }
+            int length = LENGTH_BASE[symbol] + in.bits(LENGTH_EXTRA[symbol]);
+            symbol = distanceCode.decode(in);
+            if (symbol >= 30) {
+                throw new IOException("Invalid distance symbol at bit " + in.getBitPosition() + ".");
+            }
+            int distance = DISTANCE_BASE[symbol] + in.bits(DISTANCE_EXTRA[symbol]);
+            if (distance > memberOut) {
+                throw new IOException("Distance too far back at bit " + in.getBitPosition() + ".");
+            }
+            for (int i = 0; i < length; i++) {
+                output(window[(int) ((memberOut - distance) % window.length)] & 0xff);
+            }
+        }
+    }
+
+    private void dynamic() throws IOException {
+        int lengthCount = in.bits(5) + 257;
+        int distanceCount = in.bits(5) + 1;
+        int codeLengthCount = in.bits(4) + 4;
+        int[] codeLengths = new int[lengthCount + distanceCount];
+        int[] codeLengthLengths = new int[19];
+        for (int i = 0; i < codeLengthCount; i++) {
+            codeLengthLengths[CODE_LENGTH_ORDER[i]] = in.bits(3);
+        }
+        Huffman codeLengthCode = new Huffman(19);
+        codeLengthCode.build(codeLengthLengths, 0, 19);
+        int i = 0;
+        while (i < lengthCount + distanceCount) {
+            int symbol = codeLengthCode.decode(in);
+            if (symbol < 16) {
+                codeLengths[i++] = symbol;
+                continue;
+            }
+            int value = 0;
+            int repeat;
+            if (symbol == 16) {
+                if (i == 0) {
+                    throw new IOException("Invalid code length repeat at bit " + in.getBitPosition() + ".");
+                }
+                value = codeLengths[i - 1];
+                repeat = 3 + in.bits(2);
+            } else if (symbol == 17) {
+                repeat = 3 + in.bits(3);
+            } else {
+                repeat = 11 + in.bits(7);
+            }
+            if (i + repeat > lengthCount + distanceCount) {
+                throw new IOException("Too many code lengths at bit " + in.getBitPosition() + ".");
+            }
+            while (repeat-- > 0) {
+                codeLengths[i++] = value;
+            }
+        }
+        lengths.build(codeLengths, 0, lengthCount);
+        distances.build(codeLengths, lengthCount, distanceCount);
+        codes(lengths, distances);
+    }
+
+    /**
+     * Canonical Huffman code, decoded bit by bit.
+     */
+    private static final class Huffman {
+        private final int[] count = new int[MAX_BITS + 1];
+        private final int[] symbols;
+
+        private Huffman(int size) {
+            symbols = new int[size];
+        }
+
+        private void build(int[] codeLengths, int start, int n) {
+            for (int length = 0; length <= MAX_BITS; length++) {
+                count[length] = 0;
+            }
+            for (int symbol = 0; symbol < n; symbol++) {
+                count[codeLengths[start + symbol]]++;
+            }
+            int[] offsets = new int[MAX_BITS + 1];
+            for (int length = 1; length < MAX_BITS; length++) {
+                offsets[length + 1] = offsets[length] + count[length];
+            }
+            for (int symbol = 0; symbol < n; symbol++) {
+                if (codeLengths[start + symbol] != 0) {
+                    symbols[offsets[codeLengths[start + symbol]]++] = symbol;
+                }
+            }
+        }
+
+        private int decode(BitInput in) throws IOException {
+            int code = 0;
+            int first = 0;
+            int index = 0;
+            for (int length = 1; length <= MAX_BITS; length++) {
+                code |= in.bits(1);
+                int n = count[length];
+                if (code - n < first) {
+                    return symbols[index + (code - first)];
+                }
+                index += n;
+                first += n;
+                first <<= 1;
+                code <<= 1;
+            }
+            throw new IOException("Invalid Huffman code at bit " + in.getBitPosition() + ".");
+        }
+    }
+
+    /**
+     * Reads bits (least significant first, as in deflate streams); as input stream, reads whole bytes after
+     * {@link #alignToByte}.
+     */
+    private static final class BitInput extends InputStream {
+        private final InputStream in;
+        private long bytes = 0;
+        private int buffer = 0;
+        private int count = 0;
+        private int peeked = -2;
+
+        private BitInput(InputStream in) {
+            this.in = in;
+        }
+
+        private int nextByte() throws IOException {
+            int b = peeked != -2 ? peeked : in.read();
+            peeked = -2;
+            if (b < 0) {
+                throw new EOFException("Unexpected end of gzip file.");
+            }
+            bytes++;
+            return b;
+        }
+
+        /**
+         * Returns the next byte without consuming it, or -1 at the end of the input; requires byte alignment.
+         */
+        private int peek() throws IOException {
+            if (peeked == -2) {
+                peeked = in.read();
+            }
+            return peeked;
+        }
+
+        private int bits(int n) throws IOException {
+            while (count < n) {
+                buffer |= nextByte() << count;
+                count += 8;
+            }
+            int value = buffer & ((1 << n) - 1);
+            buffer >>>= n;
+            count -= n;
+            return value;
+        }
+
+        private void alignToByte() {
+            buffer = 0;
+            count = 0;
+        }
+
+        private long getBitPosition() {
+            return bytes * 8 - count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return bits(8);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int span = DEFAULT_SPAN;
+        int first = 0;
+        if (args.length > 1 && args[0].equals("--span")) {
+            span = Integer.parseInt(args[1]);
+            first = 2;
+        }
+        if (args.length <= first) {
+            System.err.println("Usage: GzipIndexer [--span bytes] <file>...");
+            System.exit(1);
+        }
+        Configuration conf = new Configuration();
+        for (int i = first; i < args.length; i++) {
+            Path file = new Path(args[i]);
+            GzipIndex index = index(file, span, conf);
+            index.write(GzipIndex.getSidecar(file), conf);
+            System.out.println(String.format("%s: %d access points.", file, index.getAccessPoints().size()));
+        }
+    }
+}
@@ -0,0 +1,448 @@
+package de.uni_potsdam.hpi.loddp.udf.loading;
+
+import de.uni_potsdam.hpi.loddp.udf.util.UDFCounters;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.InputFormat;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
+import org.apache.pig.Expression;
+import org.apache.pig.LoadFunc;
+import org.apache.pig.LoadMetadata;
+import org.apache.pig.LoadPushDown;
+import org.apache.pig.ResourceSchema;
+import org.apache.pig.ResourceStatistics;
+import org.apache.pig.backend.hadoop.executionengine.mapReduceLayer.PigSplit;
+import org.apache.pig.data.Tuple;
+import org.apache.pig.data.TupleFactory;
+import org.apache.pig.impl.logicalLayer.FrontendException;
+import org.apache.pig.impl.util.ObjectSerializer;
+import org.apache.pig.impl.util.UDFContext;
+import org.apache.pig.impl.util.Utils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Loads N-Quads (or N-Triples) files; replacement for de.wbsg.loddesc.importer.QuadLoader which produces the same
+ * schema, but parses lines directly from the bytes read by the record reader (see {@link NQuadsParser}) instead of
+ * decoding each line to a string first and parsing it with LDIF, e.g.
+ *
+ * <pre>
+ * quads = LOAD 'data.nq' USING de.uni_potsdam.hpi.loddp.udf.loading.NQuadsLoader();
+ * </pre>
+ *
+ * The schema is (subject:chararray, predicate:chararray, object:tuple(ntype:int, value:chararray, dtlang:chararray),
+ * graph:chararray); with the constructor argument "true", the subject is a tuple like the object. Triples are assigned
+ * to the graph {@link #DEFAULT_GRAPH}. Malformed lines are skipped and counted as failures in {@link UDFCounters}.
+ *
+ * Output tuples are not reused, since Pig may hold on to them (e.g. in bags); the line buffer, the character buffer
+ * used for decoding and the strings of repeated terms are.
+ *
+ * Supports projection push-down: columns which are not required are neither decoded nor emitted. Pig itself only
+ * pushes down top-level columns; required fields of the node tuples can be pushed down with a separate call in which
+ * the node tuple columns have sub-fields (e.g. by the optimizer rule NestedProjectionPushDown). Such calls only
+ * restrict the fields of node tuples, not the top-level columns; fields which are not required are NULL.
+ *
+ * Also accepts allow-lists of values for the subject, predicate, object value, object datatype or language tag
+ * ("object.dtlang") and graph through {@link #setPartitionFilter}, as a conjunction of disjunctions of equalities (e.g.
+ * predicate == 'a' OR predicate == 'b'). Lines which do not match are rejected by comparing the bytes of their terms,
+ * before any tuple is created. Since {@link #getPartitionKeys} returns NULL, Pig never pushes down filters itself; the
+ * optimizer rule LoadFilterPushDown does.
+ *
+ * Besides (possibly compressed) text files, quad block files are loaded (see {@link QuadBlockFile}); unlike gzip
+ * compressed files, they can be split into several map tasks. So can gzip compressed files with a {@link GzipIndex}.
+ *
+ * Statistics (number of quads, uncompressed size, distinct values per column) are read from sidecar files written by
+ * {@link QuadStatistics}.
+ */
+public class NQuadsLoader extends LoadFunc implements LoadMetadata, LoadPushDown {
+
+    public static final String DEFAULT_GRAPH = "http://wbsg.de/default";
+    public static final String SCHEMA = "subject:chararray, predicate:chararray, " +
+        "object:tuple(ntype:int,value:chararray,dtlang:chararray), graph:chararray";
+    public static final String SCHEMA_SUBJECT_TUPLE = "subject:tuple(ntype:int,value:chararray,dtlang:chararray), " +
+        "predicate:chararray, object:tuple(ntype:int,value:chararray,dtlang:chararray), graph:chararray";
+    /**
+     * Data type label for failure counters of malformed lines.
+     */
+    public static final String FAILURE_TYPE = "nquads";
+    /**
+     * UDF context properties holding the pushed down projection: required top-level columns, and required fields of
+     * the node tuple in the column with the given index (property name suffix), each as comma-separated indexes.
+     */
+    public static final String PROJECTION_PROPERTY = "loddp.nquads.projection";
+    public static final String NESTED_PROJECTION_PROPERTY = "loddp.nquads.nested-projection.";
+    /**
+     * UDF context property holding the pushed down filter as serialized array of allow-lists, each consisting of the
+     * column name followed by the allowed values.
+     */
+    public static final String FILTER_PROPERTY = "loddp.nquads.filter";
+    /**
+     * UDF context property caching whether all files at a location (property name suffix) have a {@link GzipIndex},
+     * so that the file system is only asked once per location, and not again in the tasks.
+     */
+    public static final String GZIP_INDEXED_PROPERTY = "loddp.nquads.gzip-indexed.";
+    private static final int COLUMNS = 4;
+    private static final int NODE_FIELDS = 3;
+
+    protected static final Log log = LogFactory.getLog(NQuadsLoader.class);
+    private static final TupleFactory tupleFactory = TupleFactory.getInstance();
+    private static final Integer[] NODE_TYPES = {
+        NQuadsParser.NODE_LITERAL, NQuadsParser.NODE_TYPED_LITERAL, NQuadsParser.NODE_LANGUAGE_LITERAL,
+        NQuadsParser.NODE_BLANK, NQuadsParser.NODE_URI
+    };
+
+    private final UDFCounters counters = new UDFCounters(getClass());
+    private final NQuadsParser parser = new NQuadsParser();
+    private final boolean subjectTuple;
+    private RecordReader reader;
+    private String location;
+    private boolean gzipIndexed = false;
+    private String signature;
+    private long errors = 0;
+    /**
+     * Required top-level columns in output order, and required node tuple fields by column (NULL if all are required).
+     */
+    private int[] columns = {0, 1, 2, 3};
+    private boolean[][] nodeFields = new boolean[COLUMNS][];
+    /**
+     * Pushed down allow-lists: parser terms, allowed values as strings and UTF-8 encoded, and whether quads without a
+     * graph (i.e. in {@link #DEFAULT_GRAPH}) are allowed.
+     */
+    private int[] filterTerms = new int[0];
+    private String[][] filterValues;
+    private byte[][][] filterBytes;
+    private boolean[] filterDefaultGraph;
+
+    public NQuadsLoader() {
+        this("false");
+    }
+
+    /**
+     * @param subjectTuple "true" to load the subject as a node tuple.
+     */
+    public NQuadsLoader(String subjectTuple) {
+        this.subjectTuple = Boolean.parseBoolean(subjectTuple);
+    }
+
+    @Override
+    public void setLocation(String location, Job job) throws IOException {
+        this.location = location;
+        FileInputFormat.setInputPaths(job, location);
+        Properties properties = getProperties();
+        String indexed = properties.getProperty(GZIP_INDEXED_PROPERTY + location);
+        if (indexed == null) {
+            indexed = Boolean.toString(GzipIndex.isIndexed(getPathStrings(location), job.getConfiguration()));
+            properties.setProperty(GZIP_INDEXED_PROPERTY + location, indexed);
+        }
+        gzipIndexed = Boolean.parseBoolean(indexed);
+    }
+
+    /**
+     * Returns a {@link QuadBlockInputFormat} if all loaded paths are quad block files, a {@link GzipIndexInputFormat}
+     * if all are indexed gzip files, and a TextInputFormat otherwise.
+     */
+    @Override
+    public InputFormat getInputFormat() throws IOException {
+        if (location != null) {
+            boolean blockFiles = true;
+            for (String path : getPathStrings(location)) {
+                blockFiles &= path.endsWith(QuadBlockFile.EXTENSION);
+            }
+            if (blockFiles) {
+                return new QuadBlockInputFormat();
+            }
+            if (gzipIndexed) {
+                return new GzipIndexInputFormat();
+            }
+        }
+        return new TextInputFormat();
+    }
+
+    @Override
+    public void setUDFContextSignature(String signature) {
+        this.signature = signature;
+    }
+
+    private Properties getProperties() {
+        return UDFContext.getUDFContext().getUDFProperties(getClass(), new String[] {signature});
+    }
+
+    private static int[] parseIndexes(String indexes) {
+        if (indexes.isEmpty()) {
+            return new int[0];
+        }
+        String[] parts = indexes.split(",");
+        int[] result = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            result[i] = Integer.parseInt(parts[i]);
+        }
+        return result;
+    }
+
+    private static String formatIndexes(List<RequiredField> fields) {
+        StringBuilder indexes = new StringBuilder();
+        for (RequiredField field : fields) {
+            if (indexes.length() > 0) {
+                indexes.append(',');
+            }
+            indexes.append(field.getIndex());
+        }
+        return indexes.toString();
+    }
+
+    @Override
+    public void prepareToRead(RecordReader reader, PigSplit split) throws IOException {
+        this.reader = reader;
+        Properties properties = getProperties();
+        String projection = properties.getProperty(PROJECTION_PROPERTY);
+        if (projection != null) {
+            columns = parseIndexes(projection);
+        }
+        for (int column = 0; column < COLUMNS; column++) {
+            String nested = properties.getProperty(NESTED_PROJECTION_PROPERTY + column);
+            if (nested != null) {
+                nodeFields[column] = new boolean[NODE_FIELDS];
+                for (int field : parseIndexes(nested)) {
+                    nodeFields[column][field] = true;
+                }
+            }
+        }
+        String filter = properties.getProperty(FILTER_PROPERTY);
+        if (filter != null) {
+            String[][] allowLists = (String[][]) ObjectSerializer.deserialize(filter);
+            filterTerms = new int[allowLists.length];
+            filterValues = new String[allowLists.length][];
+            filterBytes = new byte[allowLists.length][][];
+            filterDefaultGraph = new boolean[allowLists.length];
+            for (int i = 0; i < allowLists.length; i++) {
+                filterTerms[i] = getFilterTerm(allowLists[i][0]);
+                filterValues[i] = Arrays.copyOfRange(allowLists[i], 1, allowLists[i].length);
+                filterDefaultGraph[i] = Arrays.asList(filterValues[i]).contains(DEFAULT_GRAPH);
+                filterBytes[i] = new byte[filterValues[i].length][];
+                for (int j = 0; j < filterValues[i].length; j++) {
+                    filterBytes[i][j] = filterValues[i][j].getBytes("UTF-8");
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the parser term for the given column name of a pushed down filter, or -1 if it is not supported.
+     */
+    private int getFilterTerm(String column) {
+        if (column.equals(subjectTuple ? "subject.value" : "subject")) {
+            return NQuadsParser.SUBJECT;
+        } else if (column.equals("predicate")) {
+            return NQuadsParser.PREDICATE;
+        } else if (column.equals("object.value")) {
+            return NQuadsParser.OBJECT;
+        } else if (column.equals("object.dtlang")) {
+            return NQuadsParser.DATATYPE;
+        } else if (column.equals("graph")) {
+            return NQuadsParser.GRAPH;
+        }
+        return -1;
+    }
+
+    /**
+     * Whether the last parsed quad passes all pushed down allow-lists.
+     */
+    private boolean accept() {
+        for (int i = 0; i < filterTerms.length; i++) {
+            int term = filterTerms[i];
+            if (term == NQuadsParser.GRAPH && !parser.hasGraph()) {
+                if (!filterDefaultGraph[i]) {
+                    return false;
+                }
+            } else if (!parser.valueIn(term, filterValues[i], filterBytes[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Tuple getNext() throws IOException {
+        try {
+            while (reader.nextKeyValue()) {
+                Text line = (Text) reader.getCurrentValue();
+                long start = counters.start();
+                try {
+                    int result = parser.parse(line.getBytes(), line.getLength());
+                    if (result == NQuadsParser.RESULT_QUAD && accept()) {
+                        return createTuple();
+                    }
+                    if (result == NQuadsParser.RESULT_INVALID) {
+                        errors++;
+                        counters.addFailures(FAILURE_TYPE, 1);
+                    }
+                } finally {
+                    counters.stop(start);
+                }
+            }
+        } catch (InterruptedException e) {
+            throw new IOException(e);
+        }
+        if (errors > 0) {
+            log.warn(String.format("Skipped %d malformed lines.", errors));
+            errors = 0;
+        }
+        return null;
+    }
+
+    private Tuple createTuple() throws IOException {
+        Tuple tuple = tupleFactory.newTuple(columns.length);
+        for (int i = 0; i < columns.length; i++) {
+            tuple.set(i, getColumn(columns[i]));
+        }
+        return tuple;
+    }
+
+    private Object getColumn(int column) throws IOException {
+        switch (column) {
+            case 0:
+                return subjectTuple ? createNodeTuple(NQuadsParser.SUBJECT, nodeFields[0])
+                    : parser.getValue(NQuadsParser.SUBJECT);
+            case 1:
+                return parser.getValue(NQuadsParser.PREDICATE);
+            case 2:
+                return createNodeTuple(NQuadsParser.OBJECT, nodeFields[2]);
+            default:
+                return parser.hasGraph() ? parser.getValue(NQuadsParser.GRAPH) : DEFAULT_GRAPH;
+        }
+    }
+
+    /**
+     * @param fields Required fields, or NULL if all are required.
+     */
+    private Tuple createNodeTuple(int term, boolean[] fields) throws IOException {
+        Tuple tuple = tupleFactory.newTuple(NODE_FIELDS);
+        if (fields == null || fields[0]) {
+            tuple.set(0, NODE_TYPES[parser.getNodeType(term)]);
+        }
+        if (fields == null || fields[1]) {
+            tuple.set(1, parser.getValue(term));
+        }
+        if ((fields == null || fields[2]) && term == NQuadsParser.OBJECT) {
+            tuple.set(2, parser.getDatatypeOrLanguage());
+        }
+        return tuple;
+    }
+
+    @Override
+    public List<OperatorSet> getFeatures() {
+        return Arrays.asList(OperatorSet.PROJECTION);
+    }
+
+    @Override
+    public RequiredFieldResponse pushProjection(RequiredFieldList requiredFieldList) throws FrontendException {
+        if (requiredFieldList == null || requiredFieldList.getFields() == null) {
+            return new RequiredFieldResponse(false);
+        }
+        List<RequiredField> fields = requiredFieldList.getFields();
+        Properties properties = getProperties();
+        boolean nested = false;
+        for (RequiredField field : fields) {
+            if (field.getSubFields() != null && (field.getIndex() == 2 || (field.getIndex() == 0 && subjectTuple))) {
+                properties.setProperty(NESTED_PROJECTION_PROPERTY + field.getIndex(),
+                    formatIndexes(field.getSubFields()));
+                nested = true;
+            }
+        }
+        if (!nested) {
+            properties.setProperty(PROJECTION_PROPERTY, formatIndexes(fields));
+        }
+        return new RequiredFieldResponse(true);
+    }
+
+    @Override
+    public ResourceSchema getSchema(String location, Job job) throws IOException {
+        return new ResourceSchema(Utils.getSchemaFromString(subjectTuple ? SCHEMA_SUBJECT_TUPLE : SCHEMA));
+    }
+
+    /**
+     * Returns the statistics from the sidecar statistics files of the loaded files (see {@link QuadStatistics}), or
+     * NULL if any of them is missing.
+     */
+    @Override
+    public ResourceStatistics getStatistics(String location, Job job) throws IOException {
+        QuadStatistics statistics = QuadStatistics.read(location, job.getConfiguration());
+        return statistics == null ? null : statistics.toResourceStatistics();
+    }
+
+    /**
+     * Returns NULL, so that Pig does not push down (and remove) filters itself; see {@link #setPartitionFilter}.
+     */
+    @Override
+    public String[] getPartitionKeys(String location, Job job) throws IOException {
+        return null;
+    }
+
+    /**
+     * Restricts the loaded quads to those matching the given filter, which has to be a conjunction of allow-lists, i.e.
+     * disjunctions of equalities between one of the supported columns and string constants.
+     *
+     * @throws IOException If the filter is not supported; no filter is set in this case.
+     */
+    @Override
+    public void setPartitionFilter(Expression partitionFilter) throws IOException {
+        List<String[]> allowLists = new ArrayList<String[]>();
+        collectAllowLists(partitionFilter, allowLists);
+        getProperties().setProperty(FILTER_PROPERTY,
+            ObjectSerializer.serialize(allowLists.toArray(new String[allowLists.size()][])));
+    }
+
+    private void collectAllowLists(Expression expression, List<String[]> allowLists) throws IOException {
+        if (expression.getOpType() == Expression.OpType.OP_AND) {
+            collectAllowLists(((Expression.BinaryExpression) expression).getLhs(), allowLists);
+            collectAllowLists(((Expression.BinaryExpression) expression).getRhs(), allowLists);
+            return;
+        }
+        List<String> allowList = new ArrayList<String>();
+        collectAllowedValues(expression, allowList);
+        if (getFilterTerm(allowList.get(0)) < 0) {
+            throw new IOException("Unsupported filter column: " + allowList.get(0));
+        }
+        allowLists.add(allowList.toArray(new String[allowList.size()]));
+    }
+
+    /**
+     * Adds the column name (if the list is still empty) and the allowed values of the given disjunction of equalities.
+     */
+    private static void collectAllowedValues(Expression expression, List<String> allowList) throws IOException {
+        if (expression.getOpType() == Expression.OpType.OP_OR) {
+            collectAllowedValues(((Expression.BinaryExpression) expression).getLhs(), allowList);
+            collectAllowedValues(((Expression.BinaryExpression) expression).getRhs(), allowList);
+            return;
+        }
+        if (expression.getOpType() == Expression.OpType.OP_EQ) {
+            Expression lhs = ((Expression.BinaryExpression) expression).getLhs();
+            Expression rhs = ((Expression.BinaryExpression) expression).getRhs();
+            if (lhs instanceof Expression.Const) {
+                Expression swap = lhs;
+                lhs = rhs;
+                rhs = swap;
+            }
+            if (lhs instanceof Expression.Column && rhs instanceof Expression.Const &&
+                ((Expression.Const) rhs).getValue() instanceof String) {
+                String column = ((Expression.Column) lhs).getName();
+                if (allowList.isEmpty()) {
+                    allowList.add(column);
+                }
+                if (allowList.get(0).equals(column)) {
+                    allowList.add((String) ((Expression.Const) rhs).getValue());
+                    return;
+                }
+            }
+        }
+        throw new IOException("Unsupported filter expression: " + expression);
+    }
+}
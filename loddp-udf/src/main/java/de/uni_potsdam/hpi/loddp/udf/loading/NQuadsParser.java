@@ -0,0 +1,435 @@
+package de.uni_potsdam.hpi.loddp.udf.loading;
+
+import de.uni_potsdam.hpi.loddp.udf.util.ByteStringCache;
+
+/**
+ * Tokenizer for N-Quads (and N-Triples) lines, working directly on the UTF-8 encoded bytes of a line.
+ *
+ * {@link #parse} only determines the boundaries and types of the terms of a line; strings are decoded on demand by
+ * {@link #getValue} and {@link #getDatatypeOrLanguage}, so fields which are not needed are never decoded. Decoding
+ * handles UTF-8 and the N-Triples escape sequences in a single pass over the bytes, into a reused character buffer.
+ * Predicates, datatypes and language tags are shared through separate {@link ByteStringCache}s. Graph names are not
+ * cached, since datasets often contain one graph per crawled document, which would fill the cache with graph names.
+ *
+ * Node types are numbered like the node types of LDIF (used by the previous loader), so that scripts can keep
+ * comparing the "ntype" field against the same numbers. Instances are not thread-safe.
+ */
+public class NQuadsParser {
+
+    public static final int SUBJECT = 0;
+    public static final int PREDICATE = 1;
+    public static final int OBJECT = 2;
+    public static final int GRAPH = 3;
+    /**
+     * Pseudo term for the datatype IRI or language tag of the object, see {@link #valueIn}.
+     */
+    public static final int DATATYPE = 4;
+
+    public static final int NODE_LITERAL = 0;
+    public static final int NODE_TYPED_LITERAL = 1;
+    public static final int NODE_LANGUAGE_LITERAL = 2;
+    public static final int NODE_BLANK = 3;
+    public static final int NODE_URI = 4;
+
+    /**
+     * Results of {@link #parse}.
+     */
+    public static final int RESULT_QUAD = 1;
+    public static final int RESULT_EMPTY = 0;
+    public static final int RESULT_INVALID = -1;
+
+    private static final char REPLACEMENT_CHARACTER = '\uFFFD';
+
+    private final int[] types = new int[4];
+    private final int[] starts = new int[4];
+    private final int[] ends = new int[4];
+    private final boolean[] escaped = new boolean[4];
+    private final ByteStringCache predicateCache = new ByteStringCache();
+    private final ByteStringCache datatypeCache = new ByteStringCache();
+    private byte[] bytes;
+    private boolean graph;
+    private int datatypeStart;
+    private int datatypeEnd;
+    private boolean datatypeEscaped;
+    private char[] chars = new char[256];
+    /**
+     * Number of characters in the buffer after {@link #unescape}.
+     */
+    private int decodedLength;
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+    }
+
+    private static int skipWhitespace(byte[] bytes, int i, int length) {
+        while (i < length && isWhitespace(bytes[i])) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isLanguageCharacter(byte b) {
+        return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z') || (b >= '0' && b <= '9') || b == '-';
+    }
+
+    private static int hexValue(byte b) {
+        if (b >= '0' && b <= '9') return b - '0';
+        if (b >= 'a' && b <= 'f') return b - 'a' + 10;
+        if (b >= 'A' && b <= 'F') return b - 'A' + 10;
+        return -1;
+    }
+
+    /**
+     * Parses a hexadecimal code point of the given number of digits, or returns -1.
+     */
+    private static int parseCodePoint(byte[] bytes, int start, int digits, int end) {
+        if (start + digits > end) {
+            return -1;
+        }
+        int codePoint = 0;
+        for (int i = start; i < start + digits; i++) {
+            int value = hexValue(bytes[i]);
+            if (value < 0) {
+                return -1;
+            }
+            codePoint = (codePoint << 4) | value;
+        }
+        return Character.isValidCodePoint(codePoint) ? codePoint : -1;
+    }
+
+    /**
+     * Tokenizes a line.
+     *
+     * @param bytes  UTF-8 encoded line; the array is referenced until the next call.
+     * @param length Length of the line within the array.
+     *
+     * @return {@link #RESULT_QUAD}, {@link #RESULT_EMPTY} for empty lines and comments, or {@link #RESULT_INVALID}.
+     */
+    public int parse(byte[] bytes, int length) {
+        this.bytes = bytes;
+        int i = skipWhitespace(bytes, 0, length);
+        if (i == length || bytes[i] == '#') {
+            return RESULT_EMPTY;
+        }
+
+        i = parseTerm(SUBJECT, i, length);
+        if (i < 0 || (types[SUBJECT] != NODE_URI && types[SUBJECT] != NODE_BLANK)) {
+            return RESULT_INVALID;
+        }
+        i = parseTerm(PREDICATE, skipWhitespace(bytes, i, length), length);
+        if (i < 0 || types[PREDICATE] != NODE_URI) {
+            return RESULT_INVALID;
+        }
+        i = parseTerm(OBJECT, skipWhitespace(bytes, i, length), length);
+        if (i < 0) {
+            return RESULT_INVALID;
+        }
+        i = skipWhitespace(bytes, i, length);
+        graph = i < length && bytes[i] != '.';
+        if (graph) {
+            i = parseTerm(GRAPH, i, length);
+            if (i < 0 || (types[GRAPH] != NODE_URI && types[GRAPH] != NODE_BLANK)) {
+                return RESULT_INVALID;
+            }
+            i = skipWhitespace(bytes, i, length);
+        }
+        if (i == length || bytes[i] != '.') {
+            return RESULT_INVALID;
+        }
+        i = skipWhitespace(bytes, i + 1, length);
+        return i == length || bytes[i] == '#' ? RESULT_QUAD : RESULT_INVALID;
+    }
+
+    /**
+     * Determines type and boundaries of the term starting at the given position.
+     *
+     * @return The position after the term, or -1 if it is invalid.
+     */
+    private int parseTerm(int term, int i, int length) {
+        if (i >= length) {
+            return -1;
+        }
+        int j;
+        boolean hasEscapes = false;
+        switch (bytes[i]) {
+            case '<':
+                for (j = i + 1; j < length && bytes[j] != '>'; j++) {
+                    hasEscapes |= bytes[j] == '\\';
+                }
+                if (j == length) {
+                    return -1;
+                }
+                setTerm(term, NODE_URI, i + 1, j, hasEscapes);
+                return j + 1;
+            case '_':
+                if (i + 1 == length || bytes[i + 1] != ':') {
+                    return -1;
+                }
+                j = i + 2;
+                while (j < length && !isWhitespace(bytes[j]) && bytes[j] != '<' && bytes[j] != '"') {
+                    j++;
+                }
+                // Labels may contain, but not end with a dot; a trailing dot terminates the statement.
+                if (bytes[j - 1] == '.') {
+                    j--;
+                }
+                if (j == i + 2) {
+                    return -1;
+                }
+                // The value of blank nodes is their N-Triples representation, including the "_:" prefix.
+                setTerm(term, NODE_BLANK, i, j, false);
+                return j;
+            case '"':
+                for (j = i + 1; j < length && bytes[j] != '"'; j++) {
+                    if (bytes[j] == '\\') {
+                        hasEscapes = true;
+                        j++;
+                    }
+                }
+                if (j >= length) {
+                    return -1;
+                }
+                int end = j++;
+                if (j < length && bytes[j] == '@') {
+                    int k = j + 1;
+                    while (k < length && isLanguageCharacter(bytes[k])) {
+                        k++;
+                    }
+                    if (k == j + 1) {
+                        return -1;
+                    }
+                    setDatatype(j + 1, k, false);
+                    setTerm(term, NODE_LANGUAGE_LITERAL, i + 1, end, hasEscapes);
+                    return k;
+                }
+                if (j + 2 < length && bytes[j] == '^' && bytes[j + 1] == '^' && bytes[j + 2] == '<') {
+                    boolean datatypeHasEscapes = false;
+                    int k;
+                    for (k = j + 3; k < length && bytes[k] != '>'; k++) {
+                        datatypeHasEscapes |= bytes[k] == '\\';
+                    }
+                    if (k == length) {
+                        return -1;
+                    }
+                    setDatatype(j + 3, k, datatypeHasEscapes);
+                    setTerm(term, NODE_TYPED_LITERAL, i + 1, end, hasEscapes);
+                    return k + 1;
+                }
+                setDatatype(-1, -1, false);
+                setTerm(term, NODE_LITERAL, i + 1, end, hasEscapes);
+                return j;
+            default:
+                return -1;
+        }
+    }
+
+    private void setTerm(int term, int type, int start, int end, boolean hasEscapes) {
+        types[term] = type;
+        starts[term] = start;
+        ends[term] = end;
+        escaped[term] = hasEscapes;
+    }
+
+    private void setDatatype(int start, int end, boolean hasEscapes) {
+        datatypeStart = start;
+        datatypeEnd = end;
+        datatypeEscaped = hasEscapes;
+    }
+
+    /**
+     * Whether the last parsed quad has a graph name; otherwise it is a triple.
+     */
+    public boolean hasGraph() {
+        return graph;
+    }
+
+    /**
+     * Returns the node type of a term of the last parsed quad.
+     */
+    public int getNodeType(int term) {
+        return types[term];
+    }
+
+    /**
+     * Returns the value of a term of the last parsed quad, i.e. the IRI, the N-Triples representation of a blank node,
+     * or the lexical form of a literal.
+     */
+    public String getValue(int term) {
+        if (term == PREDICATE) {
+            return decodeCached(predicateCache, starts[term], ends[term], escaped[term]);
+        }
+        return decode(starts[term], ends[term], escaped[term]);
+    }
+
+    /**
+     * Returns the datatype IRI or language tag of the object of the last parsed quad, or NULL if it is a plain literal
+     * or not a literal.
+     */
+    public String getDatatypeOrLanguage() {
+        int type = types[OBJECT];
+        if (type != NODE_TYPED_LITERAL && type != NODE_LANGUAGE_LITERAL) {
+            return null;
+        }
+        return decodeCached(datatypeCache, datatypeStart, datatypeEnd, datatypeEscaped);
+    }
+
+    /**
+     * Whether the value of a term of the last parsed quad (or the datatype IRI or language tag of the object, for
+     * {@link #DATATYPE}) is one of the given values, which are passed both as strings and UTF-8 encoded. Unless the
+     * term contains escape sequences, the encoded values are compared to the bytes of the term without decoding it.
+     */
+    public boolean valueIn(int term, String[] values, byte[][] encodedValues) {
+        int start;
+        int end;
+        boolean hasEscapes;
+        if (term == DATATYPE) {
+            if (types[OBJECT] != NODE_TYPED_LITERAL && types[OBJECT] != NODE_LANGUAGE_LITERAL) {
+                return false;
+            }
+            start = datatypeStart;
+            end = datatypeEnd;
+            hasEscapes = datatypeEscaped;
+        } else {
+            start = starts[term];
+            end = ends[term];
+            hasEscapes = escaped[term];
+        }
+        if (hasEscapes) {
+            String value = term == DATATYPE ? getDatatypeOrLanguage() : getValue(term);
+            for (String candidate : values) {
+                if (candidate.equals(value)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        for (byte[] candidate : encodedValues) {
+            if (regionEquals(candidate, start, end)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean regionEquals(byte[] value, int start, int end) {
+        if (value.length != end - start) {
+            return false;
+        }
+        for (int i = 0; i < value.length; i++) {
+            if (value[i] != bytes[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String decodeCached(ByteStringCache cache, int start, int end, boolean hasEscapes) {
+        String value = cache.get(bytes, start, end);
+        if (value == null) {
+            value = decode(start, end, hasEscapes);
+            cache.put(bytes, start, end, value);
+        }
+        return value;
+    }
+
+    /**
+     * Decodes UTF-8 (malformed sequences are replaced by U+FFFD) and, if there are any, escape sequences.
+     */
+    private String decode(int start, int end, boolean hasEscapes) {
+        // Neither UTF-8 nor escape sequences produce more characters than bytes.
+        if (chars.length < end - start) {
+            chars = new char[Math.max(end - start, chars.length * 2)];
+        }
+        int n = 0;
+        int i = start;
+        while (i < end) {
+            int b = bytes[i];
+            if (b >= 0) {
+                if (b == '\\' && hasEscapes && i + 1 < end) {
+                    i = unescape(i, end, n);
+                    n = decodedLength;
+                } else {
+                    chars[n++] = (char) b;
+                    i++;
+                }
+            } else if ((b & 0xE0) == 0xC0 && i + 1 < end && isContinuation(bytes[i + 1])) {
+                chars[n++] = (char) (((b & 0x1F) << 6) | (bytes[i + 1] & 0x3F));
+                i += 2;
+            } else if ((b & 0xF0) == 0xE0 && i + 2 < end && isContinuation(bytes[i + 1])
+                && isContinuation(bytes[i + 2])) {
+                chars[n++] = (char) (((b & 0x0F) << 12) | ((bytes[i + 1] & 0x3F) << 6) | (bytes[i + 2] & 0x3F));
+                i += 3;
+            } else if ((b & 0xF8) == 0xF0 && i + 3 < end && isContinuation(bytes[i + 1])
+                && isContinuation(bytes[i + 2]) && isContinuation(bytes[i + 3])) {
+                int codePoint = ((b & 0x07) << 18) | ((bytes[i + 1] & 0x3F) << 12) | ((bytes[i + 2] & 0x3F) << 6)
+                    | (bytes[i + 3] & 0x3F);
+                if (Character.isValidCodePoint(codePoint)) {
+                    n += Character.toChars(codePoint, chars, n);
+                } else {
+                    chars[n++] = REPLACEMENT_CHARACTER;
+                }
+                i += 4;
+            } else {
+                chars[n++] = REPLACEMENT_CHARACTER;
+                i++;
+            }
+        }
+        return new String(chars, 0, n);
+    }
+
+    private static boolean isContinuation(byte b) {
+        return (b & 0xC0) == 0x80;
+    }
+
+    /**
+     * Decodes the escape sequence at position i into the character buffer at position n; unknown escape sequences are
+     * kept as they are.
+     *
+     * @return The position after the escape sequence; the new buffer length is stored in {@link #decodedLength}.
+     */
+    private int unescape(int i, int end, int n) {
+        char c;
+        switch (bytes[i + 1]) {
+            case 't':
+                c = '\t';
+                break;
+            case 'b':
+                c = '\b';
+                break;
+            case 'n':
+                c = '\n';
+                break;
+            case 'r':
+                c = '\r';
+                break;
+            case 'f':
+                c = '\f';
+                break;
+            case '"':
+                c = '"';
+                break;
+            case '\'':
+                c = '\'';
+                break;
+            case '\\':
+                c = '\\';
+                break;
+            case 'u':
+            case 'U':
+                int digits = bytes[i + 1] == 'u' ? 4 : 8;
+                int codePoint = parseCodePoint(bytes, i + 2, digits, end);
+                if (codePoint >= 0) {
+                    decodedLength = n + Character.toChars(codePoint, chars, n);
+                    return i + 2 + digits;
+                }
+                // fall through
+            default:
+                chars[n] = '\\';
+                decodedLength = n + 1;
+                return i + 1;
+        }
+        chars[n] = c;
+        decodedLength = n + 1;
+        return i + 2;
+    }
+}
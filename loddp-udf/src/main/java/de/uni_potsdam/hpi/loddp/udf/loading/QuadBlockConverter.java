@@ -0,0 +1,84 @@
+package de.uni_potsdam.hpi.loddp.udf.loading;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.util.LineReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Re-encodes (e.g. gzip compressed) N-Quads files as {@link QuadBlockFile quad block files}, which can be split into
+ * several map tasks, e.g.
+ *
+ * <pre>
+ * ./gradlew :loddp-udf:quadBlockConverter -PappArgs="hdfs:///data/dbpedia-1M.nq.gz"
+ * </pre>
+ *
+ * Arguments are the input file, optionally the output file (default: the input file name with the extension
+ * {@link QuadBlockFile#EXTENSION} instead of ".nq.gz", e.g. "dbpedia-1M.nqb") and the uncompressed block size in bytes.
+ * The sidecar statistics file of the input (see {@link QuadStatistics}) is copied as well.
+ */
+public class QuadBlockConverter {
+
+    /**
+     * Returns the default name of the quad block file for the given input file.
+     */
+    public static Path getOutputPath(Path input) {
+        String name = input.getName();
+        if (name.endsWith(".gz") || name.endsWith(".bz2")) {
+            name = name.substring(0, name.lastIndexOf('.'));
+        }
+        if (name.endsWith(".nq") || name.endsWith(".nt")) {
+            name = name.substring(0, name.lastIndexOf('.'));
+        }
+        return new Path(input.getParent(), name + QuadBlockFile.EXTENSION);
+    }
+
+    /**
+     * @return The number of written blocks.
+     */
+    public static int convert(Path input, Path output, int blockSize, Configuration conf) throws IOException {
+        FileSystem inputFs = input.getFileSystem(conf);
+        InputStream in = inputFs.open(input);
+        CompressionCodec codec = new CompressionCodecFactory(conf).getCodec(input);
+        if (codec != null) {
+            in = codec.createInputStream(in);
+        }
+        FileSystem outputFs = output.getFileSystem(conf);
+        QuadBlockFile.Writer writer = new QuadBlockFile.Writer(outputFs.create(output, true), blockSize);
+        LineReader reader = new LineReader(in, conf);
+        Text line = new Text();
+        try {
+            while (reader.readLine(line) > 0) {
+                writer.write(line.getBytes(), 0, line.getLength());
+            }
+        } finally {
+            reader.close();
+            writer.close();
+        }
+
+        Path statistics = QuadStatistics.getSidecar(input);
+        if (inputFs.exists(statistics)) {
+            FileUtil.copy(inputFs, statistics, outputFs, QuadStatistics.getSidecar(output), false, true, conf);
+        }
+        return writer.getBlockCount();
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: QuadBlockConverter <input> [output] [block-size]");
+            System.exit(1);
+        }
+        Path input = new Path(args[0]);
+        Path output = args.length > 1 ? new Path(args[1]) : getOutputPath(input);
+        int blockSize = args.length > 2 ? Integer.parseInt(args[2]) : QuadBlockFile.DEFAULT_BLOCK_SIZE;
+        int blocks = convert(input, output, blockSize, new Configuration());
+        System.out.println(String.format("%s: wrote %d blocks to %s.", input, blocks, output));
+    }
+}
@@ -0,0 +1,205 @@
+package de.uni_potsdam.hpi.loddp.udf.loading;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Splittable container for N-Quads files: lines are grouped into blocks which are compressed independently (deflate),
+ * and an index of block offsets at the end of the file allows to start reading at any block. Files are written by
+ * {@link QuadBlockConverter} and read through {@link QuadBlockInputFormat}.
+ *
+ * Layout: the magic bytes {@link #MAGIC}; the blocks, each consisting of its uncompressed and compressed length (ints)
+ * and the compressed lines (every line terminated by a newline); the block offsets (longs); and a trailer with the
+ * offset of the index (long), the number of blocks (int) and the magic bytes again.
+ */
+public final class QuadBlockFile {
+
+    public static final String EXTENSION = ".nqb";
+    public static final byte[] MAGIC = {'N', 'Q', 'B', '1'};
+    public static final int DEFAULT_BLOCK_SIZE = 4 << 20;
+    private static final int TRAILER_LENGTH = 8 + 4 + MAGIC.length;
+
+    private QuadBlockFile() {
+    }
+
+    /**
+     * Reads the block offsets from the index of a file.
+     */
+    public static long[] readIndex(FSDataInputStream in, long fileLength) throws IOException {
+        if (fileLength < MAGIC.length + TRAILER_LENGTH) {
+            throw new IOException("Not a quad block file (too short).");
+        }
+        in.seek(fileLength - TRAILER_LENGTH);
+        long indexOffset = in.readLong();
+        int blocks = in.readInt();
+        byte[] magic = new byte[MAGIC.length];
+        in.readFully(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Not a quad block file (invalid trailer).");
+        }
+        long[] offsets = new long[blocks];
+        in.seek(indexOffset);
+        for (int i = 0; i < blocks; i++) {
+            offsets[i] = in.readLong();
+        }
+        return offsets;
+    }
+
+    /**
+     * Reads and decompresses a block.
+     *
+     * @param buffer Buffer for the uncompressed block; a larger one is allocated if it is too small.
+     *
+     * @return The buffer holding the block.
+     */
+    public static Block readBlock(FSDataInputStream in, long offset, Inflater inflater, Block buffer)
+        throws IOException {
+        in.seek(offset);
+        int length = in.readInt();
+        int compressedLength = in.readInt();
+        Block block = buffer;
+        if (block == null || block.bytes.length < length || block.compressed.length < compressedLength) {
+            block = new Block(Math.max(length, block == null ? 0 : block.bytes.length),
+                Math.max(compressedLength, block == null ? 0 : block.compressed.length));
+        }
+        in.readFully(block.compressed, 0, compressedLength);
+        inflater.reset();
+        inflater.setInput(block.compressed, 0, compressedLength);
+        try {
+            int n = 0;
+            while (n < length && !inflater.finished()) {
+                int inflated = inflater.inflate(block.bytes, n, length - n);
+                if (inflated == 0 && inflater.needsInput()) {
+                    break;
+                }
+                n += inflated;
+            }
+            if (n != length) {
+                throw new IOException("Truncated block at offset " + offset + ".");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt block at offset " + offset + ".", e);
+        }
+        block.length = length;
+        return block;
+    }
+
+    /**
+     * Uncompressed block contents.
+     */
+    public static final class Block {
+        private final byte[] bytes;
+        private final byte[] compressed;
+        private int length;
+
+        private Block(int size, int compressedSize) {
+            bytes = new byte[size];
+            compressed = new byte[compressedSize];
+        }
+
+        public byte[] getBytes() {
+            return bytes;
+        }
+
+        public int getLength() {
+            return length;
+        }
+    }
+
+    /**
+     * Writes lines into a quad block file; lines are never split across blocks.
+     */
+    public static final class Writer {
+        private final FSDataOutputStream out;
+        private final int blockSize;
+        private final Deflater deflater = new Deflater();
+        private byte[] buffer;
+        private byte[] compressed;
+        private int length = 0;
+        private long[] offsets = new long[64];
+        private int blocks = 0;
+
+        public Writer(FSDataOutputStream out, int blockSize) throws IOException {
+            this.out = out;
+            this.blockSize = blockSize;
+            this.buffer = new byte[blockSize];
+            out.write(MAGIC);
+        }
+
+        /**
+         * Appends a line (without line terminator).
+         */
+        public void write(byte[] bytes, int start, int lineLength) throws IOException {
+            write(bytes, start, lineLength, true);
+        }
+
+        /**
+         * Appends a line (without line terminator); unless it starts a new group, the line is written into the block
+         * of the previous line, so that groups of lines (e.g. all quads of a subject) are never split across blocks.
+         * Blocks containing large groups may thus exceed the block size.
+         */
+        public void write(byte[] bytes, int start, int lineLength, boolean newGroup) throws IOException {
+            if (newGroup && length > 0 && length + lineLength + 1 > blockSize) {
+                flushBlock();
+            }
+            if (buffer.length < length + lineLength + 1) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + lineLength + 1));
+            }
+            System.arraycopy(bytes, start, buffer, length, lineLength);
+            length += lineLength;
+            buffer[length++] = '\n';
+        }
+
+        private void flushBlock() throws IOException {
+            if (compressed == null || compressed.length < length + length / 100 + 64) {
+                compressed = new byte[length + length / 100 + 64];
+            }
+            deflater.reset();
+            deflater.setInput(buffer, 0, length);
+            deflater.finish();
+            int compressedLength = 0;
+            while (!deflater.finished()) {
+                compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+                if (compressedLength == compressed.length) {
+                    compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                }
+            }
+            if (blocks == offsets.length) {
+                offsets = Arrays.copyOf(offsets, blocks * 2);
+            }
+            offsets[blocks++] = out.getPos();
+            out.writeInt(length);
+            out.writeInt(compressedLength);
+            out.write(compressed, 0, compressedLength);
+            length = 0;
+        }
+
+        public int getBlockCount() {
+            return blocks;
+        }
+
+        /**
+         * Writes the last block and the index, and closes the output stream.
+         */
+        public void close() throws IOException {
+            if (length > 0) {
+                flushBlock();
+            }
+            long indexOffset = out.getPos();
+            for (int i = 0; i < blocks; i++) {
+                out.writeLong(offsets[i]);
+            }
+            out.writeLong(indexOffset);
+            out.writeInt(blocks);
+            out.write(MAGIC);
+            out.close();
+            deflater.end();
+        }
+    }
+}
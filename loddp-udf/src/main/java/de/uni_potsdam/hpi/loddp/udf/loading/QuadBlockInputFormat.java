@@ -0,0 +1,117 @@
+package de.uni_potsdam.hpi.loddp.udf.loading;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+
+import java.io.IOException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads the lines of {@link QuadBlockFile quad block files}, like TextInputFormat does for text files (keys are block
+ * offsets instead of line offsets). Files are split like any other file; each split reads the blocks starting within
+ * its byte range.
+ */
+public class QuadBlockInputFormat extends FileInputFormat<LongWritable, Text> {
+
+    @Override
+    protected boolean isSplitable(JobContext context, Path file) {
+        return true;
+    }
+
+    @Override
+    public RecordReader<LongWritable, Text> createRecordReader(InputSplit split, TaskAttemptContext context) {
+        return new QuadBlockRecordReader();
+    }
+
+    public static class QuadBlockRecordReader extends RecordReader<LongWritable, Text> {
+        private final Inflater inflater = new Inflater();
+        private final LongWritable key = new LongWritable();
+        private final Text value = new Text();
+        private FSDataInputStream in;
+        private long[] offsets;
+        /**
+         * Index of the next block to read, and of the first block after the split.
+         */
+        private int nextBlock;
+        private int endBlock;
+        private int firstBlock;
+        private QuadBlockFile.Block block;
+        private int position = 0;
+
+        @Override
+        public void initialize(InputSplit genericSplit, TaskAttemptContext context) throws IOException {
+            FileSplit split = (FileSplit) genericSplit;
+            Path path = split.getPath();
+            FileSystem fs = path.getFileSystem(context.getConfiguration());
+            in = fs.open(path);
+            offsets = QuadBlockFile.readIndex(in, fs.getFileStatus(path).getLen());
+            long start = split.getStart();
+            long end = start + split.getLength();
+            firstBlock = 0;
+            while (firstBlock < offsets.length && offsets[firstBlock] < start) {
+                firstBlock++;
+            }
+            endBlock = firstBlock;
+            while (endBlock < offsets.length && offsets[endBlock] < end) {
+                endBlock++;
+            }
+            nextBlock = firstBlock;
+        }
+
+        @Override
+        public boolean nextKeyValue() throws IOException {
+            while (block == null || position >= block.getLength()) {
+                if (nextBlock >= endBlock) {
+                    return false;
+                }
+                key.set(offsets[nextBlock]);
+                block = QuadBlockFile.readBlock(in, offsets[nextBlock], inflater, block);
+                nextBlock++;
+                position = 0;
+            }
+            byte[] bytes = block.getBytes();
+            int end = position;
+            while (end < block.getLength() && bytes[end] != '\n') {
+                end++;
+            }
+            value.set(bytes, position, end - position);
+            position = end + 1;
+            return true;
+        }
+
+        @Override
+        public LongWritable getCurrentKey() {
+            return key;
+        }
+
+        @Override
+        public Text getCurrentValue() {
+            return value;
+        }
+
+        @Override
+        public float getProgress() {
+            if (endBlock == firstBlock) {
+                return 1.0f;
+            }
+            return (float) (nextBlock - firstBlock) / (endBlock - firstBlock);
+        }
+
+        @Override
+        public void close() throws IOException {
+            inflater.end();
+            if (in != null) {
+                in.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package de.uni_potsdam.hpi.loddp.udf.loading;
+
+import de.uni_potsdam.hpi.loddp.udf.util.HyperLogLog;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.util.LineReader;
+import org.apache.pig.LoadFunc;
+import org.apache.pig.ResourceStatistics;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.*;
+
+/**
+ * Statistics of a quad dataset, stored in a sidecar file next to it (the dataset file name plus {@link #SUFFIX}, e.g.
+ * "dbpedia-1M.nq.gz.stats"), from which {@link NQuadsLoader} reports {@link ResourceStatistics} to Pig.
+ *
+ * Sidecar files are properties files with the number of quads ("records"), the uncompressed size in bytes ("bytes"),
+ * the estimated number of distinct values per column ("subject.distinct", ...) and the most common predicates with
+ * their number of quads ("predicate.common.0" = "count IRI", ...). They are written by running this class on the
+ * datasets, e.g.
+ *
+ * <pre>
+ * ./gradlew :loddp-udf:quadStatistics -PappArgs="hdfs:///data/dbpedia-1M.nq.gz hdfs:///data/freebase-1M.nq.gz"
+ * </pre>
+ */
+public class QuadStatistics {
+
+    public static final String SUFFIX = ".stats";
+    /**
+     * Number of most common predicates which are stored.
+     */
+    public static final int MOST_COMMON_PREDICATES = 100;
+    /**
+     * Predicates are only counted up to this number of distinct predicates.
+     */
+    private static final int MAX_PREDICATES = 100000;
+    private static final String[] COLUMNS = {"subject", "predicate", "object", "graph"};
+
+    protected static final Log log = LogFactory.getLog(QuadStatistics.class);
+
+    private long records = 0;
+    private long bytes = 0;
+    private final long[] distinct = new long[COLUMNS.length];
+    /**
+     * Number of quads by predicate, or NULL if there are too many predicates.
+     */
+    private Map<String, Long> predicates = new HashMap<String, Long>();
+
+    /**
+     * Returns the sidecar statistics file of the given dataset file.
+     */
+    public static Path getSidecar(Path file) {
+        return new Path(file.getParent(), file.getName() + SUFFIX);
+    }
+
+    /**
+     * Reads and combines the statistics of all files at the given load location (which may be a comma-separated list of
+     * paths and globs).
+     *
+     * @return NULL if there is no file or any file does not have a sidecar statistics file.
+     */
+    public static QuadStatistics read(String location, Configuration conf) throws IOException {
+        QuadStatistics statistics = null;
+        for (String pathString : LoadFunc.getPathStrings(location)) {
+            Path path = new Path(pathString);
+            FileSystem fs = path.getFileSystem(conf);
+            FileStatus[] files = fs.globStatus(path);
+            if (files == null || files.length == 0) {
+                return null;
+            }
+            for (FileStatus file : files) {
+                if (file.getPath().getName().endsWith(SUFFIX)) {
+                    // Matched by a glob like "data/*".
+                    continue;
+                }
+                Path sidecar = getSidecar(file.getPath());
+                if (!fs.exists(sidecar)) {
+                    log.debug("No statistics file for " + file.getPath());
+                    return null;
+                }
+                QuadStatistics fileStatistics = read(fs, sidecar);
+                if (statistics == null) {
+                    statistics = fileStatistics;
+                } else {
+                    statistics.merge(fileStatistics);
+                }
+            }
+        }
+        return statistics;
+    }
+
+    private static QuadStatistics read(FileSystem fs, Path sidecar) throws IOException {
+        Properties properties = new Properties();
+        InputStream in = fs.open(sidecar);
+        try {
+            properties.load(in);
+        } finally {
+            in.close();
+        }
+        QuadStatistics statistics = new QuadStatistics();
+        statistics.records = Long.parseLong(properties.getProperty("records", "0"));
+        statistics.bytes = Long.parseLong(properties.getProperty("bytes", "0"));
+        for (int column = 0; column < COLUMNS.length; column++) {
+            statistics.distinct[column] = Long.parseLong(properties.getProperty(COLUMNS[column] + ".distinct", "-1"));
+        }
+        String predicate;
+        for (int i = 0; (predicate = properties.getProperty("predicate.common." + i)) != null; i++) {
+            int separator = predicate.indexOf(' ');
+            statistics.predicates.put(predicate.substring(separator + 1),
+                Long.parseLong(predicate.substring(0, separator)));
+        }
+        return statistics;
+    }
+
+    /**
+     * Scans the given dataset file (compressed files are decompressed based on their extension).
+     */
+    public static QuadStatistics collect(Path file, Configuration conf) throws IOException {
+        FileSystem fs = file.getFileSystem(conf);
+        InputStream in = fs.open(file);
+        CompressionCodec codec = new CompressionCodecFactory(conf).getCodec(file);
+        if (codec != null) {
+            in = codec.createInputStream(in);
+        }
+
+        QuadStatistics statistics = new QuadStatistics();
+        HyperLogLog[] counters = new HyperLogLog[COLUMNS.length];
+        for (int column = 0; column < COLUMNS.length; column++) {
+            counters[column] = new HyperLogLog();
+        }
+        NQuadsParser parser = new NQuadsParser();
+        LineReader reader = new LineReader(in, conf);
+        Text line = new Text();
+        try {
+            int length;
+            while ((length = reader.readLine(line)) > 0) {
+                statistics.bytes += length;
+                if (parser.parse(line.getBytes(), line.getLength()) != NQuadsParser.RESULT_QUAD) {
+                    continue;
+                }
+                statistics.records++;
+                String predicate = parser.getValue(NQuadsParser.PREDICATE);
+                counters[0].offer(parser.getValue(NQuadsParser.SUBJECT));
+                counters[1].offer(predicate);
+                counters[2].offer(parser.getValue(NQuadsParser.OBJECT));
+                counters[3].offer(parser.hasGraph() ? parser.getValue(NQuadsParser.GRAPH) : NQuadsLoader.DEFAULT_GRAPH);
+                statistics.countPredicate(predicate);
+            }
+        } finally {
+            reader.close();
+        }
+        for (int column = 0; column < COLUMNS.length; column++) {
+            statistics.distinct[column] = counters[column].cardinality();
+        }
+        return statistics;
+    }
+
+    private void countPredicate(String predicate) {
+        if (predicates == null) {
+            return;
+        }
+        Long count = predicates.get(predicate);
+        if (count == null && predicates.size() >= MAX_PREDICATES) {
+            predicates = null;
+            return;
+        }
+        predicates.put(predicate, count == null ? 1 : count + 1);
+    }
+
+    /**
+     * Adds the statistics of another file. Distinct values are added up, i.e. they are an upper bound.
+     */
+    private void merge(QuadStatistics other) {
+        records += other.records;
+        bytes += other.bytes;
+        for (int column = 0; column < COLUMNS.length; column++) {
+            distinct[column] = distinct[column] < 0 || other.distinct[column] < 0 ? -1 :
+                distinct[column] + other.distinct[column];
+        }
+        // Predicates which are not among the most common ones of all files would be undercounted.
+        predicates = null;
+    }
+
+    /**
+     * Returns the most common predicates in descending order of their number of quads.
+     */
+    private List<Map.Entry<String, Long>> getMostCommonPredicates() {
+        if (predicates == null) {
+            return Collections.emptyList();
+        }
+        List<Map.Entry<String, Long>> entries = new ArrayList<Map.Entry<String, Long>>(predicates.entrySet());
+        Collections.sort(entries, new Comparator<Map.Entry<String, Long>>() {
+            @Override
+            public int compare(Map.Entry<String, Long> e1, Map.Entry<String, Long> e2) {
+                return e2.getValue().compareTo(e1.getValue());
+            }
+        });
+        return entries.subList(0, Math.min(entries.size(), MOST_COMMON_PREDICATES));
+    }
+
+    public void write(Path sidecar, Configuration conf) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("records", Long.toString(records));
+        properties.setProperty("bytes", Long.toString(bytes));
+        for (int column = 0; column < COLUMNS.length; column++) {
+            properties.setProperty(COLUMNS[column] + ".distinct", Long.toString(distinct[column]));
+        }
+        List<Map.Entry<String, Long>> mostCommon = getMostCommonPredicates();
+        for (int i = 0; i < mostCommon.size(); i++) {
+            properties.setProperty("predicate.common." + i,
+                mostCommon.get(i).getValue() + " " + mostCommon.get(i).getKey());
+        }
+        OutputStream out = sidecar.getFileSystem(conf).create(sidecar, true);
+        try {
+            properties.store(out, "Quad statistics");
+        } finally {
+            out.close();
+        }
+    }
+
+    public long getRecords() {
+        return records;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Converts the statistics for Pig; column statistics are given for the columns subject, predicate, object and
+     * graph in this order.
+     */
+    public ResourceStatistics toResourceStatistics() {
+        ResourceStatistics statistics = new ResourceStatistics();
+        statistics.setNumRecords(records);
+        // Pig only keeps whole megabytes; round up so that small inputs do not appear empty.
+        statistics.setmBytes((bytes + (1 << 20) - 1) >> 20);
+        if (records > 0) {
+            statistics.setAvgRecordSize(bytes / records);
+        }
+        ResourceStatistics.ResourceFieldStatistics[] fields =
+            new ResourceStatistics.ResourceFieldStatistics[COLUMNS.length];
+        for (int column = 0; column < COLUMNS.length; column++) {
+            fields[column] = new ResourceStatistics.ResourceFieldStatistics();
+            if (distinct[column] >= 0) {
+                fields[column].setNumDistinctValues(distinct[column]);
+            }
+        }
+        List<Map.Entry<String, Long>> mostCommon = getMostCommonPredicates();
+        if (!mostCommon.isEmpty() && records > 0) {
+            Object[] values = new Object[mostCommon.size()];
+            float[] frequencies = new float[mostCommon.size()];
+            for (int i = 0; i < mostCommon.size(); i++) {
+                values[i] = mostCommon.get(i).getKey();
+                frequencies[i] = (float) mostCommon.get(i).getValue() / records;
+            }
+            fields[1].setMostCommonValues(values);
+            fields[1].setMostCommonValuesFreq(frequencies);
+        }
+        statistics.setFields(fields);
+        return statistics;
+    }
+
+    /**
+     * Writes the sidecar statistics files of the given dataset files.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: QuadStatistics <file>...");
+            System.exit(1);
+        }
+        Configuration conf = new Configuration();
+        for (String file : args) {
+            Path path = new Path(file);
+            QuadStatistics statistics = collect(path, conf);
+            statistics.write(getSidecar(path), conf);
+            System.out.println(String.format("%s: %d quads, %d bytes uncompressed, %d distinct subjects.", file,
+                statistics.records, statistics.bytes, statistics.distinct[0]));
+        }
+    }
+}
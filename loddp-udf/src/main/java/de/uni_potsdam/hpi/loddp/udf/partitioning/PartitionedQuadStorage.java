@@ -0,0 +1,117 @@
+package de.uni_potsdam.hpi.loddp.udf.partitioning;
+
+import de.uni_potsdam.hpi.loddp.udf.loading.QuadBlockFile;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.OutputFormat;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.pig.StoreFunc;
+import org.apache.pig.data.DataByteArray;
+import org.apache.pig.data.Tuple;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Stores raw N-Quads lines into one directory of {@link QuadBlockFile quad block files} per partition; the first field
+ * of each tuple is the name of the partition, the last one the line, e.g.
+ *
+ * <pre>
+ * sorted = ORDER keyed BY partitionName;
+ * STORE sorted INTO 'dbpedia-1M.nqp/partitions' USING
+ *     de.uni_potsdam.hpi.loddp.udf.partitioning.PartitionedQuadStorage();
+ * </pre>
+ *
+ * Every task writes one file (e.g. "[partition]/part-r-00000.nqb") per partition it receives, keeping only the file of
+ * the current partition open; tuples should thus be ordered (or at least grouped) by partition.
+ */
+public class PartitionedQuadStorage extends StoreFunc {
+
+    private final Text partition = new Text();
+    private final Text line = new Text();
+    private RecordWriter<Text, Text> writer;
+
+    @Override
+    public OutputFormat getOutputFormat() throws IOException {
+        return new PartitionedQuadOutputFormat();
+    }
+
+    @Override
+    public void setStoreLocation(String location, Job job) throws IOException {
+        FileOutputFormat.setOutputPath(job, new Path(location));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void prepareToWrite(RecordWriter writer) throws IOException {
+        this.writer = writer;
+    }
+
+    @Override
+    public void putNext(Tuple tuple) throws IOException {
+        Object value = tuple.get(tuple.size() - 1);
+        if (tuple.get(0) == null || value == null) {
+            return;
+        }
+        partition.set(tuple.get(0).toString());
+        if (value instanceof DataByteArray) {
+            line.set(((DataByteArray) value).get());
+        } else {
+            line.set(value.toString());
+        }
+        try {
+            writer.write(partition, line);
+        } catch (InterruptedException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Writes lines into a quad block file in the directory of their partition (the key).
+     */
+    public static class PartitionedQuadOutputFormat extends FileOutputFormat<Text, Text> {
+        @Override
+        public RecordWriter<Text, Text> getRecordWriter(TaskAttemptContext context) throws IOException {
+            final Path file = getDefaultWorkFile(context, QuadBlockFile.EXTENSION);
+            final FileSystem fs = file.getFileSystem(context.getConfiguration());
+            return new RecordWriter<Text, Text>() {
+                /**
+                 * Number of files written per partition, for partitions which are not contiguous.
+                 */
+                private final Map<String, Integer> files = new HashMap<String, Integer>();
+                private final Text partition = new Text();
+                private QuadBlockFile.Writer writer = null;
+
+                @Override
+                public void write(Text key, Text value) throws IOException {
+                    if (writer == null || !key.equals(partition)) {
+                        close(null);
+                        partition.set(key);
+                        String name = partition.toString();
+                        Integer count = files.get(name);
+                        files.put(name, count == null ? 1 : count + 1);
+                        String fileName = count == null ? file.getName() : file.getName()
+                            .replace(QuadBlockFile.EXTENSION, "-" + count + QuadBlockFile.EXTENSION);
+                        Path partitionFile = new Path(new Path(file.getParent(), name), fileName);
+                        writer = new QuadBlockFile.Writer(fs.create(partitionFile, false),
+                            QuadBlockFile.DEFAULT_BLOCK_SIZE);
+                    }
+                    writer.write(value.getBytes(), 0, value.getLength());
+                }
+
+                @Override
+                public void close(TaskAttemptContext context) throws IOException {
+                    if (writer != null) {
+                        writer.close();
+                        writer = null;
+                    }
+                }
+            };
+        }
+    }
+}
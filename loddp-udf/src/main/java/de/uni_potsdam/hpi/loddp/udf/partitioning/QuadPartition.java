@@ -0,0 +1,78 @@
+package de.uni_potsdam.hpi.loddp.udf.partitioning;
+
+import de.uni_potsdam.hpi.loddp.udf.loading.NQuadsLoader;
+import de.uni_potsdam.hpi.loddp.udf.loading.NQuadsParser;
+import de.uni_potsdam.hpi.loddp.udf.util.UDFCounters;
+import org.apache.pig.EvalFunc;
+import org.apache.pig.data.DataByteArray;
+import org.apache.pig.data.DataType;
+import org.apache.pig.data.Tuple;
+import org.apache.pig.data.TupleFactory;
+import org.apache.pig.impl.logicalLayer.FrontendException;
+import org.apache.pig.impl.logicalLayer.schema.Schema;
+
+import java.io.IOException;
+
+/**
+ * Returns the partition of a raw N-Quads line (see {@link QuadPartitions}) as tuple (partitionName, predicate,
+ * family, dtlang), e.g.
+ *
+ * <pre>
+ * lines = LOAD 'dbpedia-1M.nq.gz' USING TextLoader() AS (line:bytearray);
+ * keyed = FOREACH lines GENERATE FLATTEN(de.uni_potsdam.hpi.loddp.udf.partitioning.QuadPartition(line)), line;
+ * </pre>
+ *
+ * Lines are parsed like {@link NQuadsLoader} does, so that partitions contain exactly the quads loaded by it; returns
+ * NULL for empty lines, comments and malformed lines (which are counted as failures).
+ */
+public class QuadPartition extends EvalFunc<Tuple> {
+
+    private static final TupleFactory tupleFactory = TupleFactory.getInstance();
+    private final UDFCounters counters = new UDFCounters(getClass());
+    private final NQuadsParser parser = new NQuadsParser();
+
+    @Override
+    public Tuple exec(Tuple input) throws IOException {
+        long start = counters.start();
+        try {
+            if (input == null || input.size() == 0 || input.get(0) == null) {
+                return null;
+            }
+            Object line = input.get(0);
+            byte[] bytes = line instanceof DataByteArray ? ((DataByteArray) line).get() :
+                line.toString().getBytes("UTF-8");
+            int result = parser.parse(bytes, bytes.length);
+            if (result != NQuadsParser.RESULT_QUAD) {
+                if (result == NQuadsParser.RESULT_INVALID) {
+                    counters.addFailures(NQuadsLoader.FAILURE_TYPE, 1);
+                }
+                return null;
+            }
+            String predicate = parser.getValue(NQuadsParser.PREDICATE);
+            String dtlang = parser.getDatatypeOrLanguage();
+            String family = QuadPartitions.getFamily(dtlang);
+            Tuple partition = tupleFactory.newTuple(4);
+            partition.set(0, QuadPartitions.getPartition(predicate, family));
+            partition.set(1, predicate);
+            partition.set(2, family);
+            partition.set(3, dtlang);
+            return partition;
+        } finally {
+            counters.stop(start);
+        }
+    }
+
+    @Override
+    public Schema outputSchema(Schema input) {
+        try {
+            Schema tupleSchema = new Schema();
+            tupleSchema.add(new Schema.FieldSchema("partitionName", DataType.CHARARRAY));
+            tupleSchema.add(new Schema.FieldSchema("predicate", DataType.CHARARRAY));
+            tupleSchema.add(new Schema.FieldSchema("family", DataType.CHARARRAY));
+            tupleSchema.add(new Schema.FieldSchema("dtlang", DataType.CHARARRAY));
+            return new Schema(new Schema.FieldSchema("quadPartition", tupleSchema, DataType.TUPLE));
+        } catch (FrontendException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
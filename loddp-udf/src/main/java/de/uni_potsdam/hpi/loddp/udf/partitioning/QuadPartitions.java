@@ -0,0 +1,57 @@
+package de.uni_potsdam.hpi.loddp.udf.partitioning;
+
+import de.uni_potsdam.hpi.loddp.udf.encoding.TermIds;
+import de.uni_potsdam.hpi.loddp.udf.filtering.DatatypeCategory;
+
+/**
+ * Layout of vertically partitioned datasets: quads are partitioned by their predicate and the data type family of their
+ * object, i.e. the category of the object's data type (or language tag) as determined by {@link DatatypeCategory}.
+ * Scripts which only touch a few predicates or one data type family thus only need to load a few partitions.
+ *
+ * A partitioned dataset is a directory (named like the dataset, with the extension {@link #EXTENSION}) containing one
+ * directory of quad block files per partition in {@link #PARTITIONS}, and the manifest in {@link #MANIFEST}. The
+ * manifest consists of tab-separated text files listing the partition, predicate, family, object data type or
+ * language tag and number of quads for every combination occurring in the dataset.
+ */
+public final class QuadPartitions {
+
+    /**
+     * Extension of partitioned datasets, their sub-directories and data type families; have to match PartitionManifest
+     * in common.
+     */
+    public static final String EXTENSION = ".nqp";
+    public static final String PARTITIONS = "partitions";
+    public static final String MANIFEST = "manifest";
+    public static final String FAMILY_OTHER = "other";
+    public static final String FAMILY_NUMERIC = "numeric";
+    public static final String FAMILY_STRING = "string";
+    public static final String FAMILY_TEMPORAL = "temporal";
+
+    private QuadPartitions() {
+    }
+
+    /**
+     * Returns the data type family of an object with the given data type or language tag; objects of the family
+     * "numeric" are exactly those accepted by NumericDataType, and so on.
+     */
+    public static String getFamily(String dtlang) {
+        switch (DatatypeCategory.getCategory(DatatypeCategory.classify(dtlang))) {
+            case DatatypeCategory.CATEGORY_NUMERIC:
+                return FAMILY_NUMERIC;
+            case DatatypeCategory.CATEGORY_STRING:
+                return FAMILY_STRING;
+            case DatatypeCategory.CATEGORY_TEMPORAL:
+                return FAMILY_TEMPORAL;
+            default:
+                return FAMILY_OTHER;
+        }
+    }
+
+    /**
+     * Returns the name of the partition of the given predicate and family, e.g. "numeric-3f2c9a0b17d4e581"; predicates
+     * are hashed (see {@link TermIds}), so that names are valid file names of bounded length.
+     */
+    public static String getPartition(String predicate, String family) {
+        return String.format("%s-%016x", family, TermIds.getId(predicate));
+    }
+}
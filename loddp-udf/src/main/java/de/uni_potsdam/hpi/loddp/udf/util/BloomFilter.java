@@ -0,0 +1,252 @@
+package de.uni_potsdam.hpi.loddp.udf.util;
+
+import org.apache.pig.backend.executionengine.ExecException;
+import org.apache.pig.data.DataByteArray;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Bloom filter for Pig values.
+ *
+ * Values are hashed with {@link HyperLogLog#hash(Object)}; the bit positions are derived from the two halves of the
+ * 64 bit hash (double hashing). As long as only few bits are set, the filter is kept in a sparse representation (sorted
+ * list of set bit positions), so that partial filters for single tuples stay small in the combiner. Filters with the
+ * same size and number of hash functions can be merged, and are exchanged as byte arrays (see {@link #toBytes()}).
+ *
+ * @link http://www.eecs.harvard.edu/~michaelm/postscripts/rsa2008.pdf
+ */
+public final class BloomFilter {
+
+    public static final int DEFAULT_EXPECTED_INSERTIONS = 1000000;
+    public static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01;
+
+    private static final byte ENCODING_SPARSE = 0;
+    private static final byte ENCODING_DENSE = 1;
+    private static final int HEADER_SIZE = 6;
+
+    private final int numBits;
+    private final int numHashes;
+    /**
+     * Dense bit set, or NULL while the filter is sparse.
+     */
+    private long[] bits;
+    /**
+     * Sparse set bit positions, sorted.
+     */
+    private int[] sparse;
+    private int sparseSize;
+
+    public BloomFilter(int numBits, int numHashes) {
+        if (numBits < 64) {
+            throw new IllegalArgumentException("Number of bits has to be at least 64, got " + numBits);
+        }
+        if (numHashes < 1 || numHashes > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("Number of hash functions has to be between 1 and 127, got " + numHashes);
+        }
+        this.numBits = numBits;
+        this.numHashes = numHashes;
+        this.sparse = new int[4 * numHashes];
+    }
+
+    /**
+     * Creates an empty filter sized for the given number of values and false positive rate.
+     */
+    public static BloomFilter create(long expectedInsertions, double falsePositiveRate) {
+        if (expectedInsertions < 1 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException(String.format("Invalid bloom filter parameters (%d values with false " +
+                "positive rate %f).", expectedInsertions, falsePositiveRate));
+        }
+        double bits = -expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+        int numBits = (int) Math.max(64, Math.min(Integer.MAX_VALUE - 63, Math.ceil(bits)));
+        int numHashes = (int) Math.max(1, Math.min(Byte.MAX_VALUE, Math.round(numBits * Math.log(2) /
+            expectedInsertions)));
+        return new BloomFilter(numBits, numHashes);
+    }
+
+    /**
+     * Restores a filter from the byte array representation created by {@link #toBytes()}.
+     */
+    public static BloomFilter fromBytes(DataByteArray bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.get());
+        BloomFilter filter = new BloomFilter(buffer.getInt(), buffer.get());
+        filter.mergeBits(buffer);
+        return filter;
+    }
+
+    /**
+     * Reads a filter written by {@link #toBytes()} from the given input; any data after the filter is ignored.
+     */
+    public static BloomFilter read(DataInput input) throws IOException {
+        int numBits = input.readInt();
+        byte numHashes = input.readByte();
+        byte encoding = input.readByte();
+        BloomFilter filter = new BloomFilter(numBits, numHashes);
+        if (encoding == ENCODING_DENSE) {
+            filter.toDense();
+            for (int i = 0; i < filter.bits.length; i++) {
+                filter.bits[i] = input.readLong();
+            }
+        } else {
+            int count = input.readInt();
+            for (int i = 0; i < count; i++) {
+                filter.set(input.readInt());
+            }
+        }
+        return filter;
+    }
+
+    public int getNumBits() {
+        return numBits;
+    }
+
+    public int getNumHashes() {
+        return numHashes;
+    }
+
+    /**
+     * Adds a value to the filter.
+     */
+    public void add(Object value) throws ExecException {
+        long hash = HyperLogLog.hash(value);
+        int hash1 = (int) hash;
+        int hash2 = (int) (hash >>> 32);
+        for (int i = 0; i < numHashes; i++) {
+            set(getPosition(hash1, hash2, i));
+        }
+    }
+
+    /**
+     * Returns false if the value has definitely not been added to the filter, true if it (probably) has.
+     */
+    public boolean mightContain(Object value) throws ExecException {
+        if (bits == null) toDense();
+        long hash = HyperLogLog.hash(value);
+        int hash1 = (int) hash;
+        int hash2 = (int) (hash >>> 32);
+        for (int i = 0; i < numHashes; i++) {
+            int position = getPosition(hash1, hash2, i);
+            if ((bits[position >>> 6] & (1L << position)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int getPosition(int hash1, int hash2, int i) {
+        int combined = hash1 + i * hash2;
+        if (combined < 0) combined = ~combined;
+        return combined % numBits;
+    }
+
+    private void set(int position) {
+        if (bits != null) {
+            bits[position >>> 6] |= 1L << position;
+            return;
+        }
+        int index = Arrays.binarySearch(sparse, 0, sparseSize, position);
+        if (index >= 0) {
+            return;
+        }
+        if (sparseSize >= getSparseLimit()) {
+            toDense();
+            bits[position >>> 6] |= 1L << position;
+            return;
+        }
+        index = -index - 1;
+        if (sparseSize == sparse.length) {
+            sparse = Arrays.copyOf(sparse, sparse.length * 2);
+        }
+        System.arraycopy(sparse, index, sparse, index + 1, sparseSize - index);
+        sparse[index] = position;
+        sparseSize++;
+    }
+
+    /**
+     * Sparse positions take 32 bits each, so beyond numBits / 32 positions the dense bit set is smaller.
+     */
+    private int getSparseLimit() {
+        return numBits / 32;
+    }
+
+    private void toDense() {
+        bits = new long[(numBits + 63) >>> 6];
+        for (int i = 0; i < sparseSize; i++) {
+            bits[sparse[i] >>> 6] |= 1L << sparse[i];
+        }
+        sparse = null;
+        sparseSize = 0;
+    }
+
+    /**
+     * Merges another filter with the same parameters into this one.
+     */
+    public void merge(BloomFilter other) {
+        checkParameters(other.numBits, other.numHashes);
+        if (other.bits != null) {
+            if (bits == null) toDense();
+            for (int i = 0; i < bits.length; i++) {
+                bits[i] |= other.bits[i];
+            }
+        } else {
+            for (int i = 0; i < other.sparseSize; i++) {
+                set(other.sparse[i]);
+            }
+        }
+    }
+
+    /**
+     * Merges a filter serialized by {@link #toBytes()} into this one.
+     */
+    public void merge(DataByteArray bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.get());
+        checkParameters(buffer.getInt(), buffer.get());
+        mergeBits(buffer);
+    }
+
+    private void checkParameters(int otherNumBits, int otherNumHashes) {
+        if (otherNumBits != numBits || otherNumHashes != numHashes) {
+            throw new IllegalArgumentException(String.format("Cannot merge bloom filters with different parameters " +
+                "(%d bits / %d hashes and %d bits / %d hashes).", numBits, numHashes, otherNumBits, otherNumHashes));
+        }
+    }
+
+    private void mergeBits(ByteBuffer buffer) {
+        byte encoding = buffer.get();
+        if (encoding == ENCODING_DENSE) {
+            if (bits == null) toDense();
+            for (int i = 0; i < bits.length; i++) {
+                bits[i] |= buffer.getLong();
+            }
+        } else {
+            int count = buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                set(buffer.getInt());
+            }
+        }
+    }
+
+    /**
+     * Serializes the filter: number of bits (int), number of hash functions (byte), encoding (byte), followed by either
+     * the bit set as longs (dense), or the number of set bits (int) and their positions (ints, sparse).
+     */
+    public DataByteArray toBytes() {
+        ByteBuffer buffer;
+        if (bits == null) {
+            buffer = ByteBuffer.allocate(HEADER_SIZE + 4 + 4 * sparseSize);
+            buffer.putInt(numBits).put((byte) numHashes).put(ENCODING_SPARSE).putInt(sparseSize);
+            for (int i = 0; i < sparseSize; i++) {
+                buffer.putInt(sparse[i]);
+            }
+        } else {
+            buffer = ByteBuffer.allocate(HEADER_SIZE + 8 * bits.length);
+            buffer.putInt(numBits).put((byte) numHashes).put(ENCODING_DENSE);
+            for (long word : bits) {
+                buffer.putLong(word);
+            }
+        }
+        return new DataByteArray(buffer.array());
+    }
+}
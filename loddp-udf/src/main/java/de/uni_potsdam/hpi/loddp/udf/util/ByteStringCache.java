@@ -0,0 +1,91 @@
+package de.uni_potsdam.hpi.loddp.udf.util;
+
+import java.util.Arrays;
+
+/**
+ * Bounded cache of strings keyed by their encoded bytes, used to share the string instances of frequently repeated
+ * terms (predicates, datatypes) instead of decoding them again for every record.
+ *
+ * Lookups are done on a region of a byte array and do not allocate. Once the cache is full, further terms are not
+ * cached anymore (the first terms of an input are usually representative). Instances are not thread-safe.
+ */
+public final class ByteStringCache {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+    /**
+     * Terms longer than this are not cached.
+     */
+    public static final int MAX_KEY_LENGTH = 256;
+
+    private final int capacity;
+    private final byte[][] keys;
+    private final String[] values;
+    private int size = 0;
+
+    public ByteStringCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public ByteStringCache(int capacity) {
+        this.capacity = Math.max(capacity, 0);
+        int slots = Integer.highestOneBit(Math.max(this.capacity, 1)) << 2;
+        this.keys = new byte[slots][];
+        this.values = new String[slots];
+    }
+
+    private static int hash(byte[] bytes, int start, int end) {
+        int h = 1;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + bytes[i];
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean regionEquals(byte[] key, byte[] bytes, int start, int end) {
+        if (key.length != end - start) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (key[i] != bytes[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the string cached for the given byte region, or NULL.
+     */
+    public String get(byte[] bytes, int start, int end) {
+        if (end - start > MAX_KEY_LENGTH) {
+            return null;
+        }
+        int mask = keys.length - 1;
+        int slot = hash(bytes, start, end) & mask;
+        byte[] key;
+        while ((key = keys[slot]) != null) {
+            if (regionEquals(key, bytes, start, end)) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Caches the string for the given byte region, which must not be cached yet (i.e. {@link #get} returned NULL).
+     */
+    public void put(byte[] bytes, int start, int end, String value) {
+        if (size >= capacity || end - start > MAX_KEY_LENGTH) {
+            return;
+        }
+        int mask = keys.length - 1;
+        int slot = hash(bytes, start, end) & mask;
+        while (keys[slot] != null) {
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = Arrays.copyOfRange(bytes, start, end);
+        values[slot] = value;
+        size++;
+    }
+}
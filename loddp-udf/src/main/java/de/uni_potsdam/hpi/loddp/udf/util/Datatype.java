@@ -0,0 +1,193 @@
+package de.uni_potsdam.hpi.loddp.udf.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Built-in RDF literal data types (XML Schema, RDF, and OWL 2), together with precomputed lookup tables.
+ *
+ * Lookups neither allocate objects nor throw exceptions, which makes them cheap enough to be called for every quad
+ * from within UDFs. The set of types and their categories match the OWL 2 built-in datatype map (formerly accessed via
+ * OWLAPI's OWL2Datatype), extended with the XML Schema date/time types.
+ *
+ * @link http://www.w3.org/TR/xmlschema-2/
+ * @link http://www.w3.org/TR/owl2-syntax/#Datatype_Maps
+ */
+public enum Datatype {
+    RDF_XML_LITERAL(Namespace.RDF, "XMLLiteral", Category.STRING),
+    RDFS_LITERAL(Namespace.RDFS, "Literal", Category.STRING),
+    RDF_PLAIN_LITERAL(Namespace.RDF, "PlainLiteral", Category.STRING),
+    OWL_REAL(Namespace.OWL, "real", Category.NUMERIC),
+    OWL_RATIONAL(Namespace.OWL, "rational", Category.NUMERIC),
+    XSD_DECIMAL(Namespace.XSD, "decimal", Category.NUMERIC),
+    XSD_INTEGER(Namespace.XSD, "integer", Category.NUMERIC),
+    XSD_NON_NEGATIVE_INTEGER(Namespace.XSD, "nonNegativeInteger", Category.NUMERIC),
+    XSD_NON_POSITIVE_INTEGER(Namespace.XSD, "nonPositiveInteger", Category.NUMERIC),
+    XSD_POSITIVE_INTEGER(Namespace.XSD, "positiveInteger", Category.NUMERIC),
+    XSD_NEGATIVE_INTEGER(Namespace.XSD, "negativeInteger", Category.NUMERIC),
+    XSD_LONG(Namespace.XSD, "long", Category.NUMERIC),
+    XSD_INT(Namespace.XSD, "int", Category.NUMERIC),
+    XSD_SHORT(Namespace.XSD, "short", Category.NUMERIC),
+    XSD_BYTE(Namespace.XSD, "byte", Category.NUMERIC),
+    XSD_UNSIGNED_LONG(Namespace.XSD, "unsignedLong", Category.NUMERIC),
+    XSD_UNSIGNED_INT(Namespace.XSD, "unsignedInt", Category.NUMERIC),
+    XSD_UNSIGNED_SHORT(Namespace.XSD, "unsignedShort", Category.NUMERIC),
+    XSD_UNSIGNED_BYTE(Namespace.XSD, "unsignedByte", Category.NUMERIC),
+    XSD_DOUBLE(Namespace.XSD, "double", Category.NUMERIC),
+    XSD_FLOAT(Namespace.XSD, "float", Category.NUMERIC),
+    XSD_STRING(Namespace.XSD, "string", Category.STRING),
+    XSD_NORMALIZED_STRING(Namespace.XSD, "normalizedString", Category.STRING),
+    XSD_TOKEN(Namespace.XSD, "token", Category.STRING),
+    XSD_LANGUAGE(Namespace.XSD, "language", Category.STRING),
+    XSD_NAME(Namespace.XSD, "Name", Category.STRING),
+    XSD_NCNAME(Namespace.XSD, "NCName", Category.STRING),
+    XSD_NMTOKEN(Namespace.XSD, "NMTOKEN", Category.STRING),
+    XSD_BOOLEAN(Namespace.XSD, "boolean", Category.OTHER),
+    XSD_HEX_BINARY(Namespace.XSD, "hexBinary", Category.OTHER),
+    XSD_BASE_64_BINARY(Namespace.XSD, "base64Binary", Category.OTHER),
+    XSD_ANY_URI(Namespace.XSD, "anyURI", Category.OTHER),
+    XSD_DATE_TIME(Namespace.XSD, "dateTime", Category.TEMPORAL),
+    XSD_DATE_TIME_STAMP(Namespace.XSD, "dateTimeStamp", Category.TEMPORAL),
+    XSD_DATE(Namespace.XSD, "date", Category.TEMPORAL),
+    XSD_TIME(Namespace.XSD, "time", Category.TEMPORAL),
+    XSD_DURATION(Namespace.XSD, "duration", Category.TEMPORAL),
+    XSD_G_YEAR_MONTH(Namespace.XSD, "gYearMonth", Category.TEMPORAL),
+    XSD_G_YEAR(Namespace.XSD, "gYear", Category.TEMPORAL),
+    XSD_G_MONTH_DAY(Namespace.XSD, "gMonthDay", Category.TEMPORAL),
+    XSD_G_DAY(Namespace.XSD, "gDay", Category.TEMPORAL),
+    XSD_G_MONTH(Namespace.XSD, "gMonth", Category.TEMPORAL);
+
+    /**
+     * Lookup table for full IRIs.
+     */
+    private static final Map<String, Datatype> byIRI = new HashMap<String, Datatype>();
+    /**
+     * Open addressing hash table (linear probing) for XML Schema local names. Keys are hashed with the same function as
+     * {@link String#hashCode()}, so that lookups can be done on a region of the IRI without creating a substring.
+     */
+    private static final Datatype[] byLocalName = new Datatype[128];
+
+    static {
+        for (Datatype datatype : values()) {
+            byIRI.put(datatype.iri, datatype);
+            if (datatype.namespace == Namespace.XSD) {
+                int slot = datatype.localName.hashCode() & (byLocalName.length - 1);
+                while (byLocalName[slot] != null) {
+                    slot = (slot + 1) & (byLocalName.length - 1);
+                }
+                byLocalName[slot] = datatype;
+            }
+        }
+    }
+
+    private final String iri;
+    private final String localName;
+    private final Namespace namespace;
+    private final Category category;
+
+    private Datatype(Namespace namespace, String localName, Category category) {
+        this.namespace = namespace;
+        this.localName = localName;
+        this.iri = namespace.getIRI() + localName;
+        this.category = category;
+    }
+
+    /**
+     * Looks up a data type by its full IRI, e.g. "http://www.w3.org/2001/XMLSchema#integer".
+     *
+     * @return The matching data type, or NULL if the IRI does not denote a built-in data type.
+     */
+    public static Datatype fromIRI(String iri) {
+        if (iri == null) return null;
+        return byIRI.get(iri);
+    }
+
+    /**
+     * Looks up an XML Schema data type by the local name of the given IRI, ignoring its namespace. The local name is
+     * the longest suffix of the IRI which is a valid NCName (same as the "fragment" of an OWLAPI IRI), i.e. both
+     * "http://www.w3.org/2001/XMLSchema#date" and "date" resolve to {@link #XSD_DATE}.
+     *
+     * @return The matching data type, or NULL if the local name does not match any XML Schema data type.
+     */
+    public static Datatype fromLocalName(String iri) {
+        if (iri == null) return null;
+        int end = iri.length();
+        int start = end;
+        while (start > 0 && isNCNameChar(iri.charAt(start - 1))) {
+            start--;
+        }
+        while (start < end && !isNCNameStartChar(iri.charAt(start))) {
+            start++;
+        }
+        if (start == end) {
+            return null;
+        }
+
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + iri.charAt(i);
+        }
+        int length = end - start;
+        int slot = hash & (byLocalName.length - 1);
+        Datatype candidate;
+        while ((candidate = byLocalName[slot]) != null) {
+            if (candidate.localName.length() == length && iri.regionMatches(start, candidate.localName, 0, length)) {
+                return candidate;
+            }
+            slot = (slot + 1) & (byLocalName.length - 1);
+        }
+        return null;
+    }
+
+    private static boolean isNCNameStartChar(char c) {
+        return Character.isLetter(c) || c == '_';
+    }
+
+    private static boolean isNCNameChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '-' || c == '.' || c == '\u00B7';
+    }
+
+    public String getIRI() {
+        return iri;
+    }
+
+    public String getLocalName() {
+        return localName;
+    }
+
+    public Category getCategory() {
+        return category;
+    }
+
+    public boolean isNumeric() {
+        return category == Category.NUMERIC;
+    }
+
+    public boolean isString() {
+        return category == Category.STRING;
+    }
+
+    public boolean isTemporal() {
+        return category == Category.TEMPORAL;
+    }
+
+    public enum Category {
+        NUMERIC, STRING, TEMPORAL, OTHER
+    }
+
+    private enum Namespace {
+        XSD("http://www.w3.org/2001/XMLSchema#"),
+        RDF("http://www.w3.org/1999/02/22-rdf-syntax-ns#"),
+        RDFS("http://www.w3.org/2000/01/rdf-schema#"),
+        OWL("http://www.w3.org/2002/07/owl#");
+        private final String iri;
+
+        private Namespace(String iri) {
+            this.iri = iri;
+        }
+
+        public String getIRI() {
+            return iri;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package de.uni_potsdam.hpi.loddp.udf.util;
+
+import org.apache.commons.lang3.math.NumberUtils;
+
+import java.math.BigDecimal;
+
+/**
+ * Allocation-free parser for numeric lexical values.
+ *
+ * Plain decimal literals (optional minus sign, digits, optional fraction and exponent) are parsed in a single scan into
+ * an unscaled long and a scale, i.e. the same (unscaled value, scale) pair that {@link BigDecimal#BigDecimal(String)}
+ * would produce. Everything else, i.e. values which overflow a long and more exotic notations accepted by {@link
+ * NumberUtils#isNumber(String)} (hex numbers, type qualifiers etc.), falls back to {@link
+ * NumberUtils#createBigDecimal(String)}, so that the set of accepted values and their numeric value stay exactly the
+ * same as with the plain commons-lang approach.
+ *
+ * Instances are mutable and hold the result of the last call to {@link #parse(String)}; they are not thread-safe.
+ */
+public final class DecimalParser {
+
+    /**
+     * The value is not numeric.
+     */
+    public static final int NOT_NUMERIC = 0;
+    /**
+     * The value has been parsed into {@link #getUnscaledValue()} and {@link #getScale()}.
+     */
+    public static final int COMPACT = 1;
+    /**
+     * The value did not fit into a long and has been parsed into {@link #getBigDecimal()}.
+     */
+    public static final int BIG = 2;
+
+    private static final long[] POWERS_OF_TEN = new long[19];
+    private static final double[] DOUBLE_POWERS_OF_TEN = new double[23];
+
+    static {
+        POWERS_OF_TEN[0] = 1L;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+        DOUBLE_POWERS_OF_TEN[0] = 1.0;
+        for (int i = 1; i < DOUBLE_POWERS_OF_TEN.length; i++) {
+            DOUBLE_POWERS_OF_TEN[i] = DOUBLE_POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private long unscaledValue;
+    private int scale;
+    private BigDecimal bigDecimal;
+
+    /**
+     * Compares two decimals given as (unscaled value, scale) pairs without creating BigDecimal objects.
+     */
+    public static int compare(long unscaled1, int scale1, long unscaled2, int scale2) {
+        if (scale1 == scale2) {
+            return unscaled1 < unscaled2 ? -1 : (unscaled1 == unscaled2 ? 0 : 1);
+        }
+        int sign1 = Long.signum(unscaled1);
+        int sign2 = Long.signum(unscaled2);
+        if (sign1 != sign2) {
+            return sign1 < sign2 ? -1 : 1;
+        }
+        if (sign1 == 0) {
+            return 0;
+        }
+        if (scale1 < scale2) {
+            return compareRescaled(unscaled1, scale2 - scale1, unscaled2);
+        } else {
+            return -compareRescaled(unscaled2, scale1 - scale2, unscaled1);
+        }
+    }
+
+    /**
+     * Compares (unscaled * 10^exponent) with other, where both numbers have the same sign.
+     */
+    private static int compareRescaled(long unscaled, int exponent, long other) {
+        if (exponent < POWERS_OF_TEN.length) {
+            long factor = POWERS_OF_TEN[exponent];
+            long limit = Long.MAX_VALUE / factor;
+            if (unscaled <= limit && unscaled >= -limit) {
+                long rescaled = unscaled * factor;
+                return rescaled < other ? -1 : (rescaled == other ? 0 : 1);
+            }
+        }
+        // The rescaled value does not fit into a long, so its magnitude is larger than the magnitude of other.
+        return unscaled > 0 ? 1 : -1;
+    }
+
+    /**
+     * Converts a (unscaled value, scale) pair or a BigDecimal into a BigDecimal.
+     */
+    public static BigDecimal toBigDecimal(long unscaledValue, int scale, BigDecimal bigDecimal) {
+        return bigDecimal != null ? bigDecimal : BigDecimal.valueOf(unscaledValue, scale);
+    }
+
+    /**
+     * Parses the given string.
+     *
+     * @return One of {@link #NOT_NUMERIC}, {@link #COMPACT}, or {@link #BIG}.
+     */
+    public int parse(String str) {
+        bigDecimal = null;
+        if (str == null) {
+            return NOT_NUMERIC;
+        }
+        int length = str.length();
+        int i = 0;
+        boolean negative = false;
+        if (i < length && str.charAt(i) == '-') {
+            negative = true;
+            i++;
+        }
+
+        // Mantissa: digits with an optional decimal point.
+        long unscaled = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean seenPoint = false;
+        for (; i < length; i++) {
+            char c = str.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (unscaled > (Long.MAX_VALUE - (c - '0')) / 10) {
+                    return parseSlow(str);
+                }
+                unscaled = unscaled * 10 + (c - '0');
+                digits++;
+                if (seenPoint) fractionDigits++;
+            } else if (c == '.' && !seenPoint) {
+                seenPoint = true;
+            } else {
+                break;
+            }
+        }
+        if (digits == 0) {
+            return parseSlow(str);
+        }
+
+        // Optional exponent.
+        int exponent = 0;
+        if (i < length) {
+            char c = str.charAt(i);
+            if (c != 'e' && c != 'E') {
+                return parseSlow(str);
+            }
+            i++;
+            boolean negativeExponent = false;
+            if (i < length && (str.charAt(i) == '-' || str.charAt(i) == '+')) {
+                negativeExponent = str.charAt(i) == '-';
+                i++;
+            }
+            int exponentDigits = 0;
+            for (; i < length; i++) {
+                c = str.charAt(i);
+                if (c < '0' || c > '9' || exponentDigits >= 9) {
+                    return parseSlow(str);
+                }
+                exponent = exponent * 10 + (c - '0');
+                exponentDigits++;
+            }
+            if (exponentDigits == 0) {
+                return parseSlow(str);
+            }
+            if (negativeExponent) exponent = -exponent;
+        }
+
+        unscaledValue = negative ? -unscaled : unscaled;
+        scale = fractionDigits - exponent;
+        return COMPACT;
+    }
+
+    private int parseSlow(String str) {
+        if (!NumberUtils.isNumber(str)) {
+            return NOT_NUMERIC;
+        }
+        bigDecimal = NumberUtils.createBigDecimal(str);
+        return BIG;
+    }
+
+    public long getUnscaledValue() {
+        return unscaledValue;
+    }
+
+    public int getScale() {
+        return scale;
+    }
+
+    public BigDecimal getBigDecimal() {
+        return bigDecimal;
+    }
+
+    /**
+     * Returns the last parsed value as (nearest) double.
+     */
+    public double getDoubleValue() {
+        if (bigDecimal != null) {
+            return bigDecimal.doubleValue();
+        }
+        // Exact if the unscaled value and the power of ten are exactly representable as doubles.
+        if (scale >= 0 && scale <= 22 && Math.abs(unscaledValue) < (1L << 53)) {
+            return unscaledValue / DOUBLE_POWERS_OF_TEN[scale];
+        }
+        if (scale < 0 && scale >= -22 && Math.abs(unscaledValue) < (1L << 53)) {
+            return unscaledValue * DOUBLE_POWERS_OF_TEN[-scale];
+        }
+        return BigDecimal.valueOf(unscaledValue, scale).doubleValue();
+    }
+}
@@ -0,0 +1,314 @@
+package de.uni_potsdam.hpi.loddp.udf.util;
+
+import org.apache.pig.backend.executionengine.ExecException;
+import org.apache.pig.data.DataByteArray;
+import org.apache.pig.data.Tuple;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * HyperLogLog sketch for estimating the number of distinct values.
+ *
+ * The sketch uses 2^precision registers; the relative standard error of the estimate is about 1.04 /
+ * sqrt(2^precision), e.g. 0.8% for the default precision of 14. Values are hashed to 64 bits, so that no large range
+ * correction is needed; small cardinalities are estimated with linear counting.
+ *
+ * As long as only few registers are set, the sketch is kept in a sparse representation (sorted list of register
+ * index and value pairs), which keeps sketches for small groups cheap to create, merge and serialize. Sketches with the
+ * same precision can be merged, and are exchanged as byte arrays (see {@link #toBytes()}).
+ *
+ * @link http://algo.inria.fr/flajolet/Publications/FlFuGaMe07.pdf
+ */
+public final class HyperLogLog {
+
+    public static final int MIN_PRECISION = 4;
+    public static final int MAX_PRECISION = 16;
+    public static final int DEFAULT_PRECISION = 14;
+
+    private static final byte ENCODING_SPARSE = 0;
+    private static final byte ENCODING_DENSE = 1;
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final int precision;
+    private final int registerCount;
+    /**
+     * Dense registers, or NULL while the sketch is sparse.
+     */
+    private byte[] registers;
+    /**
+     * Sparse registers, each encoded as (index << 8 | value) and sorted by index.
+     */
+    private int[] sparse;
+    private int sparseSize;
+
+    public HyperLogLog() {
+        this(DEFAULT_PRECISION);
+    }
+
+    public HyperLogLog(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException(String.format("Precision has to be between %d and %d, got %d.",
+                MIN_PRECISION, MAX_PRECISION, precision));
+        }
+        this.precision = precision;
+        this.registerCount = 1 << precision;
+        this.sparse = new int[4];
+    }
+
+    /**
+     * Restores a sketch from the byte array representation created by {@link #toBytes()}.
+     */
+    public static HyperLogLog fromBytes(DataByteArray bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.get());
+        HyperLogLog sketch = new HyperLogLog(buffer.get());
+        sketch.mergeRegisters(buffer);
+        return sketch;
+    }
+
+    /**
+     * Computes a 64 bit hash for a Pig value (FNV-1a over characters or bytes, followed by the MurmurHash3
+     * finalizer). Tuples are hashed field by field; other values are hashed via their string representation.
+     */
+    public static long hash(Object value) throws ExecException {
+        return mix(hashRaw(value));
+    }
+
+    /**
+     * Computes the hash of {@link #hash(Object)} for a string, which is also used for the term IDs of the dictionary
+     * encoding.
+     */
+    public static long hashString(String str) {
+        return mix(hashChars(str));
+    }
+
+    private static long hashChars(String str) {
+        long h = FNV_OFFSET_BASIS;
+        for (int i = 0; i < str.length(); i++) {
+            h = (h ^ str.charAt(i)) * FNV_PRIME;
+        }
+        return h;
+    }
+
+    private static long hashRaw(Object value) throws ExecException {
+        long h = FNV_OFFSET_BASIS;
+        if (value == null) {
+            return h;
+        } else if (value instanceof DataByteArray) {
+            byte[] data = ((DataByteArray) value).get();
+            for (byte b : data) {
+                h = (h ^ (b & 0xff)) * FNV_PRIME;
+            }
+            return h;
+        } else if (value instanceof Tuple) {
+            Tuple tuple = (Tuple) value;
+            for (int i = 0; i < tuple.size(); i++) {
+                h = (h ^ mix(hashRaw(tuple.get(i)))) * FNV_PRIME;
+            }
+            return h;
+        } else {
+            return hashChars(value.toString());
+        }
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Adds a value to the sketch, see {@link #hash(Object)}.
+     */
+    public void offer(Object value) throws ExecException {
+        offerHash(hash(value));
+    }
+
+    /**
+     * Adds a 64 bit hash value to the sketch.
+     */
+    public void offerHash(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        // Rank of the first set bit in the remaining bits; the sentinel bit limits the rank to 64 - precision + 1.
+        long remaining = (hash << precision) | (1L << (precision - 1));
+        int rank = Long.numberOfLeadingZeros(remaining) + 1;
+        set(index, rank);
+    }
+
+    private void set(int index, int rank) {
+        if (registers != null) {
+            if (registers[index] < rank) {
+                registers[index] = (byte) rank;
+            }
+            return;
+        }
+        // Binary search on the register index (upper bits of the sparse entries).
+        int low = 0;
+        int high = sparseSize - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midIndex = sparse[mid] >>> 8;
+            if (midIndex < index) {
+                low = mid + 1;
+            } else if (midIndex > index) {
+                high = mid - 1;
+            } else {
+                if ((sparse[mid] & 0xff) < rank) {
+                    sparse[mid] = (index << 8) | rank;
+                }
+                return;
+            }
+        }
+        if (sparseSize >= getSparseLimit()) {
+            toDense();
+            registers[index] = (byte) rank;
+            return;
+        }
+        if (sparseSize == sparse.length) {
+            sparse = Arrays.copyOf(sparse, sparse.length * 2);
+        }
+        System.arraycopy(sparse, low, sparse, low + 1, sparseSize - low);
+        sparse[low] = (index << 8) | rank;
+        sparseSize++;
+    }
+
+    /**
+     * Sparse entries take 4 bytes in memory and 3 bytes serialized, dense registers one byte each.
+     */
+    private int getSparseLimit() {
+        return registerCount / 4;
+    }
+
+    private void toDense() {
+        registers = new byte[registerCount];
+        for (int i = 0; i < sparseSize; i++) {
+            registers[sparse[i] >>> 8] = (byte) (sparse[i] & 0xff);
+        }
+        sparse = null;
+        sparseSize = 0;
+    }
+
+    /**
+     * Merges another sketch with the same precision into this one.
+     */
+    public void merge(HyperLogLog other) {
+        checkPrecision(other.precision);
+        if (other.registers != null) {
+            if (registers == null) toDense();
+            for (int i = 0; i < registerCount; i++) {
+                if (registers[i] < other.registers[i]) {
+                    registers[i] = other.registers[i];
+                }
+            }
+        } else {
+            for (int i = 0; i < other.sparseSize; i++) {
+                set(other.sparse[i] >>> 8, other.sparse[i] & 0xff);
+            }
+        }
+    }
+
+    /**
+     * Merges a sketch serialized by {@link #toBytes()} into this one.
+     */
+    public void merge(DataByteArray bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.get());
+        checkPrecision(buffer.get());
+        mergeRegisters(buffer);
+    }
+
+    private void checkPrecision(int otherPrecision) {
+        if (otherPrecision != precision) {
+            throw new IllegalArgumentException(String.format("Cannot merge sketches with different precision (%d " +
+                "and %d).", precision, otherPrecision));
+        }
+    }
+
+    private void mergeRegisters(ByteBuffer buffer) {
+        byte encoding = buffer.get();
+        if (encoding == ENCODING_DENSE) {
+            if (registers == null) toDense();
+            for (int i = 0; i < registerCount; i++) {
+                byte rank = buffer.get();
+                if (registers[i] < rank) {
+                    registers[i] = rank;
+                }
+            }
+        } else {
+            int count = buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                int index = buffer.getChar();
+                set(index, buffer.get());
+            }
+        }
+    }
+
+    /**
+     * Serializes the sketch: one byte precision, one byte encoding, followed by either all registers (dense), or the
+     * number of set registers and (index as 2 bytes, value as 1 byte) for each of them (sparse).
+     */
+    public DataByteArray toBytes() {
+        ByteBuffer buffer;
+        if (registers == null) {
+            buffer = ByteBuffer.allocate(6 + 3 * sparseSize);
+            buffer.put((byte) precision).put(ENCODING_SPARSE).putInt(sparseSize);
+            for (int i = 0; i < sparseSize; i++) {
+                buffer.putChar((char) (sparse[i] >>> 8)).put((byte) (sparse[i] & 0xff));
+            }
+        } else {
+            buffer = ByteBuffer.allocate(2 + registerCount);
+            buffer.put((byte) precision).put(ENCODING_DENSE).put(registers);
+        }
+        return new DataByteArray(buffer.array());
+    }
+
+    /**
+     * Returns the estimated number of distinct values.
+     */
+    public long cardinality() {
+        int zeros;
+        double sum;
+        if (registers == null) {
+            zeros = registerCount - sparseSize;
+            sum = zeros;
+            for (int i = 0; i < sparseSize; i++) {
+                sum += 1.0 / (1L << (sparse[i] & 0xff));
+            }
+        } else {
+            zeros = 0;
+            sum = 0;
+            for (int i = 0; i < registerCount; i++) {
+                if (registers[i] == 0) zeros++;
+                sum += 1.0 / (1L << registers[i]);
+            }
+        }
+        double m = registerCount;
+        double estimate = getAlpha() * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            // Linear counting for small cardinalities.
+            estimate = m * Math.log(m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    private double getAlpha() {
+        switch (registerCount) {
+            case 16:
+                return 0.673;
+            case 32:
+                return 0.697;
+            case 64:
+                return 0.709;
+            default:
+                return 0.7213 / (1 + 1.079 / registerCount);
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package de.uni_potsdam.hpi.loddp.udf.util;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.pig.impl.util.UDFContext;
+
+/**
+ * Bounded memo cache for parsed literals, mapping (type, lexical value) to a parse result.
+ *
+ * Profiling datasets repeat the same literals very often (years, common dates, small integers), so parsing each
+ * distinct value only once per task saves most of the parsing work. A result consists of an int code, a long, an int
+ * and an optional object; its interpretation is up to the caller. Failed parses should be cached as well.
+ *
+ * Entries are evicted with the CLOCK (second chance) algorithm. After every window of {@link #WINDOW} lookups the hit
+ * rate is checked, and if it is below the configured minimum, the cache disables itself for the rest of the task
+ * (lookups then always miss without hashing the value, and puts are ignored). Hits, misses and evictions are counted
+ * locally, and published as the counters "LiteralCache.hits", "LiteralCache.misses" and "LiteralCache.evictions" (see
+ * {@link UDFCounters}) at the end of each window; UDFs using the cache call {@link #publishCounters()} in their
+ * {@link org.apache.pig.EvalFunc#finish()} method to publish the rest.
+ *
+ * Caches are shared by all UDFs of a thread, see {@link #get()}; instances are not thread-safe. The size and minimum
+ * hit rate are read from the job configuration properties {@link #SIZE_PROPERTY} and {@link #MIN_HIT_RATE_PROPERTY},
+ * e.g. with "SET loddp.literal-cache.size 0" (disables the cache).
+ */
+public final class LiteralCache {
+
+    public static final String SIZE_PROPERTY = "loddp.literal-cache.size";
+    public static final String MIN_HIT_RATE_PROPERTY = "loddp.literal-cache.min-hit-rate";
+    public static final int DEFAULT_SIZE = 4096;
+    public static final float DEFAULT_MIN_HIT_RATE = 0.1f;
+    /**
+     * Number of lookups after which the hit rate is checked.
+     */
+    public static final int WINDOW = 10000;
+    /**
+     * Type keys used by this package: decimals, Joda objects (this key minus {@link Datatype#ordinal()}), and primitive
+     * temporal encodings (keyed by {@link Datatype#ordinal()}).
+     */
+    public static final int TYPE_DECIMAL = -1;
+    public static final int TYPE_TEMPORAL_OBJECT = -2;
+    public static final String HITS = "hits";
+    public static final String MISSES = "misses";
+    public static final String EVICTIONS = "evictions";
+
+    protected static final Log log = LogFactory.getLog(LiteralCache.class);
+    private static final ThreadLocal<LiteralCache> instances = new ThreadLocal<LiteralCache>();
+
+    private final UDFCounters counters = new UDFCounters(LiteralCache.class);
+    private final int capacity;
+    private final float minHitRate;
+    /**
+     * Hash buckets holding (entry index + 1) of the first entry of each chain, or 0.
+     */
+    private final int[] buckets;
+    private final int[] next;
+    private final int[] hashes;
+    private final int[] types;
+    private final String[] values;
+    private final int[] codes;
+    private final long[] longValues;
+    private final int[] intValues;
+    private final Object[] objectValues;
+    private final boolean[] referenced;
+    private int size = 0;
+    private int hand = 0;
+    private boolean enabled;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+    private long publishedHits = 0;
+    private long publishedMisses = 0;
+    private long publishedEvictions = 0;
+    private long windowHits = 0;
+    private int windowLookups = 0;
+
+    /**
+     * @param capacity   Maximum number of entries; 0 disables the cache.
+     * @param minHitRate Minimum hit rate per window below which the cache disables itself.
+     */
+    public LiteralCache(int capacity, float minHitRate) {
+        this.capacity = Math.max(capacity, 0);
+        this.minHitRate = minHitRate;
+        this.enabled = this.capacity > 0;
+        this.buckets = new int[this.capacity > 0 ? Integer.highestOneBit(this.capacity) << 1 : 0];
+        this.next = new int[this.capacity];
+        this.hashes = new int[this.capacity];
+        this.types = new int[this.capacity];
+        this.values = new String[this.capacity];
+        this.codes = new int[this.capacity];
+        this.longValues = new long[this.capacity];
+        this.intValues = new int[this.capacity];
+        this.objectValues = new Object[this.capacity];
+        this.referenced = new boolean[this.capacity];
+    }
+
+    /**
+     * Returns the cache of the current thread, which is configured from the job configuration on first use.
+     */
+    public static LiteralCache get() {
+        LiteralCache cache = instances.get();
+        if (cache == null) {
+            Configuration conf = UDFContext.getUDFContext().getJobConf();
+            if (conf == null) {
+                cache = new LiteralCache(DEFAULT_SIZE, DEFAULT_MIN_HIT_RATE);
+            } else {
+                cache = new LiteralCache(conf.getInt(SIZE_PROPERTY, DEFAULT_SIZE),
+                    conf.getFloat(MIN_HIT_RATE_PROPERTY, DEFAULT_MIN_HIT_RATE));
+            }
+            instances.set(cache);
+        }
+        return cache;
+    }
+
+    /**
+     * Publishes the counts of the cache of the current thread which have not been published yet, if the thread has a
+     * cache.
+     */
+    public static void publishCounters() {
+        LiteralCache cache = instances.get();
+        if (cache != null) {
+            cache.publish();
+        }
+    }
+
+    private static int hash(int type, String value) {
+        int h = value.hashCode() * 31 + type;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Looks up a cached result.
+     *
+     * @return The entry index to pass to the getters, or -1 if there is no entry (or the cache is disabled).
+     */
+    public int lookup(int type, String value) {
+        if (!enabled || value == null) {
+            return -1;
+        }
+        int hash = hash(type, value);
+        int index = buckets[hash & (buckets.length - 1)] - 1;
+        while (index >= 0) {
+            if (hashes[index] == hash && types[index] == type && values[index].equals(value)) {
+                referenced[index] = true;
+                hits++;
+                windowHits++;
+                countLookup();
+                return index;
+            }
+            index = next[index] - 1;
+        }
+        misses++;
+        countLookup();
+        return -1;
+    }
+
+    private void countLookup() {
+        if (++windowLookups < WINDOW) {
+            return;
+        }
+        if (windowHits < minHitRate * windowLookups) {
+            enabled = false;
+            log.info(String.format("Disabling literal cache, hit rate %.3f is below %.3f (%d hits, %d misses).",
+                (double) windowHits / windowLookups, minHitRate, hits, misses));
+        }
+        windowHits = 0;
+        windowLookups = 0;
+        publish();
+    }
+
+    private void publish() {
+        counters.add(HITS, hits - publishedHits);
+        counters.add(MISSES, misses - publishedMisses);
+        counters.add(EVICTIONS, evictions - publishedEvictions);
+        publishedHits = hits;
+        publishedMisses = misses;
+        publishedEvictions = evictions;
+    }
+
+    /**
+     * Caches a result for the given key, which must not be cached yet (i.e. {@link #lookup} returned -1).
+     */
+    public void put(int type, String value, int code, long longValue, int intValue, Object objectValue) {
+        if (!enabled || value == null) {
+            return;
+        }
+        int index;
+        if (size < capacity) {
+            index = size++;
+        } else {
+            index = evict();
+        }
+        int hash = hash(type, value);
+        int bucket = hash & (buckets.length - 1);
+        hashes[index] = hash;
+        types[index] = type;
+        values[index] = value;
+        codes[index] = code;
+        longValues[index] = longValue;
+        intValues[index] = intValue;
+        objectValues[index] = objectValue;
+        referenced[index] = false;
+        next[index] = buckets[bucket];
+        buckets[bucket] = index + 1;
+    }
+
+    /**
+     * Advances the clock hand to the first entry which has not been referenced since the last pass, and unlinks it.
+     */
+    private int evict() {
+        while (referenced[hand]) {
+            referenced[hand] = false;
+            hand = (hand + 1) % capacity;
+        }
+        int index = hand;
+        hand = (hand + 1) % capacity;
+
+        int bucket = hashes[index] & (buckets.length - 1);
+        if (buckets[bucket] == index + 1) {
+            buckets[bucket] = next[index];
+        } else {
+            int previous = buckets[bucket] - 1;
+            while (next[previous] != index + 1) {
+                previous = next[previous] - 1;
+            }
+            next[previous] = next[index];
+        }
+        values[index] = null;
+        objectValues[index] = null;
+        evictions++;
+        return index;
+    }
+
+    public int getCode(int index) {
+        return codes[index];
+    }
+
+    public long getLong(int index) {
+        return longValues[index];
+    }
+
+    public int getInt(int index) {
+        return intValues[index];
+    }
+
+    public Object getObject(int index) {
+        return objectValues[index];
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+}
@@ -0,0 +1,185 @@
+package de.uni_potsdam.hpi.loddp.udf.util;
+
+/**
+ * Character trie of IRI namespaces, used to determine the namespace of an IRI in a single linear scan.
+ *
+ * The namespace of an IRI is the longest known namespace which is a prefix of the IRI; if there is none, it is the
+ * IRI up to (and including) its last '#' or '/'. Namespaces found with this fallback are remembered (up to a fixed
+ * limit), so that each distinct namespace string is only created once and further lookups return the same (interned)
+ * instance without allocating anything.
+ *
+ * Instances are not thread-safe.
+ */
+public class NamespaceTrie {
+
+    /**
+     * Namespaces of frequently used vocabularies, which are matched even if the local name contains separators.
+     */
+    public static final String[] DEFAULT_NAMESPACES = {
+        "http://www.w3.org/1999/02/22-rdf-syntax-ns#",
+        "http://www.w3.org/2000/01/rdf-schema#",
+        "http://www.w3.org/2002/07/owl#",
+        "http://www.w3.org/2001/XMLSchema#",
+        "http://www.w3.org/2004/02/skos/core#",
+        "http://www.w3.org/2003/01/geo/wgs84_pos#",
+        "http://www.w3.org/ns/prov#",
+        "http://xmlns.com/foaf/0.1/",
+        "http://purl.org/dc/elements/1.1/",
+        "http://purl.org/dc/terms/",
+        "http://rdfs.org/ns/void#",
+        "http://rdfs.org/sioc/ns#",
+        "http://purl.org/goodrelations/v1#",
+        "http://purl.org/ontology/bibo/",
+        "http://purl.org/ontology/mo/",
+        "http://schema.org/",
+        "http://dbpedia.org/ontology/",
+        "http://dbpedia.org/property/",
+        "http://dbpedia.org/resource/",
+        "http://yago-knowledge.org/resource/",
+        "http://rdf.freebase.com/ns/",
+        "http://www.wikidata.org/entity/",
+        "http://www.geonames.org/ontology#",
+        "http://sws.geonames.org/",
+        "http://creativecommons.org/ns#",
+        "http://www.opengis.net/gml/",
+    };
+    public static final int DEFAULT_MAX_LEARNED = 1000;
+    private final Node root = new Node();
+    /**
+     * Open addressing hash table (linear probing) of learned namespaces. Keys are hashed with the same function as
+     * {@link String#hashCode()}, so that lookups can be done on a region of the IRI without creating a substring.
+     */
+    private final String[] learned;
+    private final int maxLearned;
+    private int learnedCount = 0;
+
+    public NamespaceTrie() {
+        this(DEFAULT_NAMESPACES, DEFAULT_MAX_LEARNED);
+    }
+
+    /**
+     * @param namespaces Known namespaces.
+     * @param maxLearned Maximum number of namespaces remembered from the fallback; 0 disables learning.
+     */
+    public NamespaceTrie(String[] namespaces, int maxLearned) {
+        this.maxLearned = maxLearned;
+        this.learned = new String[Integer.highestOneBit(Math.max(maxLearned, 1)) << 2];
+        for (String namespace : namespaces) {
+            add(namespace);
+        }
+    }
+
+    /**
+     * Registers a known namespace.
+     */
+    public void add(String namespace) {
+        Node node = root;
+        for (int i = 0; i < namespace.length(); i++) {
+            node = node.getOrAddChild(namespace.charAt(i));
+        }
+        node.namespace = namespace;
+    }
+
+    /**
+     * Returns the namespace of the given IRI, or NULL if it contains neither a known namespace nor a separator.
+     */
+    public String getNamespace(String iri) {
+        if (iri == null) return null;
+        int length = iri.length();
+
+        // Longest known namespace; the walk stops at the first character which does not continue any of them.
+        Node node = root;
+        String known = null;
+        for (int i = 0; i < length && node != null; i++) {
+            node = node.getChild(iri.charAt(i));
+            if (node != null && node.namespace != null) {
+                known = node.namespace;
+            }
+        }
+        if (known != null) {
+            return known;
+        }
+
+        // Fallback: IRI up to the last separator.
+        int end = length;
+        char c;
+        do {
+            end--;
+        } while (end >= 0 && (c = iri.charAt(end)) != '#' && c != '/');
+        if (end < 0) {
+            return null;
+        }
+        end++;
+
+        int hash = 0;
+        for (int i = 0; i < end; i++) {
+            hash = 31 * hash + iri.charAt(i);
+        }
+        int mask = learned.length - 1;
+        int slot = hash & mask;
+        String candidate;
+        while ((candidate = learned[slot]) != null) {
+            if (candidate.length() == end && iri.startsWith(candidate)) {
+                return candidate;
+            }
+            slot = (slot + 1) & mask;
+        }
+        String namespace = iri.substring(0, end);
+        if (learnedCount < maxLearned) {
+            learnedCount++;
+            learned[slot] = namespace;
+        }
+        return namespace;
+    }
+
+    /**
+     * Trie node; children are kept in small arrays sorted by character, since the fan-out of IRI prefixes is low.
+     */
+    private static final class Node {
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        private String namespace;
+
+        private int indexOf(char c) {
+            int low = 0;
+            int high = keys.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (keys[mid] < c) {
+                    low = mid + 1;
+                } else if (keys[mid] > c) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(low + 1);
+        }
+
+        private Node getChild(char c) {
+            int index = indexOf(c);
+            return index >= 0 ? children[index] : null;
+        }
+
+        private Node getOrAddChild(char c) {
+            int index = indexOf(c);
+            if (index >= 0) {
+                return children[index];
+            }
+            index = -(index + 1);
+            int size = keys.length;
+            char[] newKeys = new char[size + 1];
+            Node[] newChildren = new Node[size + 1];
+            System.arraycopy(keys, 0, newKeys, 0, index);
+            System.arraycopy(children, 0, newChildren, 0, index);
+            System.arraycopy(keys, index, newKeys, index + 1, size - index);
+            System.arraycopy(children, index, newChildren, index + 1, size - index);
+            Node child = new Node();
+            newKeys[index] = c;
+            newChildren[index] = child;
+            keys = newKeys;
+            children = newChildren;
+            return child;
+        }
+    }
+}
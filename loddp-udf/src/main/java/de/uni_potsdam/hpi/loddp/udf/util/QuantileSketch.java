@@ -0,0 +1,315 @@
+package de.uni_potsdam.hpi.loddp.udf.util;
+
+import org.apache.pig.data.DataByteArray;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * KLL sketch for approximate quantiles of a stream of doubles.
+ *
+ * The sketch keeps a hierarchy of compactors; items on level h represent 2^h original values. When the sketch is full,
+ * the lowest full level is sorted and every other item (starting at a random offset) is promoted to the next level.
+ * Level capacities decrease geometrically towards the lower levels, so the memory is bounded by about 3 * k items
+ * regardless of the number of values, and the rank error is about 1.65 / k (i.e. 1% for k = 200). Sketches are
+ * mergeable, and are exchanged as byte arrays (see {@link #toBytes()}). The exact minimum and maximum are tracked
+ * separately.
+ *
+ * @link http://arxiv.org/abs/1603.05346
+ */
+public final class QuantileSketch {
+
+    public static final int DEFAULT_K = 200;
+    private static final int MIN_LEVEL_CAPACITY = 8;
+    private static final double LEVEL_CAPACITY_FACTOR = 2.0 / 3.0;
+
+    private final int k;
+    private long count = 0;
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+    private double[][] levels = new double[1][];
+    private int[] levelSizes = new int[1];
+    private int numLevels = 1;
+    /**
+     * State of the xorshift generator for the compaction offsets; fixed seed, so results are reproducible.
+     */
+    private long random = 0x9E3779B97F4A7C15L;
+
+    public QuantileSketch() {
+        this(DEFAULT_K);
+    }
+
+    public QuantileSketch(int k) {
+        if (k < MIN_LEVEL_CAPACITY) {
+            throw new IllegalArgumentException("k has to be at least " + MIN_LEVEL_CAPACITY + ", got " + k);
+        }
+        this.k = k;
+        levels[0] = new double[MIN_LEVEL_CAPACITY];
+    }
+
+    /**
+     * Restores a sketch from the byte array representation created by {@link #toBytes()}.
+     */
+    public static QuantileSketch fromBytes(DataByteArray bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.get());
+        QuantileSketch sketch = new QuantileSketch(buffer.getShort());
+        sketch.merge(buffer);
+        return sketch;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public void update(double value) {
+        if (count == 0) {
+            min = max = value;
+        } else {
+            if (value < min) min = value;
+            if (value > max) max = value;
+        }
+        count++;
+        append(0, value);
+        compressWhileFull();
+    }
+
+    /**
+     * Merges another sketch into this one.
+     */
+    public void merge(QuantileSketch other) {
+        if (other.count == 0) {
+            return;
+        }
+        mergeBounds(other.count, other.min, other.max);
+        for (int level = 0; level < other.numLevels; level++) {
+            for (int i = 0; i < other.levelSizes[level]; i++) {
+                append(level, other.levels[level][i]);
+            }
+        }
+        compressWhileFull();
+    }
+
+    /**
+     * Merges a sketch serialized by {@link #toBytes()} into this one.
+     */
+    public void merge(DataByteArray bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.get());
+        buffer.getShort();
+        merge(buffer);
+    }
+
+    private void merge(ByteBuffer buffer) {
+        long otherCount = buffer.getLong();
+        if (otherCount == 0) {
+            return;
+        }
+        mergeBounds(otherCount, buffer.getDouble(), buffer.getDouble());
+        int otherLevels = buffer.get();
+        for (int level = 0; level < otherLevels; level++) {
+            int size = buffer.getInt();
+            for (int i = 0; i < size; i++) {
+                append(level, buffer.getDouble());
+            }
+        }
+        compressWhileFull();
+    }
+
+    private void mergeBounds(long otherCount, double otherMin, double otherMax) {
+        if (count == 0) {
+            min = otherMin;
+            max = otherMax;
+        } else {
+            if (otherMin < min) min = otherMin;
+            if (otherMax > max) max = otherMax;
+        }
+        count += otherCount;
+    }
+
+    private void append(int level, double value) {
+        while (level >= numLevels) {
+            addLevel();
+        }
+        double[] items = levels[level];
+        if (levelSizes[level] == items.length) {
+            items = levels[level] = Arrays.copyOf(items, items.length * 2);
+        }
+        items[levelSizes[level]++] = value;
+    }
+
+    private void addLevel() {
+        if (numLevels == levels.length) {
+            levels = Arrays.copyOf(levels, numLevels * 2);
+            levelSizes = Arrays.copyOf(levelSizes, numLevels * 2);
+        }
+        levels[numLevels] = new double[MIN_LEVEL_CAPACITY];
+        levelSizes[numLevels] = 0;
+        numLevels++;
+    }
+
+    private int getLevelCapacity(int level) {
+        int depth = numLevels - level - 1;
+        return Math.max(MIN_LEVEL_CAPACITY, (int) Math.ceil(k * Math.pow(LEVEL_CAPACITY_FACTOR, depth)));
+    }
+
+    private int getTotalSize() {
+        int size = 0;
+        for (int level = 0; level < numLevels; level++) {
+            size += levelSizes[level];
+        }
+        return size;
+    }
+
+    private int getTotalCapacity() {
+        int capacity = 0;
+        for (int level = 0; level < numLevels; level++) {
+            capacity += getLevelCapacity(level);
+        }
+        return capacity;
+    }
+
+    private void compressWhileFull() {
+        while (getTotalSize() > getTotalCapacity()) {
+            compress();
+        }
+    }
+
+    /**
+     * Compacts the lowest level which exceeds its capacity.
+     */
+    private void compress() {
+        for (int level = 0; level < numLevels; level++) {
+            if (levelSizes[level] < getLevelCapacity(level)) {
+                continue;
+            }
+            if (level + 1 == numLevels) {
+                addLevel();
+            }
+            double[] items = levels[level];
+            int size = levelSizes[level];
+            Arrays.sort(items, 0, size);
+            // With an odd number of items, the smallest one stays on this level.
+            int start = size % 2;
+            int offset = nextBit();
+            for (int i = start + offset; i < size; i += 2) {
+                append(level + 1, items[i]);
+            }
+            levelSizes[level] = start;
+            return;
+        }
+    }
+
+    private int nextBit() {
+        random ^= random << 13;
+        random ^= random >>> 7;
+        random ^= random << 17;
+        return (int) (random & 1);
+    }
+
+    /**
+     * Returns the approximate value at the given normalized rank (0.0 is the minimum, 1.0 the maximum), or NaN if
+     * the sketch is empty.
+     */
+    public double getQuantile(double fraction) {
+        double[] result = getQuantiles(new double[] {fraction});
+        return result[0];
+    }
+
+    /**
+     * Returns the approximate values at the given normalized ranks, see {@link #getQuantile(double)}.
+     */
+    public double[] getQuantiles(double[] fractions) {
+        double[] result = new double[fractions.length];
+        if (count == 0) {
+            Arrays.fill(result, Double.NaN);
+            return result;
+        }
+
+        // Sort all retained items together with their weights.
+        int size = getTotalSize();
+        double[] values = new double[size];
+        long[] weights = new long[size];
+        int n = 0;
+        for (int level = 0; level < numLevels; level++) {
+            for (int i = 0; i < levelSizes[level]; i++) {
+                values[n] = levels[level][i];
+                weights[n] = 1L << level;
+                n++;
+            }
+        }
+        sortByValue(values, weights);
+        long totalWeight = 0;
+        for (long weight : weights) {
+            totalWeight += weight;
+        }
+
+        for (int q = 0; q < fractions.length; q++) {
+            double fraction = fractions[q];
+            if (fraction <= 0) {
+                result[q] = min;
+            } else if (fraction >= 1) {
+                result[q] = max;
+            } else {
+                double targetRank = fraction * totalWeight;
+                long cumulative = 0;
+                result[q] = max;
+                for (int i = 0; i < size; i++) {
+                    cumulative += weights[i];
+                    if (cumulative >= targetRank) {
+                        result[q] = values[i];
+                        break;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private static void sortByValue(double[] values, long[] weights) {
+        Integer[] order = new Integer[values.length];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        final double[] keys = values.clone();
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return Double.compare(keys[o1], keys[o2]);
+            }
+        });
+        long[] weightsCopy = weights.clone();
+        for (int i = 0; i < order.length; i++) {
+            values[i] = keys[order[i]];
+            weights[i] = weightsCopy[order[i]];
+        }
+    }
+
+    /**
+     * Serializes the sketch: k (short), count (long), min and max (doubles, only if count > 0), number of levels
+     * (byte), and for each level the number of items (int) followed by the items (doubles).
+     */
+    public DataByteArray toBytes() {
+        if (count == 0) {
+            return new DataByteArray(ByteBuffer.allocate(10).putShort((short) k).putLong(0).array());
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(27 + 4 * numLevels + 8 * getTotalSize());
+        buffer.putShort((short) k).putLong(count).putDouble(min).putDouble(max).put((byte) numLevels);
+        for (int level = 0; level < numLevels; level++) {
+            buffer.putInt(levelSizes[level]);
+            for (int i = 0; i < levelSizes[level]; i++) {
+                buffer.putDouble(levels[level][i]);
+            }
+        }
+        return new DataByteArray(buffer.array());
+    }
+}
@@ -0,0 +1,294 @@
+package de.uni_potsdam.hpi.loddp.udf.util;
+
+import org.apache.pig.backend.executionengine.ExecException;
+import org.apache.pig.data.BagFactory;
+import org.apache.pig.data.DataBag;
+import org.apache.pig.data.Tuple;
+import org.apache.pig.data.TupleFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Space-Saving summary for finding the most frequent values of a stream with a bounded number of counters.
+ *
+ * Each monitored value has a count and an error; the true frequency of the value lies in [count - error, count]. A
+ * value which is not monitored occurs at most {@link #getUnmonitoredBound()} times. When all counters are in use, a
+ * new value replaces the value with the smallest count (kept at the root of a min-heap) and inherits its count as
+ * error. Every value with a frequency larger than n / capacity is guaranteed to be monitored.
+ *
+ * Summaries are mergeable (counts of values missing in one summary are bounded by that summary's unmonitored bound),
+ * and are exchanged as tuples (capacity, unmonitored bound, bag of (value, count, error)), see {@link #toTuple()}.
+ *
+ * @link http://www.cs.ucsb.edu/research/tech_reports/reports/2005-23.pdf
+ * @link http://arxiv.org/abs/1202.5479
+ */
+public final class SpaceSaving {
+
+    private static final TupleFactory tupleFactory = TupleFactory.getInstance();
+    private static final BagFactory bagFactory = BagFactory.getInstance();
+
+    private final int capacity;
+    private final Map<Object, Counter> counters;
+    /**
+     * Min-heap of counters by count.
+     */
+    private final Counter[] heap;
+    private int size = 0;
+    /**
+     * Upper bound for values dropped while merging summaries.
+     */
+    private long droppedBound = 0;
+
+    public SpaceSaving(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity has to be positive, got " + capacity);
+        }
+        this.capacity = capacity;
+        this.counters = new HashMap<Object, Counter>(capacity * 2);
+        this.heap = new Counter[capacity];
+    }
+
+    /**
+     * Restores a summary from the tuple representation created by {@link #toTuple()}.
+     */
+    public static SpaceSaving fromTuple(Tuple tuple) throws ExecException {
+        SpaceSaving summary = new SpaceSaving((Integer) tuple.get(0));
+        summary.merge(tuple);
+        return summary;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the maximum frequency of any value which is not monitored.
+     */
+    public long getUnmonitoredBound() {
+        if (size < capacity) {
+            return droppedBound;
+        }
+        return Math.max(droppedBound, heap[0].count);
+    }
+
+    /**
+     * Counts one occurrence of the given value.
+     */
+    public void offer(Object value) {
+        offer(value, 1, 0);
+    }
+
+    private void offer(Object value, long count, long error) {
+        Counter counter = counters.get(value);
+        if (counter != null) {
+            counter.count += count;
+            counter.error += error;
+            siftDown(counter.index);
+            return;
+        }
+        long bound = getUnmonitoredBound();
+        if (size < capacity) {
+            counter = new Counter();
+            counter.index = size;
+            heap[size++] = counter;
+        } else {
+            counter = heap[0];
+            counters.remove(counter.value);
+        }
+        counter.value = value;
+        counter.count = bound + count;
+        counter.error = bound + error;
+        counters.put(value, counter);
+        siftDown(counter.index);
+        siftUp(counter.index);
+    }
+
+    /**
+     * Merges another summary into this one.
+     */
+    public void merge(SpaceSaving other) {
+        List<Object> values = new ArrayList<Object>(other.size);
+        long[] counts = new long[other.size];
+        long[] errors = new long[other.size];
+        for (int i = 0; i < other.size; i++) {
+            Counter counter = other.heap[i];
+            values.add(counter.value);
+            counts[i] = counter.count;
+            errors[i] = counter.error;
+        }
+        merge(values, counts, errors, other.getUnmonitoredBound());
+    }
+
+    /**
+     * Merges a summary serialized by {@link #toTuple()} into this one.
+     */
+    public void merge(Tuple tuple) throws ExecException {
+        long otherBound = (Long) tuple.get(1);
+        DataBag entries = (DataBag) tuple.get(2);
+        int otherSize = (int) entries.size();
+        List<Object> values = new ArrayList<Object>(otherSize);
+        long[] counts = new long[otherSize];
+        long[] errors = new long[otherSize];
+        int i = 0;
+        for (Iterator<Tuple> it = entries.iterator(); it.hasNext(); i++) {
+            Tuple entry = it.next();
+            values.add(entry.get(0));
+            counts[i] = (Long) entry.get(1);
+            errors[i] = (Long) entry.get(2);
+        }
+        merge(values, counts, errors, otherBound);
+    }
+
+    private void merge(List<Object> values, long[] counts, long[] errors, long otherBound) {
+        long thisBound = getUnmonitoredBound();
+
+        // Values monitored only in this summary may have occurred up to otherBound times in the other one.
+        Map<Object, Integer> otherIndex = new HashMap<Object, Integer>(values.size() * 2);
+        for (int i = 0; i < values.size(); i++) {
+            otherIndex.put(values.get(i), i);
+        }
+        List<Counter> merged = new ArrayList<Counter>(size + values.size());
+        for (int i = 0; i < size; i++) {
+            Counter counter = heap[i];
+            Integer j = otherIndex.remove(counter.value);
+            if (j != null) {
+                counter.count += counts[j];
+                counter.error += errors[j];
+            } else {
+                counter.count += otherBound;
+                counter.error += otherBound;
+            }
+            merged.add(counter);
+        }
+        for (Integer j : otherIndex.values()) {
+            Counter counter = new Counter();
+            counter.value = values.get(j);
+            counter.count = counts[j] + thisBound;
+            counter.error = errors[j] + thisBound;
+            merged.add(counter);
+        }
+
+        // Keep the counters with the largest counts.
+        Collections.sort(merged, COUNT_DESCENDING);
+        long newBound = thisBound + otherBound;
+        counters.clear();
+        Arrays.fill(heap, null);
+        size = 0;
+        for (Counter counter : merged) {
+            if (size < capacity) {
+                counter.index = size;
+                heap[size++] = counter;
+                counters.put(counter.value, counter);
+            } else {
+                newBound = Math.max(newBound, counter.count);
+            }
+        }
+        droppedBound = newBound;
+        for (int i = size / 2 - 1; i >= 0; i--) {
+            siftDown(i);
+        }
+    }
+
+    /**
+     * Returns the (at most) k monitored values with the largest counts as a bag of (value, count, error) tuples,
+     * ordered by descending count.
+     */
+    public DataBag getTop(int k) {
+        List<Counter> sorted = new ArrayList<Counter>(size);
+        for (int i = 0; i < size; i++) {
+            sorted.add(heap[i]);
+        }
+        Collections.sort(sorted, COUNT_DESCENDING);
+        List<Tuple> result = new ArrayList<Tuple>(Math.min(k, size));
+        for (Counter counter : sorted) {
+            if (result.size() >= k) break;
+            result.add(counter.toTuple());
+        }
+        return bagFactory.newDefaultBag(result);
+    }
+
+    /**
+     * Serializes the summary as a tuple (capacity, unmonitored bound, bag of (value, count, error)).
+     */
+    public Tuple toTuple() {
+        DataBag entries = bagFactory.newDefaultBag();
+        for (int i = 0; i < size; i++) {
+            entries.add(heap[i].toTuple());
+        }
+        Tuple tuple = tupleFactory.newTuple(3);
+        try {
+            tuple.set(0, capacity);
+            tuple.set(1, getUnmonitoredBound());
+            tuple.set(2, entries);
+        } catch (ExecException e) {
+            // Cannot happen, the tuple has been created with the correct size.
+            throw new RuntimeException(e);
+        }
+        return tuple;
+    }
+
+    private void siftUp(int index) {
+        Counter counter = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (heap[parent].count <= counter.count) break;
+            heap[index] = heap[parent];
+            heap[index].index = index;
+            index = parent;
+        }
+        heap[index] = counter;
+        counter.index = index;
+    }
+
+    private void siftDown(int index) {
+        Counter counter = heap[index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) break;
+            if (child + 1 < size && heap[child + 1].count < heap[child].count) child++;
+            if (counter.count <= heap[child].count) break;
+            heap[index] = heap[child];
+            heap[index].index = index;
+            index = child;
+        }
+        heap[index] = counter;
+        counter.index = index;
+    }
+
+    private static final Comparator<Counter> COUNT_DESCENDING = new Comparator<Counter>() {
+        @Override
+        public int compare(Counter o1, Counter o2) {
+            return o1.count < o2.count ? 1 : (o1.count > o2.count ? -1 : 0);
+        }
+    };
+
+    private static final class Counter {
+        private Object value;
+        private long count;
+        private long error;
+        private int index;
+
+        private Tuple toTuple() {
+            Tuple tuple = tupleFactory.newTuple(3);
+            try {
+                tuple.set(0, value);
+                tuple.set(1, count);
+                tuple.set(2, error);
+            } catch (ExecException e) {
+                throw new RuntimeException(e);
+            }
+            return tuple;
+        }
+    }
+}
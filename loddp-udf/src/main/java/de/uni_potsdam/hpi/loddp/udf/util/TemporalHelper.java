@@ -1,30 +1,14 @@
 package de.uni_potsdam.hpi.loddp.udf.util;
 
-import org.apache.commons.lang.NotImplementedException;
 import org.joda.time.*;
-import org.joda.time.format.ISODateTimeFormat;
-import org.semanticweb.owlapi.model.IRI;
-import org.semanticweb.owlapi.vocab.XSDVocabulary;
-
-import java.util.HashMap;
-import java.util.Map;
+import org.joda.time.chrono.ISOChronology;
 
 public class TemporalHelper {
 
-    private static final Map<String, XSDVocabulary> xslDataTypes;
-
-    static {
-        xslDataTypes = new HashMap<String, XSDVocabulary>();
-        XSDVocabulary[] xsdTypes = XSDVocabulary.values();
-        for (XSDVocabulary type : xsdTypes) {
-            xslDataTypes.put(type.getShortName(), type);
-        }
-    }
+    private static final Chronology UTC = ISOChronology.getInstanceUTC();
 
-    private static XSDVocabulary getXSDType(String str) {
-        if (str == null) return null;
-        String fragment = IRI.create(str).getFragment();
-        return xslDataTypes.get(fragment);
+    private static Datatype getXSDType(String str) {
+        return Datatype.fromLocalName(str);
     }
 
     /**
@@ -36,62 +20,65 @@ public class TemporalHelper {
      * @return TRUE if the given string matches an XSD temporal type, FALSE otherwise.
      */
     public static boolean isTemporalDataType(String str) {
-        XSDVocabulary xsType = getXSDType(str);
-        if (xsType == null) return false;
-        switch (xsType) {
-            case DATE:
-            case DATE_TIME:
-            case DATE_TIME_STAMP:
-            case DURATION:
-            case G_DAY:
-            case G_MONTH:
-            case G_MONTH_DAY:
-            case G_YEAR:
-            case G_YEAR_MONTH:
-            case TIME:
-                return true;
-            default:
-                return false;
-        }
+        Datatype xsType = getXSDType(str);
+        return xsType != null && xsType.isTemporal();
     }
 
     /**
-     * Tries to parse the given string value into a yoda-time date object (Duration, Partial or Instant).
+     * Tries to parse the given string value into a Joda-Time object (Duration, Partial or Instant).
+     *
+     * Values are scanned by a {@link TemporalLexer}; xsd:gDay and xsd:gMonth values are returned as {@link Partial}
+     * objects with a single field. Date-times without a timezone are interpreted as UTC. Results are memoized in the
+     * {@link LiteralCache} of the thread.
      *
      * @param type  The XSD type for the given value.
      * @param value The date value.
      *
-     * @return A ReadablePartial, ReadableInstant, or ReadableDuration in case of success, NULL otherwise.
-     *
-     * @throws NotImplementedException  If the type is xsd:gDay or xsd:gMonth, which have not been implemented yet.
-     * @throws IllegalArgumentException If the type cannot be parsed, or is not an XSD date type. See {@link
-     *                                  #isTemporalDataType}.
+     * @return A ReadablePartial, ReadableInstant, or ReadableDuration in case of success, NULL if the type is not a
+     *         temporal XSD type (see {@link #isTemporalDataType}) or the value is malformed.
      */
-    public static Comparable parseTemporalValue(String type, String value) throws NotImplementedException, IllegalArgumentException {
-        XSDVocabulary xsType = getXSDType(type);
-        if (xsType == null) {
-            throw new IllegalArgumentException("Could not determine XSD Type from " + type);
+    public static Comparable parseTemporalValue(String type, String value) {
+        Datatype xsType = getXSDType(type);
+        if (xsType == null || !xsType.isTemporal()) {
+            return null;
+        }
+        // Joda objects are immutable, so cached instances (including failures) can be shared.
+        LiteralCache cache = LiteralCache.get();
+        int key = LiteralCache.TYPE_TEMPORAL_OBJECT - xsType.ordinal();
+        int cached = cache.lookup(key, value);
+        if (cached >= 0) {
+            return (Comparable) cache.getObject(cached);
+        }
+        Comparable result = createTemporalValue(xsType, value);
+        cache.put(key, value, 0, 0, 0, result);
+        return result;
+    }
+
+    private static Comparable createTemporalValue(Datatype xsType, String value) {
+        TemporalLexer lexer = new TemporalLexer();
+        if (lexer.lex(xsType, value) == TemporalLexer.INVALID) {
+            return null;
         }
         switch (xsType) {
-            case DATE:
-                return LocalDate.parse(value, ISODateTimeFormat.dateOptionalTimeParser());
-            case DATE_TIME:
-            case DATE_TIME_STAMP:
-                return DateTime.parse(value);
-            case DURATION:
-                return Duration.parse(value);
-            case G_DAY: // @todo
-                throw new NotImplementedException("xsd:gDay is not supported yet.");
-            case G_MONTH: // @todo
-                throw new NotImplementedException("xsd:gMonth is not supported yet.");
-            case G_MONTH_DAY:
-                return MonthDay.parse(value);
-            case G_YEAR:
-                return Year.parse(value, ISODateTimeFormat.dateOptionalTimeParser());
-            case G_YEAR_MONTH:
-                return YearMonth.parse(value, ISODateTimeFormat.dateOptionalTimeParser());
-            case TIME:
-                return LocalTime.parse(value);
+            case XSD_DATE:
+                return new LocalDate(lexer.getYear(), lexer.getMonth(), lexer.getDay(), UTC);
+            case XSD_DATE_TIME:
+            case XSD_DATE_TIME_STAMP:
+                return new DateTime(lexer.getInstantMillis(), UTC);
+            case XSD_DURATION:
+                return new Duration(lexer.getDurationMillis());
+            case XSD_G_DAY:
+                return new Partial(DateTimeFieldType.dayOfMonth(), lexer.getDay(), UTC);
+            case XSD_G_MONTH:
+                return new Partial(DateTimeFieldType.monthOfYear(), lexer.getMonth(), UTC);
+            case XSD_G_MONTH_DAY:
+                return new MonthDay(lexer.getMonth(), lexer.getDay(), UTC);
+            case XSD_G_YEAR:
+                return new Year(lexer.getYear(), UTC);
+            case XSD_G_YEAR_MONTH:
+                return new YearMonth(lexer.getYear(), lexer.getMonth(), UTC);
+            case XSD_TIME:
+                return LocalTime.fromMillisOfDay(lexer.getMillisOfDay() % TemporalLexer.MILLIS_PER_DAY, UTC);
         }
 
         return null;
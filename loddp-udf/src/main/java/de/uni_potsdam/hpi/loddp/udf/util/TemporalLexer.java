@@ -0,0 +1,448 @@
+package de.uni_potsdam.hpi.loddp.udf.util;
+
+/**
+ * Hand-written lexer for the lexical forms of the XML Schema date/time data types.
+ *
+ * Supported are xsd:dateTime (and xsd:dateTimeStamp), xsd:date, xsd:time, xsd:duration, xsd:gYear, xsd:gYearMonth,
+ * xsd:gMonthDay, xsd:gDay and xsd:gMonth. Values are scanned in a single pass without creating objects; malformed
+ * values are reported through the return value of {@link #lex(Datatype, String)} instead of an exception, which keeps
+ * messy input data cheap. Leading and trailing whitespace is ignored (whitespace facet "collapse").
+ *
+ * Two lenient extensions are accepted because they are common in real world data: xsd:dateTime values without a time
+ * (midnight is assumed), and xsd:date values followed by a time (which is ignored). Years must lie within
+ * +/-{@link #MAX_YEAR}; year 0000 is accepted and denotes 1 BC, as in XML Schema 1.1 and ISO 8601.
+ *
+ * Instances are mutable and hold the result of the last call to {@link #lex(Datatype, String)}; they are not
+ * thread-safe.
+ *
+ * @link http://www.w3.org/TR/xmlschema11-2/#dateTime
+ */
+public final class TemporalLexer {
+
+    /**
+     * The value does not match the lexical space of the given data type.
+     */
+    public static final int INVALID = 0;
+    /**
+     * The value has been parsed successfully.
+     */
+    public static final int VALID = 1;
+
+    public static final int MAX_YEAR = 100000000;
+    public static final long MILLIS_PER_SECOND = 1000L;
+    public static final long MILLIS_PER_MINUTE = 60 * MILLIS_PER_SECOND;
+    public static final long MILLIS_PER_HOUR = 60 * MILLIS_PER_MINUTE;
+    public static final long MILLIS_PER_DAY = 24 * MILLIS_PER_HOUR;
+    /**
+     * Average length of a Gregorian year (365.2425 days); used for the year and month components of durations.
+     */
+    public static final long MILLIS_PER_YEAR = 31556952000L;
+    public static final long MILLIS_PER_MONTH = MILLIS_PER_YEAR / 12;
+
+    private static final int NO_TIMEZONE = Integer.MIN_VALUE;
+    /**
+     * Duration designators in the order in which they have to appear; the last three belong to the time part.
+     */
+    private static final String DURATION_DESIGNATORS = "YMDHMS";
+
+    private String str;
+    private int pos;
+    private int end;
+
+    private int year;
+    private int month;
+    private int day;
+    private int hour;
+    private int minute;
+    private int second;
+    private int millis;
+    private int timezoneOffset;
+    private long durationMillis;
+
+    /**
+     * Returns the number of days from 1970-01-01 to the given date in the proleptic Gregorian calendar.
+     */
+    public static long daysFromCivil(int year, int month, int day) {
+        long y = month <= 2 ? year - 1L : year;
+        long era = (y >= 0 ? y : y - 399) / 400;
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    public static boolean isLeapYear(int year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    public static int getDaysInMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return isLeapYear(year) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    /**
+     * Lexes the given value according to the given data type.
+     *
+     * @return {@link #VALID} or {@link #INVALID}; the latter is also returned for NULL values and non-temporal types.
+     */
+    public int lex(Datatype type, String value) {
+        if (type == null || value == null) {
+            return INVALID;
+        }
+        reset(value);
+        boolean valid;
+        switch (type) {
+            case XSD_DATE_TIME:
+                valid = lexDateTime(false);
+                break;
+            case XSD_DATE_TIME_STAMP:
+                valid = lexDateTime(true);
+                break;
+            case XSD_DATE:
+                valid = lexDate();
+                break;
+            case XSD_TIME:
+                valid = lexTime() && lexTimezone() && pos == end;
+                break;
+            case XSD_DURATION:
+                valid = lexDuration();
+                break;
+            case XSD_G_YEAR:
+                valid = lexYear() && lexTimezone() && pos == end;
+                break;
+            case XSD_G_YEAR_MONTH:
+                valid = lexYear() && expect('-') && lexMonth() && lexTimezone() && pos == end;
+                break;
+            case XSD_G_MONTH_DAY:
+                valid = expect('-') && expect('-') && lexMonth() && expect('-') && lexDay() && lexTimezone()
+                    && pos == end && day <= getDaysInMonth(2000, month);
+                break;
+            case XSD_G_DAY:
+                valid = expect('-') && expect('-') && expect('-') && lexDay() && lexTimezone() && pos == end;
+                break;
+            case XSD_G_MONTH:
+                // "--MM--" is the (erroneous) lexical form given in XML Schema 1.0, which is still found in the wild.
+                valid = expect('-') && expect('-') && lexMonth() && (!peek('-') || (expect('-') && expect('-')))
+                    && lexTimezone() && pos == end;
+                break;
+            default:
+                valid = false;
+        }
+        return valid ? VALID : INVALID;
+    }
+
+    private void reset(String value) {
+        str = value;
+        pos = 0;
+        end = value.length();
+        while (pos < end && isWhitespace(value.charAt(pos))) pos++;
+        while (end > pos && isWhitespace(value.charAt(end - 1))) end--;
+        year = 2000;
+        month = 1;
+        day = 1;
+        hour = 0;
+        minute = 0;
+        second = 0;
+        millis = 0;
+        timezoneOffset = NO_TIMEZONE;
+        durationMillis = 0;
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+    }
+
+    private boolean peek(char c) {
+        return pos < end && str.charAt(pos) == c;
+    }
+
+    private boolean expect(char c) {
+        if (pos < end && str.charAt(pos) == c) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Reads exactly the given number of digits; returns -1 if there are not enough digits.
+     */
+    private int digits(int count) {
+        if (end - pos < count) {
+            return -1;
+        }
+        int result = 0;
+        for (int i = 0; i < count; i++) {
+            char c = str.charAt(pos + i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            result = result * 10 + (c - '0');
+        }
+        pos += count;
+        return result;
+    }
+
+    private boolean lexDateTime(boolean timezoneRequired) {
+        if (!lexDateFields()) {
+            return false;
+        }
+        if (expect('T') && !lexTime()) {
+            return false;
+        }
+        if (!lexTimezone() || pos != end) {
+            return false;
+        }
+        return !timezoneRequired || hasTimezone();
+    }
+
+    private boolean lexDate() {
+        if (!lexDateFields()) {
+            return false;
+        }
+        if (expect('T')) {
+            // Lenient: ignore time of day, but still require it to be well-formed.
+            if (!lexTime()) return false;
+            hour = minute = second = millis = 0;
+        }
+        return lexTimezone() && pos == end;
+    }
+
+    private boolean lexDateFields() {
+        return lexYear() && expect('-') && lexMonth() && expect('-') && lexDay()
+            && day <= getDaysInMonth(year, month);
+    }
+
+    private boolean lexYear() {
+        boolean negative = expect('-');
+        int start = pos;
+        long result = 0;
+        while (pos < end) {
+            char c = str.charAt(pos);
+            if (c < '0' || c > '9') break;
+            result = result * 10 + (c - '0');
+            if (result > MAX_YEAR) return false;
+            pos++;
+        }
+        int length = pos - start;
+        // At least four digits; more than four digits must not have leading zeros.
+        if (length < 4 || (length > 4 && str.charAt(start) == '0')) {
+            return false;
+        }
+        year = (int) (negative ? -result : result);
+        return true;
+    }
+
+    private boolean lexMonth() {
+        month = digits(2);
+        return month >= 1 && month <= 12;
+    }
+
+    private boolean lexDay() {
+        day = digits(2);
+        return day >= 1 && day <= 31;
+    }
+
+    private boolean lexTime() {
+        hour = digits(2);
+        if (hour < 0 || hour > 24 || !expect(':')) return false;
+        minute = digits(2);
+        if (minute < 0 || minute > 59 || !expect(':')) return false;
+        second = digits(2);
+        if (second < 0 || second > 59) return false;
+        millis = 0;
+        if (expect('.')) {
+            int start = pos;
+            while (pos < end) {
+                char c = str.charAt(pos);
+                if (c < '0' || c > '9') break;
+                if (pos - start < 3) {
+                    millis = millis * 10 + (c - '0');
+                }
+                pos++;
+            }
+            int length = pos - start;
+            if (length == 0) return false;
+            if (length == 1) millis *= 100;
+            if (length == 2) millis *= 10;
+        }
+        // 24:00:00 is allowed and denotes the end of the day.
+        return hour != 24 || (minute == 0 && second == 0 && millis == 0);
+    }
+
+    private boolean lexTimezone() {
+        if (pos == end) {
+            return true;
+        }
+        char c = str.charAt(pos);
+        if (c == 'Z') {
+            pos++;
+            timezoneOffset = 0;
+            return true;
+        }
+        if (c != '+' && c != '-') {
+            return false;
+        }
+        pos++;
+        int h = digits(2);
+        if (h < 0 || !expect(':')) return false;
+        int m = digits(2);
+        if (m < 0 || m > 59 || h > 14 || (h == 14 && m != 0)) return false;
+        timezoneOffset = (c == '-' ? -1 : 1) * (h * 60 + m);
+        return true;
+    }
+
+    private boolean lexDuration() {
+        boolean negative = expect('-');
+        if (!expect('P')) return false;
+        boolean seenComponent = false;
+        boolean inTime = false;
+        int next = 0;
+        long total = 0;
+        while (pos < end) {
+            if (!inTime && expect('T')) {
+                inTime = true;
+                next = 3;
+                if (pos == end) return false;
+                continue;
+            }
+            long number = 0;
+            int start = pos;
+            while (pos < end) {
+                char c = str.charAt(pos);
+                if (c < '0' || c > '9') break;
+                number = number * 10 + (c - '0');
+                if (number > Integer.MAX_VALUE) return false;
+                pos++;
+            }
+            if (pos == start || pos == end) return false;
+            int fraction = 0;
+            if (inTime && str.charAt(pos) == '.') {
+                // Fractions are only allowed for seconds.
+                pos++;
+                int fractionStart = pos;
+                while (pos < end) {
+                    char c = str.charAt(pos);
+                    if (c < '0' || c > '9') break;
+                    if (pos - fractionStart < 3) fraction = fraction * 10 + (c - '0');
+                    pos++;
+                }
+                int length = pos - fractionStart;
+                if (length == 0 || pos == end || str.charAt(pos) != 'S') return false;
+                if (length == 1) fraction *= 100;
+                if (length == 2) fraction *= 10;
+            }
+            char designator = str.charAt(pos++);
+            int index = DURATION_DESIGNATORS.indexOf(designator, next);
+            if (index < 0 || (index >= 3) != inTime) return false;
+            next = index + 1;
+            seenComponent = true;
+            long unit;
+            switch (index) {
+                case 0:
+                    unit = MILLIS_PER_YEAR;
+                    break;
+                case 1:
+                    unit = MILLIS_PER_MONTH;
+                    break;
+                case 2:
+                    unit = MILLIS_PER_DAY;
+                    break;
+                case 3:
+                    unit = MILLIS_PER_HOUR;
+                    break;
+                case 4:
+                    unit = MILLIS_PER_MINUTE;
+                    break;
+                default:
+                    unit = MILLIS_PER_SECOND;
+            }
+            if (number > (Long.MAX_VALUE - total - fraction) / unit) return false;
+            total += number * unit + fraction;
+        }
+        if (!seenComponent) return false;
+        durationMillis = negative ? -total : total;
+        return true;
+    }
+
+    public int getYear() {
+        return year;
+    }
+
+    public int getMonth() {
+        return month;
+    }
+
+    public int getDay() {
+        return day;
+    }
+
+    /**
+     * Returns the hour of the day; can be 24 for the time 24:00:00 (end of day).
+     */
+    public int getHour() {
+        return hour;
+    }
+
+    public int getMinute() {
+        return minute;
+    }
+
+    public int getSecond() {
+        return second;
+    }
+
+    public int getMillis() {
+        return millis;
+    }
+
+    public boolean hasTimezone() {
+        return timezoneOffset != NO_TIMEZONE;
+    }
+
+    /**
+     * Returns the timezone offset in minutes, or zero if the value did not specify a timezone.
+     */
+    public int getTimezoneOffset() {
+        return hasTimezone() ? timezoneOffset : 0;
+    }
+
+    /**
+     * Returns the milliseconds of the time fields, i.e. the time of day (up to and including 24:00:00).
+     */
+    public long getMillisOfDay() {
+        return hour * MILLIS_PER_HOUR + minute * MILLIS_PER_MINUTE + second * MILLIS_PER_SECOND + millis;
+    }
+
+    /**
+     * Returns the milliseconds since 1970-01-01T00:00:00 of the date and time fields, ignoring the timezone.
+     */
+    public long getLocalMillis() {
+        return daysFromCivil(year, month, day) * MILLIS_PER_DAY + getMillisOfDay();
+    }
+
+    /**
+     * Returns the milliseconds since 1970-01-01T00:00:00Z of the date and time fields; values without a timezone are
+     * interpreted as UTC.
+     */
+    public long getInstantMillis() {
+        return getLocalMillis() - getTimezoneOffset() * MILLIS_PER_MINUTE;
+    }
+
+    /**
+     * Returns the length of a duration in milliseconds. Years and months are converted using the average length of a
+     * Gregorian year, see {@link #MILLIS_PER_YEAR}.
+     */
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+}
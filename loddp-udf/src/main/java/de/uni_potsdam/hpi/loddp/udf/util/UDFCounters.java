@@ -0,0 +1,165 @@
+package de.uni_potsdam.hpi.loddp.udf.util;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.pig.impl.util.UDFContext;
+import org.apache.pig.tools.pigstats.PigStatusReporter;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Hadoop counters for the hot path of a UDF, published through {@link PigStatusReporter} in the group {@link #GROUP}.
+ *
+ * Each UDF class gets the counters "[class].calls" (number of exec/accumulate calls of all algebraic stages),
+ * "[class].values" (number of input values of bag functions, i.e. the sum of all bag sizes), "[class].estimated-nanos"
+ * (time spent in the UDF, extrapolated from one sampled call out of {@link #SAMPLE_INTERVAL}), and
+ * "[class].failures.[datatype]" for parse failures; classes may add a few counters of their own (see {@link #add},
+ * e.g. "LiteralCache.hits"). The number of counters is kept small on purpose, since Hadoop limits the number of
+ * counters per job.
+ *
+ * Typical usage:
+ *
+ * <pre>
+ * long start = counters.start();
+ * try {
+ *     counters.addValues(bag.size());
+ *     ...
+ * } finally {
+ *     counters.stop(start);
+ * }
+ * </pre>
+ *
+ * Counters are silently dropped where no task context is available (e.g. on the frontend), and can be disabled by
+ * setting the job configuration property {@link #ENABLED_PROPERTY} to false. Instances are not thread-safe.
+ */
+public final class UDFCounters {
+
+    public static final String GROUP = "loddp-udf";
+    public static final String ENABLED_PROPERTY = "loddp.udf-counters.enabled";
+    public static final String CALLS = "calls";
+    public static final String VALUES = "values";
+    public static final String ESTIMATED_NANOS = "estimated-nanos";
+    public static final String FAILURES = "failures";
+    /**
+     * Data type label for failures of numeric parsing, where the declared data type is not known.
+     */
+    public static final String NUMERIC = "numeric";
+    /**
+     * Every n-th call is timed; a power of two.
+     */
+    public static final int SAMPLE_INTERVAL = 128;
+
+    private final String prefix;
+    private final Map<String, Counter> failureCounters = new HashMap<String, Counter>();
+    private final Map<String, Counter> namedCounters = new HashMap<String, Counter>();
+    private Boolean enabled;
+    private Counter calls;
+    private Counter values;
+    private Counter estimatedNanos;
+    private long numberCalls = 0;
+
+    /**
+     * @param udf The UDF class; nested classes (e.g. algebraic stages) are counted as their outermost class.
+     */
+    public UDFCounters(Class<?> udf) {
+        while (udf.getEnclosingClass() != null) {
+            udf = udf.getEnclosingClass();
+        }
+        this.prefix = udf.getSimpleName() + ".";
+    }
+
+    private boolean isEnabled() {
+        if (enabled == null) {
+            Configuration conf = UDFContext.getUDFContext().getJobConf();
+            enabled = conf == null || conf.getBoolean(ENABLED_PROPERTY, true);
+        }
+        return enabled;
+    }
+
+    private Counter getCounter(String name) {
+        PigStatusReporter reporter = PigStatusReporter.getInstance();
+        return reporter == null ? null : reporter.getCounter(GROUP, prefix + name);
+    }
+
+    /**
+     * Counts a call, and starts timing it if it is sampled.
+     *
+     * @return The start time to pass to {@link #stop(long)}, or 0 if the call is not sampled.
+     */
+    public long start() {
+        if (!isEnabled()) {
+            return 0;
+        }
+        if (calls == null && (calls = getCounter(CALLS)) == null) {
+            return 0;
+        }
+        calls.increment(1);
+        return (++numberCalls & (SAMPLE_INTERVAL - 1)) == 0 ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Stops timing a sampled call and adds its extrapolated duration.
+     */
+    public void stop(long start) {
+        if (start == 0) {
+            return;
+        }
+        long elapsed = System.nanoTime() - start;
+        if (estimatedNanos == null && (estimatedNanos = getCounter(ESTIMATED_NANOS)) == null) {
+            return;
+        }
+        estimatedNanos.increment(elapsed * SAMPLE_INTERVAL);
+    }
+
+    /**
+     * Counts input values, e.g. the size of a bag.
+     */
+    public void addValues(long count) {
+        if (!isEnabled()) {
+            return;
+        }
+        if (values == null && (values = getCounter(VALUES)) == null) {
+            return;
+        }
+        values.increment(count);
+    }
+
+    /**
+     * Counts values which could not be parsed as the given data type.
+     *
+     * @param datatype A short data type label, e.g. the local name of an XSD type; should come from a small set.
+     */
+    public void addFailures(String datatype, long count) {
+        if (count == 0 || !isEnabled()) {
+            return;
+        }
+        Counter counter = failureCounters.get(datatype);
+        if (counter == null) {
+            if ((counter = getCounter(FAILURES + "." + datatype)) == null) {
+                return;
+            }
+            failureCounters.put(datatype, counter);
+        }
+        counter.increment(count);
+    }
+
+    /**
+     * Adds to the counter "[class].[name]".
+     *
+     * @param name A counter name specific to the class, e.g. "hits" of a cache; should come from a small set.
+     */
+    public void add(String name, long count) {
+        if (count == 0 || !isEnabled()) {
+            return;
+        }
+        Counter counter = namedCounters.get(name);
+        if (counter == null) {
+            if ((counter = getCounter(name)) == null) {
+                return;
+            }
+            namedCounters.put(name, counter);
+        }
+        counter.increment(count);
+    }
+}
@@ -0,0 +1,91 @@
+package de.uni_potsdam.hpi.loddp.udf.util;
+
+import org.apache.commons.lang3.math.NumberUtils;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Differential test of {@link DecimalParser} against the commons-lang approach it replaces in NumericValueRange
+ * ({@link NumberUtils#isNumber(String)} followed by {@link NumberUtils#createBigDecimal(String)}).
+ *
+ * Strings (plain decimals, exponents, overflowing digit sequences, hex numbers, type qualifiers and garbage) are parsed
+ * both ways; acceptance, BigDecimal value and scale, and the double value have to be equal.
+ */
+public class DecimalParserTest {
+
+    private static final String[] SPECIAL_VALUES = {
+        "", "-", ".", "-.", "+1", "1.", ".5", "-.5", "1e", "1e+", "1E-3", "1.5e10", "0x1F", "-0x1f", "07", "1L", "2.5f",
+        "3.0d", "1e999999999", "9223372036854775807", "9223372036854775808", "-9223372036854775808",
+        "00000000000000000001", "1..2", "1.2.3", "NaN", "Infinity", " 1", "1 ", "abc", "1,5",
+    };
+    private static final int RANDOM_VALUES = 300000;
+
+    @Test
+    public void testSpecialValues() {
+        for (String value : SPECIAL_VALUES) {
+            assertEquals("\"" + value + "\"", parseCommonsLang(value), parse(value));
+        }
+    }
+
+    @Test
+    public void testRandomValues() {
+        Random random = new Random(42);
+        for (int i = 0; i < RANDOM_VALUES; i++) {
+            String value = randomString(random);
+            assertEquals("\"" + value + "\"", parseCommonsLang(value), parse(value));
+        }
+    }
+
+    /**
+     * @return A string representation of the parse result which includes unscaled value, scale and double value.
+     */
+    private static String parseCommonsLang(String str) {
+        try {
+            if (!NumberUtils.isNumber(str)) {
+                return "not numeric";
+            }
+            BigDecimal number = NumberUtils.createBigDecimal(str);
+            return toString(number, number.doubleValue());
+        } catch (NumberFormatException e) {
+            return e.toString();
+        }
+    }
+
+    private static String parse(String str) {
+        DecimalParser parser = new DecimalParser();
+        try {
+            int result = parser.parse(str);
+            if (result == DecimalParser.NOT_NUMERIC) {
+                return "not numeric";
+            }
+            BigDecimal number = result == DecimalParser.BIG ? parser.getBigDecimal() :
+                BigDecimal.valueOf(parser.getUnscaledValue(), parser.getScale());
+            return toString(number, parser.getDoubleValue());
+        } catch (NumberFormatException e) {
+            return e.toString();
+        }
+    }
+
+    private static String toString(BigDecimal number, double doubleValue) {
+        return number.unscaledValue() + "E" + (-number.scale()) + " (" + doubleValue + ")";
+    }
+
+    private static String randomString(Random random) {
+        if (random.nextInt(100) == 0) {
+            return SPECIAL_VALUES[random.nextInt(SPECIAL_VALUES.length)];
+        }
+        String alphabet = random.nextInt(10) == 0 ? "0123456789.-+eEdDfFlLxXaA " : "0123456789.-eE";
+        int length = random.nextInt(random.nextInt(4) == 0 ? 30 : 8) + 1;
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            // Mostly digits, so that many strings are valid numbers.
+            sb.append(random.nextInt(3) > 0 ? (char) ('0' + random.nextInt(10)) :
+                alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return sb.toString();
+    }
+}
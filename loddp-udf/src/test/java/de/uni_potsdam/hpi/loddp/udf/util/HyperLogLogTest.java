@@ -0,0 +1,78 @@
+package de.uni_potsdam.hpi.loddp.udf.util;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the accuracy of {@link HyperLogLog} against exact counts (HashSet) on synthetic IRIs.
+ *
+ * Values are drawn with duplicates and spread over {@link #PARTIALS} sketches, which are merged via their byte
+ * representation like partial results of ApproximateDistinctCount. For each cardinality, the root mean square of the
+ * relative error has to stay below three times the expected standard error 1.04 / sqrt(m).
+ */
+public class HyperLogLogTest {
+
+    private static final int PARTIALS = 8;
+    private static final int RUNS = 5;
+    private static final long[] CARDINALITIES = {10, 100, 1000, 3000, 10000, 30000, 100000};
+
+    @Test
+    public void testEmpty() {
+        assertEquals(0, new HyperLogLog().cardinality());
+    }
+
+    @Test
+    public void testDefaultPrecision() throws Exception {
+        assertAccurate(HyperLogLog.DEFAULT_PRECISION);
+    }
+
+    @Test
+    public void testLowPrecision() throws Exception {
+        assertAccurate(10);
+    }
+
+    private static void assertAccurate(int precision) throws Exception {
+        double expectedError = 1.04 / Math.sqrt(1 << precision);
+        Random random = new Random(42);
+        for (long cardinality : CARDINALITIES) {
+            double squares = 0;
+            for (int run = 0; run < RUNS; run++) {
+                double error = measure(precision, cardinality, run, random);
+                squares += error * error;
+            }
+            double rms = Math.sqrt(squares / RUNS);
+            assertTrue(String.format("RMS error %.2f%% for %d values exceeds three times the expected standard error " +
+                "%.2f%%.", 100 * rms, cardinality, 100 * expectedError), rms <= 3 * expectedError);
+        }
+    }
+
+    /**
+     * Estimates the number of distinct values among twice as many random draws from the given number of values.
+     *
+     * @return Relative error of the estimate against the exact number of distinct values.
+     */
+    private static double measure(int precision, long cardinality, int run, Random random) throws Exception {
+        HyperLogLog[] partials = new HyperLogLog[PARTIALS];
+        for (int i = 0; i < PARTIALS; i++) {
+            partials[i] = new HyperLogLog(precision);
+        }
+        Set<String> exact = new HashSet<String>();
+        String prefix = "http://example.org/" + run + "/" + random.nextLong() + "/resource/";
+        for (long i = 0; i < 2 * cardinality; i++) {
+            String value = prefix + (long) (random.nextDouble() * cardinality);
+            exact.add(value);
+            partials[random.nextInt(PARTIALS)].offer(value);
+        }
+        HyperLogLog merged = new HyperLogLog(precision);
+        for (HyperLogLog partial : partials) {
+            merged.merge(partial.toBytes());
+        }
+        return (double) (merged.cardinality() - exact.size()) / exact.size();
+    }
+}
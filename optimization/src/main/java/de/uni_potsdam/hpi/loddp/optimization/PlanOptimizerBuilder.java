@@ -1,8 +1,14 @@
 package de.uni_potsdam.hpi.loddp.optimization;
 
+import de.uni_potsdam.hpi.loddp.optimization.rules.BloomFilterJoin;
+import de.uni_potsdam.hpi.loddp.optimization.rules.CollectedGroup;
 import de.uni_potsdam.hpi.loddp.optimization.rules.CombineFilter;
 import de.uni_potsdam.hpi.loddp.optimization.rules.CombineForeach;
+import de.uni_potsdam.hpi.loddp.optimization.rules.FuseDatatypeFilters;
+import de.uni_potsdam.hpi.loddp.optimization.rules.LoadFilterPushDown;
 import de.uni_potsdam.hpi.loddp.optimization.rules.MergeIdenticalOperators;
+import de.uni_potsdam.hpi.loddp.optimization.rules.NestedProjectionPushDown;
+import de.uni_potsdam.hpi.loddp.optimization.rules.PartitionPruning;
 import de.uni_potsdam.hpi.loddp.optimization.rules.RemoveRedundantProjections;
 import org.apache.pig.newplan.logical.relational.LogicalPlan;
 import org.apache.pig.newplan.optimizer.PlanOptimizer;
@@ -15,6 +21,13 @@ public class PlanOptimizerBuilder {
     private boolean combineFilters;
     private boolean combineForeachs;
     private boolean ignoreProjections;
+    private boolean fuseDatatypeFilters;
+    private boolean bloomFilterJoins;
+    private boolean nestedProjectionPushDown;
+    private boolean loadFilterPushDown;
+    private boolean partitionPruning;
+    private boolean collectedGroups;
+    private String bloomFilterDirectory = BloomFilterJoin.DEFAULT_DIRECTORY;
 
     public PlanOptimizerBuilder() {
         this(true);
@@ -24,6 +37,12 @@ public class PlanOptimizerBuilder {
         combineFilters = defaultValue;
         combineForeachs = defaultValue;
         ignoreProjections = defaultValue;
+        fuseDatatypeFilters = defaultValue;
+        bloomFilterJoins = defaultValue;
+        nestedProjectionPushDown = defaultValue;
+        loadFilterPushDown = defaultValue;
+        partitionPruning = defaultValue;
+        collectedGroups = defaultValue;
     }
 
     /**
@@ -46,12 +65,52 @@ public class PlanOptimizerBuilder {
         this.ignoreProjections = ignoreProjections;
     }
 
+    public void setFuseDatatypeFilters(boolean fuseDatatypeFilters) {
+        this.fuseDatatypeFilters = fuseDatatypeFilters;
+    }
+
+    public void setBloomFilterJoins(boolean bloomFilterJoins) {
+        this.bloomFilterJoins = bloomFilterJoins;
+    }
+
+    public void setNestedProjectionPushDown(boolean nestedProjectionPushDown) {
+        this.nestedProjectionPushDown = nestedProjectionPushDown;
+    }
+
+    public void setLoadFilterPushDown(boolean loadFilterPushDown) {
+        this.loadFilterPushDown = loadFilterPushDown;
+    }
+
+    public void setPartitionPruning(boolean partitionPruning) {
+        this.partitionPruning = partitionPruning;
+    }
+
+    public void setCollectedGroups(boolean collectedGroups) {
+        this.collectedGroups = collectedGroups;
+    }
+
+    /**
+     * Sets the directory in which bloom filters for joins are stored (see {@link BloomFilterJoin}).
+     */
+    public void setBloomFilterDirectory(String bloomFilterDirectory) {
+        this.bloomFilterDirectory = bloomFilterDirectory;
+    }
+
     /**
      * Returns a custom plan optimizer instance.
      */
     public PlanOptimizer getInstance(LogicalPlan plan) {
         LogicalPlanOptimizer optimizer = new LogicalPlanOptimizer(plan);
 
+        if (partitionPruning) {
+            // Runs first, while filters still directly follow the (merged) load.
+            optimizer.addRuleSet(new PartitionPruning());
+        }
+
+        if (fuseDatatypeFilters) {
+            optimizer.addRuleSet(new FuseDatatypeFilters());
+        }
+
         if (combineFilters) {
             optimizer.addRuleSet(new CombineFilter());
         }
@@ -60,15 +119,34 @@ public class PlanOptimizerBuilder {
             optimizer.addRuleSet(new CombineForeach(), new RemoveRedundantProjections());
         }
 
+        if (bloomFilterJoins) {
+            optimizer.addRuleSet(new BloomFilterJoin(bloomFilterDirectory));
+        }
+
         if (ignoreProjections) {
             //optimizer.addRuleSet(new IgnoreProjections());
         }
 
-        if (combineFilters || combineForeachs || ignoreProjections) {
+        if (combineFilters || combineForeachs || ignoreProjections || fuseDatatypeFilters || bloomFilterJoins) {
             // Repeat "identical merge" rules?
             optimizer.addRuleSet(new MergeIdenticalOperators());
         }
 
+        if (collectedGroups) {
+            // Runs on the final (merged) plan, once it is known which loads are shared.
+            optimizer.addRuleSet(new CollectedGroup());
+        }
+
+        if (loadFilterPushDown) {
+            // Runs on the final (merged) plan, before projections so that removed filters do not count as usage.
+            optimizer.addRuleSet(new LoadFilterPushDown());
+        }
+
+        if (nestedProjectionPushDown) {
+            // Runs last, on the final (merged) plan.
+            optimizer.addRuleSet(new NestedProjectionPushDown());
+        }
+
         return optimizer;
     }
 }
@@ -0,0 +1,442 @@
+package de.uni_potsdam.hpi.loddp.optimization.rules;
+
+import de.uni_potsdam.hpi.loddp.common.LOForEachBuilder;
+import de.uni_potsdam.hpi.loddp.common.OperatorPlanUtil;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.pig.FuncSpec;
+import org.apache.pig.LoadFunc;
+import org.apache.pig.LoadMetadata;
+import org.apache.pig.ResourceStatistics;
+import org.apache.pig.builtin.PigStorage;
+import org.apache.pig.impl.io.FileSpec;
+import org.apache.pig.impl.logicalLayer.FrontendException;
+import org.apache.pig.impl.util.MultiMap;
+import org.apache.pig.newplan.Operator;
+import org.apache.pig.newplan.OperatorPlan;
+import org.apache.pig.newplan.OperatorSubPlan;
+import org.apache.pig.newplan.logical.expression.*;
+import org.apache.pig.newplan.logical.relational.*;
+import org.apache.pig.newplan.optimizer.Rule;
+import org.apache.pig.newplan.optimizer.Transformer;
+
+import java.util.*;
+
+/**
+ * Rule which turns joins (and cogroups) of a small and a large relation into bloom filter semi-joins.
+ *
+ * A bloom filter over the join keys of the small input is built in a separate job (BuildBloomFilter on GROUP ALL) and
+ * stored to a temporary location; the large input is filtered with BloomFilterProbe before the join, so that tuples
+ * without a join partner are dropped before the shuffle. A soft link from the store to the probe makes sure that the
+ * filter is built first.
+ *
+ * Relation sizes are not known at optimization time, so they are estimated relative to the loaded input: each filter
+ * on a constant equality is assumed to keep {@link #EQUALITY_SELECTIVITY} of its input, any other filter
+ * {@link #FILTER_SELECTIVITY}. The rule only applies if the small input is estimated to be at most
+ * {@link #SIZE_RATIO} times the size of the large one, and if dropping tuples from the large input cannot change the
+ * result, i.e. the small input is an inner input.
+ *
+ * The filter is sized for the estimated number of records of the small input, based on the number of records reported
+ * by its loaders ({@link LoadMetadata#getStatistics}, e.g. from the sidecar statistics of NQuadsLoader) and the same
+ * selectivities. If the small input cannot be bounded (unknown statistics, or operators which may multiply records,
+ * such as joins or flattening), the rule does not apply.
+ */
+public class BloomFilterJoin extends Rule {
+    public static final String NAME = "de.uni_potsdam.hpi.loddp.optimization.bloom-filter-join";
+    public static final String DEFAULT_DIRECTORY = "/tmp/loddp/bloom-filters/";
+    protected static final Log log = LogFactory.getLog(BloomFilterJoin.class);
+
+    /**
+     * Maximum estimated size of the small input relative to the large input.
+     */
+    public static final double SIZE_RATIO = 0.1;
+    private static final double EQUALITY_SELECTIVITY = 0.1;
+    private static final double FILTER_SELECTIVITY = 0.5;
+
+    /**
+     * Class names of the bloom filter UDFs; the UDFs live in a separate module (loddp-udf) which is only available at
+     * script execution time.
+     */
+    private static final String BUILDER = "de.uni_potsdam.hpi.loddp.udf.evaluation.BuildBloomFilter";
+    private static final String PROBE = "de.uni_potsdam.hpi.loddp.udf.filtering.BloomFilterProbe";
+
+    public static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01;
+
+    private final String directory;
+    private final double falsePositiveRate;
+    private int filterCount = 0;
+
+    public BloomFilterJoin() {
+        this(DEFAULT_DIRECTORY);
+    }
+
+    /**
+     * @param directory Directory to store the bloom filters in.
+     */
+    public BloomFilterJoin(String directory) {
+        this(directory, DEFAULT_FALSE_POSITIVE_RATE);
+    }
+
+    /**
+     * @param directory         Directory to store the bloom filters in.
+     * @param falsePositiveRate False positive rate the bloom filters are sized for.
+     */
+    public BloomFilterJoin(String directory, double falsePositiveRate) {
+        super(NAME, false);
+        this.directory = directory.endsWith("/") ? directory : directory + "/";
+        this.falsePositiveRate = falsePositiveRate;
+    }
+
+    @Override
+    public List<OperatorPlan> match(OperatorPlan plan) {
+        currentPlan = plan;
+        List<OperatorPlan> matches = new ArrayList<OperatorPlan>();
+        Iterator<Operator> operators = plan.getOperators();
+        while (operators.hasNext()) {
+            Operator operator = operators.next();
+            if (operator instanceof LOJoin || operator instanceof LOCogroup) {
+                OperatorSubPlan match = new OperatorSubPlan(plan);
+                match.add(operator);
+                matches.add(match);
+            }
+        }
+        return matches;
+    }
+
+    @Override
+    protected OperatorPlan buildPattern() {
+        return null;
+    }
+
+    @Override
+    public Transformer getNewTransformer() {
+        return new BloomFilterJoinTransformer();
+    }
+
+    /**
+     * Returns the column numbers of the join keys for the given input, or NULL if any of the keys is not a simple
+     * projection of a single column.
+     */
+    private static List<Integer> getKeyColumns(MultiMap<Integer, LogicalExpressionPlan> expressionPlans, int input) {
+        List<Integer> columns = new ArrayList<Integer>();
+        Collection<LogicalExpressionPlan> plans = expressionPlans.get(input);
+        if (plans == null || plans.isEmpty()) {
+            return null;
+        }
+        for (LogicalExpressionPlan plan : plans) {
+            if (plan.size() != 1 || !(plan.getSources().get(0) instanceof ProjectExpression)) {
+                return null;
+            }
+            ProjectExpression projection = (ProjectExpression) plan.getSources().get(0);
+            if (projection.isRangeOrStarProject() || projection.getColNum() < 0) {
+                return null;
+            }
+            columns.add(projection.getColNum());
+        }
+        return columns;
+    }
+
+    /**
+     * Checks whether the given operator is a bloom filter probe inserted by this rule.
+     */
+    private static boolean isProbe(Operator operator) {
+        if (!(operator instanceof LOFilter)) {
+            return false;
+        }
+        LogicalExpressionPlan filterPlan = ((LOFilter) operator).getFilterPlan();
+        if (filterPlan == null || filterPlan.getSources().size() != 1) {
+            return false;
+        }
+        Operator root = filterPlan.getSources().get(0);
+        return root instanceof UserFuncExpression &&
+            PROBE.equals(((UserFuncExpression) root).getFuncSpec().getClassName());
+    }
+
+    /**
+     * Returns the estimated selectivity of the given filter condition.
+     */
+    private static double getSelectivity(LogicalExpressionPlan condition) throws FrontendException {
+        if (condition == null) {
+            return 1.0;
+        }
+        boolean constantEquality = false;
+        Iterator<Operator> expressions = condition.getOperators();
+        while (expressions.hasNext()) {
+            Operator expression = expressions.next();
+            if (expression instanceof OrExpression) {
+                return FILTER_SELECTIVITY;
+            }
+            if (expression instanceof EqualExpression) {
+                EqualExpression equal = (EqualExpression) expression;
+                if (equal.getLhs() instanceof ConstantExpression || equal.getRhs() instanceof ConstantExpression) {
+                    constantEquality = true;
+                }
+            }
+        }
+        return constantEquality ? EQUALITY_SELECTIVITY : FILTER_SELECTIVITY;
+    }
+
+    /**
+     * Returns the number of records reported by the loader of the given load, or -1 if it is unknown.
+     */
+    private static long getLoadedRecords(LOLoad load) throws FrontendException {
+        LoadFunc loadFunc = load.getLoadFunc();
+        if (!(loadFunc instanceof LoadMetadata) || load.getFileSpec() == null) {
+            return -1;
+        }
+        ResourceStatistics statistics;
+        try {
+            Configuration conf = load.getConfiguration() != null ? new Configuration(load.getConfiguration()) :
+                new Configuration();
+            statistics = ((LoadMetadata) loadFunc).getStatistics(load.getFileSpec().getFileName(), new Job(conf));
+        } catch (Exception e) {
+            log.warn("Couldn't get statistics from LoadFunc: " + loadFunc, e);
+            return -1;
+        }
+        if (statistics == null || statistics.getNumRecords() == null) {
+            return -1;
+        }
+        return statistics.getNumRecords();
+    }
+
+    /**
+     * Checks whether the given FOREACH flattens any of its outputs, i.e. may produce more records than it reads.
+     */
+    private static boolean isFlattening(LOForEach foreach) {
+        for (Operator sink : foreach.getInnerPlan().getSinks()) {
+            if (!(sink instanceof LOGenerate)) {
+                return true;
+            }
+            for (boolean flatten : ((LOGenerate) sink).getFlattenFlags()) {
+                if (flatten) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    protected class BloomFilterJoinTransformer extends Transformer {
+        private OperatorSubPlan changes;
+        private Map<Operator, Double> estimates = new HashMap<Operator, Double>();
+        private Map<Operator, Double> recordEstimates = new HashMap<Operator, Double>();
+        private int smallInput;
+        private long expectedInsertions;
+        private List<Integer> smallKeys;
+        private List<Integer> largeKeys;
+
+        @Override
+        public boolean check(OperatorPlan matched) throws FrontendException {
+            Operator operator = matched.getSources().get(0);
+            List<Operator> inputs = currentPlan.getPredecessors(operator);
+            if (inputs == null || inputs.size() != 2) {
+                return false;
+            }
+
+            MultiMap<Integer, LogicalExpressionPlan> expressionPlans;
+            boolean[] inner;
+            if (operator instanceof LOJoin) {
+                LOJoin join = (LOJoin) operator;
+                if (join.getJoinType() != LOJoin.JOINTYPE.HASH && join.getJoinType() != LOJoin.JOINTYPE.SKEWED) {
+                    return false;
+                }
+                expressionPlans = join.getExpressionPlans();
+                inner = join.getInnerFlags();
+            } else {
+                LOCogroup cogroup = (LOCogroup) operator;
+                if (cogroup.getGroupType() != LOCogroup.GROUPTYPE.REGULAR) {
+                    return false;
+                }
+                expressionPlans = cogroup.getExpressionPlans();
+                inner = cogroup.getInner();
+            }
+
+            double size0 = estimateSize(inputs.get(0));
+            double size1 = estimateSize(inputs.get(1));
+            if (size0 <= SIZE_RATIO * size1) {
+                smallInput = 0;
+            } else if (size1 <= SIZE_RATIO * size0) {
+                smallInput = 1;
+            } else {
+                return false;
+            }
+            int largeInput = 1 - smallInput;
+
+            // Dropping tuples of the large input is only safe if tuples without a partner do not show up in the result.
+            if (!inner[smallInput] || isProbe(inputs.get(largeInput))) {
+                return false;
+            }
+
+            smallKeys = getKeyColumns(expressionPlans, smallInput);
+            largeKeys = getKeyColumns(expressionPlans, largeInput);
+            if (smallKeys == null || largeKeys == null || smallKeys.size() != largeKeys.size()) {
+                return false;
+            }
+
+            // The small input has at most as many distinct keys as records.
+            double records = estimateRecords(inputs.get(smallInput));
+            if (records < 0) {
+                log.info(String.format("Not inserting bloom filter before %s, size of %s is unknown.",
+                    ((LogicalRelationalOperator) operator).getAlias(),
+                    ((LogicalRelationalOperator) inputs.get(smallInput)).getAlias()));
+                return false;
+            }
+            expectedInsertions = Math.max(1, (long) Math.ceil(records));
+            return true;
+        }
+
+        /**
+         * Estimates the size of the output of the given operator relative to the size of the loaded input.
+         */
+        private double estimateSize(Operator operator) throws FrontendException {
+            Double estimate = estimates.get(operator);
+            if (estimate != null) {
+                return estimate;
+            }
+            double size = 0;
+            List<Operator> inputs = currentPlan.getPredecessors(operator);
+            if (inputs == null) {
+                size = 1.0;
+            } else {
+                for (Operator input : inputs) {
+                    double inputSize = estimateSize(input);
+                    size = operator instanceof LOUnion ? size + inputSize : Math.max(size, inputSize);
+                }
+            }
+            if (operator instanceof LOFilter) {
+                size *= getSelectivity(((LOFilter) operator).getFilterPlan());
+            } else if (operator instanceof LOSplitOutput) {
+                size *= getSelectivity(((LOSplitOutput) operator).getFilterPlan());
+            }
+            estimates.put(operator, size);
+            return size;
+        }
+
+        /**
+         * Estimates the number of records of the output of the given operator, or returns -1 if it cannot be bounded.
+         */
+        private double estimateRecords(Operator operator) throws FrontendException {
+            Double estimate = recordEstimates.get(operator);
+            if (estimate != null) {
+                return estimate;
+            }
+            double records = 0;
+            List<Operator> inputs = currentPlan.getPredecessors(operator);
+            if (operator instanceof LOLoad) {
+                records = getLoadedRecords((LOLoad) operator);
+            } else if (inputs == null || operator instanceof LOJoin || operator instanceof LOCross ||
+                operator instanceof LOStream || operator instanceof LONative ||
+                (operator instanceof LOForEach && isFlattening((LOForEach) operator))) {
+                records = -1;
+            } else {
+                // Unions and cogroups have at most as many records as all of their inputs together.
+                for (Operator input : inputs) {
+                    double inputRecords = estimateRecords(input);
+                    if (inputRecords < 0) {
+                        records = -1;
+                        break;
+                    }
+                    records += inputRecords;
+                }
+            }
+            if (records >= 0) {
+                if (operator instanceof LOFilter) {
+                    records *= getSelectivity(((LOFilter) operator).getFilterPlan());
+                } else if (operator instanceof LOSplitOutput) {
+                    records *= getSelectivity(((LOSplitOutput) operator).getFilterPlan());
+                } else if (operator instanceof LOLimit && ((LOLimit) operator).getLimitPlan() == null) {
+                    records = Math.min(records, ((LOLimit) operator).getLimit());
+                }
+            }
+            recordEstimates.put(operator, records);
+            return records;
+        }
+
+        @Override
+        public void transform(OperatorPlan matched) throws FrontendException {
+            LogicalPlan logicalPlan = (LogicalPlan) currentPlan;
+            changes = new OperatorSubPlan(currentPlan);
+            LogicalRelationalOperator operator = (LogicalRelationalOperator) matched.getSources().get(0);
+            List<Operator> inputs = currentPlan.getPredecessors(operator);
+            Operator small = inputs.get(smallInput);
+            Operator large = inputs.get(1 - smallInput);
+            String location = directory + (operator.getAlias() != null ? operator.getAlias() : "join") + "-" +
+                (filterCount++);
+
+            // Project the join keys of the small input.
+            LOForEachBuilder keysBuilder = new LOForEachBuilder(logicalPlan);
+            keysBuilder.setAlias("BloomFilterKeys");
+            for (int column : smallKeys) {
+                keysBuilder.addSimpleProjection(column);
+            }
+            LOForEach keys = keysBuilder.getForeach();
+            OperatorPlanUtil.attachChild(small, keys);
+
+            // GROUP ALL, and build the filter.
+            MultiMap<Integer, LogicalExpressionPlan> groupPlans = new MultiMap<Integer, LogicalExpressionPlan>();
+            LogicalExpressionPlan groupPlan = new LogicalExpressionPlan();
+            new ConstantExpression(groupPlan, "all");
+            groupPlans.put(0, groupPlan);
+            LOCogroup group = new LOCogroup(logicalPlan, groupPlans, LOCogroup.GROUPTYPE.REGULAR,
+                new boolean[] {false});
+            group.setAlias("BloomFilterGroup");
+            OperatorPlanUtil.attachChild(keys, group);
+
+            LOForEachBuilder filterBuilder = new LOForEachBuilder(logicalPlan);
+            filterBuilder.setAlias("BloomFilter");
+            LogicalExpressionPlan buildExpression = new LogicalExpressionPlan();
+            ProjectExpression bag = new ProjectExpression(buildExpression, 0, -1, null);
+            UserFuncExpression build = new UserFuncExpression(buildExpression, new FuncSpec(BUILDER,
+                new String[] {Long.toString(expectedInsertions), Double.toString(falsePositiveRate)}));
+            buildExpression.connect(build, bag);
+            Map<Integer, Integer> inputColumnNumberMap = new HashMap<Integer, Integer>();
+            inputColumnNumberMap.put(0, 1);
+            filterBuilder.addGenerateExpression(inputColumnNumberMap, buildExpression, null);
+            LOForEach filter = filterBuilder.getForeach();
+            OperatorPlanUtil.attachChild(group, filter);
+
+            // Store the filter.
+            PigStorage storeFunc = new PigStorage();
+            String signature = "BloomFilter_" + location;
+            storeFunc.setStoreFuncUDFContextSignature(signature);
+            FileSpec fileSpec = new FileSpec(location, new FuncSpec(PigStorage.class.getName()));
+            LOStore store = new LOStore(logicalPlan, fileSpec, storeFunc, signature);
+            store.setAlias("BloomFilterStore");
+            OperatorPlanUtil.attachChild(filter, store);
+
+            // Probe the filter on the large input.
+            LOFilter probe = new LOFilter(logicalPlan);
+            probe.setAlias("BloomFilterProbe");
+            LogicalExpressionPlan condition = new LogicalExpressionPlan();
+            UserFuncExpression probeFunction = new UserFuncExpression(condition,
+                new FuncSpec(PROBE, new String[] {location}));
+            for (int column : largeKeys) {
+                condition.connect(probeFunction, new ProjectExpression(condition, 0, column, probe));
+            }
+            probe.setFilterPlan(condition);
+            OperatorPlanUtil.attachChild(large, probe);
+            OperatorPlanUtil.insertBetween(large, probe, operator);
+
+            // Make sure the filter is built before it is probed.
+            logicalPlan.createSoftLink(store, probe);
+
+            changes.add(keys);
+            changes.add(group);
+            changes.add(filter);
+            changes.add(store);
+            changes.add(probe);
+            changes.add(operator);
+
+            log.info(String.format("Inserted bloom filter on keys of %s before %s (filter location: %s, sized for " +
+                "%d keys).", ((LogicalRelationalOperator) small).getAlias(), operator.getAlias(), location,
+                expectedInsertions));
+        }
+
+        @Override
+        public OperatorPlan reportChanges() {
+            return changes;
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package de.uni_potsdam.hpi.loddp.optimization.rules;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.pig.FuncSpec;
+import org.apache.pig.LoadFunc;
+import org.apache.pig.data.DataType;
+import org.apache.pig.impl.PigContext;
+import org.apache.pig.impl.io.FileSpec;
+import org.apache.pig.impl.logicalLayer.FrontendException;
+import org.apache.pig.newplan.Operator;
+import org.apache.pig.newplan.OperatorPlan;
+import org.apache.pig.newplan.OperatorSubPlan;
+import org.apache.pig.newplan.logical.expression.LogicalExpressionPlan;
+import org.apache.pig.newplan.logical.expression.ProjectExpression;
+import org.apache.pig.newplan.logical.relational.*;
+import org.apache.pig.newplan.optimizer.Rule;
+import org.apache.pig.newplan.optimizer.Transformer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Rule which turns groups by subject on subject-clustered datasets (see ClusteredQuads in loddp-udf) into "collected"
+ * groups, which are computed on the map side without shuffling the quads; scripts which only group by subject thus
+ * become map-only jobs.
+ *
+ * Pig only compiles collected groups whose input is read by the same map task from a CollectableLoadFunc, without any
+ * split in between. The group thus has to be connected to the load by a chain of filters and projections (FOREACH),
+ * each having no other successor; if the load itself is shared (e.g. by several merged scripts), the chain gets a load
+ * of its own, i.e. the dataset is read once more by a map-only job instead of shuffling it. The key has to be the
+ * subject column of the load, since the loader only keeps the quads of each subject together.
+ */
+public class CollectedGroup extends Rule {
+    public static final String NAME = "de.uni_potsdam.hpi.loddp.optimization.collected-group";
+    protected static final Log log = LogFactory.getLog(CollectedGroup.class);
+
+    /**
+     * Class name of the loader for clustered datasets; the loaders live in a separate module (loddp-udf) which is only
+     * available at script execution time.
+     */
+    private static final String LOADER = "de.uni_potsdam.hpi.loddp.udf.clustering.ClusteredQuadLoader";
+    private static final String SUBJECT = "subject";
+
+    /**
+     * Number of loads created by this rule, for unique signatures.
+     */
+    private int loadCount = 0;
+
+    public CollectedGroup() {
+        super(NAME, false);
+    }
+
+    @Override
+    public List<OperatorPlan> match(OperatorPlan plan) {
+        currentPlan = plan;
+        List<OperatorPlan> matches = new ArrayList<OperatorPlan>();
+        Iterator<Operator> operators = plan.getOperators();
+        while (operators.hasNext()) {
+            Operator operator = operators.next();
+            if (operator instanceof LOCogroup &&
+                ((LOCogroup) operator).getGroupType() == LOCogroup.GROUPTYPE.REGULAR) {
+                OperatorSubPlan match = new OperatorSubPlan(plan);
+                match.add(operator);
+                matches.add(match);
+            }
+        }
+        return matches;
+    }
+
+    @Override
+    protected OperatorPlan buildPattern() {
+        return null;
+    }
+
+    @Override
+    public Transformer getNewTransformer() {
+        return new CollectedGroupTransformer();
+    }
+
+    /**
+     * Returns the input column the given group is keyed by, or -1 if it has another key.
+     */
+    private static int getKeyColumn(LOCogroup group) {
+        Collection<LogicalExpressionPlan> plans = group.getExpressionPlans().get(0);
+        if (group.getExpressionPlans().size() != 1 || plans == null || plans.size() != 1) {
+            return -1;
+        }
+        return getProjectedColumn(plans.iterator().next());
+    }
+
+    /**
+     * Returns the column projected by the given expression plan, or -1 if it is no plain projection of a column.
+     */
+    private static int getProjectedColumn(LogicalExpressionPlan plan) {
+        if (plan.size() != 1 || !(plan.getSources().get(0) instanceof ProjectExpression)) {
+            return -1;
+        }
+        ProjectExpression project = (ProjectExpression) plan.getSources().get(0);
+        if (project.isProjectStar() || project.isRangeProject()) {
+            return -1;
+        }
+        return project.getColNum();
+    }
+
+    /**
+     * Returns the input column of the given filter or FOREACH which is passed on unchanged as the given output column,
+     * or -1 if there is none.
+     */
+    private static int getInputColumn(Operator operator, int column) throws FrontendException {
+        if (operator instanceof LOFilter) {
+            return column;
+        }
+        List<Operator> sinks = ((LOForEach) operator).getInnerPlan().getSinks();
+        if (sinks.size() != 1 || !(sinks.get(0) instanceof LOGenerate)) {
+            return -1;
+        }
+        LOGenerate generate = (LOGenerate) sinks.get(0);
+        for (boolean flatten : generate.getFlattenFlags()) {
+            if (flatten) {
+                return -1;
+            }
+        }
+        if (column >= generate.getOutputPlans().size()) {
+            return -1;
+        }
+        // Generated columns project (all of) an inner load, which in turn projects a column of the input.
+        LogicalExpressionPlan plan = generate.getOutputPlans().get(column);
+        if (plan.size() != 1 || !(plan.getSources().get(0) instanceof ProjectExpression)) {
+            return -1;
+        }
+        Operator input = ((ProjectExpression) plan.getSources().get(0)).findReferent();
+        if (!(input instanceof LOInnerLoad) || ((LOInnerLoad) input).getProjection().isProjectStar() ||
+            ((LOInnerLoad) input).getProjection().isRangeProject()) {
+            return -1;
+        }
+        return ((LOInnerLoad) input).getProjection().getColNum();
+    }
+
+    protected class CollectedGroupTransformer extends Transformer {
+        private OperatorPlan changes;
+        private LOLoad load;
+        /**
+         * First operator of the chain between load and group (or the group itself).
+         */
+        private Operator first;
+
+        @Override
+        public boolean check(OperatorPlan matched) throws FrontendException {
+            LOCogroup group = (LOCogroup) matched.getSources().get(0);
+            // The key column is traced back to the load by position; uids are not reliable in merged plans.
+            int column = getKeyColumn(group);
+            first = group;
+            List<Operator> predecessors = currentPlan.getPredecessors(first);
+            while (column >= 0 && predecessors != null && predecessors.size() == 1 &&
+                (predecessors.get(0) instanceof LOFilter || predecessors.get(0) instanceof LOForEach)) {
+                if (currentPlan.getSuccessors(predecessors.get(0)).size() != 1) {
+                    return false;
+                }
+                first = predecessors.get(0);
+                column = getInputColumn(first, column);
+                predecessors = currentPlan.getPredecessors(first);
+            }
+            if (column < 0 || predecessors == null || predecessors.size() != 1 ||
+                !(predecessors.get(0) instanceof LOLoad)) {
+                return false;
+            }
+            load = (LOLoad) predecessors.get(0);
+            LogicalSchema schema = load.getSchema();
+            if (!LOADER.equals(load.getFileSpec().getFuncName()) || schema == null || column >= schema.size()) {
+                return false;
+            }
+            LogicalSchema.LogicalFieldSchema field = schema.getField(column);
+            return SUBJECT.equals(field.alias) && field.type == DataType.CHARARRAY;
+        }
+
+        @Override
+        public void transform(OperatorPlan matched) throws FrontendException {
+            LOCogroup group = (LOCogroup) matched.getSources().get(0);
+            group.setGroupType(LOCogroup.GROUPTYPE.COLLECTED);
+            OperatorSubPlan subPlan = new OperatorSubPlan(currentPlan);
+            subPlan.add(group);
+            changes = subPlan;
+            if (currentPlan.getSuccessors(load).size() > 1) {
+                // A new load function instance and signature, so that push-downs into either load do not interfere.
+                FuncSpec funcSpec = load.getFileSpec().getFuncSpec();
+                LOLoad newLoad = new LOLoad(new FileSpec(load.getFileSpec().getFileName(), funcSpec),
+                    load.getScriptSchema(), (LogicalPlan) currentPlan, load.getConfiguration(),
+                    (LoadFunc) PigContext.instantiateFuncFromSpec(funcSpec),
+                    load.getSignature() + "-collected-" + (++loadCount));
+                newLoad.setAlias(load.getAlias());
+                newLoad.setLocation(load.getLocation());
+                newLoad.setCastInserted(load.isCastInserted());
+                newLoad.setLimit(load.getLimit());
+                currentPlan.add(newLoad);
+                currentPlan.disconnect(load, first);
+                currentPlan.connect(newLoad, first);
+                // The new load has new uids, so all schemas have to be reset.
+                changes = currentPlan;
+            }
+            log.info(String.format("Grouping %s by subject on the map side (collected group%s).", group.getAlias(),
+                changes == currentPlan ? ", with a separate load" : ""));
+        }
+
+        @Override
+        public OperatorPlan reportChanges() {
+            return changes;
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package de.uni_potsdam.hpi.loddp.optimization.rules;
+
+import de.uni_potsdam.hpi.loddp.common.LOForEachBuilder;
+import de.uni_potsdam.hpi.loddp.common.OperatorPlanUtil;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.pig.FuncSpec;
+import org.apache.pig.impl.logicalLayer.FrontendException;
+import org.apache.pig.impl.util.Pair;
+import org.apache.pig.newplan.Operator;
+import org.apache.pig.newplan.OperatorPlan;
+import org.apache.pig.newplan.logical.expression.*;
+import org.apache.pig.newplan.logical.relational.LOFilter;
+import org.apache.pig.newplan.logical.relational.LOForEach;
+import org.apache.pig.newplan.logical.relational.LogicalPlan;
+import org.apache.pig.newplan.logical.relational.LogicalRelationalOperator;
+import org.apache.pig.newplan.optimizer.Transformer;
+
+import java.util.*;
+
+/**
+ * Rule which fuses sibling data type filters (NumericDataType, StringDataType, TemporalDataType) on the same column.
+ *
+ * Instead of resolving the same data type IRI once per filter, a single projection classifies the IRI using the
+ * DatatypeCategory UDF, and each filter is rewritten into an integer comparison on the resulting category. A
+ * projection after each filter removes the additional column again, so that successors see the original schema.
+ */
+public class FuseDatatypeFilters extends MergingRule {
+    public static final String NAME = "de.uni_potsdam.hpi.loddp.optimization.fuse-datatype-filters";
+    protected static final Log log = LogFactory.getLog(FuseDatatypeFilters.class);
+
+    /**
+     * Class name of the classifier UDF; the UDFs live in a separate module (loddp-udf) which is only available at
+     * script execution time.
+     */
+    private static final String CLASSIFIER = "de.uni_potsdam.hpi.loddp.udf.filtering.DatatypeCategory";
+    /**
+     * Results of the classifier UDF; have to match the CATEGORY_* constants of DatatypeCategory in loddp-udf.
+     */
+    public static final int CATEGORY_NUMERIC = 1;
+    public static final int CATEGORY_STRING = 2;
+    public static final int CATEGORY_TEMPORAL = 3;
+    /**
+     * Maps filter UDF class names to the matching categories.
+     */
+    private static final Map<String, Integer> FILTER_CATEGORIES = new HashMap<String, Integer>();
+
+    static {
+        FILTER_CATEGORIES.put("de.uni_potsdam.hpi.loddp.udf.filtering.NumericDataType", CATEGORY_NUMERIC);
+        FILTER_CATEGORIES.put("de.uni_potsdam.hpi.loddp.udf.filtering.StringDataType", CATEGORY_STRING);
+        FILTER_CATEGORIES.put("de.uni_potsdam.hpi.loddp.udf.filtering.TemporalDataType", CATEGORY_TEMPORAL);
+    }
+
+    public FuseDatatypeFilters() {
+        super(NAME, LOFilter.class);
+    }
+
+    /**
+     * Returns the data type filter UDF which makes up the complete condition of the given filter, or NULL if the
+     * filter is not a plain data type filter.
+     */
+    private static UserFuncExpression getDatatypeFunction(LOFilter filter) throws FrontendException {
+        LogicalExpressionPlan filterPlan = filter.getFilterPlan();
+        if (filterPlan == null || filterPlan.getSources().size() != 1) {
+            return null;
+        }
+        Operator root = filterPlan.getSources().get(0);
+        if (!(root instanceof UserFuncExpression)) {
+            return null;
+        }
+        FuncSpec funcSpec = ((UserFuncExpression) root).getFuncSpec();
+        if (!FILTER_CATEGORIES.containsKey(funcSpec.getClassName())) {
+            return null;
+        }
+        if (funcSpec.getCtorArgs() != null && funcSpec.getCtorArgs().length > 0) {
+            return null;
+        }
+        return (UserFuncExpression) root;
+    }
+
+    /**
+     * Returns the single argument of the data type filter in the given filter, or NULL if the argument is not a simple
+     * expression on exactly one input column.
+     */
+    private static LogicalExpression getArgument(LOFilter filter) throws FrontendException {
+        UserFuncExpression function = getDatatypeFunction(filter);
+        if (function == null) {
+            return null;
+        }
+        List<LogicalExpression> arguments = function.getArguments();
+        if (arguments.size() != 1) {
+            return null;
+        }
+        return getSingleProjection(filter.getFilterPlan(), arguments.get(0)) != null ? arguments.get(0) : null;
+    }
+
+    /**
+     * Returns the only ProjectExpression in the given expression tree, or NULL if there is none, more than one, or the
+     * projection does not refer to a single column.
+     */
+    private static ProjectExpression getSingleProjection(OperatorPlan plan, Operator expression) {
+        ProjectExpression projection = null;
+        Deque<Operator> stack = new ArrayDeque<Operator>();
+        stack.push(expression);
+        while (!stack.isEmpty()) {
+            Operator operator = stack.pop();
+            if (operator instanceof ProjectExpression) {
+                if (projection != null) return null;
+                projection = (ProjectExpression) operator;
+            }
+            List<Operator> successors = plan.getSuccessors(operator);
+            if (successors != null) {
+                for (Operator successor : successors) {
+                    stack.push(successor);
+                }
+            }
+        }
+        if (projection == null || projection.isRangeOrStarProject() || projection.getColNum() < 0) {
+            return null;
+        }
+        return projection;
+    }
+
+    @Override
+    public Transformer getNewTransformer() {
+        return new FuseDatatypeFiltersTransformer();
+    }
+
+    protected class FuseDatatypeFiltersTransformer extends SiblingTransformer {
+
+        @Override
+        public boolean check(OperatorPlan plan) throws FrontendException {
+            // Keep data type filters on the same expression as the first data type filter.
+            LogicalExpression argument = null;
+            Iterator<Operator> operators = plan.getOperators();
+            while (operators.hasNext()) {
+                LogicalExpression filterArgument = getArgument((LOFilter) operators.next());
+                if (filterArgument == null) {
+                    operators.remove();
+                } else if (argument == null) {
+                    argument = filterArgument;
+                } else if (!argument.isEqual(filterArgument)) {
+                    operators.remove();
+                }
+            }
+            // Fusing only pays off for at least two filters.
+            if (plan.size() < 2) {
+                return false;
+            }
+            // We need the schema of the parent to project all columns through the classification step.
+            LogicalRelationalOperator parent = (LogicalRelationalOperator) getParentOperator(plan);
+            return parent.getSchema() != null;
+        }
+
+        @Override
+        public void transformPlan(OperatorPlan plan) throws FrontendException {
+            LogicalPlan logicalPlan = (LogicalPlan) currentPlan;
+            List<Operator> filters = getOperatorList(plan);
+            LogicalRelationalOperator parent = (LogicalRelationalOperator) getParentOperator(plan);
+            int columns = parent.getSchema().size();
+
+            StringBuilder logMessage = new StringBuilder();
+            logMessage.append("Fused ").append(filters.size()).append(" data type filters:");
+
+            // Build classification step: all parent columns plus the category.
+            LOForEachBuilder builder = new LOForEachBuilder(logicalPlan);
+            builder.setAlias("DatatypeCategory");
+            for (int i = 0; i < columns; i++) {
+                builder.addSimpleProjection(i);
+            }
+            int categoryColumn = addClassification(builder, (LOFilter) filters.get(0));
+            LOForEach classification = builder.getForeach();
+            OperatorPlanUtil.attachChild(parent, classification);
+
+            for (Operator operator : filters) {
+                LOFilter filter = (LOFilter) operator;
+                logMessage.append(" ").append(filter.getAlias());
+                int category = FILTER_CATEGORIES.get(getDatatypeFunction(filter).getFuncSpec().getClassName());
+
+                // Move the filter below the classification step and replace its condition.
+                OperatorPlanUtil.insertBetween(parent, classification, filter);
+                filter.setFilterPlan(buildCondition(filter, categoryColumn, category));
+
+                // Remove the category column again.
+                LOForEach projection = buildProjection(logicalPlan, columns);
+                projection.setAlias(filter.getAlias());
+                insertAfter(logicalPlan, filter, projection);
+
+                changes.add(filter);
+                changes.add(projection);
+                markSuccessorsChanged(projection);
+            }
+            changes.add(classification);
+
+            log.info(logMessage);
+        }
+
+        /**
+         * Adds the DatatypeCategory expression to the given foreach builder, using the argument of the data type filter
+         * in the given filter. Returns the column number of the new expression.
+         */
+        private int addClassification(LOForEachBuilder builder, LOFilter filter) throws FrontendException {
+            LogicalExpressionPlan expression = filter.getFilterPlan().deepCopy();
+            Operator function = expression.getSources().get(0);
+            Operator argument = expression.getSuccessors(function).get(0);
+            expression.disconnect(function, argument);
+            expression.remove(function);
+
+            UserFuncExpression classifier = new UserFuncExpression(expression, new FuncSpec(CLASSIFIER));
+            expression.connect(classifier, argument);
+
+            // Project the referenced column through a LOInnerLoad, see LOForEachBuilder#addSimpleProjection.
+            ProjectExpression projection = getSingleProjection(expression, argument);
+            Map<Integer, Integer> inputColumnNumberMap = new HashMap<Integer, Integer>();
+            inputColumnNumberMap.put(projection.getInputNum(), projection.getColNum());
+            projection.setColNum(-1);
+
+            return builder.addGenerateExpression(inputColumnNumberMap, expression, null);
+        }
+
+        /**
+         * Builds the condition "categoryColumn == category" for the given filter.
+         */
+        private LogicalExpressionPlan buildCondition(LOFilter filter, int categoryColumn, int category) {
+            LogicalExpressionPlan condition = new LogicalExpressionPlan();
+            ProjectExpression projection = new ProjectExpression(condition, 0, categoryColumn, filter);
+            new EqualExpression(condition, projection, new ConstantExpression(condition, category));
+            return condition;
+        }
+
+        private LOForEach buildProjection(LogicalPlan logicalPlan, int columns) {
+            LOForEachBuilder builder = new LOForEachBuilder(logicalPlan);
+            for (int i = 0; i < columns; i++) {
+                builder.addSimpleProjection(i);
+            }
+            return builder.getForeach();
+        }
+
+        /**
+         * Inserts the given operator between an operator and all of its successors.
+         */
+        private void insertAfter(LogicalPlan logicalPlan, Operator operator, Operator operatorToInsert)
+            throws FrontendException {
+            logicalPlan.add(operatorToInsert);
+            List<Operator> successors = logicalPlan.getSuccessors(operator);
+            if (successors != null) {
+                successors = new ArrayList<Operator>(successors);
+                for (int i = 0; i < successors.size(); i++) {
+                    Pair<Integer, Integer> pos = logicalPlan.disconnect(operator, successors.get(i));
+                    logicalPlan.connect(operatorToInsert, i, successors.get(i), pos.second);
+                }
+            }
+            logicalPlan.connect(operator, operatorToInsert);
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package de.uni_potsdam.hpi.loddp.optimization.rules;
+
+import de.uni_potsdam.hpi.loddp.common.OperatorPlanUtil;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.pig.Expression;
+import org.apache.pig.LoadMetadata;
+import org.apache.pig.data.DataType;
+import org.apache.pig.impl.logicalLayer.FrontendException;
+import org.apache.pig.newplan.Operator;
+import org.apache.pig.newplan.OperatorPlan;
+import org.apache.pig.newplan.OperatorSubPlan;
+import org.apache.pig.newplan.logical.expression.*;
+import org.apache.pig.newplan.logical.relational.*;
+import org.apache.pig.newplan.optimizer.Rule;
+import org.apache.pig.newplan.optimizer.Transformer;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Rule which pushes constant equality filters directly following a load (e.g. "FILTER quads BY predicate == 'a' OR
+ * predicate == 'b'") down into the loader as allow-lists of values, so that non-matching records are rejected before
+ * they are deserialized.
+ *
+ * The pushed down filter is a conjunction of allow-lists, one for each column which is restricted by all successors of
+ * the load, containing the union of the values allowed by the successors; in merged plans, the loader thus returns
+ * exactly the records needed by any of the merged scripts. If the load has a single filter successor which consists of
+ * such allow-lists only, the filter is removed; otherwise filters are kept (and only applied to the pre-filtered
+ * records).
+ *
+ * Filters are pushed down via {@link LoadMetadata#setPartitionFilter}, with nested fields named like "object.dtlang".
+ * Since Pig does not define the semantics of partition filters for other columns, the rule only applies to the loaders
+ * in {@link #SUPPORTED_LOADERS}.
+ */
+public class LoadFilterPushDown extends Rule {
+    public static final String NAME = "de.uni_potsdam.hpi.loddp.optimization.load-filter-push-down";
+    protected static final Log log = LogFactory.getLog(LoadFilterPushDown.class);
+
+    /**
+     * Class names of loaders which apply filters passed to setPartitionFilter exactly; the loaders live in a separate
+     * module (loddp-udf) which is only available at script execution time.
+     */
+    private static final Set<String> SUPPORTED_LOADERS = new HashSet<String>();
+
+    static {
+        SUPPORTED_LOADERS.add("de.uni_potsdam.hpi.loddp.udf.loading.NQuadsLoader");
+        SUPPORTED_LOADERS.add("de.uni_potsdam.hpi.loddp.udf.clustering.ClusteredQuadLoader");
+    }
+
+    /**
+     * Loads which have been processed already, so that filters are pushed down at most once.
+     */
+    private final Set<LOLoad> processed = new HashSet<LOLoad>();
+
+    public LoadFilterPushDown() {
+        super(NAME, false);
+    }
+
+    @Override
+    public List<OperatorPlan> match(OperatorPlan plan) {
+        currentPlan = plan;
+        List<OperatorPlan> matches = new ArrayList<OperatorPlan>();
+        for (Operator operator : plan.getSources()) {
+            if (operator instanceof LOLoad && !processed.contains(operator)) {
+                OperatorSubPlan match = new OperatorSubPlan(plan);
+                match.add(operator);
+                matches.add(match);
+            }
+        }
+        return matches;
+    }
+
+    @Override
+    protected OperatorPlan buildPattern() {
+        return null;
+    }
+
+    @Override
+    public Transformer getNewTransformer() {
+        return new LoadFilterPushDownTransformer();
+    }
+
+    /**
+     * Allow-lists (by column name) contained in the conjuncts of a filter condition.
+     */
+    private static class Restriction {
+        private final Map<String, Set<String>> allowLists = new TreeMap<String, Set<String>>();
+        /**
+         * Whether the condition consists of allow-lists only.
+         */
+        private boolean complete = true;
+    }
+
+    /**
+     * Collects the allow-lists among the conjuncts of the given filter condition on the given (loaded) schema.
+     */
+    private static Restriction getRestriction(LogicalExpressionPlan condition, LogicalSchema schema)
+        throws FrontendException {
+        Restriction restriction = new Restriction();
+        if (condition == null || condition.getSources().size() != 1) {
+            restriction.complete = false;
+            return restriction;
+        }
+        collectConjuncts((LogicalExpression) condition.getSources().get(0), schema, restriction);
+        return restriction;
+    }
+
+    private static void collectConjuncts(LogicalExpression expression, LogicalSchema schema, Restriction restriction)
+        throws FrontendException {
+        if (expression instanceof AndExpression) {
+            collectConjuncts(((AndExpression) expression).getLhs(), schema, restriction);
+            collectConjuncts(((AndExpression) expression).getRhs(), schema, restriction);
+            return;
+        }
+        List<String> allowList = new ArrayList<String>();
+        if (!collectAllowedValues(expression, schema, allowList)) {
+            restriction.complete = false;
+            return;
+        }
+        String column = allowList.remove(0);
+        Set<String> values = restriction.allowLists.get(column);
+        if (values == null) {
+            restriction.allowLists.put(column, new TreeSet<String>(allowList));
+        } else {
+            values.retainAll(allowList);
+        }
+    }
+
+    /**
+     * Adds the column name (if the list is still empty) and the allowed values of the given disjunction of equalities
+     * between a column and string constants.
+     *
+     * @return False if the expression is no such disjunction.
+     */
+    private static boolean collectAllowedValues(LogicalExpression expression, LogicalSchema schema,
+                                                List<String> allowList) throws FrontendException {
+        if (expression instanceof OrExpression) {
+            return collectAllowedValues(((OrExpression) expression).getLhs(), schema, allowList) &&
+                collectAllowedValues(((OrExpression) expression).getRhs(), schema, allowList);
+        }
+        if (!(expression instanceof EqualExpression)) {
+            return false;
+        }
+        LogicalExpression lhs = ((EqualExpression) expression).getLhs();
+        LogicalExpression rhs = ((EqualExpression) expression).getRhs();
+        if (lhs instanceof ConstantExpression) {
+            LogicalExpression swap = lhs;
+            lhs = rhs;
+            rhs = swap;
+        }
+        if (!(rhs instanceof ConstantExpression) || !(((ConstantExpression) rhs).getValue() instanceof String)) {
+            return false;
+        }
+        String column = getColumnName(lhs, schema);
+        if (column == null) {
+            return false;
+        }
+        if (allowList.isEmpty()) {
+            allowList.add(column);
+        }
+        if (!allowList.get(0).equals(column)) {
+            return false;
+        }
+        allowList.add((String) ((ConstantExpression) rhs).getValue());
+        return true;
+    }
+
+    /**
+     * Returns the name in the given (loaded) schema of the chararray column or tuple field referenced by the given
+     * expression, e.g. "predicate" or "object.dtlang", or NULL if it is no plain reference.
+     */
+    static String getColumnName(LogicalExpression expression, LogicalSchema schema) throws FrontendException {
+        if (expression.getFieldSchema() == null || expression.getFieldSchema().type != DataType.CHARARRAY) {
+            return null;
+        }
+        int field = -1;
+        if (expression instanceof DereferenceExpression) {
+            List<Integer> columns = ((DereferenceExpression) expression).getBagColumns();
+            if (columns == null || columns.size() != 1) {
+                return null;
+            }
+            field = columns.get(0);
+            expression = ((DereferenceExpression) expression).getReferredExpression();
+        }
+        if (!(expression instanceof ProjectExpression)) {
+            return null;
+        }
+        ProjectExpression projection = (ProjectExpression) expression;
+        if (projection.isRangeOrStarProject() || projection.getColNum() < 0 ||
+            projection.getColNum() >= schema.size()) {
+            return null;
+        }
+        LogicalSchema.LogicalFieldSchema column = schema.getField(projection.getColNum());
+        if (field < 0) {
+            return column.alias;
+        }
+        if (column.type != DataType.TUPLE || column.schema == null || field >= column.schema.size()) {
+            return null;
+        }
+        return column.alias + "." + column.schema.getField(field).alias;
+    }
+
+    /**
+     * Returns the filter conditions of the given successors of a load: the conditions of filters, and of the outputs of
+     * splits.
+     *
+     * @return NULL if any successor is neither a filter nor a split.
+     */
+    static List<LogicalExpressionPlan> getConditions(OperatorPlan plan, List<Operator> successors) {
+        List<LogicalExpressionPlan> conditions = new ArrayList<LogicalExpressionPlan>();
+        for (Operator successor : successors) {
+            if (successor instanceof LOFilter) {
+                conditions.add(((LOFilter) successor).getFilterPlan());
+            } else if (successor instanceof LOSplitOutput) {
+                conditions.add(((LOSplitOutput) successor).getFilterPlan());
+            } else if (successor instanceof LOSplit && plan.getSuccessors(successor) != null) {
+                List<LogicalExpressionPlan> outputs = getConditions(plan, plan.getSuccessors(successor));
+                if (outputs == null) {
+                    return null;
+                }
+                conditions.addAll(outputs);
+            } else {
+                return null;
+            }
+        }
+        return conditions;
+    }
+
+    protected class LoadFilterPushDownTransformer extends Transformer {
+        private OperatorSubPlan changes;
+        private Map<String, Set<String>> allowLists;
+        private boolean removeFilter;
+
+        @Override
+        public boolean check(OperatorPlan matched) throws FrontendException {
+            LOLoad load = (LOLoad) matched.getSources().get(0);
+            processed.add(load);
+            if (!SUPPORTED_LOADERS.contains(load.getFileSpec().getFuncName()) ||
+                !(load.getLoadFunc() instanceof LoadMetadata)) {
+                return false;
+            }
+            // Column names are taken from the loader's schema; column numbers of already pruned loads do not match it.
+            LogicalSchema schema = load.getDeterminedSchema();
+            if (schema == null || load.getSchema() == null || schema.size() != load.getSchema().size()) {
+                return false;
+            }
+            List<Operator> successors = currentPlan.getSuccessors(load);
+            if (successors == null) {
+                return false;
+            }
+            List<LogicalExpressionPlan> conditions = getConditions(currentPlan, successors);
+            if (conditions == null || conditions.isEmpty()) {
+                return false;
+            }
+
+            // Columns restricted by all conditions, with the union of the allowed values.
+            allowLists = null;
+            removeFilter = successors.size() == 1 && successors.get(0) instanceof LOFilter;
+            for (LogicalExpressionPlan condition : conditions) {
+                Restriction restriction = getRestriction(condition, schema);
+                removeFilter &= restriction.complete;
+                if (allowLists == null) {
+                    allowLists = restriction.allowLists;
+                    continue;
+                }
+                allowLists.keySet().retainAll(restriction.allowLists.keySet());
+                for (Map.Entry<String, Set<String>> allowList : allowLists.entrySet()) {
+                    allowList.getValue().addAll(restriction.allowLists.get(allowList.getKey()));
+                }
+            }
+            return !allowLists.isEmpty();
+        }
+
+        @Override
+        public void transform(OperatorPlan matched) throws FrontendException {
+            changes = new OperatorSubPlan(currentPlan);
+            LOLoad load = (LOLoad) matched.getSources().get(0);
+
+            Expression filter = null;
+            for (Map.Entry<String, Set<String>> allowList : allowLists.entrySet()) {
+                Expression disjunction = null;
+                for (String value : allowList.getValue()) {
+                    Expression equality = new Expression.BinaryExpression(new Expression.Column(allowList.getKey()),
+                        new Expression.Const(value), Expression.OpType.OP_EQ);
+                    disjunction = disjunction == null ? equality :
+                        new Expression.BinaryExpression(disjunction, equality, Expression.OpType.OP_OR);
+                }
+                if (disjunction == null) {
+                    // Contradicting conjuncts, e.g. "predicate == 'a' AND predicate == 'b'"; left to the filter.
+                    removeFilter = false;
+                    continue;
+                }
+                filter = filter == null ? disjunction :
+                    new Expression.BinaryExpression(filter, disjunction, Expression.OpType.OP_AND);
+            }
+            if (filter == null) {
+                return;
+            }
+
+            try {
+                ((LoadMetadata) load.getLoadFunc()).setPartitionFilter(filter);
+            } catch (IOException e) {
+                log.warn("Could not push down filter into " + load.getAlias() + ": " + e.getMessage());
+                return;
+            }
+            log.info(String.format("Pushed down filter into %s: %s", load.getAlias(), filter));
+
+            if (removeFilter) {
+                LOFilter filterOperator = (LOFilter) currentPlan.getSuccessors(load).get(0);
+                currentPlan.disconnect(load, filterOperator);
+                OperatorPlanUtil.replace(filterOperator, load);
+                changes.add(load);
+                log.info("Removed filter " + filterOperator.getAlias() + " which is applied by the loader.");
+            }
+        }
+
+        @Override
+        public OperatorPlan reportChanges() {
+            return changes;
+        }
+    }
+}
@@ -4,13 +4,17 @@ import de.uni_potsdam.hpi.loddp.common.OperatorPlanUtil;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.pig.impl.logicalLayer.FrontendException;
+import org.apache.pig.impl.util.UDFContext;
 import org.apache.pig.newplan.Operator;
 import org.apache.pig.newplan.OperatorPlan;
+import org.apache.pig.newplan.logical.relational.LOLoad;
+import org.apache.pig.newplan.logical.relational.LogicalSchema;
 import org.apache.pig.newplan.optimizer.Transformer;
 
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 
 /**
  *
@@ -56,12 +60,45 @@ public class MergeIdenticalOperators extends MergingRule {
 
         private boolean operatorsAreEqual(Operator op1, Operator op2) {
             try {
+                if (op1 instanceof LOLoad && op2 instanceof LOLoad) {
+                    LOLoad load1 = (LOLoad) op1;
+                    LOLoad load2 = (LOLoad) op2;
+                    if (!loadSchemasAreEqual(load1, load2) || !loadPushDownsAreEqual(load1, load2)) {
+                        return false;
+                    }
+                }
                 return op1.isEqual(op2);
             } catch (Throwable e) {
                 return false;
             }
         }
 
+        /**
+         * LOLoad#isEqual only compares the loaded file and load function; loads of already optimized plans may differ
+         * in the columns pruned by projection push-down, in which case they cannot replace each other.
+         */
+        private boolean loadSchemasAreEqual(LOLoad load1, LOLoad load2) throws FrontendException {
+            LogicalSchema schema1 = load1.getSchema();
+            LogicalSchema schema2 = load2.getSchema();
+            if (schema1 == null || schema2 == null) {
+                return schema1 == schema2;
+            }
+            return LogicalSchema.equals(schema1, schema2, false, false);
+        }
+
+        /**
+         * Loaders keep pushed down projections and filters in their UDF context properties (by load signature), which
+         * LOLoad#isEqual does not compare either.
+         */
+        private boolean loadPushDownsAreEqual(LOLoad load1, LOLoad load2) throws FrontendException {
+            UDFContext context = UDFContext.getUDFContext();
+            Properties properties1 =
+                context.getUDFProperties(load1.getLoadFunc().getClass(), new String[] {load1.getSignature()});
+            Properties properties2 =
+                context.getUDFProperties(load2.getLoadFunc().getClass(), new String[] {load2.getSignature()});
+            return properties1.equals(properties2);
+        }
+
         @Override
         public void transformPlan(OperatorPlan plan) throws FrontendException {
             int originalSize = currentPlan.size();
@@ -0,0 +1,263 @@
+package de.uni_potsdam.hpi.loddp.optimization.rules;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.pig.LoadFunc;
+import org.apache.pig.LoadPushDown;
+import org.apache.pig.data.DataType;
+import org.apache.pig.impl.logicalLayer.FrontendException;
+import org.apache.pig.newplan.Operator;
+import org.apache.pig.newplan.OperatorPlan;
+import org.apache.pig.newplan.OperatorSubPlan;
+import org.apache.pig.newplan.logical.expression.DereferenceExpression;
+import org.apache.pig.newplan.logical.expression.LogicalExpressionPlan;
+import org.apache.pig.newplan.logical.expression.ProjectExpression;
+import org.apache.pig.newplan.logical.relational.*;
+import org.apache.pig.newplan.optimizer.Rule;
+import org.apache.pig.newplan.optimizer.Transformer;
+
+import java.util.*;
+
+/**
+ * Rule which pushes the required fields of tuple columns (e.g. the object tuple of quads) down into loaders which
+ * support projection push-down.
+ *
+ * Pig's own column pruning only pushes down top-level columns, so e.g. the loader would still decode all object
+ * values for a script which only looks at "object.dtlang". This rule determines which fields of a tuple column are
+ * read by all successors of a load (in merged plans, the union over all scripts), and passes them to the loader as
+ * sub-fields of an otherwise complete list of required fields.
+ *
+ * The analysis is conservative: fields are only pruned if the tuple column is solely accessed through dereferences
+ * (e.g. "object.value") in filters, splits, sorts and foreach statements directly on the loaded relation (or behind
+ * other filters, splits, sorts and limits). Any other use of the column, e.g. passing the whole tuple to a UDF or
+ * grouping on it, is assumed to read all fields.
+ */
+public class NestedProjectionPushDown extends Rule {
+    public static final String NAME = "de.uni_potsdam.hpi.loddp.optimization.nested-projection-push-down";
+    protected static final Log log = LogFactory.getLog(NestedProjectionPushDown.class);
+
+    /**
+     * Loads which have been processed already; the rule does not change the plan, so it would match them again.
+     */
+    private final Set<LOLoad> processed = new HashSet<LOLoad>();
+
+    public NestedProjectionPushDown() {
+        super(NAME, false);
+    }
+
+    @Override
+    public List<OperatorPlan> match(OperatorPlan plan) {
+        currentPlan = plan;
+        List<OperatorPlan> matches = new ArrayList<OperatorPlan>();
+        for (Operator operator : plan.getSources()) {
+            if (operator instanceof LOLoad && !processed.contains(operator)) {
+                OperatorSubPlan match = new OperatorSubPlan(plan);
+                match.add(operator);
+                matches.add(match);
+            }
+        }
+        return matches;
+    }
+
+    @Override
+    protected OperatorPlan buildPattern() {
+        return null;
+    }
+
+    @Override
+    public Transformer getNewTransformer() {
+        return new NestedProjectionPushDownTransformer();
+    }
+
+    /**
+     * Adds the fields of the given tuple column which are read by any successor of the given operator to the set of
+     * required fields.
+     *
+     * @return False if all fields may be read.
+     */
+    private static boolean collectRelationUsage(OperatorPlan plan, Operator input, int column, Set<Integer> fields)
+        throws FrontendException {
+        List<Operator> successors = plan.getSuccessors(input);
+        if (successors == null) {
+            return true;
+        }
+        for (Operator successor : successors) {
+            boolean passThrough = true;
+            List<LogicalExpressionPlan> expressions = new ArrayList<LogicalExpressionPlan>();
+            if (successor instanceof LOFilter) {
+                expressions.add(((LOFilter) successor).getFilterPlan());
+            } else if (successor instanceof LOSplitOutput) {
+                expressions.add(((LOSplitOutput) successor).getFilterPlan());
+            } else if (successor instanceof LOSort) {
+                if (((LOSort) successor).getUserFunc() != null) {
+                    return false;
+                }
+                expressions.addAll(((LOSort) successor).getSortColPlans());
+            } else if (successor instanceof LOForEach) {
+                if (!collectForeachUsage((LOForEach) successor, column, fields)) {
+                    return false;
+                }
+                passThrough = false;
+            } else if (!(successor instanceof LOSplit) && !(successor instanceof LOLimit)) {
+                return false;
+            }
+            for (LogicalExpressionPlan expression : expressions) {
+                if (!collectExpressionUsage(expression, column, -1, fields)) {
+                    return false;
+                }
+            }
+            if (passThrough && !collectRelationUsage(plan, successor, column, fields)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds the fields of the given tuple column which are read by the given foreach statement.
+     */
+    private static boolean collectForeachUsage(LOForEach foreach, int column, Set<Integer> fields)
+        throws FrontendException {
+        LogicalPlan innerPlan = foreach.getInnerPlan();
+        Iterator<Operator> operators = innerPlan.getOperators();
+        while (operators.hasNext()) {
+            Operator operator = operators.next();
+            if (!(operator instanceof LOInnerLoad)) {
+                continue;
+            }
+            LOInnerLoad innerLoad = (LOInnerLoad) operator;
+            if (innerLoad.getProjection().isRangeOrStarProject()) {
+                return false;
+            }
+            if (innerLoad.getColNum() != column) {
+                continue;
+            }
+            // The tuple column may only be used in generate expressions, not in nested operators.
+            for (Operator successor : innerPlan.getSuccessors(innerLoad)) {
+                if (!(successor instanceof LOGenerate)) {
+                    return false;
+                }
+                int input = innerPlan.getPredecessors(successor).indexOf(innerLoad);
+                for (LogicalExpressionPlan expression : ((LOGenerate) successor).getOutputPlans()) {
+                    if (!collectExpressionUsage(expression, -1, input, fields)) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds the fields of the given tuple column which are dereferenced in the given expression; the column is given
+     * either as column number (for expressions on relations) or as input number (for generate expressions on inner
+     * loads).
+     *
+     * @return False if the tuple is used in any other way than with a dereference.
+     */
+    private static boolean collectExpressionUsage(LogicalExpressionPlan expression, int column, int input,
+                                                  Set<Integer> fields) throws FrontendException {
+        Iterator<Operator> operators = expression.getOperators();
+        while (operators.hasNext()) {
+            Operator operator = operators.next();
+            if (!(operator instanceof ProjectExpression)) {
+                continue;
+            }
+            ProjectExpression projection = (ProjectExpression) operator;
+            if (input >= 0 ? projection.getInputNum() != input : projection.getColNum() != column) {
+                if (input < 0 && projection.isRangeOrStarProject()) {
+                    return false;
+                }
+                continue;
+            }
+            List<Operator> parents = expression.getPredecessors(projection);
+            if (parents == null || parents.size() != 1 || !(parents.get(0) instanceof DereferenceExpression)) {
+                return false;
+            }
+            List<Integer> columns = ((DereferenceExpression) parents.get(0)).getBagColumns();
+            if (columns == null || columns.isEmpty()) {
+                return false;
+            }
+            fields.addAll(columns);
+        }
+        return true;
+    }
+
+    protected class NestedProjectionPushDownTransformer extends Transformer {
+        private OperatorSubPlan changes;
+        private Map<Integer, Set<Integer>> requiredFields = new TreeMap<Integer, Set<Integer>>();
+
+        @Override
+        public boolean check(OperatorPlan matched) throws FrontendException {
+            LOLoad load = (LOLoad) matched.getSources().get(0);
+            processed.add(load);
+            LoadFunc loadFunc = load.getLoadFunc();
+            if (!(loadFunc instanceof LoadPushDown) ||
+                !((LoadPushDown) loadFunc).getFeatures().contains(LoadPushDown.OperatorSet.PROJECTION)) {
+                return false;
+            }
+            LogicalSchema schema = load.getSchema();
+            if (schema == null) {
+                return false;
+            }
+            // Column numbers of already pruned loads (e.g. of merged optimized plans) do not match the loader's.
+            LogicalSchema loadedSchema = load.getDeterminedSchema() != null ? load.getDeterminedSchema() :
+                load.getScriptSchema();
+            if (loadedSchema != null && loadedSchema.size() != schema.size()) {
+                return false;
+            }
+
+            requiredFields.clear();
+            for (int column = 0; column < schema.size(); column++) {
+                LogicalSchema.LogicalFieldSchema field = schema.getField(column);
+                if (field.type != DataType.TUPLE || field.schema == null) {
+                    continue;
+                }
+                Set<Integer> fields = new TreeSet<Integer>();
+                // Columns which are not used at all are left to Pig's column pruning.
+                if (collectRelationUsage(currentPlan, load, column, fields) && !fields.isEmpty() &&
+                    fields.size() < field.schema.size()) {
+                    requiredFields.put(column, fields);
+                }
+            }
+            return !requiredFields.isEmpty();
+        }
+
+        @Override
+        public void transform(OperatorPlan matched) throws FrontendException {
+            changes = new OperatorSubPlan(currentPlan);
+            LOLoad load = (LOLoad) matched.getSources().get(0);
+            LogicalSchema schema = load.getSchema();
+
+            // All top-level columns are required; only the fields of tuple columns are restricted.
+            LoadPushDown.RequiredFieldList requiredFieldList = new LoadPushDown.RequiredFieldList();
+            for (int column = 0; column < schema.size(); column++) {
+                LogicalSchema.LogicalFieldSchema field = schema.getField(column);
+                LoadPushDown.RequiredField requiredField =
+                    new LoadPushDown.RequiredField(field.alias, column, null, field.type);
+                Set<Integer> fields = requiredFields.get(column);
+                if (fields != null) {
+                    List<LoadPushDown.RequiredField> subFields = new ArrayList<LoadPushDown.RequiredField>();
+                    for (int index : fields) {
+                        LogicalSchema.LogicalFieldSchema subField = field.schema.getField(index);
+                        subFields.add(new LoadPushDown.RequiredField(subField.alias, index, null, subField.type));
+                    }
+                    requiredField.setSubFields(subFields);
+                }
+                requiredFieldList.add(requiredField);
+            }
+
+            LoadPushDown.RequiredFieldResponse response =
+                ((LoadPushDown) load.getLoadFunc()).pushProjection(requiredFieldList);
+            if (response != null && response.getRequiredFieldResponse()) {
+                log.info(String.format("Pushed down required fields of tuple columns into %s: %s", load.getAlias(),
+                    requiredFields));
+            }
+        }
+
+        @Override
+        public OperatorPlan reportChanges() {
+            return changes;
+        }
+    }
+}
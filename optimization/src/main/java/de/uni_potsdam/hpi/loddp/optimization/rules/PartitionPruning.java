@@ -0,0 +1,294 @@
+package de.uni_potsdam.hpi.loddp.optimization.rules;
+
+import de.uni_potsdam.hpi.loddp.common.OperatorPlanUtil;
+import de.uni_potsdam.hpi.loddp.common.execution.PartitionManifest;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.pig.FuncSpec;
+import org.apache.pig.impl.io.FileSpec;
+import org.apache.pig.impl.logicalLayer.FrontendException;
+import org.apache.pig.newplan.Operator;
+import org.apache.pig.newplan.OperatorPlan;
+import org.apache.pig.newplan.OperatorSubPlan;
+import org.apache.pig.newplan.logical.expression.*;
+import org.apache.pig.newplan.logical.relational.LOLoad;
+import org.apache.pig.newplan.logical.relational.LogicalPlan;
+import org.apache.pig.newplan.logical.relational.LogicalSchema;
+import org.apache.pig.newplan.optimizer.Rule;
+import org.apache.pig.newplan.optimizer.Transformer;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Rule which restricts loads of vertically partitioned datasets (see {@link PartitionManifest}) to the partitions which
+ * can contain quads passing the filters directly following the load, i.e. filters with conjuncts like "predicate ==
+ * 'a' OR predicate == 'b'", "object.dtlang == 'c'" or "NumericDataType(object.dtlang)".
+ *
+ * As with {@link LoadFilterPushDown}, every successor of the load (filters and split outputs) has to be restricted, and
+ * the load is restricted to the union of the partitions needed by the successors. Filters are kept, since partitions
+ * may contain quads of other predicates or data types (e.g. of the same family).
+ *
+ * Pig's LOLoad does not allow to change the loaded location, so the load is replaced by a new one; since its schema
+ * has new uids, all schemas of the plan are reset.
+ */
+public class PartitionPruning extends Rule {
+    public static final String NAME = "de.uni_potsdam.hpi.loddp.optimization.partition-pruning";
+    protected static final Log log = LogFactory.getLog(PartitionPruning.class);
+
+    /**
+     * Class name of the loader for partitions; the loaders live in a separate module (loddp-udf) which is only
+     * available at script execution time.
+     */
+    private static final String LOADER = "de.uni_potsdam.hpi.loddp.udf.loading.NQuadsLoader";
+    /**
+     * Maps data type filter UDF class names to the data type families of the quads they accept.
+     */
+    private static final Map<String, String> FILTER_FAMILIES = new HashMap<String, String>();
+
+    static {
+        FILTER_FAMILIES.put("de.uni_potsdam.hpi.loddp.udf.filtering.NumericDataType", PartitionManifest.FAMILY_NUMERIC);
+        FILTER_FAMILIES.put("de.uni_potsdam.hpi.loddp.udf.filtering.StringDataType", PartitionManifest.FAMILY_STRING);
+        FILTER_FAMILIES.put("de.uni_potsdam.hpi.loddp.udf.filtering.TemporalDataType",
+            PartitionManifest.FAMILY_TEMPORAL);
+    }
+
+    /**
+     * Loads which have been processed already (or created by this rule).
+     */
+    private final Set<LOLoad> processed = new HashSet<LOLoad>();
+    private final Map<String, PartitionManifest> manifests = new HashMap<String, PartitionManifest>();
+
+    public PartitionPruning() {
+        super(NAME, false);
+    }
+
+    @Override
+    public List<OperatorPlan> match(OperatorPlan plan) {
+        currentPlan = plan;
+        List<OperatorPlan> matches = new ArrayList<OperatorPlan>();
+        for (Operator operator : plan.getSources()) {
+            if (operator instanceof LOLoad && !processed.contains(operator)) {
+                OperatorSubPlan match = new OperatorSubPlan(plan);
+                match.add(operator);
+                matches.add(match);
+            }
+        }
+        return matches;
+    }
+
+    @Override
+    protected OperatorPlan buildPattern() {
+        return null;
+    }
+
+    @Override
+    public Transformer getNewTransformer() {
+        return new PartitionPruningTransformer();
+    }
+
+    private PartitionManifest getManifest(LOLoad load, String directory) {
+        if (!manifests.containsKey(directory)) {
+            try {
+                manifests.put(directory, PartitionManifest.read(directory, load.getConfiguration()));
+            } catch (IOException e) {
+                log.warn("Could not read partition manifest of " + directory + ": " + e.getMessage());
+                manifests.put(directory, null);
+            }
+        }
+        return manifests.get(directory);
+    }
+
+    /**
+     * Restrictions of a filter condition on predicates, data type families and object data types or language tags;
+     * NULL if there is no restriction.
+     */
+    private static class Restriction {
+        private Set<String> predicates;
+        private Set<String> families;
+        private Set<String> dtlangs;
+
+        private boolean isEmpty() {
+            return predicates == null && families == null && dtlangs == null;
+        }
+    }
+
+    private static Restriction getRestriction(LogicalExpressionPlan condition, LogicalSchema schema)
+        throws FrontendException {
+        Restriction restriction = new Restriction();
+        if (condition != null && condition.getSources().size() == 1) {
+            collectConjuncts((LogicalExpression) condition.getSources().get(0), schema, restriction);
+        }
+        return restriction;
+    }
+
+    /**
+     * Adds the restrictions of the given conjunct; conjuncts which are no supported disjunctions are ignored.
+     */
+    private static void collectConjuncts(LogicalExpression expression, LogicalSchema schema, Restriction restriction)
+        throws FrontendException {
+        if (expression instanceof AndExpression) {
+            collectConjuncts(((AndExpression) expression).getLhs(), schema, restriction);
+            collectConjuncts(((AndExpression) expression).getRhs(), schema, restriction);
+            return;
+        }
+        List<String> values = new ArrayList<String>();
+        if (!collectAllowedValues(expression, schema, values)) {
+            return;
+        }
+        String kind = values.remove(0);
+        if (kind.equals("predicate")) {
+            restriction.predicates = intersect(restriction.predicates, values);
+        } else if (kind.equals("object.dtlang")) {
+            restriction.dtlangs = intersect(restriction.dtlangs, values);
+        } else if (kind.equals("family")) {
+            restriction.families = intersect(restriction.families, values);
+        }
+    }
+
+    private static Set<String> intersect(Set<String> set, List<String> values) {
+        if (set == null) {
+            return new HashSet<String>(values);
+        }
+        set.retainAll(values);
+        return set;
+    }
+
+    /**
+     * Adds the kind of restriction ("predicate", "object.dtlang" or "family", if the list is still empty) and the
+     * allowed values of the given disjunction of equalities between a column and string constants, or of data type
+     * filters on the object data type.
+     *
+     * @return False if the expression is no such disjunction.
+     */
+    private static boolean collectAllowedValues(LogicalExpression expression, LogicalSchema schema,
+                                                List<String> values) throws FrontendException {
+        if (expression instanceof OrExpression) {
+            return collectAllowedValues(((OrExpression) expression).getLhs(), schema, values) &&
+                collectAllowedValues(((OrExpression) expression).getRhs(), schema, values);
+        }
+        String kind;
+        String value;
+        if (expression instanceof UserFuncExpression) {
+            FuncSpec funcSpec = ((UserFuncExpression) expression).getFuncSpec();
+            List<LogicalExpression> arguments = ((UserFuncExpression) expression).getArguments();
+            if (!FILTER_FAMILIES.containsKey(funcSpec.getClassName()) || arguments.size() != 1 ||
+                !"object.dtlang".equals(LoadFilterPushDown.getColumnName(arguments.get(0), schema))) {
+                return false;
+            }
+            kind = "family";
+            value = FILTER_FAMILIES.get(funcSpec.getClassName());
+        } else if (expression instanceof EqualExpression) {
+            LogicalExpression lhs = ((EqualExpression) expression).getLhs();
+            LogicalExpression rhs = ((EqualExpression) expression).getRhs();
+            if (lhs instanceof ConstantExpression) {
+                LogicalExpression swap = lhs;
+                lhs = rhs;
+                rhs = swap;
+            }
+            if (!(rhs instanceof ConstantExpression) || !(((ConstantExpression) rhs).getValue() instanceof String)) {
+                return false;
+            }
+            kind = LoadFilterPushDown.getColumnName(lhs, schema);
+            value = (String) ((ConstantExpression) rhs).getValue();
+            if (!"predicate".equals(kind) && !"object.dtlang".equals(kind)) {
+                return false;
+            }
+        } else {
+            return false;
+        }
+        if (values.isEmpty()) {
+            values.add(kind);
+        }
+        if (!values.get(0).equals(kind)) {
+            return false;
+        }
+        values.add(value);
+        return true;
+    }
+
+    protected class PartitionPruningTransformer extends Transformer {
+        private OperatorPlan changes;
+        private PartitionManifest manifest;
+        private SortedSet<String> partitions;
+
+        @Override
+        public boolean check(OperatorPlan matched) throws FrontendException {
+            LOLoad load = (LOLoad) matched.getSources().get(0);
+            processed.add(load);
+            if (!LOADER.equals(load.getFileSpec().getFuncName())) {
+                return false;
+            }
+            String location = load.getFileSpec().getFileName();
+            String directory = PartitionManifest.getDirectory(location);
+            if (directory == null) {
+                return false;
+            }
+            manifest = getManifest(load, directory);
+            if (manifest == null) {
+                return false;
+            }
+            // Column names are taken from the loader's schema; column numbers of already pruned loads do not match it.
+            LogicalSchema schema = load.getDeterminedSchema();
+            if (schema == null || load.getSchema() == null || schema.size() != load.getSchema().size()) {
+                return false;
+            }
+            List<Operator> successors = currentPlan.getSuccessors(load);
+            if (successors == null) {
+                return false;
+            }
+            List<LogicalExpressionPlan> conditions = LoadFilterPushDown.getConditions(currentPlan, successors);
+            if (conditions == null || conditions.isEmpty()) {
+                return false;
+            }
+
+            // Partitions needed by any of the conditions.
+            partitions = new TreeSet<String>();
+            for (LogicalExpressionPlan condition : conditions) {
+                Restriction restriction = getRestriction(condition, schema);
+                if (restriction.isEmpty()) {
+                    return false;
+                }
+                partitions.addAll(manifest.select(restriction.predicates, restriction.families, restriction.dtlangs));
+            }
+            SortedSet<String> loaded = manifest.getPartitions(location);
+            partitions.retainAll(loaded);
+            if (partitions.isEmpty()) {
+                // No partition contains matching quads; the location must not be empty, so load the smallest one.
+                String smallest = null;
+                for (String partition : loaded) {
+                    if (smallest == null || manifest.getQuads(Collections.singleton(partition)) <
+                        manifest.getQuads(Collections.singleton(smallest))) {
+                        smallest = partition;
+                    }
+                }
+                partitions.add(smallest);
+            }
+            return partitions.size() < loaded.size();
+        }
+
+        @Override
+        public void transform(OperatorPlan matched) throws FrontendException {
+            LOLoad load = (LOLoad) matched.getSources().get(0);
+            String location = manifest.getLocation(partitions);
+            LOLoad newLoad = new LOLoad(new FileSpec(location, load.getFileSpec().getFuncSpec()),
+                load.getScriptSchema(), (LogicalPlan) currentPlan, load.getConfiguration(), load.getLoadFunc(),
+                load.getSignature());
+            newLoad.setAlias(load.getAlias());
+            newLoad.setLocation(load.getLocation());
+            newLoad.setCastInserted(load.isCastInserted());
+            newLoad.setLimit(load.getLimit());
+            OperatorPlanUtil.replace(load, newLoad);
+            processed.add(newLoad);
+            changes = currentPlan;
+            log.info(String.format("Loading %d of %d partitions (%d of %d quads) in %s: %s", partitions.size(),
+                manifest.getPartitions().size(), manifest.getQuads(partitions),
+                manifest.getQuads(manifest.getPartitions()), load.getAlias(), location));
+        }
+
+        @Override
+        public OperatorPlan reportChanges() {
+            return changes;
+        }
+    }
+}